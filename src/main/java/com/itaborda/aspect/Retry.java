@@ -5,10 +5,28 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * retries the method when it throws one of the given exceptions, or an exception caused by one of them.
+ * the n-th retry waits delay * 2^(n-1) milliseconds capped to maxDelay, half of it being random jitter,
+ * and takes a token of the retry budget shared by all the methods, see {@link RetryAspect}
+ */
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.METHOD)
 public @interface Retry {
     Class<? extends Exception>[] on();
 
+    /**
+     * retries after the first attempt
+     */
     int times() default 1;
+
+    /**
+     * milliseconds before the first retry
+     */
+    long delay() default 10;
+
+    /**
+     * milliseconds between two retries at most
+     */
+    long maxDelay() default 1000;
 }
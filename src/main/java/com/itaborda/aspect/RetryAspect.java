@@ -0,0 +1,132 @@
+package com.itaborda.aspect;
+
+import com.itaborda.controller.dto.BaseResponse;
+import com.itaborda.controller.dto.RetryPolicyStatsDto;
+import com.itaborda.controller.dto.RetryStatsDto;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * retries the methods annotated with {@link Retry}. the policies of the methods of the beans are resolved once the
+ * singletons are created, a method first seen through another signature, as the interface method of a jdk proxy,
+ * is mapped once to the policy of its implementation. retries wait for an exponential backoff with jitter and take
+ * a token of the {@link RetryBudget}, a failure finding the budget empty is thrown right away.
+ */
+@Aspect
+public class RetryAspect implements BeanFactoryAware, SmartInitializingSingleton {
+
+    private final RetryBudget budget;
+    private final Map<Method, RetryPolicy> policies = new ConcurrentHashMap<>();
+    private ListableBeanFactory beanFactory;
+
+    public RetryAspect(RetryBudget budget) {
+        this.budget = budget;
+        Gauge.builder("shortify.retry.budget.tokens", budget::available).description("retries the retry budget allows right now")
+                .register(Metrics.globalRegistry);
+    }
+
+    @Around(value = "@annotation(retry)", argNames = "pjp,retry")
+    public Object retry(ProceedingJoinPoint pjp, Retry retry) throws Throwable {
+        RetryPolicy policy = policyOf(((MethodSignature) pjp.getSignature()).getMethod(), pjp.getTarget(), retry);
+        policy.calls.increment();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Object result = pjp.proceed();
+                if (attempt > 1) policy.recovered.increment();
+                return result;
+            } catch (Throwable throwable) {
+                if (!policy.isRetryable(throwable)) throw throwable;
+                if (attempt > policy.getTimes()) {
+                    policy.exhausted.increment();
+                    throw throwable;
+                }
+                if (!budget.tryAcquire()) {
+                    policy.rejected.increment();
+                    throw throwable;
+                }
+                policy.retries.increment();
+                try {
+                    Thread.sleep(policy.backoff(attempt));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw throwable;
+                }
+            }
+        }
+    }
+
+    public RetryStatsDto getStats() {
+        RetryStatsDto dto = new RetryStatsDto();
+        dto.setBudgetTokens(budget.available());
+        Set<RetryPolicy> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        distinct.addAll(policies.values());
+        for (RetryPolicy policy : distinct) {
+            RetryPolicyStatsDto stats = new RetryPolicyStatsDto();
+            stats.setTimes(policy.getTimes());
+            stats.setCalls(policy.calls.sum());
+            stats.setRetries(policy.retries.sum());
+            stats.setRecovered(policy.recovered.sum());
+            stats.setExhausted(policy.exhausted.sum());
+            stats.setRejected(policy.rejected.sum());
+            dto.getPolicies().put(policy.getName(), stats);
+        }
+        dto.setCode(BaseResponse.SUCCESSFUL);
+        dto.setSuccess(true);
+        dto.setMessage("retries");
+        return dto;
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        if (beanFactory instanceof ListableBeanFactory) this.beanFactory = (ListableBeanFactory) beanFactory;
+    }
+
+    /**
+     * resolves the policies of the annotated methods of every bean, an invalid {@link Retry} fails the startup
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (beanFactory == null) return;
+        for (String name : beanFactory.getBeanDefinitionNames()) {
+            Class<?> type = beanFactory.getType(name);
+            if (type == null) continue;
+            Map<Method, Retry> annotated = MethodIntrospector.selectMethods(ClassUtils.getUserClass(type),
+                    (MethodIntrospector.MetadataLookup<Retry>) method -> AnnotationUtils.findAnnotation(method, Retry.class));
+            annotated.forEach((method, retry) -> policies.computeIfAbsent(method, m -> new RetryPolicy(nameOf(m), retry)));
+        }
+    }
+
+    private RetryPolicy policyOf(Method method, Object target, Retry retry) {
+        RetryPolicy policy = policies.get(method);
+        if (policy != null) return policy;
+        return policies.computeIfAbsent(method, m -> {
+            Method specific = target == null ? m : ClassUtils.getMostSpecificMethod(m, AopUtils.getTargetClass(target));
+            RetryPolicy resolved = policies.get(specific);
+            return resolved != null ? resolved : new RetryPolicy(nameOf(specific), retry);
+        });
+    }
+
+    private static String nameOf(Method method) {
+        return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+    }
+}
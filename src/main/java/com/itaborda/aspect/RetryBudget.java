@@ -0,0 +1,47 @@
+package com.itaborda.aspect;
+
+/**
+ * token bucket shared by the retries of every method: each retry takes a token, tokens come back at a steady rate
+ * up to the burst size. once the bucket is empty failures are thrown right away instead of being retried, so a
+ * struggling database does not receive several times its load.
+ */
+public class RetryBudget {
+
+    private final double tokensPerNano;
+    private final double burst;
+
+    private double tokens;
+    private long refilledAt;
+
+    /**
+     * @param ratePerSecond tokens given back per second
+     * @param burst         tokens held at most, the bucket starts full
+     */
+    public RetryBudget(double ratePerSecond, double burst) {
+        this.tokensPerNano = ratePerSecond / 1e9;
+        this.burst = burst;
+        this.tokens = burst;
+        this.refilledAt = System.nanoTime();
+    }
+
+    /**
+     * @return true if a token was taken
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens < 1) return false;
+        tokens--;
+        return true;
+    }
+
+    public synchronized double available() {
+        refill();
+        return tokens;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+    }
+}
@@ -0,0 +1,85 @@
+package com.itaborda.aspect;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * the {@link Retry} settings of a method, resolved once, with the counters of its calls, which are exported as
+ * shortify_retries_total by method and outcome
+ */
+public final class RetryPolicy {
+
+    /**
+     * causes looked at at most, in case of a cycle in the chain
+     */
+    private static final int MAX_CAUSES = 16;
+
+    private final String name;
+    private final int times;
+    private final Class<? extends Throwable>[] on;
+    private final long delay;
+    private final long maxDelay;
+
+    final LongAdder calls = new LongAdder();
+    final LongAdder retries = new LongAdder();
+    final LongAdder recovered = new LongAdder();
+    final LongAdder exhausted = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+
+    public RetryPolicy(String name, Retry retry) {
+        Assert.isTrue(retry.times() > 0, "@Retry{times} should be greater than 0 on " + name);
+        Assert.isTrue(retry.on().length > 0, "@Retry{on} should have at least one Throwable on " + name);
+        Assert.isTrue(retry.delay() >= 0 && retry.maxDelay() >= retry.delay(), "@Retry{delay} should be between 0 and maxDelay on " + name);
+        this.name = name;
+        this.times = retry.times();
+        this.on = retry.on();
+        this.delay = retry.delay();
+        this.maxDelay = retry.maxDelay();
+        register(calls, "call");
+        register(retries, "retry");
+        register(recovered, "recovered");
+        register(exhausted, "exhausted");
+        register(rejected, "rejected");
+    }
+
+    private void register(LongAdder counter, String outcome) {
+        FunctionCounter.builder("shortify.retries", counter, LongAdder::sum).description("calls of the retried methods by outcome")
+                .tags("method", name, "outcome", outcome).register(Metrics.globalRegistry);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getTimes() {
+        return times;
+    }
+
+    /**
+     * @return true if the throwable or one of its causes is one of the retried exceptions
+     */
+    public boolean isRetryable(Throwable throwable) {
+        Throwable cause = throwable;
+        for (int i = 0; cause != null && i < MAX_CAUSES; i++, cause = cause.getCause()) {
+            for (Class<? extends Throwable> retryable : on) {
+                if (retryable.isInstance(cause)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param retry 1 for the first retry
+     * @return milliseconds to wait before the retry, between half and all of the exponential delay
+     */
+    public long backoff(int retry) {
+        long exponential = Math.min(maxDelay, delay << Math.min(retry - 1, 30));
+        if (exponential < 0) exponential = maxDelay;
+        long half = exponential / 2;
+        return half + ThreadLocalRandom.current().nextLong(exponential - half + 1);
+    }
+}
@@ -1,7 +1,8 @@
 package com.itaborda.config;
 
-import com.itaborda.aspect.DuplicateKeyExceptionAspect;
-import com.itaborda.aspect.LoggingAspect;
+import com.itaborda.aspect.RetryAspect;
+import com.itaborda.aspect.RetryBudget;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
@@ -13,12 +14,8 @@ import org.springframework.context.annotation.EnableAspectJAutoProxy;
 public class AspectsConfig {
 
     @Bean
-    DuplicateKeyExceptionAspect duplicateKeyExceptionAspect() {
-        return new DuplicateKeyExceptionAspect();
-    }
-
-    @Bean
-    LoggingAspect loggingAspect() {
-        return new LoggingAspect();
+    RetryAspect retryAspect(@Value("${shortify.retry.budget.rate:10}") double rate,
+                            @Value("${shortify.retry.budget.burst:100}") double burst) {
+        return new RetryAspect(new RetryBudget(rate, burst));
     }
 }
@@ -0,0 +1,51 @@
+package com.itaborda.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itaborda.service.RateLimitService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * one rate limit filter per limited route, mapped on the url patterns of the route. the limits of a route are set
+ * by shortify.rate-limit.&lt;route&gt;.rate and burst, see {@link com.itaborda.service.impl.RateLimitServiceImpl}.
+ */
+@Configuration
+public class RateLimitConfig {
+
+    private final Set<String> apiKeys;
+
+    public RateLimitConfig(@Value("${shortify.rate-limit.api-keys:}") String[] apiKeys) {
+        this.apiKeys = new HashSet<>(Arrays.asList(apiKeys));
+    }
+
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> shortenRateLimitFilter(RateLimitService rateLimitService, ObjectMapper objectMapper,
+                                                                          @Value("${shortify.rate-limit.shorten.paths:/api/v1/shortify,/api/v1/shortify/batch}") String[] paths) {
+        return registration("shorten", new RateLimitFilter(rateLimitService, "shorten", objectMapper, apiKeys), paths);
+    }
+
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> statRateLimitFilter(RateLimitService rateLimitService, ObjectMapper objectMapper,
+                                                                       @Value("${shortify.rate-limit.stat.paths:/api/v1/stat/*}") String[] paths) {
+        return registration("stat", new RateLimitFilter(rateLimitService, "stat", objectMapper, apiKeys), paths);
+    }
+
+    /**
+     * right after the tracing filter, so rejected requests are traced too
+     */
+    private static FilterRegistrationBean<RateLimitFilter> registration(String route, RateLimitFilter filter, String[] paths) {
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        // filters of the same class need distinct names to be registered
+        registration.setName(route + "RateLimitFilter");
+        registration.addUrlPatterns(paths);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+}
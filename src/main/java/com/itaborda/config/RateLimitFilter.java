@@ -0,0 +1,54 @@
+package com.itaborda.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itaborda.controller.dto.BaseResponse;
+import com.itaborda.service.RateLimitService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * admits the requests of a route through the token bucket of their client, the client being its address, or its
+ * X-Api-Key header when that is one of shortify.rate-limit.api-keys. any other key is ignored, a client picking a new
+ * key per request would otherwise get a new bucket each time. a rejected request gets a 429 with a Retry-After of
+ * the seconds until a token is back.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    public static final String API_KEY_HEADER = "X-Api-Key";
+
+    private final RateLimitService rateLimitService;
+    private final String route;
+    private final ObjectMapper objectMapper;
+    private final Set<String> apiKeys;
+
+    public RateLimitFilter(RateLimitService rateLimitService, String route, ObjectMapper objectMapper, Set<String> apiKeys) {
+        this.rateLimitService = rateLimitService;
+        this.route = route;
+        this.objectMapper = objectMapper;
+        this.apiKeys = apiKeys;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        String apiKey = request.getHeader(API_KEY_HEADER);
+        long wait = rateLimitService.tryAcquire(route, apiKey != null && apiKeys.contains(apiKey) ? apiKey : request.getRemoteAddr());
+        if (wait == 0) {
+            chain.doFilter(request, response);
+            return;
+        }
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, (wait + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1))));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new BaseResponse(false, "Too many requests, please try again later.", BaseResponse.TOO_MANY_REQUESTS));
+    }
+}
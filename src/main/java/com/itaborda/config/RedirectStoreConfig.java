@@ -0,0 +1,39 @@
+package com.itaborda.config;
+
+import com.itaborda.model.ShortUrl;
+import com.itaborda.repository.RedirectStore;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * the off heap redirect store of the redirect-store profile, taking shortify.redirect-store.budget bytes of direct
+ * memory. direct memory is bounded by -XX:MaxDirectMemorySize, which defaults to the max heap size.
+ */
+@Configuration
+@Profile("redirect-store")
+public class RedirectStoreConfig {
+
+    @Bean
+    public RedirectStore redirectStore(@Value("${shortify.redirect-store.budget:33554432}") long budget,
+                                       @Value("${shortify.redirect-store.slot-size:256}") int slotSize) {
+        RedirectStore store = new RedirectStore(budget, slotSize);
+        FunctionCounter.builder("shortify.cache.requests", store, RedirectStore::getHits).description("lookups of a short url per tier")
+                .tags("tier", "redirect-store", "cache", ShortUrl.CACHE_NAME, "result", "hit").register(Metrics.globalRegistry);
+        FunctionCounter.builder("shortify.cache.requests", store, RedirectStore::getMisses).description("lookups of a short url per tier")
+                .tags("tier", "redirect-store", "cache", ShortUrl.CACHE_NAME, "result", "miss").register(Metrics.globalRegistry);
+        FunctionCounter.builder("shortify.redirect.store.stale", store, RedirectStore::getStaleHits)
+                .description("redirects served past the soft expiry of their entry").register(Metrics.globalRegistry);
+        FunctionCounter.builder("shortify.redirect.store.evictions", store, RedirectStore::getEvictions)
+                .description("entries evicted from the redirect store").register(Metrics.globalRegistry);
+        FunctionCounter.builder("shortify.redirect.store.rejected", store, RedirectStore::getRejected)
+                .description("entries too large for a slot of the redirect store").register(Metrics.globalRegistry);
+        Gauge.builder("shortify.redirect.store.entries", store, RedirectStore::size)
+                .description("entries held by the redirect store").register(Metrics.globalRegistry);
+        return store;
+    }
+}
@@ -0,0 +1,55 @@
+package com.itaborda.config;
+
+import com.itaborda.repository.LinkCache;
+import com.itaborda.repository.LinkStore;
+import com.itaborda.repository.MongoLinkStore;
+import com.itaborda.repository.PartitionRouteRepository;
+import com.itaborda.repository.RoutingLinkStore;
+import com.itaborda.repository.ShortUrlRepository;
+import com.itaborda.repository.ShortUrlRepositoryImpl;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoClientDbFactory;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * the link stores of the routed profile: one per mongo uri of shortify.routing.backends, the index of a uri in the
+ * list being the backend number in the partition routes. worker status, range partitions, checkpoints and the
+ * routes themselves stay in the database of spring.data.mongodb.
+ */
+@Configuration
+@Profile("routed")
+public class RoutingConfig implements DisposableBean {
+
+    private final List<SimpleMongoClientDbFactory> factories = new ArrayList<>();
+
+    @Bean
+    public RoutingLinkStore routingLinkStore(MongoConverter converter, PartitionRouteRepository routeRepository, LinkCache linkCache,
+                                             @Value("${shortify.routing.backends}") String[] uris,
+                                             @Value("${shortify.routing.legacy-partitions:0}") long legacyPartitions) {
+        List<LinkStore> backends = new ArrayList<>();
+        for (String uri : uris) {
+            SimpleMongoClientDbFactory factory = new SimpleMongoClientDbFactory(uri.trim());
+            factories.add(factory);
+            MongoTemplate template = new MongoTemplate(factory, converter);
+            ShortUrlRepository repository = new MongoRepositoryFactory(template)
+                    .getRepository(ShortUrlRepository.class, RepositoryFragments.just(new ShortUrlRepositoryImpl(template)));
+            backends.add(new MongoLinkStore(repository));
+        }
+        return new RoutingLinkStore(backends, routeRepository, legacyPartitions, linkCache);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        for (SimpleMongoClientDbFactory factory : factories) factory.destroy();
+    }
+}
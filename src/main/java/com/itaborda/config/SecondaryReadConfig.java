@@ -0,0 +1,43 @@
+package com.itaborda.config;
+
+import com.itaborda.repository.LinkCache;
+import com.itaborda.repository.MongoLinkStore;
+import com.itaborda.repository.SecondaryReadLinkStore;
+import com.itaborda.repository.ShortUrlRepository;
+import com.itaborda.repository.ShortUrlRepositoryImpl;
+import com.mongodb.ReadPreference;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the link store of the secondary-reads profile: a second template over the same database reads with
+ * shortify.read-preference, the cached repository keeps writing to and reading from the primary.
+ * key ranges, checkpoints and counters are not affected, they stay on the primary.
+ */
+@Configuration
+@Profile("secondary-reads & !embedded & !routed & !compact")
+public class SecondaryReadConfig {
+
+    @Bean
+    public SecondaryReadLinkStore secondaryReadLinkStore(ShortUrlRepository repository, LinkCache linkCache, MongoDbFactory factory, MongoConverter converter,
+                                                         @Value("${shortify.read-preference.mode:nearest}") String mode,
+                                                         @Value("${shortify.read-preference.max-staleness:PT90S}") String maxStaleness) {
+        MongoTemplate template = new MongoTemplate(factory, converter);
+        template.setReadPreference(ReadPreference.valueOf(mode, Collections.emptyList(),
+                Duration.parse(maxStaleness).getSeconds(), TimeUnit.SECONDS));
+        ShortUrlRepository secondaries = new MongoRepositoryFactory(template)
+                .getRepository(ShortUrlRepository.class, RepositoryFragments.just(new ShortUrlRepositoryImpl(template)));
+        return new SecondaryReadLinkStore(new MongoLinkStore(repository, linkCache), new MongoLinkStore(secondaries));
+    }
+}
@@ -0,0 +1,80 @@
+package com.itaborda.config;
+
+import com.itaborda.repository.ShardedRedisCache;
+import com.itaborda.util.ConsistentHashRing;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * the cache manager of the sharded-cache profile: every cache is a {@link ShardedRedisCache} over the redis nodes
+ * of shortify.cache.nodes, a node being named by its uri on the ring so the order of the list does not matter.
+ * the top links summaries and the click stream keep using the redis of spring.redis.
+ */
+@Configuration
+@Profile("sharded-cache")
+public class ShardedCacheConfig implements DisposableBean {
+
+    private final List<LettuceConnectionFactory> factories = new ArrayList<>();
+
+    @Bean
+    public CacheManager cacheManager(@Value("${shortify.cache.nodes}") String[] uris,
+                                     @Value("${spring.cache.cache-names:shortify}") String[] cacheNames,
+                                     @Value("${spring.cache.redis.time-to-live:PT0S}") String ttl,
+                                     @Value("${shortify.cache.virtual-nodes:160}") int virtualNodes,
+                                     @Value("${shortify.cache.timeout:PT0.5S}") String timeout,
+                                     @Value("${shortify.cache.retry-after:PT5S}") String retryAfter,
+                                     @Value("${shortify.cache.max-missed:100000}") int maxMissed) {
+        RedisCacheConfiguration configuration = RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.parse(ttl));
+        List<Cache> caches = new ArrayList<>();
+        for (String cacheName : cacheNames) {
+            Map<String, ShardedRedisCache.Node> nodes = new LinkedHashMap<>();
+            for (String uri : uris) {
+                nodes.put(uri.trim(), new ShardedRedisCache.Node(uri.trim(), cacheName, connectionFactory(uri.trim(), Duration.parse(timeout)), configuration));
+            }
+            caches.add(new ShardedRedisCache(cacheName, new ConsistentHashRing<>(nodes, virtualNodes), Duration.parse(retryAfter).toMillis(), maxMissed));
+        }
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(caches);
+        return cacheManager;
+    }
+
+    /**
+     * @param uri redis://[:password@]host[:port][/database]
+     */
+    private LettuceConnectionFactory connectionFactory(String uri, Duration timeout) {
+        URI parsed = URI.create(uri);
+        RedisStandaloneConfiguration standalone = new RedisStandaloneConfiguration(parsed.getHost(), parsed.getPort() > 0 ? parsed.getPort() : 6379);
+        if (parsed.getUserInfo() != null) {
+            String userInfo = parsed.getUserInfo();
+            standalone.setPassword(RedisPassword.of(userInfo.substring(userInfo.indexOf(':') + 1)));
+        }
+        if (parsed.getPath() != null && parsed.getPath().length() > 1) standalone.setDatabase(Integer.parseInt(parsed.getPath().substring(1)));
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(standalone, LettuceClientConfiguration.builder().commandTimeout(timeout).build());
+        factory.afterPropertiesSet();
+        factories.add(factory);
+        return factory;
+    }
+
+    @Override
+    public void destroy() {
+        for (LettuceConnectionFactory factory : factories) factory.destroy();
+    }
+}
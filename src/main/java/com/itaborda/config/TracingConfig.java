@@ -0,0 +1,86 @@
+package com.itaborda.config;
+
+import com.itaborda.repository.TracingCacheManager;
+import com.itaborda.service.TracingService;
+import com.itaborda.util.Trace;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * sampled tracing, see {@link Trace}: the filter traces the requests, the caches of the cache manager open a span
+ * per operation and the commands sent to mongo through the client of spring.data.mongodb open one per command.
+ * the driver calling the command listener on the thread running the command, its span nests in the caller's.
+ * the command listener also records the latency of every command, sampled or not, by command name.
+ */
+@Configuration
+public class TracingConfig {
+
+    @Bean
+    public FilterRegistrationBean<TracingFilter> tracingFilter(TracingService tracingService) {
+        FilterRegistrationBean<TracingFilter> registration = new FilterRegistrationBean<>(new TracingFilter(tracingService));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    @Bean
+    public MongoClientOptions mongoClientOptions() {
+        return MongoClientOptions.builder().addCommandListener(new TracingCommandListener()).build();
+    }
+
+    @Bean
+    public static BeanPostProcessor tracingCacheManagerPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof CacheManager && !(bean instanceof TracingCacheManager) ? new TracingCacheManager((CacheManager) bean) : bean;
+            }
+        };
+    }
+
+    static class TracingCommandListener implements CommandListener {
+
+        private final Map<String, Timer> latencies = new ConcurrentHashMap<>();
+
+        @Override
+        public void commandStarted(CommandStartedEvent event) {
+            Trace trace = Trace.current();
+            if (trace != null) trace.open("mongo." + event.getCommandName());
+        }
+
+        @Override
+        public void commandSucceeded(CommandSucceededEvent event) {
+            Trace trace = Trace.current();
+            if (trace != null) trace.closeSpan();
+            latencyOf(event.getCommandName()).record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void commandFailed(CommandFailedEvent event) {
+            Trace trace = Trace.current();
+            if (trace != null) trace.closeSpan();
+            latencyOf(event.getCommandName()).record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        }
+
+        private Timer latencyOf(String command) {
+            Timer latency = latencies.get(command);
+            return latency != null ? latency : latencies.computeIfAbsent(command,
+                    c -> Timer.builder("shortify.mongo.command").description("latency of the commands sent to mongo").tag("command", c)
+                            .publishPercentileHistogram().register(Metrics.globalRegistry));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.itaborda.config;
+
+import com.itaborda.service.TracingService;
+import com.itaborda.util.Trace;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * starts the trace of a sampled request, its root span being the request itself. a request with an X-Trace header
+ * is always sampled. an unsampled request costs a random draw.
+ */
+public class TracingFilter extends OncePerRequestFilter {
+
+    public static final String TRACE_HEADER = "X-Trace";
+
+    private final TracingService tracingService;
+
+    public TracingFilter(TracingService tracingService) {
+        this.tracingService = tracingService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        Trace trace = tracingService.start(request.getMethod(), request.getHeader(TRACE_HEADER) != null);
+        if (trace == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        trace.setName(request.getMethod() + " " + request.getRequestURI());
+        try (Trace.Span span = trace.open("request")) {
+            chain.doFilter(request, response);
+        } finally {
+            tracingService.finish(trace);
+        }
+    }
+}
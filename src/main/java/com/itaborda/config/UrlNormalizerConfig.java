@@ -0,0 +1,20 @@
+package com.itaborda.config;
+
+import com.itaborda.util.UrlNormalizer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Arrays;
+
+@Configuration
+public class UrlNormalizerConfig {
+
+    /**
+     * normalizer shared by every shortening path, stripping the configured tracking parameters
+     */
+    @Bean
+    public UrlNormalizer urlNormalizer(@Value("${shortify.normalizer.strip-params:}") String[] stripParams) {
+        return new UrlNormalizer(Arrays.asList(stripParams));
+    }
+}
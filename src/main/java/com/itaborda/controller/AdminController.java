@@ -0,0 +1,228 @@
+package com.itaborda.controller;
+
+import com.itaborda.aspect.RetryAspect;
+import com.itaborda.controller.dto.BaseResponse;
+import com.itaborda.controller.dto.ImportRequestDto;
+import com.itaborda.controller.dto.ImportStatusDto;
+import com.itaborda.controller.dto.PartitionMoveDto;
+import com.itaborda.controller.dto.WriteBehindStatusDto;
+import com.itaborda.exception.ImportNotFoundException;
+import com.itaborda.exception.InvalidImportException;
+import com.itaborda.exception.InvalidMigrationException;
+import com.itaborda.exception.InvalidRebalanceException;
+import com.itaborda.service.ImportService;
+import com.itaborda.service.PartitionRebalanceService;
+import com.itaborda.service.SchemaMigrationService;
+import com.itaborda.service.TracingService;
+import com.itaborda.service.UrlKeyBackfillService;
+import com.itaborda.service.WarmUpService;
+import com.itaborda.service.WriteBehindService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Optional;
+
+/**
+ * REST controller for operating the service.
+ */
+@RestController
+@RequestMapping("/api/v1/admin")
+@Api(value = "Shortener URL administration")
+public class AdminController {
+
+	private ImportService importService;
+	private Optional<PartitionRebalanceService> rebalanceService;
+	private Optional<WriteBehindService> writeBehindService;
+	private Optional<SchemaMigrationService> schemaMigrationService;
+	private UrlKeyBackfillService urlKeyBackfillService;
+	private WarmUpService warmUpService;
+	private RetryAspect retryAspect;
+	private TracingService tracingService;
+
+	public AdminController(ImportService importService, Optional<PartitionRebalanceService> rebalanceService,
+						   Optional<WriteBehindService> writeBehindService, Optional<SchemaMigrationService> schemaMigrationService,
+						   UrlKeyBackfillService urlKeyBackfillService, WarmUpService warmUpService, RetryAspect retryAspect, TracingService tracingService) {
+		this.importService = importService;
+		this.rebalanceService = rebalanceService;
+		this.writeBehindService = writeBehindService;
+		this.schemaMigrationService = schemaMigrationService;
+		this.urlKeyBackfillService = urlKeyBackfillService;
+		this.warmUpService = warmUpService;
+		this.retryAspect = retryAspect;
+		this.tracingService = tracingService;
+	}
+
+	/**
+	 * GET /admin/warm-up   readiness of the replica, used by the readiness probe
+	 *
+	 * @return Output 200 with the duration and number of short urls loaded by the startup warm-up once it is over,
+	 * 503 while it runs
+	 */
+	@GetMapping("/warm-up")
+	@ApiOperation(value = "Get the readiness and startup warm-up of the replica")
+	public ResponseEntity<BaseResponse> getWarmUp() {
+		return ResponseEntity.status(warmUpService.isReady() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE).body(warmUpService.getStatus());
+	}
+
+	/**
+	 * POST /admin/import   starts importing a dump of long urls located on the server, or resumes it from its
+	 * last checkpoint
+	 *
+	 * @param dto path and format (csv or ndjson) of the dump
+	 * @return Output the status of the import, its id is the id of the checkpoint
+	 * @throws InvalidImportException if the file is not readable or the format is unknown
+	 */
+	@PostMapping("/import")
+	@ApiOperation(value = "Import a dump of long urls")
+	public ResponseEntity<BaseResponse> startImport(@RequestBody ImportRequestDto dto) throws InvalidImportException {
+		ImportStatusDto status = importService.start(dto);
+		return ResponseEntity.accepted().body(status);
+	}
+
+	/**
+	 * GET /admin/import/:id   progress and per stage throughput of an import
+	 *
+	 * @param id id of the import
+	 * @return Output the status of the import
+	 * @throws ImportNotFoundException if the import was never started
+	 */
+	@GetMapping("/import/{id}")
+	@ApiOperation(value = "Get the progress of an import")
+	public ResponseEntity<BaseResponse> getImport(@PathVariable String id) throws ImportNotFoundException {
+		return ResponseEntity.ok().body(importService.getStatus(id));
+	}
+
+	/**
+	 * GET /admin/partitions   routes of the key partitions which were moved or are moving between backends
+	 *
+	 * @return Output the number of backends and the routes
+	 * @throws InvalidRebalanceException if the service does not run with the routed profile
+	 */
+	@GetMapping("/partitions")
+	@ApiOperation(value = "Get the routes of the moved key partitions")
+	public ResponseEntity<BaseResponse> getPartitions() throws InvalidRebalanceException {
+		return ResponseEntity.ok().body(rebalanceService().getRoutes());
+	}
+
+	/**
+	 * POST /admin/partitions/:partition/move   starts moving a key partition to another backend, it stays
+	 * readable and writable during the move
+	 *
+	 * @param partition key partition
+	 * @param dto       index of the target backend
+	 * @return Output the route of the partition
+	 * @throws InvalidRebalanceException if routing is not enabled, the backend is unknown or already holds the partition
+	 */
+	@PostMapping("/partitions/{partition}/move")
+	@ApiOperation(value = "Move a key partition to another backend")
+	public ResponseEntity<BaseResponse> movePartition(@PathVariable long partition, @RequestBody PartitionMoveDto dto) throws InvalidRebalanceException {
+		if (dto.getBackend() == null) throw new InvalidRebalanceException();
+		return ResponseEntity.accepted().body(rebalanceService().move(partition, dto.getBackend()));
+	}
+
+	/**
+	 * GET /admin/retries   calls, retries and outcomes of the methods retried on this replica
+	 *
+	 * @return Output the counters of every retried method and the tokens left in the retry budget
+	 */
+	@GetMapping("/retries")
+	@ApiOperation(value = "Get the retry counters of the replica")
+	public ResponseEntity<BaseResponse> getRetries() {
+		return ResponseEntity.ok().body(retryAspect.getStats());
+	}
+
+	/**
+	 * GET /admin/traces   the most recent sampled requests slower than the threshold, with the timings of their
+	 * spans. a request sent with an X-Trace header is always sampled
+	 *
+	 * @return Output the slow traces, newest first, and the sampling settings
+	 */
+	@GetMapping("/traces")
+	@ApiOperation(value = "Get the recent slow traces of the replica")
+	public ResponseEntity<BaseResponse> getTraces() {
+		return ResponseEntity.ok().body(tracingService.getTraces());
+	}
+
+	/**
+	 * GET /admin/write-behind   lag and flush batch sizes of the write-behind journal of the replica
+	 *
+	 * @return Output the status of the journal, disabled unless the service runs with the write-behind profile
+	 */
+	@GetMapping("/write-behind")
+	@ApiOperation(value = "Get the status of the write-behind journal")
+	public ResponseEntity<BaseResponse> getWriteBehind() {
+		return ResponseEntity.ok().body(writeBehindService.map(WriteBehindService::getStatus).orElseGet(() -> {
+			WriteBehindStatusDto dto = new WriteBehindStatusDto();
+			dto.setCode(BaseResponse.SUCCESSFUL);
+			dto.setSuccess(true);
+			dto.setMessage("write-behind");
+			return dto;
+		}));
+	}
+
+	/**
+	 * GET /admin/schema   progress of the migration to the compact schema, with the sizes of both collections
+	 *
+	 * @return Output the state of the migration and the collStats sizes
+	 * @throws InvalidMigrationException if the service does not run with the compact profile
+	 */
+	@GetMapping("/schema")
+	@ApiOperation(value = "Get the progress of the compact schema migration")
+	public ResponseEntity<BaseResponse> getSchema() throws InvalidMigrationException {
+		return ResponseEntity.ok().body(schemaMigrationService().getReport());
+	}
+
+	/**
+	 * POST /admin/schema/migrate   starts copying the legacy short urls to the compact schema, they stay readable
+	 * and writable during the copy
+	 *
+	 * @return Output the state of the migration
+	 * @throws InvalidMigrationException if the compact schema is not enabled or a migration is already running
+	 */
+	@PostMapping("/schema/migrate")
+	@ApiOperation(value = "Migrate the short urls to the compact schema")
+	public ResponseEntity<BaseResponse> migrateSchema() throws InvalidMigrationException {
+		return ResponseEntity.accepted().body(schemaMigrationService().start());
+	}
+
+	/**
+	 * GET /admin/url-keys   progress of the backfill of the url keys of the short urls stored before url keys
+	 * were introduced
+	 *
+	 * @return Output the state of the backfill
+	 */
+	@GetMapping("/url-keys")
+	@ApiOperation(value = "Get the progress of the url key backfill")
+	public ResponseEntity<BaseResponse> getUrlKeys() {
+		return ResponseEntity.ok().body(urlKeyBackfillService.getReport());
+	}
+
+	/**
+	 * POST /admin/url-keys/backfill   starts giving their url key to the short urls missing it, so shortening their
+	 * url again finds them
+	 *
+	 * @return Output the state of the backfill
+	 * @throws InvalidMigrationException if a backfill is already running
+	 */
+	@PostMapping("/url-keys/backfill")
+	@ApiOperation(value = "Backfill the url keys of the short urls missing it")
+	public ResponseEntity<BaseResponse> backfillUrlKeys() throws InvalidMigrationException {
+		return ResponseEntity.accepted().body(urlKeyBackfillService.start());
+	}
+
+	private SchemaMigrationService schemaMigrationService() throws InvalidMigrationException {
+		return schemaMigrationService.orElseThrow(() -> new InvalidMigrationException("compact schema is not enabled"));
+	}
+
+	private PartitionRebalanceService rebalanceService() throws InvalidRebalanceException {
+		return rebalanceService.orElseThrow(() -> new InvalidRebalanceException("partition routing is not enabled"));
+	}
+}
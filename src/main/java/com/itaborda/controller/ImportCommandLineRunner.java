@@ -0,0 +1,67 @@
+package com.itaborda.controller;
+
+import com.itaborda.controller.dto.ImportRequestDto;
+import com.itaborda.controller.dto.ImportStatusDto;
+import com.itaborda.model.ImportCheckpoint;
+import com.itaborda.service.ImportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * command line entry point of the import, enabled by passing the dump to import:
+ * java -jar url-shortener.jar --shortify.import.file=/dumps/links.csv --shortify.import.format=csv
+ * --spring.main.web-application-type=none
+ * the import runs to completion and the application exits with 0 if it is done, running it again resumes a
+ * failed import.
+ */
+@Component
+@ConditionalOnProperty("shortify.import.file")
+public class ImportCommandLineRunner implements CommandLineRunner, ExitCodeGenerator {
+
+	private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+	private ImportService importService;
+	private ApplicationContext context;
+	private String file;
+	private String format;
+	private boolean exit;
+	private int exitCode;
+
+	public ImportCommandLineRunner(ImportService importService, ApplicationContext context,
+								   @Value("${shortify.import.file}") String file,
+								   @Value("${shortify.import.format:csv}") String format,
+								   @Value("${shortify.import.exit:true}") boolean exit) {
+		this.importService = importService;
+		this.context = context;
+		this.file = file;
+		this.format = format;
+		this.exit = exit;
+	}
+
+	@Override
+	public void run(String... args) throws Exception {
+		ImportRequestDto request = new ImportRequestDto();
+		request.setFile(file);
+		request.setFormat(format);
+
+		ImportStatusDto status = importService.start(request);
+		status = importService.await(status.getCheckpoint().getId());
+		status.getStages().forEach((stage, s) -> log.info("Import stage {}: {} records, {} records/s",
+				stage, s.getRecords(), String.format("%.0f", s.getRecordsPerSecond())));
+		exitCode = ImportCheckpoint.DONE.equals(status.getCheckpoint().getState()) ? 0 : 1;
+		// scheduled tasks keep the jvm alive
+		if (exit) System.exit(SpringApplication.exit(context, this));
+	}
+
+	@Override
+	public int getExitCode() {
+		return exitCode;
+	}
+}
@@ -1,18 +1,27 @@
 package com.itaborda.controller;
 
+import com.itaborda.exception.BatchTooLargeException;
 import com.itaborda.exception.InvalidAddressException;
 import com.itaborda.exception.KeyNotFoundException;
 import com.itaborda.exception.KeyOverFlowException;
 import com.itaborda.controller.dto.BaseResponse;
+import com.itaborda.controller.dto.BatchResolveDto;
+import com.itaborda.controller.dto.BatchResolveRequestDto;
+import com.itaborda.controller.dto.BatchShortenDto;
+import com.itaborda.controller.dto.BatchShortenRequestDto;
 import com.itaborda.controller.dto.NewLinkDto;
 import com.itaborda.controller.dto.ResolveLinkDto;
 import com.itaborda.controller.dto.VisitStateDto;
 import com.itaborda.service.ShortUrlService;
-import com.itaborda.util.Utility;
+import com.itaborda.util.ClickDimension;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -20,6 +29,9 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * REST controller for managing url shortening , expansion and statistics Operation.
@@ -33,15 +45,24 @@ public class ShortUrlController {
 
 	private ShortUrlService shortUrlService;
 
+	private final Timer redirectLatency = requestTimer("redirect");
+	private final Timer shortenLatency = requestTimer("shorten");
+	private final Timer statLatency = requestTimer("stat");
+
 	public ShortUrlController(ShortUrlService shortUrlService) {
 		this.shortUrlService = shortUrlService;
 	}
 
+	private static Timer requestTimer(String endpoint) {
+		return Timer.builder("shortify.request").description("latency of the requests").tag("endpoint", endpoint)
+				.publishPercentileHistogram().register(Metrics.globalRegistry);
+	}
+
 	/**
 	 * Get /:key  taking already generated short Url, redirect user to the corresponding long url
 	 *
 	 * @param key      shortUrl provided by user
-	 * @param request  it is used to extract browser and os information of analytics
+	 * @param request  it is used to extract the click dimensions (browser, os, referrer, ...) of analytics
 	 * @param response it is used to redirect user to the appropriate long url
 	 * @throws KeyNotFoundException    if the provided shortUrl is not available in the DB
 	 * @throws InvalidAddressException if the key (or short url) is empty or null
@@ -50,15 +71,19 @@ public class ShortUrlController {
 	@ApiOperation(value = "Get and redirect to shortened url")
 	public void expandingUrl(@PathVariable String key, HttpServletRequest request, HttpServletResponse response) throws KeyNotFoundException, InvalidAddressException {
 
-		ResolveLinkDto dto = new ResolveLinkDto();
-		dto.setBrowser(Utility.getBrowserType(request));
-		dto.setOs(Utility.getOperatingSystemType(request));
-		dto.setShortUrl(key);
+		long start = System.nanoTime();
+		try {
+			ResolveLinkDto dto = new ResolveLinkDto();
+			dto.setDimensions(ClickDimension.extractAll(request));
+			dto.setShortUrl(key);
 
-		String longUrl = shortUrlService.resolve(dto).getLongUrl();
+			String longUrl = shortUrlService.redirect(dto);
 
-		response.setHeader("Location", longUrl);
-		response.setStatus(HttpServletResponse.SC_MOVED_TEMPORARILY);
+			response.setHeader("Location", longUrl);
+			response.setStatus(HttpServletResponse.SC_MOVED_TEMPORARILY);
+		} finally {
+			redirectLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
 	}
 
 	/**
@@ -75,22 +100,74 @@ public class ShortUrlController {
 	@ApiOperation(value = "Shortify a long url")
 	public ResponseEntity<BaseResponse> assignNewKey(@RequestBody NewLinkDto dto) throws MalformedURLException, UnknownHostException, KeyOverFlowException, URISyntaxException {
 
-		String key = shortUrlService.shorten(dto);
-		return ResponseEntity.created(new URI("/" + key)).body(new BaseResponse(true, key, BaseResponse.SUCCESSFUL));
+		long start = System.nanoTime();
+		try {
+			String key = shortUrlService.shorten(dto);
+			return ResponseEntity.created(new URI("/" + key)).body(new BaseResponse(true, key, BaseResponse.SUCCESSFUL));
+		} finally {
+			shortenLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * POST /shortify/batch  many long urls are shortened at once, the response maps every provided url to its key
+	 * or to the reason it could not be shortened, in the order they were provided
+	 *
+	 * @param dto a container to hold the provided long urls
+	 * @return Output one item per provided url
+	 * @throws UnknownHostException   if the system requesting, does not have proper hostname
+	 * @throws KeyOverFlowException   if the system has exhausted the maximum amount of counters
+	 * @throws BatchTooLargeException if more urls than the configured maximum are provided
+	 */
+	@PostMapping("/shortify/batch")
+	@ApiOperation(value = "Shortify many long urls")
+	public ResponseEntity<BatchShortenDto> assignNewKeys(@RequestBody BatchShortenRequestDto dto) throws UnknownHostException, KeyOverFlowException, BatchTooLargeException {
+
+		List<String> longUrls = dto.getLongUrls() == null ? Collections.emptyList() : dto.getLongUrls();
+		return ResponseEntity.ok(shortUrlService.shortenBatch(longUrls));
+	}
+
+	/**
+	 * POST /resolve/batch  many keys are resolved at once without redirecting, the response maps every provided key
+	 * to its long url or marks it missing or expired, in the order they were provided
+	 *
+	 * @param dto     the keys, and whether the resolved keys count as visits
+	 * @param request it is used to extract the click dimensions of the visits when they are counted
+	 * @return Output one item per provided key
+	 * @throws BatchTooLargeException if more keys than the configured maximum are provided
+	 */
+	@PostMapping("/resolve/batch")
+	@ApiOperation(value = "Resolve many short urls")
+	public ResponseEntity<BatchResolveDto> resolveKeys(@RequestBody BatchResolveRequestDto dto, HttpServletRequest request) throws BatchTooLargeException {
+
+		List<String> keys = dto.getKeys() == null ? Collections.emptyList() : dto.getKeys();
+		String[] dimensions = dto.isCountClicks() ? ClickDimension.extractAll(request) : null;
+		return ResponseEntity.ok(shortUrlService.resolveBatch(keys, dto.isCountClicks(), dimensions));
 	}
 
 	/**
-	 * GET /stat/:key   stat will be calculated and returned
+	 * GET /stat/:key   stat will be read from the materialized summary and returned, tagged with the summary version
+	 * so polling clients sending If-None-Match get a 304 until the next visit.
 	 *
-	 * @param key short url that already generated by the service.
+	 * @param key     short url that already generated by the service.
+	 * @param request it is used to check the If-None-Match header against the summary version
 	 * @return Output the calculated statistics gathered by the service.
 	 * @throws KeyNotFoundException if the provided shortUrl is not available in the DB
 	 */
 	@GetMapping("/stat/{key}")
 	@ApiOperation(value = "Get shortened url statistcs")
-	public ResponseEntity<BaseResponse> getStats(@PathVariable String key) throws KeyNotFoundException {
-		VisitStateDto dto = shortUrlService.getVisitStateByKey(key);
-		return ResponseEntity.ok().body(dto);
+	public ResponseEntity<BaseResponse> getStats(@PathVariable String key, WebRequest request) throws KeyNotFoundException {
+		long start = System.nanoTime();
+		try {
+			VisitStateDto dto = shortUrlService.getVisitStateByKey(key);
+			String eTag = "\"" + key + "-" + dto.getVersion() + "\"";
+			if (request.checkNotModified(eTag)) {
+				return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+			}
+			return ResponseEntity.ok().eTag(eTag).body(dto);
+		} finally {
+			statLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
 	}
 
 }
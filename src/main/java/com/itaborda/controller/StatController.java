@@ -0,0 +1,105 @@
+package com.itaborda.controller;
+
+import com.itaborda.controller.dto.BaseResponse;
+import com.itaborda.controller.dto.StatExportDto;
+import com.itaborda.controller.dto.TopLinksDto;
+import com.itaborda.exception.InvalidCursorException;
+import com.itaborda.exception.InvalidFormatException;
+import com.itaborda.exception.KeyNotFoundException;
+import com.itaborda.service.ClickStreamService;
+import com.itaborda.service.StatExportService;
+import com.itaborda.service.TopLinksService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * REST controller for system wide statistics.
+ */
+@RestController
+@RequestMapping("/api/v1/stat")
+@Api(value = "Shortener URL statistics")
+public class StatController {
+
+	private TopLinksService topLinksService;
+	private StatExportService statExportService;
+	private ClickStreamService clickStreamService;
+
+	public StatController(TopLinksService topLinksService, StatExportService statExportService, ClickStreamService clickStreamService) {
+		this.topLinksService = topLinksService;
+		this.statExportService = statExportService;
+		this.clickStreamService = clickStreamService;
+	}
+
+	/**
+	 * GET /stat/top   most resolved short urls of the whole system, served from the last merged view
+	 *
+	 * @param window all for the all-time view, trending for the time decayed view
+	 * @param limit  maximum number of links to return
+	 * @return Output the heavy hitter links ordered by descending estimated visits
+	 */
+	@GetMapping("/top")
+	@ApiOperation(value = "Get the most visited shortened urls")
+	public ResponseEntity<BaseResponse> getTopLinks(@RequestParam(defaultValue = TopLinksService.WINDOW_TRENDING) String window,
+													@RequestParam(defaultValue = "10") int limit) {
+		TopLinksDto dto = topLinksService.getTopLinks(window, limit);
+		return ResponseEntity.ok().body(dto);
+	}
+
+	/**
+	 * GET /stat/export   statistics of every short url streamed as NDJSON or CSV, one row per short url.
+	 * the body is gzipped on the fly when the client accepts it.
+	 *
+	 * @param dto            format, created date range, resume cursor and whether the daily series is included
+	 * @param acceptEncoding it is used to decide whether the body is gzipped
+	 * @return Output the rows streamed while they are read from the DB
+	 * @throws InvalidCursorException if the provided resume cursor is not valid
+	 * @throws InvalidFormatException if the provided format is neither ndjson nor csv
+	 */
+	@GetMapping("/export")
+	@ApiOperation(value = "Export statistics of all shortened urls")
+	public ResponseEntity<StreamingResponseBody> export(StatExportDto dto,
+														@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, defaultValue = "") String acceptEncoding) throws InvalidCursorException, InvalidFormatException {
+		statExportService.validate(dto);
+		boolean gzip = acceptEncoding.contains("gzip");
+
+		ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+				.contentType(dto.isCsv() ? MediaType.parseMediaType("text/csv") : MediaType.parseMediaType("application/x-ndjson"));
+		if (gzip) builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+
+		return builder.body(out -> {
+			if (gzip) {
+				GZIPOutputStream gzipOut = new GZIPOutputStream(out, 8192, true);
+				statExportService.export(dto, gzipOut);
+				gzipOut.finish();
+			} else {
+				statExportService.export(dto, out);
+			}
+		});
+	}
+
+	/**
+	 * GET /stat/:key/stream   per second click deltas of the short url pushed as Server-Sent Events
+	 *
+	 * @param key short url that already generated by the service.
+	 * @return Output an event stream sending a clicks event for every second the short url was visited
+	 * @throws KeyNotFoundException if the provided shortUrl is not available in the DB
+	 */
+	@GetMapping(value = "/{key}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	@ApiOperation(value = "Stream live clicks of a shortened url")
+	public SseEmitter streamClicks(@PathVariable String key) throws KeyNotFoundException {
+		return clickStreamService.subscribe(key);
+	}
+}
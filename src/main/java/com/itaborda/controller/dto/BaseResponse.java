@@ -19,6 +19,7 @@ public class BaseResponse {
     public static final int BAD_REQUEST = 2;
     public static final int INSUFFICIENT_KEY=3;
     public static final int SERVER_TOO_BUSY =4;
+    public static final int TOO_MANY_REQUESTS = 5;
 
     protected boolean success;
     protected String message;
@@ -0,0 +1,58 @@
+package com.itaborda.controller.dto;
+
+import java.util.List;
+
+public class BatchResolveDto extends BaseResponse {
+
+    /**
+     * one item per submitted key, in submission order
+     */
+    private List<BatchResolveItemDto> items;
+    private int found;
+    private int missing;
+    private int expired;
+    /**
+     * keys read from the cache, the others were loaded from the link store
+     */
+    private int cacheHits;
+
+    public List<BatchResolveItemDto> getItems() {
+        return items;
+    }
+
+    public void setItems(List<BatchResolveItemDto> items) {
+        this.items = items;
+    }
+
+    public int getFound() {
+        return found;
+    }
+
+    public void setFound(int found) {
+        this.found = found;
+    }
+
+    public int getMissing() {
+        return missing;
+    }
+
+    public void setMissing(int missing) {
+        this.missing = missing;
+    }
+
+    public int getExpired() {
+        return expired;
+    }
+
+    public void setExpired(int expired) {
+        this.expired = expired;
+    }
+
+    public int getCacheHits() {
+        return cacheHits;
+    }
+
+    public void setCacheHits(int cacheHits) {
+        this.cacheHits = cacheHits;
+    }
+}
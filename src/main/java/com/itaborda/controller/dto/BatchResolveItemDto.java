@@ -0,0 +1,60 @@
+package com.itaborda.controller.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDateTime;
+
+/**
+ * outcome of one key of a batch resolve, its long url when it was found and is not expired
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchResolveItemDto {
+
+    public static final String FOUND = "found";
+    public static final String MISSING = "missing";
+    public static final String EXPIRED = "expired";
+
+    private String key;
+    private String status;
+    private String longUrl;
+    private LocalDateTime expireDate;
+
+    public BatchResolveItemDto() {
+    }
+
+    public BatchResolveItemDto(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getLongUrl() {
+        return longUrl;
+    }
+
+    public void setLongUrl(String longUrl) {
+        this.longUrl = longUrl;
+    }
+
+    public LocalDateTime getExpireDate() {
+        return expireDate;
+    }
+
+    public void setExpireDate(LocalDateTime expireDate) {
+        this.expireDate = expireDate;
+    }
+}
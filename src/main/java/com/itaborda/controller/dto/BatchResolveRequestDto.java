@@ -0,0 +1,29 @@
+package com.itaborda.controller.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchResolveRequestDto {
+
+    private List<String> keys = new ArrayList<>();
+    /**
+     * visits are recorded for the found keys only when set, previews and renderings are not visits
+     */
+    private boolean countClicks;
+
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    public void setKeys(List<String> keys) {
+        this.keys = keys;
+    }
+
+    public boolean isCountClicks() {
+        return countClicks;
+    }
+
+    public void setCountClicks(boolean countClicks) {
+        this.countClicks = countClicks;
+    }
+}
@@ -0,0 +1,46 @@
+package com.itaborda.controller.dto;
+
+import java.util.List;
+
+public class BatchShortenDto extends BaseResponse {
+
+    /**
+     * one item per submitted url, in submission order
+     */
+    private List<BatchShortenItemDto> items;
+    private int created;
+    private int existing;
+    private int failed;
+
+    public List<BatchShortenItemDto> getItems() {
+        return items;
+    }
+
+    public void setItems(List<BatchShortenItemDto> items) {
+        this.items = items;
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    public void setCreated(int created) {
+        this.created = created;
+    }
+
+    public int getExisting() {
+        return existing;
+    }
+
+    public void setExisting(int existing) {
+        this.existing = existing;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+}
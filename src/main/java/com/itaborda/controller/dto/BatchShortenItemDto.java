@@ -0,0 +1,59 @@
+package com.itaborda.controller.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * outcome of one url of a batch, either its key or the reason it was not shortened
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchShortenItemDto {
+
+    public static final String CREATED = "created";
+    public static final String EXISTING = "existing";
+    public static final String INVALID = "invalid";
+    public static final String FAILED = "failed";
+
+    private String longUrl;
+    private String status;
+    private String key;
+    private String error;
+
+    public BatchShortenItemDto() {
+    }
+
+    public BatchShortenItemDto(String longUrl) {
+        this.longUrl = longUrl;
+    }
+
+    public String getLongUrl() {
+        return longUrl;
+    }
+
+    public void setLongUrl(String longUrl) {
+        this.longUrl = longUrl;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,17 @@
+package com.itaborda.controller.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchShortenRequestDto {
+
+    private List<String> longUrls = new ArrayList<>();
+
+    public List<String> getLongUrls() {
+        return longUrls;
+    }
+
+    public void setLongUrls(List<String> longUrls) {
+        this.longUrls = longUrls;
+    }
+}
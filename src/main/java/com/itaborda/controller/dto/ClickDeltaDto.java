@@ -0,0 +1,49 @@
+package com.itaborda.controller.dto;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ClickDeltaDto {
+
+    private String key;
+    private Long timestamp;
+    private Long clicks;
+    private Map<String, Map<String, Long>> breakdowns = new LinkedHashMap<>();
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public Long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(Long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public Long getClicks() {
+        return clicks;
+    }
+
+    public void setClicks(Long clicks) {
+        this.clicks = clicks;
+    }
+
+    @JsonAnyGetter
+    public Map<String, Map<String, Long>> getBreakdowns() {
+        return breakdowns;
+    }
+
+    @JsonAnySetter
+    public void setBreakdown(String reportName, Map<String, Long> breakdown) {
+        this.breakdowns.put(reportName, breakdown);
+    }
+}
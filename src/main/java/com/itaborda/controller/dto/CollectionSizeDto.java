@@ -0,0 +1,62 @@
+package com.itaborda.controller.dto;
+
+/**
+ * storage figures of a collection as reported by collStats, in bytes
+ */
+public class CollectionSizeDto {
+
+    private String collection;
+    private Long count;
+    private Long size;
+    private Long avgObjSize;
+    private Long storageSize;
+    private Long totalIndexSize;
+
+    public String getCollection() {
+        return collection;
+    }
+
+    public void setCollection(String collection) {
+        this.collection = collection;
+    }
+
+    public Long getCount() {
+        return count;
+    }
+
+    public void setCount(Long count) {
+        this.count = count;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    public Long getAvgObjSize() {
+        return avgObjSize;
+    }
+
+    public void setAvgObjSize(Long avgObjSize) {
+        this.avgObjSize = avgObjSize;
+    }
+
+    public Long getStorageSize() {
+        return storageSize;
+    }
+
+    public void setStorageSize(Long storageSize) {
+        this.storageSize = storageSize;
+    }
+
+    public Long getTotalIndexSize() {
+        return totalIndexSize;
+    }
+
+    public void setTotalIndexSize(Long totalIndexSize) {
+        this.totalIndexSize = totalIndexSize;
+    }
+}
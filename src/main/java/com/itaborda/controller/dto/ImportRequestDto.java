@@ -0,0 +1,29 @@
+package com.itaborda.controller.dto;
+
+public class ImportRequestDto {
+
+    public static final String CSV = "csv";
+    public static final String NDJSON = "ndjson";
+
+    /**
+     * path of the dump on the server, dumps are far too large to be uploaded through the api
+     */
+    private String file;
+    private String format = CSV;
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+}
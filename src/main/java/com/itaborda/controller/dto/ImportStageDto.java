@@ -0,0 +1,44 @@
+package com.itaborda.controller.dto;
+
+/**
+ * throughput of one stage of an import, busy time is summed over the threads of the stage
+ */
+public class ImportStageDto {
+
+    private Long records;
+    private Double busySeconds;
+    private Double recordsPerSecond;
+
+    public ImportStageDto() {
+    }
+
+    public ImportStageDto(long records, long busyNanos) {
+        this.records = records;
+        this.busySeconds = busyNanos / 1e9;
+        this.recordsPerSecond = busyNanos == 0 ? 0.0 : records / this.busySeconds;
+    }
+
+    public Long getRecords() {
+        return records;
+    }
+
+    public void setRecords(Long records) {
+        this.records = records;
+    }
+
+    public Double getBusySeconds() {
+        return busySeconds;
+    }
+
+    public void setBusySeconds(Double busySeconds) {
+        this.busySeconds = busySeconds;
+    }
+
+    public Double getRecordsPerSecond() {
+        return recordsPerSecond;
+    }
+
+    public void setRecordsPerSecond(Double recordsPerSecond) {
+        this.recordsPerSecond = recordsPerSecond;
+    }
+}
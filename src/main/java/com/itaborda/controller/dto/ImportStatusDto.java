@@ -0,0 +1,31 @@
+package com.itaborda.controller.dto;
+
+import com.itaborda.model.ImportCheckpoint;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ImportStatusDto extends BaseResponse {
+
+    private ImportCheckpoint checkpoint;
+    /**
+     * stages of the running import by name, empty once the import is not running on this replica
+     */
+    private Map<String, ImportStageDto> stages = new LinkedHashMap<>();
+
+    public ImportCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    public void setCheckpoint(ImportCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    public Map<String, ImportStageDto> getStages() {
+        return stages;
+    }
+
+    public void setStages(Map<String, ImportStageDto> stages) {
+        this.stages = stages;
+    }
+}
@@ -0,0 +1,17 @@
+package com.itaborda.controller.dto;
+
+public class PartitionMoveDto {
+
+    /**
+     * index of the backend the partition moves to
+     */
+    private Integer backend;
+
+    public Integer getBackend() {
+        return backend;
+    }
+
+    public void setBackend(Integer backend) {
+        this.backend = backend;
+    }
+}
@@ -0,0 +1,31 @@
+package com.itaborda.controller.dto;
+
+import com.itaborda.model.PartitionRoute;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PartitionRoutesDto extends BaseResponse {
+
+    private int backends;
+    /**
+     * partitions which were moved or are moving, the others follow the default rule
+     */
+    private List<PartitionRoute> routes = new ArrayList<>();
+
+    public int getBackends() {
+        return backends;
+    }
+
+    public void setBackends(int backends) {
+        this.backends = backends;
+    }
+
+    public List<PartitionRoute> getRoutes() {
+        return routes;
+    }
+
+    public void setRoutes(List<PartitionRoute> routes) {
+        this.routes = routes;
+    }
+}
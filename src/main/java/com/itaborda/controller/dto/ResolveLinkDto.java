@@ -1,11 +1,15 @@
 package com.itaborda.controller.dto;
 
+import com.itaborda.util.ClickDimension;
+
 public class ResolveLinkDto {
 
     private Integer workerId;
     private String shortUrl;
-    private String browser;
-    private String os;
+    /**
+     * raw values of the visit indexed by {@link ClickDimension} ordinal
+     */
+    private String[] dimensions = new String[ClickDimension.values().length];
 
     public Integer getWorkerId() {
         return workerId;
@@ -23,19 +27,35 @@ public class ResolveLinkDto {
         this.shortUrl = shortUrl;
     }
 
+    public String[] getDimensions() {
+        return dimensions;
+    }
+
+    public void setDimensions(String[] dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    public String getDimension(ClickDimension dimension) {
+        return dimensions[dimension.ordinal()];
+    }
+
+    public void setDimension(ClickDimension dimension, String value) {
+        this.dimensions[dimension.ordinal()] = value;
+    }
+
     public String getBrowser() {
-        return browser;
+        return getDimension(ClickDimension.BROWSER);
     }
 
     public void setBrowser(String browser) {
-        this.browser = browser;
+        setDimension(ClickDimension.BROWSER, browser);
     }
 
     public String getOs() {
-        return os;
+        return getDimension(ClickDimension.OS);
     }
 
     public void setOs(String os) {
-        this.os = os;
+        setDimension(ClickDimension.OS, os);
     }
 }
@@ -0,0 +1,74 @@
+package com.itaborda.controller.dto;
+
+/**
+ * calls of a method retried with {@link com.itaborda.aspect.Retry} since the replica started
+ */
+public class RetryPolicyStatsDto {
+
+    /**
+     * retries allowed after the first attempt
+     */
+    private int times;
+    private long calls;
+    private long retries;
+    /**
+     * calls which succeeded after being retried
+     */
+    private long recovered;
+    /**
+     * calls which failed once every retry was used
+     */
+    private long exhausted;
+    /**
+     * calls which failed without retry as the retry budget was empty
+     */
+    private long rejected;
+
+    public int getTimes() {
+        return times;
+    }
+
+    public void setTimes(int times) {
+        this.times = times;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public void setCalls(long calls) {
+        this.calls = calls;
+    }
+
+    public long getRetries() {
+        return retries;
+    }
+
+    public void setRetries(long retries) {
+        this.retries = retries;
+    }
+
+    public long getRecovered() {
+        return recovered;
+    }
+
+    public void setRecovered(long recovered) {
+        this.recovered = recovered;
+    }
+
+    public long getExhausted() {
+        return exhausted;
+    }
+
+    public void setExhausted(long exhausted) {
+        this.exhausted = exhausted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+}
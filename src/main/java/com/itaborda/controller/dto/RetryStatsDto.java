@@ -0,0 +1,32 @@
+package com.itaborda.controller.dto;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+public class RetryStatsDto extends BaseResponse {
+
+    /**
+     * retries the budget allows right now
+     */
+    private double budgetTokens;
+    /**
+     * retried methods by class and method name
+     */
+    private Map<String, RetryPolicyStatsDto> policies = new TreeMap<>();
+
+    public double getBudgetTokens() {
+        return budgetTokens;
+    }
+
+    public void setBudgetTokens(double budgetTokens) {
+        this.budgetTokens = budgetTokens;
+    }
+
+    public Map<String, RetryPolicyStatsDto> getPolicies() {
+        return policies;
+    }
+
+    public void setPolicies(Map<String, RetryPolicyStatsDto> policies) {
+        this.policies = policies;
+    }
+}
@@ -0,0 +1,111 @@
+package com.itaborda.controller.dto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * progress of the migration to the compact schema and sizes of the legacy and compact collections
+ */
+public class SchemaMigrationDto extends BaseResponse {
+
+    public static final String IDLE = "IDLE";
+    public static final String RUNNING = "RUNNING";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED";
+
+    private String state = IDLE;
+    private long scanned;
+    private long copied;
+    /**
+     * legacy short urls not copied because another short url holds their numeric key in the compact collection,
+     * only the first key codes are listed
+     */
+    private long collisions;
+    private List<String> collidedKeyCodes = new ArrayList<>();
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String error;
+    private CollectionSizeDto legacy;
+    private CollectionSizeDto compact;
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public long getScanned() {
+        return scanned;
+    }
+
+    public void setScanned(long scanned) {
+        this.scanned = scanned;
+    }
+
+    public long getCopied() {
+        return copied;
+    }
+
+    public void setCopied(long copied) {
+        this.copied = copied;
+    }
+
+    public long getCollisions() {
+        return collisions;
+    }
+
+    public void setCollisions(long collisions) {
+        this.collisions = collisions;
+    }
+
+    public List<String> getCollidedKeyCodes() {
+        return collidedKeyCodes;
+    }
+
+    public void setCollidedKeyCodes(List<String> collidedKeyCodes) {
+        this.collidedKeyCodes = collidedKeyCodes;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public CollectionSizeDto getLegacy() {
+        return legacy;
+    }
+
+    public void setLegacy(CollectionSizeDto legacy) {
+        this.legacy = legacy;
+    }
+
+    public CollectionSizeDto getCompact() {
+        return compact;
+    }
+
+    public void setCompact(CollectionSizeDto compact) {
+        this.compact = compact;
+    }
+}
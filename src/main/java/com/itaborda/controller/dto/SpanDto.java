@@ -0,0 +1,60 @@
+package com.itaborda.controller.dto;
+
+public class SpanDto {
+
+    private String name;
+    /**
+     * spans it is nested in
+     */
+    private int depth;
+    /**
+     * since the start of the trace
+     */
+    private long startMicros;
+    /**
+     * -1 if the span was not closed
+     */
+    private long durationMicros;
+
+    public SpanDto() {
+    }
+
+    public SpanDto(String name, int depth, long startMicros, long durationMicros) {
+        this.name = name;
+        this.depth = depth;
+        this.startMicros = startMicros;
+        this.durationMicros = durationMicros;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    public long getStartMicros() {
+        return startMicros;
+    }
+
+    public void setStartMicros(long startMicros) {
+        this.startMicros = startMicros;
+    }
+
+    public long getDurationMicros() {
+        return durationMicros;
+    }
+
+    public void setDurationMicros(long durationMicros) {
+        this.durationMicros = durationMicros;
+    }
+}
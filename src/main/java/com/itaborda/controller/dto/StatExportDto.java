@@ -0,0 +1,67 @@
+package com.itaborda.controller.dto;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+
+public class StatExportDto {
+
+    public static final String FORMAT_NDJSON = "ndjson";
+    public static final String FORMAT_CSV = "csv";
+
+    private String format = FORMAT_NDJSON;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime from;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime to;
+    private String after;
+    private boolean series;
+
+    public boolean isNdjson() {
+        return FORMAT_NDJSON.equalsIgnoreCase(format);
+    }
+
+    public boolean isCsv() {
+        return FORMAT_CSV.equalsIgnoreCase(format);
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDateTime from) {
+        this.from = from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDateTime to) {
+        this.to = to;
+    }
+
+    public String getAfter() {
+        return after;
+    }
+
+    public void setAfter(String after) {
+        this.after = after;
+    }
+
+    public boolean isSeries() {
+        return series;
+    }
+
+    public void setSeries(boolean series) {
+        this.series = series;
+    }
+}
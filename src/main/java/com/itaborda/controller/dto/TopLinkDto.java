@@ -0,0 +1,31 @@
+package com.itaborda.controller.dto;
+
+public class TopLinkDto {
+
+    private String key;
+    private Long count;
+
+    public TopLinkDto() {
+    }
+
+    public TopLinkDto(String key, Long count) {
+        this.key = key;
+        this.count = count;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public Long getCount() {
+        return count;
+    }
+
+    public void setCount(Long count) {
+        this.count = count;
+    }
+}
@@ -0,0 +1,35 @@
+package com.itaborda.controller.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class TopLinksDto extends BaseResponse {
+
+    private String window;
+    private LocalDateTime mergedAt;
+    private List<TopLinkDto> links;
+
+    public String getWindow() {
+        return window;
+    }
+
+    public void setWindow(String window) {
+        this.window = window;
+    }
+
+    public LocalDateTime getMergedAt() {
+        return mergedAt;
+    }
+
+    public void setMergedAt(LocalDateTime mergedAt) {
+        this.mergedAt = mergedAt;
+    }
+
+    public List<TopLinkDto> getLinks() {
+        return links;
+    }
+
+    public void setLinks(List<TopLinkDto> links) {
+        this.links = links;
+    }
+}
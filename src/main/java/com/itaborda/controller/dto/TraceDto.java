@@ -0,0 +1,60 @@
+package com.itaborda.controller.dto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * a sampled request, its spans in the order they were opened
+ */
+public class TraceDto {
+
+    private String name;
+    private LocalDateTime startedAt;
+    private long durationMicros;
+    /**
+     * spans left out past the maximum a trace holds
+     */
+    private int dropped;
+    private List<SpanDto> spans = new ArrayList<>();
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public long getDurationMicros() {
+        return durationMicros;
+    }
+
+    public void setDurationMicros(long durationMicros) {
+        this.durationMicros = durationMicros;
+    }
+
+    public int getDropped() {
+        return dropped;
+    }
+
+    public void setDropped(int dropped) {
+        this.dropped = dropped;
+    }
+
+    public List<SpanDto> getSpans() {
+        return spans;
+    }
+
+    public void setSpans(List<SpanDto> spans) {
+        this.spans = spans;
+    }
+}
@@ -0,0 +1,62 @@
+package com.itaborda.controller.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TracesDto extends BaseResponse {
+
+    private double sampleRate;
+    private long slowThresholdMillis;
+    /**
+     * requests sampled since the replica started
+     */
+    private long sampled;
+    /**
+     * sampled requests slower than the threshold
+     */
+    private long slow;
+    /**
+     * the most recent slow traces, newest first
+     */
+    private List<TraceDto> traces = new ArrayList<>();
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public long getSlowThresholdMillis() {
+        return slowThresholdMillis;
+    }
+
+    public void setSlowThresholdMillis(long slowThresholdMillis) {
+        this.slowThresholdMillis = slowThresholdMillis;
+    }
+
+    public long getSampled() {
+        return sampled;
+    }
+
+    public void setSampled(long sampled) {
+        this.sampled = sampled;
+    }
+
+    public long getSlow() {
+        return slow;
+    }
+
+    public void setSlow(long slow) {
+        this.slow = slow;
+    }
+
+    public List<TraceDto> getTraces() {
+        return traces;
+    }
+
+    public void setTraces(List<TraceDto> traces) {
+        this.traces = traces;
+    }
+}
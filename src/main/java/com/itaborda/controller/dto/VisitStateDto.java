@@ -1,9 +1,10 @@
 package com.itaborda.controller.dto;
 
-import com.itaborda.model.embedded.BrowserStats;
-import com.itaborda.model.embedded.OsStat;
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class VisitStateDto extends BaseResponse {
@@ -14,8 +15,12 @@ public class VisitStateDto extends BaseResponse {
 	private Long min;
 	private Long totalPerYear;
 	private Map<String, Long> perMonth;
-	private BrowserStats byBrowsers;
-	private OsStat byOs;
+	/**
+	 * visits by label of every click dimension, keyed by the dimension report name (byBrowsers, byOs, ...)
+	 * and rendered as top level properties
+	 */
+	private Map<String, Map<String, Long>> breakdowns = new LinkedHashMap<>();
+	private Long version;
 
 
 	public Map<String, Long> getPerMonth() {
@@ -59,20 +64,14 @@ public class VisitStateDto extends BaseResponse {
 		this.totalPerYear = totalPerYear;
 	}
 
-	public BrowserStats getByBrowsers() {
-		return byBrowsers;
+	@JsonAnyGetter
+	public Map<String, Map<String, Long>> getBreakdowns() {
+		return breakdowns;
 	}
 
-	public void setByBrowsers(BrowserStats byBrowsers) {
-		this.byBrowsers = byBrowsers;
-	}
-
-	public OsStat getByOs() {
-		return byOs;
-	}
-
-	public void setByOs(OsStat byOs) {
-		this.byOs = byOs;
+	@JsonAnySetter
+	public void setBreakdown(String reportName, Map<String, Long> breakdown) {
+		this.breakdowns.put(reportName, breakdown);
 	}
 
 	public LocalDateTime getLastAccessDate() {
@@ -82,4 +81,12 @@ public class VisitStateDto extends BaseResponse {
 	public void setLastAccessDate(LocalDateTime lastAccessDate) {
 		this.lastAccessDate = lastAccessDate;
 	}
+
+	public Long getVersion() {
+		return version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
 }
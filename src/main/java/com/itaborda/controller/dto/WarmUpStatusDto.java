@@ -0,0 +1,111 @@
+package com.itaborda.controller.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * startup warm-up of this replica, it reports ready once the warm-up is over
+ */
+public class WarmUpStatusDto extends BaseResponse {
+
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String DONE = "DONE";
+    /**
+     * the warm-up took longer than its timeout, the replica is ready with whatever was loaded
+     */
+    public static final String TIMED_OUT = "TIMED_OUT";
+
+    private boolean ready;
+    private String state = PENDING;
+    private LocalDateTime startedAt;
+    private long durationMillis;
+    /**
+     * keys pooled for the first shortens
+     */
+    private long keysLeased;
+    /**
+     * keys reported hot by the replicas
+     */
+    private long hotKeys;
+    /**
+     * short urls recently accessed
+     */
+    private long recentLinks;
+    /**
+     * short urls found and put in the cache
+     */
+    private long loaded;
+    private long failures;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    public long getKeysLeased() {
+        return keysLeased;
+    }
+
+    public void setKeysLeased(long keysLeased) {
+        this.keysLeased = keysLeased;
+    }
+
+    public long getHotKeys() {
+        return hotKeys;
+    }
+
+    public void setHotKeys(long hotKeys) {
+        this.hotKeys = hotKeys;
+    }
+
+    public long getRecentLinks() {
+        return recentLinks;
+    }
+
+    public void setRecentLinks(long recentLinks) {
+        this.recentLinks = recentLinks;
+    }
+
+    public long getLoaded() {
+        return loaded;
+    }
+
+    public void setLoaded(long loaded) {
+        this.loaded = loaded;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public void setFailures(long failures) {
+        this.failures = failures;
+    }
+}
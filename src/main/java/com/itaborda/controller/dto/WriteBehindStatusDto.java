@@ -0,0 +1,107 @@
+package com.itaborda.controller.dto;
+
+/**
+ * state of the write-behind journal of this replica
+ */
+public class WriteBehindStatusDto extends BaseResponse {
+
+    private boolean enabled;
+    /**
+     * short urls journaled but not persisted in the link store yet
+     */
+    private long pending;
+    /**
+     * age of the oldest pending short url
+     */
+    private long lagMillis;
+    private long journalBytes;
+    private long flushed;
+    private long flushes;
+    private long lastBatchSize;
+    private long maxBatchSize;
+    /**
+     * pending short urls whose url key was taken meanwhile, persisted without url key so their key keeps resolving
+     */
+    private long conflicts;
+    private long failures;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getPending() {
+        return pending;
+    }
+
+    public void setPending(long pending) {
+        this.pending = pending;
+    }
+
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    public void setLagMillis(long lagMillis) {
+        this.lagMillis = lagMillis;
+    }
+
+    public long getJournalBytes() {
+        return journalBytes;
+    }
+
+    public void setJournalBytes(long journalBytes) {
+        this.journalBytes = journalBytes;
+    }
+
+    public long getFlushed() {
+        return flushed;
+    }
+
+    public void setFlushed(long flushed) {
+        this.flushed = flushed;
+    }
+
+    public long getFlushes() {
+        return flushes;
+    }
+
+    public void setFlushes(long flushes) {
+        this.flushes = flushes;
+    }
+
+    public long getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    public void setLastBatchSize(long lastBatchSize) {
+        this.lastBatchSize = lastBatchSize;
+    }
+
+    public long getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(long maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public long getConflicts() {
+        return conflicts;
+    }
+
+    public void setConflicts(long conflicts) {
+        this.conflicts = conflicts;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public void setFailures(long failures) {
+        this.failures = failures;
+    }
+}
@@ -2,6 +2,7 @@ package com.itaborda.exception;
 
 import com.itaborda.controller.dto.BaseResponse;
 import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -53,6 +54,48 @@ public class ApplicationExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new BaseResponse(false, "Invalid Address.", BaseResponse.RESOURCE_NOT_FOUND));
     }
 
+    @ResponseStatus(HttpStatus.BAD_REQUEST)  // 400
+    @ExceptionHandler
+    protected ResponseEntity<BaseResponse> handleInvalidCursorException(InvalidCursorException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new BaseResponse(false, "Invalid cursor.", BaseResponse.BAD_REQUEST));
+    }
+
+    @ResponseStatus(HttpStatus.BAD_REQUEST)  // 400
+    @ExceptionHandler
+    protected ResponseEntity<BaseResponse> handleInvalidFormatException(InvalidFormatException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new BaseResponse(false, "Invalid export format.", BaseResponse.BAD_REQUEST));
+    }
+
+    @ResponseStatus(HttpStatus.BAD_REQUEST)  // 400
+    @ExceptionHandler
+    protected ResponseEntity<BaseResponse> handleBatchTooLargeException(BatchTooLargeException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new BaseResponse(false, "Too many urls in the batch.", BaseResponse.BAD_REQUEST));
+    }
+
+    @ResponseStatus(HttpStatus.BAD_REQUEST)  // 400
+    @ExceptionHandler
+    protected ResponseEntity<BaseResponse> handleInvalidImportException(InvalidImportException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new BaseResponse(false, "Invalid import file.", BaseResponse.BAD_REQUEST));
+    }
+
+    @ResponseStatus(HttpStatus.NOT_FOUND)  // 404
+    @ExceptionHandler
+    protected ResponseEntity<BaseResponse> handleImportNotFoundException(ImportNotFoundException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new BaseResponse(false, "Import not found.", BaseResponse.RESOURCE_NOT_FOUND));
+    }
+
+    @ResponseStatus(HttpStatus.BAD_REQUEST)  // 400
+    @ExceptionHandler
+    protected ResponseEntity<BaseResponse> handleInvalidRebalanceException(InvalidRebalanceException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new BaseResponse(false, "Invalid partition move.", BaseResponse.BAD_REQUEST));
+    }
+
+    @ResponseStatus(HttpStatus.BAD_REQUEST)  // 400
+    @ExceptionHandler
+    protected ResponseEntity<BaseResponse> handleInvalidMigrationException(InvalidMigrationException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new BaseResponse(false, "Invalid schema migration.", BaseResponse.BAD_REQUEST));
+    }
+
     @ResponseStatus(HttpStatus.BAD_REQUEST)  // 400
     @ExceptionHandler
     protected ResponseEntity<BaseResponse> handleUnknownHostException(UnknownHostException e) {
@@ -72,4 +115,11 @@ public class ApplicationExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new BaseResponse(false, "Service is too busy,Please try again later. ", BaseResponse.SERVER_TOO_BUSY));
     }
 
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)  // 503
+    @ExceptionHandler
+    protected ResponseEntity<BaseResponse> handleServiceOverloadedException(ServiceOverloadedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5")
+                .body(new BaseResponse(false, "Service is too busy,Please try again later. ", BaseResponse.SERVER_TOO_BUSY));
+    }
+
 }
@@ -0,0 +1,11 @@
+package com.itaborda.exception;
+
+public class BatchTooLargeException extends Exception{
+
+    public BatchTooLargeException() { super();
+    }
+
+    public BatchTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.itaborda.exception;
+
+public class ImportNotFoundException extends Exception{
+
+    public ImportNotFoundException() { super();
+    }
+
+    public ImportNotFoundException(String message) {
+        super(message);
+    }
+}
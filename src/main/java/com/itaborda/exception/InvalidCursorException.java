@@ -0,0 +1,11 @@
+package com.itaborda.exception;
+
+public class InvalidCursorException extends Exception{
+
+    public InvalidCursorException() { super();
+    }
+
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+}
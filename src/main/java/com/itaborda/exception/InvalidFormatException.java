@@ -0,0 +1,11 @@
+package com.itaborda.exception;
+
+public class InvalidFormatException extends Exception{
+
+    public InvalidFormatException() { super();
+    }
+
+    public InvalidFormatException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.itaborda.exception;
+
+public class InvalidImportException extends Exception{
+
+    public InvalidImportException() { super();
+    }
+
+    public InvalidImportException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.itaborda.exception;
+
+public class InvalidMigrationException extends Exception{
+
+    public InvalidMigrationException() { super();
+    }
+
+    public InvalidMigrationException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.itaborda.exception;
+
+public class InvalidRebalanceException extends Exception{
+
+    public InvalidRebalanceException() { super();
+    }
+
+    public InvalidRebalanceException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,14 @@
+package com.itaborda.exception;
+
+/**
+ * thrown from deep in the lookups when the call to mongo is shed, so it is unchecked
+ */
+public class ServiceOverloadedException extends RuntimeException {
+
+    public ServiceOverloadedException() { super();
+    }
+
+    public ServiceOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,146 @@
+package com.itaborda.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * progress of a file import, saved after every stored chunk so an interrupted import resumes after the last
+ * committed line
+ */
+@Document(collection = "import_checkpoint")
+public class ImportCheckpoint {
+
+    public static final String RUNNING = "RUNNING";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    private String id;
+    private String file;
+    private String format;
+    private String state;
+    private String error;
+    private Long committedLines = 0L;
+    private Long created = 0L;
+    private Long existing = 0L;
+    private Long duplicates = 0L;
+    private Long invalid = 0L;
+    private Long failed = 0L;
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+
+    public ImportCheckpoint() {
+    }
+
+    public ImportCheckpoint(String id, String file, String format) {
+        this.id = id;
+        this.file = file;
+        this.format = format;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public Long getCommittedLines() {
+        return committedLines;
+    }
+
+    public void setCommittedLines(Long committedLines) {
+        this.committedLines = committedLines;
+    }
+
+    public Long getCreated() {
+        return created;
+    }
+
+    public void setCreated(Long created) {
+        this.created = created;
+    }
+
+    public Long getExisting() {
+        return existing;
+    }
+
+    public void setExisting(Long existing) {
+        this.existing = existing;
+    }
+
+    public Long getDuplicates() {
+        return duplicates;
+    }
+
+    public void setDuplicates(Long duplicates) {
+        this.duplicates = duplicates;
+    }
+
+    public Long getInvalid() {
+        return invalid;
+    }
+
+    public void setInvalid(Long invalid) {
+        this.invalid = invalid;
+    }
+
+    public Long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(Long failed) {
+        this.failed = failed;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,129 @@
+package com.itaborda.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * backend of a key partition which does not follow the default rule, and the progress of its move.
+ * while a partition moves, short urls missing on {@code backend} are read from {@code fallback}
+ */
+@Document(collection = "partition_route")
+public class PartitionRoute {
+
+    public static final String COPYING = "COPYING";
+    public static final String SWITCHED = "SWITCHED";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    private Long partition;
+    private Integer backend;
+    private Integer fallback;
+    private Integer source;
+    private Integer target;
+    private String state;
+    private String error;
+    private Long copied = 0L;
+    private Long deleted = 0L;
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+
+    public PartitionRoute() {
+    }
+
+    public PartitionRoute(Long partition, Integer source, Integer target) {
+        this.partition = partition;
+        this.source = source;
+        this.target = target;
+    }
+
+    public Long getPartition() {
+        return partition;
+    }
+
+    public void setPartition(Long partition) {
+        this.partition = partition;
+    }
+
+    public Integer getBackend() {
+        return backend;
+    }
+
+    public void setBackend(Integer backend) {
+        this.backend = backend;
+    }
+
+    public Integer getFallback() {
+        return fallback;
+    }
+
+    public void setFallback(Integer fallback) {
+        this.fallback = fallback;
+    }
+
+    public Integer getSource() {
+        return source;
+    }
+
+    public void setSource(Integer source) {
+        this.source = source;
+    }
+
+    public Integer getTarget() {
+        return target;
+    }
+
+    public void setTarget(Integer target) {
+        this.target = target;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public Long getCopied() {
+        return copied;
+    }
+
+    public void setCopied(Long copied) {
+        this.copied = copied;
+    }
+
+    public Long getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(Long deleted) {
+        this.deleted = deleted;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
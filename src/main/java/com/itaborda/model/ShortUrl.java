@@ -1,6 +1,7 @@
 package com.itaborda.model;
 
 import com.itaborda.model.embedded.Stats;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
@@ -20,10 +21,21 @@ public class ShortUrl implements Serializable {
 	@Indexed
 	private String keyCode;
 	private LocalDateTime createdDate;
+	/**
+	 * indexed so the startup warm-up of every replica reads the recently accessed short urls without scanning the
+	 * collection. every visit sets it, so it costs an index update per visit on top of the document update
+	 */
+	@Indexed
 	private LocalDateTime lastAccessDate;
 	private LocalDateTime expireDate;
 	@Indexed
 	private String longUrl;
+	/**
+	 * sha1 of the normalized long url, at most one short url exists per url key.
+	 * sparse because short urls persisted before it was introduced do not have one
+	 */
+	@Indexed(unique = true, sparse = true)
+	private String urlKey;
 	private Stats stats;
 
 
@@ -66,6 +78,18 @@ public class ShortUrl implements Serializable {
 		this.longUrl = longUrl;
 	}
 
+	public String getUrlKey() {
+		return urlKey;
+	}
+
+	public void setUrlKey(String urlKey) {
+		this.urlKey = urlKey;
+	}
+
+	public static String urlKeyOf(String longUrl) {
+		return DigestUtils.sha1Hex(longUrl);
+	}
+
 	public Stats getStats() {
 		return stats;
 	}
@@ -1,14 +1,85 @@
 package com.itaborda.model.embedded;
 
+import com.itaborda.util.ClickDimension;
+
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class Stats implements Serializable {
 
+    /**
+     * visit counters per dimension name, indexed by label ordinal
+     */
+    private Map<String, long[]> counters = new HashMap<>();
+    private List<DateStat> dateStats = new ArrayList<>();
+    private VisitSummary summary;
+
+    /**
+     * only read from short urls persisted before the dimension counters, folded into the counters on first access
+     */
     private BrowserStats browserStats;
     private OsStat osStat;
-    private List<DateStat> dateStats = new ArrayList<>();
+
+    /**
+     * @param dimension dimension of the counters
+     * @return counters of the dimension indexed by label ordinal, grown if labels were appended since persisted
+     */
+    public long[] dimensionCounters(ClickDimension dimension) {
+        long[] values = counters.get(dimension.getName());
+        if (values == null) {
+            values = legacyCounters(dimension);
+            counters.put(dimension.getName(), values);
+        } else if (values.length < dimension.size()) {
+            values = Arrays.copyOf(values, dimension.size());
+            counters.put(dimension.getName(), values);
+        }
+        return values;
+    }
+
+    public void increment(ClickDimension dimension, int ordinal) {
+        dimensionCounters(dimension)[ordinal]++;
+    }
+
+    public long count(ClickDimension dimension, String label) {
+        return dimensionCounters(dimension)[Arrays.asList(dimension.getLabels()).indexOf(label)];
+    }
+
+    /**
+     * @return counters of the dimension by label, in label order
+     */
+    public Map<String, Long> breakdown(ClickDimension dimension) {
+        long[] values = dimensionCounters(dimension);
+        Map<String, Long> breakdown = new LinkedHashMap<>();
+        for (int i = 0; i < dimension.size(); i++) breakdown.put(dimension.getLabels()[i], values[i]);
+        return breakdown;
+    }
+
+    private long[] legacyCounters(ClickDimension dimension) {
+        if (dimension == ClickDimension.BROWSER && browserStats != null) {
+            BrowserStats b = browserStats;
+            browserStats = null;
+            return new long[]{b.getIe(), b.getFireFox(), b.getChrome(), b.getOpera(), b.getSafari(), b.getOthers()};
+        }
+        if (dimension == ClickDimension.OS && osStat != null) {
+            OsStat o = osStat;
+            osStat = null;
+            return new long[]{o.getWindows(), o.getMacOs(), o.getLinux(), o.getAndroid(), o.getIos(), o.getOthers()};
+        }
+        return new long[dimension.size()];
+    }
+
+    public Map<String, long[]> getCounters() {
+        return counters;
+    }
+
+    public void setCounters(Map<String, long[]> counters) {
+        this.counters = counters;
+    }
 
     public BrowserStats getBrowserStats() {
         return browserStats;
@@ -33,4 +104,12 @@ public class Stats implements Serializable {
     public void setDateStats(List<DateStat> dateStats) {
         this.dateStats = dateStats;
     }
+
+    public VisitSummary getSummary() {
+        return summary;
+    }
+
+    public void setSummary(VisitSummary summary) {
+        this.summary = summary;
+    }
 }
@@ -0,0 +1,138 @@
+package com.itaborda.model.embedded;
+
+import java.io.Serializable;
+import java.time.Year;
+import java.util.List;
+
+/**
+ * materialized visit statistics of a short url, maintained incrementally on every recorded visit
+ * so the stat endpoint does not have to rescan the date stats.
+ * only the current day can receive visits, so the minimum is kept over the closed days and combined
+ * with the current day visits when read.
+ */
+public class VisitSummary implements Serializable {
+
+    private Long version = 0L;
+    private Long total = 0L;
+    private Long max = 0L;
+    private Long minClosed;
+    private Integer days = 0;
+    private Integer currentDay;
+    private Integer currentDayVisits = 0;
+    private long[] perMonth = new long[12];
+
+    /**
+     * builds the summary of a short url persisted before summaries were maintained.
+     * date stats are appended in visit order, so the last one is the current day.
+     */
+    public static VisitSummary of(List<DateStat> dateStats, Year year) {
+        VisitSummary summary = new VisitSummary();
+        for (DateStat dateStat : dateStats) {
+            summary.closeCurrentDay(dateStat.getDayOfYear());
+            summary.days++;
+            summary.currentDayVisits = dateStat.getVisits();
+            summary.total += dateStat.getVisits();
+            summary.max = Math.max(summary.max, dateStat.getVisits());
+            if (dateStat.getDayOfYear() <= year.length()) {
+                summary.perMonth[year.atDay(dateStat.getDayOfYear()).getMonthValue() - 1] += dateStat.getVisits();
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * @param dayOfYear day the visit happened
+     * @param month     month of the day, 1 based
+     * @param dayVisits visits of the day including this one
+     * @param newDay    whether this is the first visit recorded for the day
+     */
+    public void recordVisit(int dayOfYear, int month, int dayVisits, boolean newDay) {
+        closeCurrentDay(dayOfYear);
+        if (newDay) this.days++;
+        this.currentDayVisits = dayVisits;
+        this.total++;
+        this.max = Math.max(this.max, dayVisits);
+        this.perMonth[month - 1]++;
+        this.version++;
+    }
+
+    private void closeCurrentDay(int dayOfYear) {
+        if (this.currentDay != null && this.currentDay != dayOfYear) {
+            this.minClosed = this.minClosed == null ? this.currentDayVisits : Math.min(this.minClosed, this.currentDayVisits);
+        }
+        this.currentDay = dayOfYear;
+    }
+
+    public Long getMin() {
+        if (this.currentDay == null) return 0L;
+        return this.minClosed == null ? this.currentDayVisits : Math.min(this.minClosed, this.currentDayVisits);
+    }
+
+    public Double getDailyAverage() {
+        return this.days == 0 ? 0.0 : (double) this.total / this.days;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Long getTotal() {
+        return total;
+    }
+
+    public void setTotal(Long total) {
+        this.total = total;
+    }
+
+    public Long getMax() {
+        return max;
+    }
+
+    public void setMax(Long max) {
+        this.max = max;
+    }
+
+    public Long getMinClosed() {
+        return minClosed;
+    }
+
+    public void setMinClosed(Long minClosed) {
+        this.minClosed = minClosed;
+    }
+
+    public Integer getDays() {
+        return days;
+    }
+
+    public void setDays(Integer days) {
+        this.days = days;
+    }
+
+    public Integer getCurrentDay() {
+        return currentDay;
+    }
+
+    public void setCurrentDay(Integer currentDay) {
+        this.currentDay = currentDay;
+    }
+
+    public Integer getCurrentDayVisits() {
+        return currentDayVisits;
+    }
+
+    public void setCurrentDayVisits(Integer currentDayVisits) {
+        this.currentDayVisits = currentDayVisits;
+    }
+
+    public long[] getPerMonth() {
+        return perMonth;
+    }
+
+    public void setPerMonth(long[] perMonth) {
+        this.perMonth = perMonth;
+    }
+}
@@ -0,0 +1,15 @@
+package com.itaborda.repository;
+
+import com.itaborda.model.ImportCheckpoint;
+
+import java.util.Optional;
+
+/**
+ * storage of the import checkpoints
+ */
+public interface CheckpointStore {
+
+    Optional<ImportCheckpoint> findCheckpoint(String importId);
+
+    ImportCheckpoint saveCheckpoint(ImportCheckpoint checkpoint);
+}
@@ -0,0 +1,353 @@
+package com.itaborda.repository;
+
+import com.itaborda.model.ShortUrl;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * {@link LinkStore} over the shorturl_compact collection, selected by the compact profile. documents are written
+ * by {@link ShortUrlCodec}: the numeric key is the _id, so resolving a key reads the _id index and the key code
+ * needs no index of its own.
+ * until the legacy shorturl collection is migrated, see {@link com.itaborda.service.SchemaMigrationService},
+ * short urls missing here are looked up there and copied on the fly, so no short url is missed meanwhile.
+ */
+@Repository
+@Profile("compact & !embedded & !routed")
+public class CompactLinkStore implements LinkStore {
+
+    public static final String COLLECTION = "shorturl_compact";
+    public static final String LEGACY_COLLECTION = "shorturl";
+
+    private final MongoTemplate mongoTemplate;
+    private final LinkCache linkCache;
+    private volatile boolean legacyDrained;
+
+    public CompactLinkStore(MongoTemplate mongoTemplate, LinkCache linkCache) {
+        this.mongoTemplate = mongoTemplate;
+        this.linkCache = linkCache;
+    }
+
+    @PostConstruct
+    public void createIndexes() {
+        mongoTemplate.execute(COLLECTION, collection -> {
+            collection.createIndex(Indexes.ascending(ShortUrlCodec.URL_KEY), new IndexOptions().unique(true).sparse(true));
+            collection.createIndex(Indexes.ascending(ShortUrlCodec.LONG_URL));
+            collection.createIndex(Indexes.ascending(ShortUrlCodec.LAST_ACCESS));
+            return null;
+        });
+        legacyDrained = !mongoTemplate.collectionExists(LEGACY_COLLECTION)
+                || mongoTemplate.getCollection(LEGACY_COLLECTION).estimatedDocumentCount() == 0;
+    }
+
+    /**
+     * stops looking up the legacy collection, every short url it holds being copied
+     */
+    public void legacyDrained() {
+        this.legacyDrained = true;
+    }
+
+    public boolean isLegacyDrained() {
+        return legacyDrained;
+    }
+
+    @Cacheable(value = ShortUrl.CACHE_NAME)
+    @Override
+    public ShortUrl findByKeyCode(String keyCode) {
+        Long key = ShortUrlCodec.keyOf(keyCode);
+        if (key != null) {
+            Document document = mongoTemplate.execute(COLLECTION, collection -> collection.find(Filters.eq(ShortUrlCodec.ID, key)).first());
+            if (document != null) {
+                ShortUrl shortUrl = ShortUrlCodec.fromDocument(document);
+                if (keyCode.equals(shortUrl.getKeyCode())) return shortUrl;
+            }
+        }
+        if (legacyDrained) return null;
+        return copyFromLegacy(mongoTemplate.findOne(Query.query(Criteria.where("keyCode").is(keyCode)), ShortUrl.class, LEGACY_COLLECTION));
+    }
+
+    @Override
+    public List<ShortUrl> findByKeyCodeIn(Collection<String> keyCodes) {
+        Set<String> requested = new HashSet<>(keyCodes);
+        List<Long> keys = new ArrayList<>(keyCodes.size());
+        for (String keyCode : requested) {
+            Long key = ShortUrlCodec.keyOf(keyCode);
+            if (key != null) keys.add(key);
+        }
+        List<ShortUrl> shortUrls = new ArrayList<>();
+        Set<String> found = new HashSet<>();
+        mongoTemplate.execute(COLLECTION, collection -> {
+            for (Document document : collection.find(Filters.in(ShortUrlCodec.ID, keys))) {
+                ShortUrl shortUrl = ShortUrlCodec.fromDocument(document);
+                if (!requested.contains(shortUrl.getKeyCode())) continue;
+                shortUrls.add(shortUrl);
+                found.add(shortUrl.getKeyCode());
+            }
+            return null;
+        });
+        if (legacyDrained || found.size() == requested.size()) return shortUrls;
+
+        List<String> missing = new ArrayList<>();
+        for (String keyCode : requested) if (!found.contains(keyCode)) missing.add(keyCode);
+        for (ShortUrl legacy : mongoTemplate.find(Query.query(Criteria.where("keyCode").in(missing)), ShortUrl.class, LEGACY_COLLECTION)) {
+            shortUrls.add(copyFromLegacy(legacy));
+        }
+        return shortUrls;
+    }
+
+    @Override
+    public List<ShortUrl> findByLongUrlIn(Collection<String> urls) {
+        List<ShortUrl> shortUrls = new ArrayList<>();
+        Set<String> found = new HashSet<>();
+        mongoTemplate.execute(COLLECTION, collection -> {
+            for (Document document : collection.find(Filters.in(ShortUrlCodec.LONG_URL, urls))) {
+                ShortUrl shortUrl = ShortUrlCodec.fromDocument(document);
+                shortUrls.add(shortUrl);
+                found.add(shortUrl.getLongUrl());
+            }
+            return null;
+        });
+        if (legacyDrained || found.size() == urls.size()) return shortUrls;
+
+        List<String> missing = new ArrayList<>();
+        for (String url : urls) if (!found.contains(url)) missing.add(url);
+        for (ShortUrl legacy : mongoTemplate.find(Query.query(Criteria.where("longUrl").in(missing)), ShortUrl.class, LEGACY_COLLECTION)) {
+            shortUrls.add(copyFromLegacy(legacy));
+        }
+        return shortUrls;
+    }
+
+    @CachePut(value = ShortUrl.CACHE_NAME, key = "#shortUrl.keyCode")
+    @Override
+    public ShortUrl save(ShortUrl shortUrl) {
+        Document document = ShortUrlCodec.toDocument(shortUrl);
+        mongoTemplate.execute(COLLECTION, collection -> collection.replaceOne(Filters.eq(ShortUrlCodec.ID, document.get(ShortUrlCodec.ID)),
+                document, new ReplaceOptions().upsert(true)));
+        shortUrl.setId(ShortUrlCodec.idOf((Long) document.get(ShortUrlCodec.ID)));
+        return shortUrl;
+    }
+
+    @Override
+    public Map<Integer, String> insertUnordered(List<ShortUrl> shortUrls) {
+        Map<Integer, String> errors = new HashMap<>();
+        if (shortUrls.isEmpty()) return errors;
+        List<Document> documents = new ArrayList<>(shortUrls.size());
+        for (ShortUrl shortUrl : shortUrls) {
+            Document document = ShortUrlCodec.toDocument(shortUrl);
+            shortUrl.setId(ShortUrlCodec.idOf((Long) document.get(ShortUrlCodec.ID)));
+            documents.add(document);
+        }
+        mongoTemplate.execute(COLLECTION, collection -> {
+            try {
+                collection.insertMany(documents, new InsertManyOptions().ordered(false));
+            } catch (MongoBulkWriteException e) {
+                e.getWriteErrors().forEach(error -> errors.put(error.getIndex(), error.getMessage()));
+            }
+            return null;
+        });
+        return errors;
+    }
+
+    /**
+     * the upsert on the unique url key of {@link ShortUrlRepositoryImpl#insertIfAbsent(ShortUrl)}, the url key being
+     * first looked up in the legacy collection until it is migrated
+     */
+    @CachePut(value = ShortUrl.CACHE_NAME, key = "#result.keyCode")
+    @Override
+    public ShortUrl insertIfAbsent(ShortUrl shortUrl) {
+        if (!legacyDrained) {
+            ShortUrl legacy = mongoTemplate.findOne(Query.query(Criteria.where("urlKey").is(shortUrl.getUrlKey())), ShortUrl.class, LEGACY_COLLECTION);
+            if (legacy != null) return copyFromLegacy(legacy);
+        }
+        Document document = ShortUrlCodec.toDocument(shortUrl);
+        Object urlKey = document.remove(ShortUrlCodec.URL_KEY);
+        Document inserted = mongoTemplate.execute(COLLECTION, collection -> collection.findOneAndUpdate(
+                Filters.eq(ShortUrlCodec.URL_KEY, urlKey), new Document("$setOnInsert", document),
+                new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER)));
+        return ShortUrlCodec.fromDocument(inserted);
+    }
+
+    @CachePut(value = ShortUrl.CACHE_NAME, key = "#result.keyCode", unless = "#result == null")
+    @Override
+    public ShortUrl renew(ShortUrl shortUrl, LocalDateTime expireDate) {
+        Long key = ShortUrlCodec.keyOf(shortUrl.getKeyCode());
+        if (key == null) return null;
+        Document renewed = mongoTemplate.execute(COLLECTION, collection -> {
+            Document document = collection.findOneAndUpdate(
+                    Filters.and(Filters.eq(ShortUrlCodec.ID, key), Filters.lte(ShortUrlCodec.EXPIRE, ShortUrlCodec.millis(LocalDateTime.now()))),
+                    Updates.set(ShortUrlCodec.EXPIRE, ShortUrlCodec.millis(expireDate)),
+                    new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+            return document != null ? document : collection.find(Filters.eq(ShortUrlCodec.ID, key)).first();
+        });
+        return renewed == null ? null : ShortUrlCodec.fromDocument(renewed);
+    }
+
+    @CacheEvict(value = ShortUrl.CACHE_NAME, key = "#shortUrl.keyCode")
+    @Override
+    public void delete(ShortUrl shortUrl) {
+        Long key = ShortUrlCodec.keyOf(shortUrl.getKeyCode());
+        if (key != null) mongoTemplate.execute(COLLECTION, collection -> collection.deleteOne(Filters.eq(ShortUrlCodec.ID, key)));
+        if (!legacyDrained) mongoTemplate.remove(Query.query(Criteria.where("keyCode").is(shortUrl.getKeyCode())), LEGACY_COLLECTION);
+    }
+
+    @Override
+    public void deleteAll(List<ShortUrl> shortUrls) {
+        List<Long> keys = new ArrayList<>(shortUrls.size());
+        List<String> keyCodes = new ArrayList<>(shortUrls.size());
+        for (ShortUrl shortUrl : shortUrls) {
+            Long key = ShortUrlCodec.keyOf(shortUrl.getKeyCode());
+            if (key != null) keys.add(key);
+            keyCodes.add(shortUrl.getKeyCode());
+        }
+        if (!keys.isEmpty()) mongoTemplate.execute(COLLECTION, collection -> collection.deleteMany(Filters.in(ShortUrlCodec.ID, keys)));
+        if (!legacyDrained) mongoTemplate.remove(Query.query(Criteria.where("keyCode").in(keyCodes)), LEGACY_COLLECTION);
+        linkCache.evictAll(keyCodes);
+    }
+
+    /**
+     * only reads the compact collection, short urls not migrated yet are not exported
+     */
+    @Override
+    public CloseableIterator<ShortUrl> streamForExport(LocalDateTime createdFrom, LocalDateTime createdTo, String afterId, int batchSize) {
+        List<Bson> filters = new ArrayList<>();
+        if (createdFrom != null) filters.add(Filters.gte(ShortUrlCodec.CREATED, ShortUrlCodec.millis(createdFrom)));
+        if (createdTo != null) filters.add(Filters.lt(ShortUrlCodec.CREATED, ShortUrlCodec.millis(createdTo)));
+        if (afterId != null) filters.add(Filters.gt(ShortUrlCodec.ID, ShortUrlCodec.keyOfId(afterId)));
+        return stream(filters.isEmpty() ? new Document() : Filters.and(filters), batchSize);
+    }
+
+    @Override
+    public CloseableIterator<ShortUrl> streamNotAccessedSince(LocalDateTime before, int batchSize) {
+        long millis = ShortUrlCodec.millis(before);
+        return stream(Filters.or(Filters.lt(ShortUrlCodec.LAST_ACCESS, millis),
+                Filters.and(Filters.exists(ShortUrlCodec.LAST_ACCESS, false), Filters.lt(ShortUrlCodec.CREATED, millis))), batchSize);
+    }
+
+    @Override
+    public CloseableIterator<ShortUrl> streamAccessedSince(LocalDateTime since, int batchSize) {
+        return stream(Filters.gte(ShortUrlCodec.LAST_ACCESS, ShortUrlCodec.millis(since)), null, batchSize);
+    }
+
+    /**
+     * copies legacy short urls which are not in the compact collection yet, without overwriting the ones which are.
+     * a compact document with the same numeric key may also be another short url, see {@link #collisions(List)}
+     *
+     * @return number of copied short urls
+     */
+    public long copy(List<ShortUrl> legacy) {
+        if (legacy.isEmpty()) return 0;
+        List<WriteModel<Document>> writes = new ArrayList<>(legacy.size());
+        for (ShortUrl shortUrl : legacy) {
+            Document document = ShortUrlCodec.toDocument(shortUrl);
+            writes.add(new UpdateOneModel<>(Filters.eq(ShortUrlCodec.ID, document.get(ShortUrlCodec.ID)),
+                    new Document("$setOnInsert", document), new UpdateOptions().upsert(true)));
+        }
+        return mongoTemplate.execute(COLLECTION, collection -> {
+            try {
+                return (long) collection.bulkWrite(writes, new BulkWriteOptions().ordered(false)).getUpserts().size();
+            } catch (MongoBulkWriteException e) {
+                return (long) e.getWriteResult().getUpserts().size();
+            }
+        });
+    }
+
+    /**
+     * @param legacy short urls given to {@link #copy(List)}
+     * @return the legacy short urls whose numeric key is held by a compact document of another short url, they were
+     * not copied
+     */
+    public List<ShortUrl> collisions(List<ShortUrl> legacy) {
+        Map<Long, ShortUrl> byKey = new HashMap<>(legacy.size() * 2);
+        for (ShortUrl shortUrl : legacy) {
+            Long key = ShortUrlCodec.keyOf(shortUrl.getKeyCode());
+            if (key != null) byKey.put(key, shortUrl);
+        }
+        List<ShortUrl> collisions = new ArrayList<>();
+        if (byKey.isEmpty()) return collisions;
+        mongoTemplate.execute(COLLECTION, collection -> {
+            for (Document document : collection.find(Filters.in(ShortUrlCodec.ID, byKey.keySet()))
+                    .projection(Projections.include(ShortUrlCodec.SUFFIX, ShortUrlCodec.LONG_URL))) {
+                ShortUrl shortUrl = byKey.get(((Number) document.get(ShortUrlCodec.ID)).longValue());
+                String keyCode = shortUrl.getKeyCode();
+                if (!keyCode.endsWith(document.getString(ShortUrlCodec.SUFFIX))
+                        || !Objects.equals(shortUrl.getLongUrl(), document.getString(ShortUrlCodec.LONG_URL))) {
+                    collisions.add(shortUrl);
+                }
+            }
+            return null;
+        });
+        return collisions;
+    }
+
+    private ShortUrl copyFromLegacy(ShortUrl legacy) {
+        if (legacy == null) return null;
+        if (ShortUrlCodec.keyOf(legacy.getKeyCode()) == null) return legacy;
+        copy(Collections.singletonList(legacy));
+        legacy.setId(ShortUrlCodec.idOf(ShortUrlCodec.keyOf(legacy.getKeyCode())));
+        return legacy;
+    }
+
+    private CloseableIterator<ShortUrl> stream(Bson filter, int batchSize) {
+        return stream(filter, Sorts.ascending(ShortUrlCodec.ID), batchSize);
+    }
+
+    /**
+     * @param sort order of the short urls, null to let the filter pick its index
+     */
+    private CloseableIterator<ShortUrl> stream(Bson filter, Bson sort, int batchSize) {
+        MongoCursor<Document> cursor = mongoTemplate.execute(COLLECTION, collection -> collection.find(filter)
+                .sort(sort).batchSize(batchSize).iterator());
+        return new CloseableIterator<ShortUrl>() {
+            @Override
+            public boolean hasNext() {
+                return cursor.hasNext();
+            }
+
+            @Override
+            public ShortUrl next() {
+                return ShortUrlCodec.fromDocument(cursor.next());
+            }
+
+            @Override
+            public void close() {
+                cursor.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,9 @@
+package com.itaborda.repository;
+
+import com.itaborda.model.ImportCheckpoint;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ImportCheckpointRepository extends MongoRepository<ImportCheckpoint, String> {
+}
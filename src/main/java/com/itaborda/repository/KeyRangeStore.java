@@ -0,0 +1,26 @@
+package com.itaborda.repository;
+
+import com.itaborda.model.AllocatedRangePartitionStatus;
+import com.itaborda.model.WorkerStatus;
+
+/**
+ * storage of the key range partitions and of the counters the workers hold in them.
+ * saving a document changed concurrently since it was read fails with an
+ * {@link org.springframework.dao.OptimisticLockingFailureException}.
+ */
+public interface KeyRangeStore {
+
+    /**
+     * @return the status of the worker, null if it never allocated a key
+     */
+    WorkerStatus findWorkerStatus(String workerId);
+
+    WorkerStatus saveWorkerStatus(WorkerStatus workerStatus);
+
+    /**
+     * @return the single range partition status, null if no partition was allocated yet
+     */
+    AllocatedRangePartitionStatus findRangePartitionStatus();
+
+    AllocatedRangePartitionStatus saveRangePartitionStatus(AllocatedRangePartitionStatus status);
+}
@@ -0,0 +1,29 @@
+package com.itaborda.repository;
+
+import com.itaborda.model.ShortUrl;
+
+import java.util.List;
+
+/**
+ * cold tier of the short urls, holding the ones moved out of the {@link LinkStore} for not being visited.
+ * archived short urls keep their id, key code and url key.
+ */
+public interface LinkArchive {
+
+    /**
+     * @return the archived short url of the key code, null if none
+     */
+    ShortUrl findByKeyCode(String keyCode);
+
+    /**
+     * @return the archived short url of the url key, null if none
+     */
+    ShortUrl findByUrlKey(String urlKey);
+
+    /**
+     * stores the short urls, replacing the ones already archived with the same id
+     */
+    void archive(List<ShortUrl> shortUrls);
+
+    void delete(ShortUrl shortUrl);
+}
@@ -0,0 +1,228 @@
+package com.itaborda.repository;
+
+import com.itaborda.model.ShortUrl;
+import com.itaborda.util.Trace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.util.ByteUtils;
+import org.springframework.stereotype.Repository;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * multi-key access to the shortify cache, which the cache abstraction only offers one key at a time.
+ * when the cache is a redis cache the keys are read with a single MGET and written back in one pipeline, with the
+ * key prefix, serializers and time to live of the cache so the entries are the ones the cacheable methods use.
+ * a sharded cache is read with one MGET per node, a failing node reading as misses. other caches are read and
+ * written key by key. a cache failure is logged and reads as all misses.
+ */
+@Repository
+public class LinkCache {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final CacheManager cacheManager;
+    private final StringRedisTemplate redisTemplate;
+
+    public LinkCache(CacheManager cacheManager, StringRedisTemplate redisTemplate) {
+        this.cacheManager = cacheManager;
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * @return the cached short urls by key code, cached misses are left out
+     */
+    public Map<String, ShortUrl> getAll(List<String> keyCodes) {
+        try (Trace.Span span = Trace.span("cache.getAll")) {
+            Map<String, ShortUrl> shortUrls = this.read(keyCodes);
+            Cache cache = cacheManager.getCache(ShortUrl.CACHE_NAME);
+            if (cache instanceof TracingCache) ((TracingCache) cache).count(shortUrls.size(), keyCodes.size() - shortUrls.size());
+            return shortUrls;
+        }
+    }
+
+    /**
+     * reads the shortify cache without falling back to the link store, a cache failure reading as a miss
+     *
+     * @return the cached short url, null if none
+     */
+    public ShortUrl get(String keyCode) {
+        Cache cache = cacheManager.getCache(ShortUrl.CACHE_NAME);
+        if (cache == null) return null;
+        try {
+            Cache.ValueWrapper value = cache.get(keyCode);
+            return value != null && value.get() instanceof ShortUrl ? (ShortUrl) value.get() : null;
+        } catch (RuntimeException e) {
+            log.warn("Could not read {} from the cache: {}", keyCode, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * short urls are only put if absent, a visit may have cached a fresher state since they were read
+     */
+    public void putAll(Collection<ShortUrl> shortUrls) {
+        try (Trace.Span span = Trace.span("cache.putAll")) {
+            this.write(shortUrls);
+        }
+    }
+
+    /**
+     * evicts the key codes with a single DEL per redis node, a cache failure is logged and the entries left to expire
+     */
+    public void evictAll(Collection<String> keyCodes) {
+        try (Trace.Span span = Trace.span("cache.evictAll")) {
+            this.delete(keyCodes);
+        }
+    }
+
+    private Map<String, ShortUrl> read(List<String> keyCodes) {
+        Map<String, ShortUrl> shortUrls = new HashMap<>();
+        Cache cache = this.cache();
+        if (cache == null || keyCodes.isEmpty()) return shortUrls;
+        if (cache instanceof ShardedRedisCache) {
+            ShardedRedisCache sharded = (ShardedRedisCache) cache;
+            Map<ShardedRedisCache.Node, List<String>> byNode = new HashMap<>();
+            for (String keyCode : keyCodes) byNode.computeIfAbsent(sharded.nodeOf(keyCode), n -> new ArrayList<>()).add(keyCode);
+            byNode.forEach((node, keys) -> {
+                if (!sharded.available(node)) return;
+                try {
+                    shortUrls.putAll(mGet(node.getCache(), node.getRedisTemplate(), keys));
+                } catch (RuntimeException e) {
+                    sharded.failed(node, e);
+                }
+            });
+            return shortUrls;
+        }
+        try {
+            if (cache instanceof RedisCache) return mGet((RedisCache) cache, redisTemplate, keyCodes);
+            for (String keyCode : keyCodes) {
+                Cache.ValueWrapper value = cache.get(keyCode);
+                if (value != null && value.get() instanceof ShortUrl) shortUrls.put(keyCode, (ShortUrl) value.get());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not read {} keys from the cache: {}", keyCodes.size(), e.getMessage());
+        }
+        return shortUrls;
+    }
+
+    private void write(Collection<ShortUrl> shortUrls) {
+        Cache cache = this.cache();
+        if (cache == null || shortUrls.isEmpty()) return;
+        if (cache instanceof ShardedRedisCache) {
+            ShardedRedisCache sharded = (ShardedRedisCache) cache;
+            Map<ShardedRedisCache.Node, List<ShortUrl>> byNode = new HashMap<>();
+            for (ShortUrl shortUrl : shortUrls) byNode.computeIfAbsent(sharded.nodeOf(shortUrl.getKeyCode()), n -> new ArrayList<>()).add(shortUrl);
+            byNode.forEach((node, values) -> {
+                if (!sharded.available(node)) {
+                    values.forEach(shortUrl -> sharded.missed(node, shortUrl.getKeyCode()));
+                    return;
+                }
+                try {
+                    setIfAbsent(node.getCache(), node.getRedisTemplate(), values);
+                } catch (RuntimeException e) {
+                    sharded.failed(node, e);
+                    values.forEach(shortUrl -> sharded.missed(node, shortUrl.getKeyCode()));
+                }
+            });
+            return;
+        }
+        try {
+            if (cache instanceof RedisCache) setIfAbsent((RedisCache) cache, redisTemplate, shortUrls);
+            else for (ShortUrl shortUrl : shortUrls) cache.putIfAbsent(shortUrl.getKeyCode(), shortUrl);
+        } catch (RuntimeException e) {
+            log.warn("Could not cache {} short urls: {}", shortUrls.size(), e.getMessage());
+        }
+    }
+
+    private void delete(Collection<String> keyCodes) {
+        Cache cache = this.cache();
+        if (cache == null || keyCodes.isEmpty()) return;
+        if (cache instanceof ShardedRedisCache) {
+            ShardedRedisCache sharded = (ShardedRedisCache) cache;
+            Map<ShardedRedisCache.Node, List<String>> byNode = new HashMap<>();
+            for (String keyCode : keyCodes) byNode.computeIfAbsent(sharded.nodeOf(keyCode), n -> new ArrayList<>()).add(keyCode);
+            byNode.forEach((node, keys) -> {
+                if (!sharded.available(node)) {
+                    keys.forEach(keyCode -> sharded.missed(node, keyCode));
+                    return;
+                }
+                try {
+                    del(node.getCache(), node.getRedisTemplate(), keys);
+                } catch (RuntimeException e) {
+                    sharded.failed(node, e);
+                    keys.forEach(keyCode -> sharded.missed(node, keyCode));
+                }
+            });
+            return;
+        }
+        try {
+            if (cache instanceof RedisCache) del((RedisCache) cache, redisTemplate, keyCodes);
+            else for (String keyCode : keyCodes) cache.evict(keyCode);
+        } catch (RuntimeException e) {
+            log.warn("Could not evict {} keys from the cache: {}", keyCodes.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * @return the shortify cache, undecorated so its multi-key commands are reachable
+     */
+    private Cache cache() {
+        Cache cache = cacheManager.getCache(ShortUrl.CACHE_NAME);
+        return cache instanceof TracingCache ? ((TracingCache) cache).getDelegate() : cache;
+    }
+
+    private static Map<String, ShortUrl> mGet(RedisCache cache, StringRedisTemplate redisTemplate, List<String> keyCodes) {
+        Map<String, ShortUrl> shortUrls = new HashMap<>();
+        RedisCacheConfiguration configuration = cache.getCacheConfiguration();
+        byte[][] keys = new byte[keyCodes.size()][];
+        for (int i = 0; i < keys.length; i++) keys[i] = key(configuration, keyCodes.get(i));
+        List<byte[]> values = redisTemplate.execute((RedisCallback<List<byte[]>>) connection -> connection.mGet(keys));
+        for (int i = 0; values != null && i < values.size(); i++) {
+            if (values.get(i) == null) continue;
+            Object value = configuration.getValueSerializationPair().read(ByteBuffer.wrap(values.get(i)));
+            if (value instanceof ShortUrl) shortUrls.put(keyCodes.get(i), (ShortUrl) value);
+        }
+        return shortUrls;
+    }
+
+    private static void setIfAbsent(RedisCache cache, StringRedisTemplate redisTemplate, Collection<ShortUrl> shortUrls) {
+        RedisCacheConfiguration configuration = cache.getCacheConfiguration();
+        Expiration expiration = configuration.getTtl().isZero() ? Expiration.persistent() : Expiration.from(configuration.getTtl());
+        List<byte[][]> entries = new ArrayList<>(shortUrls.size());
+        for (ShortUrl shortUrl : shortUrls) {
+            entries.add(new byte[][]{key(configuration, shortUrl.getKeyCode()),
+                    ByteUtils.getBytes(configuration.getValueSerializationPair().write(shortUrl))});
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (byte[][] entry : entries) {
+                connection.set(entry[0], entry[1], expiration, RedisStringCommands.SetOption.SET_IF_ABSENT);
+            }
+            return null;
+        });
+    }
+
+    private static void del(RedisCache cache, StringRedisTemplate redisTemplate, Collection<String> keyCodes) {
+        RedisCacheConfiguration configuration = cache.getCacheConfiguration();
+        byte[][] keys = keyCodes.stream().map(keyCode -> key(configuration, keyCode)).toArray(byte[][]::new);
+        redisTemplate.execute((RedisCallback<Long>) connection -> connection.del(keys));
+    }
+
+    private static byte[] key(RedisCacheConfiguration configuration, String keyCode) {
+        String key = configuration.usePrefix() ? configuration.getKeyPrefixFor(ShortUrl.CACHE_NAME) + keyCode : keyCode;
+        return ByteUtils.getBytes(configuration.getKeySerializationPair().write(key));
+    }
+}
@@ -0,0 +1,293 @@
+package com.itaborda.repository;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itaborda.model.ShortUrl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * local durable journal of the short urls created in write-behind mode, holding them until they reach the link store.
+ * entries are appended to segment files journal-N.log as [int json length][int crc32 of the json][json].
+ * a single writer thread writes every queued entry then forces the file once, so concurrent appends share one
+ * fsync (group commit). a sealed segment is deleted as soon as all its entries are flushed and the active one is
+ * truncated, the entries of the segments left on startup are replayed, up to the first torn or corrupted one.
+ */
+public class LinkJournal implements Closeable {
+
+    private static final int HEADER = 8;
+    private static final Pattern SEGMENT_FILE = Pattern.compile("journal-(\\d+)\\.log");
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final ObjectMapper objectMapper;
+    private final Path dir;
+    private final long segmentSize;
+    private final int groupSize;
+
+    private final BlockingQueue<Append> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    /**
+     * number of entries not flushed yet by segment, guarded by this
+     */
+    private final Map<Integer, Integer> unflushed = new HashMap<>();
+    private final List<Entry> recovered = new ArrayList<>();
+    private FileChannel active;
+    private int activeId;
+    private volatile long size;
+
+    public LinkJournal(ObjectMapper objectMapper, String dir, long segmentSize, int groupSize) throws IOException {
+        this.objectMapper = objectMapper.copy().findAndRegisterModules()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.dir = Paths.get(dir).toAbsolutePath();
+        this.segmentSize = segmentSize;
+        this.groupSize = groupSize;
+        Files.createDirectories(this.dir);
+        recover();
+        this.writer = new Thread(this::write, "link-journal");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * @return the entries left unflushed by the previous run, in append order
+     */
+    public List<Entry> recovered() {
+        return Collections.unmodifiableList(recovered);
+    }
+
+    /**
+     * queues the short url for the next group commit
+     *
+     * @return completed with the entry once it is durable
+     */
+    public CompletableFuture<Entry> append(ShortUrl shortUrl) {
+        Append append = new Append(shortUrl);
+        if (!running) append.future.completeExceptionally(new IOException("journal is closed"));
+        else {
+            queue.add(append);
+            // closed meanwhile, the writer may be gone before taking it
+            if (!running && queue.remove(append)) append.future.completeExceptionally(new IOException("journal is closed"));
+        }
+        return append.future;
+    }
+
+    /**
+     * marks the entry as persisted in the link store, deleting its segment when it was the last one, or truncating
+     * it when it is the active one so a restart does not replay flushed entries
+     */
+    public synchronized void flushed(Entry entry) {
+        int left = unflushed.merge(entry.segment, -1, Integer::sum);
+        if (left > 0) return;
+        if (entry.segment != activeId) deleteSegment(entry.segment);
+        else truncateActive();
+    }
+
+    /**
+     * @return bytes held by the segment files
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * stops once the queued entries are written, the ones the writer did not take in time are failed
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+            synchronized (this) {
+                active.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("could not close the journal", e);
+        }
+        Append left;
+        while ((left = queue.poll()) != null) left.future.completeExceptionally(new IOException("journal is closed"));
+    }
+
+    private void write() {
+        List<Append> group = new ArrayList<>(groupSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Append first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                group.add(first);
+                queue.drainTo(group, groupSize - 1);
+                List<Entry> entries = new ArrayList<>(group.size());
+                synchronized (this) {
+                    for (Append append : group) entries.add(write(append.shortUrl));
+                    active.force(false);
+                }
+                for (int i = 0; i < group.size(); i++) group.get(i).future.complete(entries.get(i));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("could not write {} journal entries", group.size(), e);
+                group.forEach(append -> append.future.completeExceptionally(e));
+            }
+            group.clear();
+        }
+    }
+
+    private Entry write(ShortUrl shortUrl) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(shortUrl);
+        if (active.position() > 0 && active.position() + HEADER + json.length > segmentSize) roll();
+        CRC32 crc = new CRC32();
+        crc.update(json);
+        ByteBuffer record = ByteBuffer.allocate(HEADER + json.length);
+        record.putInt(json.length).putInt((int) crc.getValue()).put(json).flip();
+        while (record.hasRemaining()) active.write(record);
+        size += HEADER + json.length;
+        unflushed.merge(activeId, 1, Integer::sum);
+        return new Entry(activeId, shortUrl);
+    }
+
+    /**
+     * seals the active segment, it is deleted right away if every entry it holds is already flushed
+     */
+    private void roll() throws IOException {
+        active.force(false);
+        active.close();
+        int sealed = activeId;
+        open(activeId + 1);
+        if (unflushed.getOrDefault(sealed, 0) <= 0) deleteSegment(sealed);
+    }
+
+    /**
+     * every entry of the active segment is flushed, nothing is left to replay from it
+     */
+    private void truncateActive() {
+        try {
+            if (!active.isOpen() || active.size() == 0) return;
+            size -= active.size();
+            active.truncate(0);
+            active.force(false);
+            unflushed.remove(activeId);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void open(int id) throws IOException {
+        activeId = id;
+        active = FileChannel.open(segment(id), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void deleteSegment(int id) {
+        try {
+            Path file = segment(id);
+            size -= Files.size(file);
+            Files.delete(file);
+            unflushed.remove(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void recover() throws IOException {
+        TreeMap<Integer, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "journal-*.log")) {
+            for (Path file : stream) {
+                Matcher matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches()) files.put(Integer.parseInt(matcher.group(1)), file);
+            }
+        }
+
+        for (Map.Entry<Integer, Path> file : files.entrySet()) {
+            int count = replay(file.getKey(), file.getValue());
+            if (count == 0) Files.delete(file.getValue());
+            else {
+                unflushed.put(file.getKey(), count);
+                size += Files.size(file.getValue());
+            }
+        }
+        open(files.isEmpty() ? 1 : files.lastKey() + 1);
+        if (!recovered.isEmpty()) log.info("journal {} recovered {} unflushed short urls", dir, recovered.size());
+    }
+
+    private int replay(int id, Path file) throws IOException {
+        int count = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            long position = 0;
+            while (true) {
+                header.clear();
+                if (channel.read(header, position) < HEADER) break;
+                int length = header.getInt(0);
+                if (length <= 0 || position + HEADER + length > channel.size()) break;
+                ByteBuffer json = ByteBuffer.allocate(length);
+                channel.read(json, position + HEADER);
+                CRC32 crc = new CRC32();
+                crc.update(json.array());
+                if ((int) crc.getValue() != header.getInt(4)) break;
+                recovered.add(new Entry(id, objectMapper.readValue(json.array(), ShortUrl.class)));
+                position += HEADER + length;
+                count++;
+            }
+            if (position < channel.size()) {
+                log.warn("discarding torn journal entry at {} of {}", position, file);
+                channel.truncate(position);
+            }
+        }
+        return count;
+    }
+
+    private Path segment(int id) {
+        return dir.resolve("journal-" + id + ".log");
+    }
+
+    public static final class Entry {
+        private final int segment;
+        private final ShortUrl shortUrl;
+
+        Entry(int segment, ShortUrl shortUrl) {
+            this.segment = segment;
+            this.shortUrl = shortUrl;
+        }
+
+        public ShortUrl getShortUrl() {
+            return shortUrl;
+        }
+    }
+
+    private static final class Append {
+        private final ShortUrl shortUrl;
+        private final CompletableFuture<Entry> future = new CompletableFuture<>();
+
+        Append(ShortUrl shortUrl) {
+            this.shortUrl = shortUrl;
+        }
+    }
+}
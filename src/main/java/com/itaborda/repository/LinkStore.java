@@ -0,0 +1,71 @@
+package com.itaborda.repository;
+
+import com.itaborda.model.ShortUrl;
+import org.springframework.data.util.CloseableIterator;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * storage of the short urls, the services only depend on this interface.
+ * {@link MongoLinkStore} is the default implementation, the embedded profile selects
+ * {@link com.itaborda.repository.embedded.EmbeddedLinkStore} which runs without mongo.
+ */
+public interface LinkStore {
+
+    /**
+     * @return the short url of the key code, null if none
+     */
+    ShortUrl findByKeyCode(String keyCode);
+
+    /**
+     * looked up in one query per backend, without going through the cache
+     *
+     * @return the short urls of the key codes found, in no particular order
+     */
+    List<ShortUrl> findByKeyCodeIn(Collection<String> keyCodes);
+
+    List<ShortUrl> findByLongUrlIn(Collection<String> urls);
+
+    ShortUrl save(ShortUrl shortUrl);
+
+    /**
+     * @return error message of every short url which was not inserted, by its position in {@code shortUrls}
+     */
+    Map<Integer, String> insertUnordered(List<ShortUrl> shortUrls);
+
+    /**
+     * @return the inserted short url, or the already existing one with the same url key
+     */
+    ShortUrl insertIfAbsent(ShortUrl shortUrl);
+
+    /**
+     * @return the renewed short url, or its current state if it was renewed concurrently
+     */
+    ShortUrl renew(ShortUrl shortUrl, LocalDateTime expireDate);
+
+    void delete(ShortUrl shortUrl);
+
+    /**
+     * deletes the short urls with one query per backend and evicts their key codes from the cache
+     */
+    void deleteAll(List<ShortUrl> shortUrls);
+
+    /**
+     * @return short urls ordered by id, created in [createdFrom, createdTo) and after the id, each bound ignored if null
+     */
+    CloseableIterator<ShortUrl> streamForExport(LocalDateTime createdFrom, LocalDateTime createdTo, String afterId, int batchSize);
+
+    /**
+     * @return short urls ordered by id, last accessed before the date, or never accessed and created before it
+     */
+    CloseableIterator<ShortUrl> streamNotAccessedSince(LocalDateTime before, int batchSize);
+
+    /**
+     * @return short urls last accessed at or after the date, in no particular order. read through an index on the
+     * access date, a short url being moved between backends may be returned twice
+     */
+    CloseableIterator<ShortUrl> streamAccessedSince(LocalDateTime since, int batchSize);
+}
@@ -0,0 +1,86 @@
+package com.itaborda.repository;
+
+import com.itaborda.model.ShortUrl;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link LinkArchive} over the shorturl_archive collection, created with its own block compressor since archived
+ * short urls are rarely read. it is not cached, archived short urls are cached again once promoted.
+ */
+@Repository
+@Profile("tiering & !embedded")
+public class MongoLinkArchive implements LinkArchive {
+
+    public static final String COLLECTION = "shorturl_archive";
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final MongoTemplate mongoTemplate;
+    private final String blockCompressor;
+
+    public MongoLinkArchive(MongoTemplate mongoTemplate,
+                            @Value("${shortify.tiering.block-compressor:zstd}") String blockCompressor) {
+        this.mongoTemplate = mongoTemplate;
+        this.blockCompressor = blockCompressor;
+    }
+
+    @PostConstruct
+    public void createCollection() {
+        if (!mongoTemplate.collectionExists(COLLECTION)) {
+            mongoTemplate.getDb().createCollection(COLLECTION, new CreateCollectionOptions().storageEngineOptions(
+                    new Document("wiredTiger", new Document("configString", "block_compressor=" + blockCompressor))));
+            log.info("created {} with block compressor {}", COLLECTION, blockCompressor);
+        }
+        mongoTemplate.indexOps(COLLECTION).ensureIndex(new Index("keyCode", Sort.Direction.ASC));
+        mongoTemplate.indexOps(COLLECTION).ensureIndex(new Index("urlKey", Sort.Direction.ASC).sparse());
+    }
+
+    @Override
+    public ShortUrl findByKeyCode(String keyCode) {
+        return mongoTemplate.findOne(Query.query(Criteria.where("keyCode").is(keyCode)), ShortUrl.class, COLLECTION);
+    }
+
+    @Override
+    public ShortUrl findByUrlKey(String urlKey) {
+        return mongoTemplate.findOne(Query.query(Criteria.where("urlKey").is(urlKey)), ShortUrl.class, COLLECTION);
+    }
+
+    /**
+     * one unordered bulk write of upserts by id, so archiving a batch again after a failure does not duplicate it
+     */
+    @Override
+    public void archive(List<ShortUrl> shortUrls) {
+        if (shortUrls.isEmpty()) return;
+        List<WriteModel<Document>> writes = new ArrayList<>(shortUrls.size());
+        for (ShortUrl shortUrl : shortUrls) {
+            Document document = new Document();
+            mongoTemplate.getConverter().write(shortUrl, document);
+            writes.add(new ReplaceOneModel<>(new Document("_id", document.get("_id")), document, new ReplaceOptions().upsert(true)));
+        }
+        mongoTemplate.getCollection(COLLECTION).bulkWrite(writes, new BulkWriteOptions().ordered(false));
+    }
+
+    @Override
+    public void delete(ShortUrl shortUrl) {
+        mongoTemplate.remove(Query.query(Criteria.where("id").is(shortUrl.getId())), ShortUrl.class, COLLECTION);
+    }
+}
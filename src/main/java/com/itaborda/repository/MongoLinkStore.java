@@ -0,0 +1,98 @@
+package com.itaborda.repository;
+
+import com.itaborda.model.ShortUrl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * {@link LinkStore} over the shorturl collection, cached through {@link ShortUrlRepository}
+ */
+@Repository
+@Profile("!embedded & !routed & !secondary-reads & !compact")
+public class MongoLinkStore implements LinkStore {
+
+    private final ShortUrlRepository repository;
+    private final LinkCache linkCache;
+
+    /**
+     * without cache, for the backends of a store which evicts the cache itself
+     */
+    public MongoLinkStore(ShortUrlRepository repository) {
+        this(repository, null);
+    }
+
+    @Autowired
+    public MongoLinkStore(ShortUrlRepository repository, LinkCache linkCache) {
+        this.repository = repository;
+        this.linkCache = linkCache;
+    }
+
+    @Override
+    public ShortUrl findByKeyCode(String keyCode) {
+        return repository.findByKeyCode(keyCode);
+    }
+
+    @Override
+    public List<ShortUrl> findByKeyCodeIn(Collection<String> keyCodes) {
+        return repository.findByKeyCodeIn(keyCodes);
+    }
+
+    @Override
+    public List<ShortUrl> findByLongUrlIn(Collection<String> urls) {
+        return repository.findByLongUrlIn(urls);
+    }
+
+    @Override
+    public ShortUrl save(ShortUrl shortUrl) {
+        return repository.save(shortUrl);
+    }
+
+    @Override
+    public Map<Integer, String> insertUnordered(List<ShortUrl> shortUrls) {
+        return repository.insertUnordered(shortUrls);
+    }
+
+    @Override
+    public ShortUrl insertIfAbsent(ShortUrl shortUrl) {
+        return repository.insertIfAbsent(shortUrl);
+    }
+
+    @Override
+    public ShortUrl renew(ShortUrl shortUrl, LocalDateTime expireDate) {
+        return repository.renew(shortUrl, expireDate);
+    }
+
+    @Override
+    public void delete(ShortUrl shortUrl) {
+        repository.delete(shortUrl);
+    }
+
+    @Override
+    public void deleteAll(List<ShortUrl> shortUrls) {
+        repository.deleteByIds(shortUrls.stream().map(ShortUrl::getId).collect(Collectors.toList()));
+        if (linkCache != null) linkCache.evictAll(shortUrls.stream().map(ShortUrl::getKeyCode).collect(Collectors.toList()));
+    }
+
+    @Override
+    public CloseableIterator<ShortUrl> streamForExport(LocalDateTime createdFrom, LocalDateTime createdTo, String afterId, int batchSize) {
+        return repository.streamForExport(createdFrom, createdTo, afterId, batchSize);
+    }
+
+    @Override
+    public CloseableIterator<ShortUrl> streamNotAccessedSince(LocalDateTime before, int batchSize) {
+        return repository.streamNotAccessedSince(before, batchSize);
+    }
+
+    @Override
+    public CloseableIterator<ShortUrl> streamAccessedSince(LocalDateTime since, int batchSize) {
+        return repository.streamAccessedSince(since, batchSize);
+    }
+}
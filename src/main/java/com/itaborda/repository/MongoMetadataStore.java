@@ -0,0 +1,64 @@
+package com.itaborda.repository;
+
+import com.itaborda.model.AllocatedRangePartitionStatus;
+import com.itaborda.model.ImportCheckpoint;
+import com.itaborda.model.WorkerStatus;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link KeyRangeStore} and {@link CheckpointStore} over their mongo collections
+ */
+@Repository
+@Profile("!embedded")
+public class MongoMetadataStore implements KeyRangeStore, CheckpointStore {
+
+    private final WorkerStatusRepository workerStatusRepository;
+    private final AllocatedRangePartitionStatusRepository partitionStatusRepository;
+    private final ImportCheckpointRepository checkpointRepository;
+
+    public MongoMetadataStore(WorkerStatusRepository workerStatusRepository,
+                              AllocatedRangePartitionStatusRepository partitionStatusRepository,
+                              ImportCheckpointRepository checkpointRepository) {
+        this.workerStatusRepository = workerStatusRepository;
+        this.partitionStatusRepository = partitionStatusRepository;
+        this.checkpointRepository = checkpointRepository;
+    }
+
+    @Override
+    public WorkerStatus findWorkerStatus(String workerId) {
+        return workerStatusRepository.findByWorkerId(workerId);
+    }
+
+    @Override
+    public WorkerStatus saveWorkerStatus(WorkerStatus workerStatus) {
+        return workerStatusRepository.save(workerStatus);
+    }
+
+    /**
+     * note: this collection has only one document for managing the counter
+     */
+    @Override
+    public AllocatedRangePartitionStatus findRangePartitionStatus() {
+        List<AllocatedRangePartitionStatus> statuses = partitionStatusRepository.findAll();
+        return statuses == null || statuses.isEmpty() ? null : statuses.get(0);
+    }
+
+    @Override
+    public AllocatedRangePartitionStatus saveRangePartitionStatus(AllocatedRangePartitionStatus status) {
+        return partitionStatusRepository.save(status);
+    }
+
+    @Override
+    public Optional<ImportCheckpoint> findCheckpoint(String importId) {
+        return checkpointRepository.findById(importId);
+    }
+
+    @Override
+    public ImportCheckpoint saveCheckpoint(ImportCheckpoint checkpoint) {
+        return checkpointRepository.save(checkpoint);
+    }
+}
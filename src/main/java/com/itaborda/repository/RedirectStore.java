@@ -0,0 +1,330 @@
+package com.itaborda.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * off heap store of the redirect targets of short urls, so a store big enough to matter does not weigh on the heap.
+ * entries live in fixed size slots packed into direct buffer slabs:
+ * [byte state][byte key length][short url length][long hard expire millis][long soft expire millis][ascii key][utf-8 url]
+ * state 0 marks a free slot, 1 a live one and 2 a live one referenced since the clock hand last passed it.
+ * an open addressing index of longs, held in a direct buffer too, maps the 32 bit hash of a key to its slot as
+ * [hash][slot + 1], 0 marking an empty index slot. once every slot is taken the clock hand sweeps the slots,
+ * giving referenced ones a second chance and evicting the first unreferenced one.
+ * a lookup probes the index and compares the key in place, the returned url being its only allocation.
+ * keys or urls not fitting in a slot are not stored.
+ * an entry past its soft expiry is still returned until its hard expiry, and its key is marked stale until
+ * {@link #clearStale(String)}, so the caller revalidates it once while it keeps being served.
+ */
+public class RedirectStore {
+
+    private static final int STATE = 0;
+    private static final int KEY_LENGTH = 1;
+    private static final int URL_LENGTH = 2;
+    private static final int HARD_EXPIRE = 4;
+    private static final int SOFT_EXPIRE = 12;
+    private static final int KEY = 20;
+
+    private static final byte FREE = 0;
+    private static final byte LIVE = 1;
+    private static final byte REFERENCED = 2;
+
+    private static final int SLAB_SIZE = 1 << 26;
+    private static final int MAX_SLOTS = 1 << 26;
+
+    private final int slotSize;
+    private final int slotsPerSlab;
+    private final int slotCount;
+    private final ByteBuffer[] slabs;
+    private final ByteBuffer index;
+    private final int mask;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<byte[]> scratch;
+    private int used;
+    private int hand;
+    private int size;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final Set<String> stale = ConcurrentHashMap.newKeySet();
+    private long evictions;
+
+    /**
+     * @param budget   bytes of direct memory taken by the slots and the index
+     * @param slotSize bytes of a slot, header and key included
+     */
+    public RedirectStore(long budget, int slotSize) {
+        if (slotSize <= KEY + 1 || slotSize > SLAB_SIZE) throw new IllegalArgumentException("invalid slot size " + slotSize);
+        // every slot takes two index longs, keeping the index at most half full
+        this.slotCount = (int) Math.max(1, Math.min(MAX_SLOTS, budget / (slotSize + 16L)));
+        this.slotSize = slotSize;
+        this.slotsPerSlab = SLAB_SIZE / slotSize;
+        this.slabs = new ByteBuffer[(slotCount + slotsPerSlab - 1) / slotsPerSlab];
+        for (int i = 0; i < slabs.length; i++) {
+            slabs[i] = ByteBuffer.allocateDirect(Math.min(slotsPerSlab, slotCount - i * slotsPerSlab) * slotSize);
+        }
+        int indexSlots = Integer.highestOneBit(slotCount * 2 - 1) << 1;
+        this.index = ByteBuffer.allocateDirect(indexSlots * 8);
+        this.mask = indexSlots - 1;
+        this.scratch = ThreadLocal.withInitial(() -> new byte[slotSize]);
+    }
+
+    /**
+     * @return the long url of the key, null if it is absent or past its hard expiry. only ascii keys are stored, any
+     * other key is a miss
+     */
+    public String get(CharSequence key, long now) {
+        if (!isAscii(key)) {
+            misses.increment();
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            int slot = find(key, hash(key));
+            if (slot < 0 || slab(slot).getLong(offset(slot) + HARD_EXPIRE) <= now) {
+                misses.increment();
+                return null;
+            }
+            ByteBuffer slab = slab(slot);
+            int offset = offset(slot);
+            // a racy write of the same byte by concurrent readers, the writers hold the exclusive lock
+            slab.put(offset + STATE, REFERENCED);
+            hits.increment();
+            if (slab.getLong(offset + SOFT_EXPIRE) <= now) {
+                staleHits.increment();
+                stale.add(key.toString());
+            }
+            // the url is copied to a per thread buffer, so only the string is allocated
+            byte[] url = scratch.get();
+            int length = slab.getShort(offset + URL_LENGTH);
+            int from = offset + KEY + slab.get(offset + KEY_LENGTH);
+            for (int i = 0; i < length; i++) url[i] = slab.get(from + i);
+            return new String(url, 0, length, StandardCharsets.UTF_8);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * stores the long url of the key until the expiry, never stale before
+     *
+     * @return false if the key or the url does not fit in a slot
+     */
+    public boolean put(String key, String longUrl, long expireMillis) {
+        return put(key, longUrl, expireMillis, expireMillis);
+    }
+
+    /**
+     * stores the long url of the key, replacing the one it had
+     *
+     * @param softExpireMillis from when the entry is stale, still returned but due for revalidation
+     * @param hardExpireMillis from when the entry is no longer returned
+     * @return false if the key or the url does not fit in a slot
+     */
+    public boolean put(String key, String longUrl, long softExpireMillis, long hardExpireMillis) {
+        byte[] url = longUrl.getBytes(StandardCharsets.UTF_8);
+        if (!isAscii(key) || key.length() > Byte.MAX_VALUE || KEY + key.length() + url.length > slotSize
+                || url.length > Short.MAX_VALUE) {
+            rejected.increment();
+            return false;
+        }
+        int hash = hash(key);
+        lock.writeLock().lock();
+        try {
+            int slot = find(key, hash);
+            if (slot < 0) {
+                slot = allocate();
+                insert(hash, slot);
+                size++;
+            }
+            ByteBuffer slab = slab(slot);
+            int offset = offset(slot);
+            slab.put(offset + STATE, LIVE)
+                    .put(offset + KEY_LENGTH, (byte) key.length())
+                    .putShort(offset + URL_LENGTH, (short) url.length)
+                    .putLong(offset + HARD_EXPIRE, hardExpireMillis)
+                    .putLong(offset + SOFT_EXPIRE, Math.min(softExpireMillis, hardExpireMillis));
+            for (int i = 0; i < key.length(); i++) slab.put(offset + KEY + i, (byte) key.charAt(i));
+            for (int i = 0; i < url.length; i++) slab.put(offset + KEY + key.length() + i, url[i]);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(CharSequence key) {
+        if (!isAscii(key)) return;
+        int hash = hash(key);
+        lock.writeLock().lock();
+        try {
+            int slot = find(key, hash);
+            if (slot < 0) return;
+            delete(hash, slot);
+            slab(slot).put(offset(slot) + STATE, FREE);
+            size--;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the keys returned past their soft expiry and not cleared since
+     */
+    public List<String> getStaleKeys() {
+        return new ArrayList<>(stale);
+    }
+
+    /**
+     * once the entry of the key is revalidated, stored again or removed, a later stale read marks it again
+     */
+    public void clearStale(String key) {
+        stale.remove(key);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of entries held before the clock starts evicting
+     */
+    public int capacity() {
+        return slotCount;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getStaleHits() {
+        return staleHits.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getEvictions() {
+        lock.readLock().lock();
+        try {
+            return evictions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return a slot never used yet, a freed one or the one of the entry evicted by the clock hand
+     */
+    private int allocate() {
+        if (used < slotCount) return used++;
+        while (true) {
+            int slot = hand;
+            hand = hand + 1 == slotCount ? 0 : hand + 1;
+            ByteBuffer slab = slab(slot);
+            int offset = offset(slot);
+            byte state = slab.get(offset + STATE);
+            if (state == FREE) return slot;
+            if (state == REFERENCED) {
+                slab.put(offset + STATE, LIVE);
+                continue;
+            }
+            int hash = 0x811c9dc5;
+            for (int i = 0, length = slab.get(offset + KEY_LENGTH); i < length; i++) hash = (hash ^ slab.get(offset + KEY + i)) * 0x01000193;
+            delete(hash, slot);
+            size--;
+            evictions++;
+            return slot;
+        }
+    }
+
+    /**
+     * @return slot of the key, -1 if absent
+     */
+    private int find(CharSequence key, int hash) {
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            long entry = index.getLong(i * 8);
+            if (entry == 0) return -1;
+            if ((int) (entry >>> 32) == hash && matches((int) entry - 1, key)) return (int) entry - 1;
+        }
+    }
+
+    private void insert(int hash, int slot) {
+        int i = hash & mask;
+        while (index.getLong(i * 8) != 0) i = (i + 1) & mask;
+        index.putLong(i * 8, ((long) hash << 32) | (slot + 1));
+    }
+
+    /**
+     * removes the index entry of the slot, shifting back the entries probed after it so no lookup stops at the hole
+     */
+    private void delete(int hash, int slot) {
+        int hole = hash & mask;
+        while (index.getLong(hole * 8) != (((long) hash << 32) | (slot + 1))) hole = (hole + 1) & mask;
+        for (int i = (hole + 1) & mask; ; i = (i + 1) & mask) {
+            long entry = index.getLong(i * 8);
+            if (entry == 0) break;
+            int home = (int) (entry >>> 32) & mask;
+            // the entry may move to the hole only if the hole lies between its home and where it is
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                index.putLong(hole * 8, entry);
+                hole = i;
+            }
+        }
+        index.putLong(hole * 8, 0);
+    }
+
+    private boolean matches(int slot, CharSequence key) {
+        ByteBuffer slab = slab(slot);
+        int offset = offset(slot);
+        if (slab.get(offset + KEY_LENGTH) != key.length()) return false;
+        for (int i = 0; i < key.length(); i++) {
+            // the char is compared whole, a non ascii char must not match the ascii byte it truncates to
+            if (slab.get(offset + KEY + i) != key.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private ByteBuffer slab(int slot) {
+        return slabs[slot / slotsPerSlab];
+    }
+
+    private int offset(int slot) {
+        return (slot % slotsPerSlab) * slotSize;
+    }
+
+    /**
+     * fnv-1a over the characters of the key, they are ascii when it is stored
+     */
+    private static int hash(CharSequence key) {
+        int hash = 0x811c9dc5;
+        for (int i = 0; i < key.length(); i++) hash = (hash ^ (byte) key.charAt(i)) * 0x01000193;
+        return hash;
+    }
+
+    private static boolean isAscii(CharSequence key) {
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+}
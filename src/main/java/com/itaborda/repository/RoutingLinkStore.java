@@ -0,0 +1,284 @@
+package com.itaborda.repository;
+
+import com.itaborda.model.PartitionRoute;
+import com.itaborda.model.ShortUrl;
+import com.itaborda.util.GlobalConstants;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * {@link LinkStore} spreading the short urls over several backends, selected by the routed profile.
+ * a short url belongs to the partition of its numeric key, the base58 part of its key code divided by
+ * {@link GlobalConstants#KeyNumbersInPartitions}, so resolving goes straight to one backend without lookup.
+ * a partition lives on the backend of its {@link PartitionRoute} if it has one, partitions below the legacy
+ * partition count stay on backend 0 where they were before routing, and the others on partition % backends.
+ * the routes are reloaded periodically, moving a partition swaps its route through the states of
+ * {@link com.itaborda.service.PartitionRebalanceService} and reads fall back to the other backend meanwhile.
+ * the url key is unique per backend, a short url being inserted is first looked up on the other backends.
+ */
+public class RoutingLinkStore implements LinkStore {
+
+    private final List<LinkStore> backends;
+    private final PartitionRouteRepository routeRepository;
+    private final long legacyPartitions;
+    private final LinkCache linkCache;
+    private volatile Map<Long, PartitionRoute> routes = Collections.emptyMap();
+
+    public RoutingLinkStore(List<LinkStore> backends, PartitionRouteRepository routeRepository, long legacyPartitions) {
+        this(backends, routeRepository, legacyPartitions, null);
+    }
+
+    public RoutingLinkStore(List<LinkStore> backends, PartitionRouteRepository routeRepository, long legacyPartitions, LinkCache linkCache) {
+        this.backends = backends;
+        this.routeRepository = routeRepository;
+        this.legacyPartitions = legacyPartitions;
+        this.linkCache = linkCache;
+        refresh();
+    }
+
+    /**
+     * @return partition of the key encoded in the key code, the last 2 characters being a random part of the url hash.
+     * a key code which was not generated from a key belongs to partition 0, where it misses unless stored there
+     */
+    public static long partitionOf(String keyCode) {
+        Long key = ShortUrlCodec.keyOf(keyCode);
+        return key == null ? 0 : key / GlobalConstants.KeyNumbersInPartitions;
+    }
+
+    /**
+     * @return index of the backend the partition is written to and read from first
+     */
+    public int backendOf(long partition) {
+        PartitionRoute route = routes.get(partition);
+        if (route != null) return route.getBackend();
+        return partition < legacyPartitions ? 0 : (int) (partition % backends.size());
+    }
+
+    public LinkStore backend(int index) {
+        return backends.get(index);
+    }
+
+    public int backendCount() {
+        return backends.size();
+    }
+
+    @Scheduled(fixedDelayString = "${shortify.routing.refresh-interval:5000}")
+    public void refresh() {
+        Map<Long, PartitionRoute> loaded = new HashMap<>();
+        for (PartitionRoute route : routeRepository.findAll()) loaded.put(route.getPartition(), route);
+        routes = loaded;
+    }
+
+    @Cacheable(value = ShortUrl.CACHE_NAME)
+    @Override
+    public ShortUrl findByKeyCode(String keyCode) {
+        long partition = partitionOf(keyCode);
+        ShortUrl shortUrl = backends.get(backendOf(partition)).findByKeyCode(keyCode);
+        LinkStore fallback = fallbackOf(partition);
+        return shortUrl == null && fallback != null ? fallback.findByKeyCode(keyCode) : shortUrl;
+    }
+
+    /**
+     * one query per owning backend, then one per fallback backend for the keys of moving partitions not found
+     */
+    @Override
+    public List<ShortUrl> findByKeyCodeIn(Collection<String> keyCodes) {
+        Map<LinkStore, List<String>> byOwner = new LinkedHashMap<>();
+        for (String keyCode : keyCodes) byOwner.computeIfAbsent(owner(keyCode), b -> new ArrayList<>()).add(keyCode);
+        List<ShortUrl> shortUrls = new ArrayList<>(keyCodes.size());
+        Set<String> found = new HashSet<>();
+        byOwner.forEach((backend, keys) -> {
+            for (ShortUrl shortUrl : backend.findByKeyCodeIn(keys)) {
+                shortUrls.add(shortUrl);
+                found.add(shortUrl.getKeyCode());
+            }
+        });
+
+        Map<LinkStore, List<String>> byFallback = new LinkedHashMap<>();
+        for (String keyCode : keyCodes) {
+            LinkStore fallback = fallbackOf(partitionOf(keyCode));
+            if (fallback != null && !found.contains(keyCode)) byFallback.computeIfAbsent(fallback, b -> new ArrayList<>()).add(keyCode);
+        }
+        byFallback.forEach((backend, keys) -> shortUrls.addAll(backend.findByKeyCodeIn(keys)));
+        return shortUrls;
+    }
+
+    /**
+     * @return the short urls of every backend, a short url being copied by a move is returned once
+     */
+    @Override
+    public List<ShortUrl> findByLongUrlIn(Collection<String> urls) {
+        Map<String, ShortUrl> shortUrls = new LinkedHashMap<>();
+        for (LinkStore backend : backends) {
+            for (ShortUrl shortUrl : backend.findByLongUrlIn(urls)) shortUrls.putIfAbsent(shortUrl.getId(), shortUrl);
+        }
+        return new ArrayList<>(shortUrls.values());
+    }
+
+    @CachePut(value = ShortUrl.CACHE_NAME, key = "#shortUrl.keyCode")
+    @Override
+    public ShortUrl save(ShortUrl shortUrl) {
+        return owner(shortUrl.getKeyCode()).save(shortUrl);
+    }
+
+    @Override
+    public Map<Integer, String> insertUnordered(List<ShortUrl> shortUrls) {
+        Map<Integer, List<Integer>> positionsByBackend = new HashMap<>();
+        for (int i = 0; i < shortUrls.size(); i++) {
+            positionsByBackend.computeIfAbsent(backendOf(partitionOf(shortUrls.get(i).getKeyCode())), b -> new ArrayList<>()).add(i);
+        }
+
+        Map<Integer, String> errors = new HashMap<>();
+        positionsByBackend.forEach((backend, positions) -> {
+            List<ShortUrl> batch = new ArrayList<>(positions.size());
+            for (int position : positions) batch.add(shortUrls.get(position));
+            backends.get(backend).insertUnordered(batch).forEach((index, error) -> errors.put(positions.get(index), error));
+        });
+        return errors;
+    }
+
+    @CachePut(value = ShortUrl.CACHE_NAME, key = "#result.keyCode", unless = "#result == null")
+    @Override
+    public ShortUrl insertIfAbsent(ShortUrl shortUrl) {
+        LinkStore owner = owner(shortUrl.getKeyCode());
+        for (LinkStore backend : backends) {
+            if (backend == owner) continue;
+            for (ShortUrl existing : backend.findByLongUrlIn(Collections.singletonList(shortUrl.getLongUrl()))) {
+                if (shortUrl.getUrlKey().equals(existing.getUrlKey())) return existing;
+            }
+        }
+        return owner.insertIfAbsent(shortUrl);
+    }
+
+    @CachePut(value = ShortUrl.CACHE_NAME, key = "#result.keyCode", unless = "#result == null")
+    @Override
+    public ShortUrl renew(ShortUrl shortUrl, LocalDateTime expireDate) {
+        ShortUrl renewed = owner(shortUrl.getKeyCode()).renew(shortUrl, expireDate);
+        LinkStore fallback = fallbackOf(partitionOf(shortUrl.getKeyCode()));
+        return renewed == null && fallback != null ? fallback.renew(shortUrl, expireDate) : renewed;
+    }
+
+    @CacheEvict(value = ShortUrl.CACHE_NAME, key = "#shortUrl.keyCode")
+    @Override
+    public void delete(ShortUrl shortUrl) {
+        owner(shortUrl.getKeyCode()).delete(shortUrl);
+        LinkStore fallback = fallbackOf(partitionOf(shortUrl.getKeyCode()));
+        if (fallback != null) fallback.delete(shortUrl);
+    }
+
+    /**
+     * one query per owning backend and one per fallback backend of the moving partitions
+     */
+    @Override
+    public void deleteAll(List<ShortUrl> shortUrls) {
+        Map<LinkStore, List<ShortUrl>> byBackend = new LinkedHashMap<>();
+        for (ShortUrl shortUrl : shortUrls) {
+            byBackend.computeIfAbsent(owner(shortUrl.getKeyCode()), b -> new ArrayList<>()).add(shortUrl);
+            LinkStore fallback = fallbackOf(partitionOf(shortUrl.getKeyCode()));
+            if (fallback != null) byBackend.computeIfAbsent(fallback, b -> new ArrayList<>()).add(shortUrl);
+        }
+        byBackend.forEach(LinkStore::deleteAll);
+        if (linkCache != null) {
+            List<String> keyCodes = new ArrayList<>(shortUrls.size());
+            for (ShortUrl shortUrl : shortUrls) keyCodes.add(shortUrl.getKeyCode());
+            linkCache.evictAll(keyCodes);
+        }
+    }
+
+    /**
+     * merges the cursors of every backend by id
+     */
+    @Override
+    public CloseableIterator<ShortUrl> streamForExport(LocalDateTime createdFrom, LocalDateTime createdTo, String afterId, int batchSize) {
+        List<CloseableIterator<ShortUrl>> cursors = new ArrayList<>(backends.size());
+        for (LinkStore backend : backends) cursors.add(backend.streamForExport(createdFrom, createdTo, afterId, batchSize));
+        return new MergingCursor(cursors);
+    }
+
+    @Override
+    public CloseableIterator<ShortUrl> streamNotAccessedSince(LocalDateTime before, int batchSize) {
+        List<CloseableIterator<ShortUrl>> cursors = new ArrayList<>(backends.size());
+        for (LinkStore backend : backends) cursors.add(backend.streamNotAccessedSince(before, batchSize));
+        return new MergingCursor(cursors);
+    }
+
+    /**
+     * the cursors are not sorted by id, merging them still returns every short url, a moving one possibly twice
+     */
+    @Override
+    public CloseableIterator<ShortUrl> streamAccessedSince(LocalDateTime since, int batchSize) {
+        List<CloseableIterator<ShortUrl>> cursors = new ArrayList<>(backends.size());
+        for (LinkStore backend : backends) cursors.add(backend.streamAccessedSince(since, batchSize));
+        return new MergingCursor(cursors);
+    }
+
+    private LinkStore owner(String keyCode) {
+        return backends.get(backendOf(partitionOf(keyCode)));
+    }
+
+    private LinkStore fallbackOf(long partition) {
+        PartitionRoute route = routes.get(partition);
+        return route == null || route.getFallback() == null ? null : backends.get(route.getFallback());
+    }
+
+    private static final class MergingCursor implements CloseableIterator<ShortUrl> {
+        private final List<CloseableIterator<ShortUrl>> cursors;
+        private final PriorityQueue<Head> heads = new PriorityQueue<>((a, b) -> a.shortUrl.getId().compareTo(b.shortUrl.getId()));
+        private String lastId;
+
+        MergingCursor(List<CloseableIterator<ShortUrl>> cursors) {
+            this.cursors = cursors;
+            for (CloseableIterator<ShortUrl> cursor : cursors) advance(cursor);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!heads.isEmpty() && heads.peek().shortUrl.getId().equals(lastId)) advance(heads.poll().cursor);
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public ShortUrl next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Head head = heads.poll();
+            advance(head.cursor);
+            lastId = head.shortUrl.getId();
+            return head.shortUrl;
+        }
+
+        @Override
+        public void close() {
+            cursors.forEach(CloseableIterator::close);
+        }
+
+        private void advance(CloseableIterator<ShortUrl> cursor) {
+            if (cursor.hasNext()) heads.add(new Head(cursor.next(), cursor));
+        }
+    }
+
+    private static final class Head {
+        private final ShortUrl shortUrl;
+        private final CloseableIterator<ShortUrl> cursor;
+
+        Head(ShortUrl shortUrl, CloseableIterator<ShortUrl> cursor) {
+            this.shortUrl = shortUrl;
+            this.cursor = cursor;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.itaborda.repository;
+
+import com.itaborda.model.ShortUrl;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.util.CloseableIterator;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link LinkStore} reading short urls by key and exports from secondaries, selected by the secondary-reads profile.
+ * a key missing on the secondaries, or whose short url looks expired there, is read again from the primary: the
+ * short url may have been created or renewed within the staleness bound. everything else, shortening lookups by
+ * url included, goes to the primary.
+ */
+public class SecondaryReadLinkStore implements LinkStore {
+
+    private final LinkStore primary;
+    private final LinkStore secondaries;
+
+    public SecondaryReadLinkStore(LinkStore primary, LinkStore secondaries) {
+        this.primary = primary;
+        this.secondaries = secondaries;
+    }
+
+    @Cacheable(value = ShortUrl.CACHE_NAME)
+    @Override
+    public ShortUrl findByKeyCode(String keyCode) {
+        ShortUrl shortUrl = secondaries.findByKeyCode(keyCode);
+        return shortUrl != null && shortUrl.isNotExpired() ? shortUrl : primary.findByKeyCode(keyCode);
+    }
+
+    @Override
+    public List<ShortUrl> findByKeyCodeIn(Collection<String> keyCodes) {
+        List<ShortUrl> shortUrls = new ArrayList<>(keyCodes.size());
+        Set<String> found = new HashSet<>();
+        for (ShortUrl shortUrl : secondaries.findByKeyCodeIn(keyCodes)) {
+            if (!shortUrl.isNotExpired()) continue;
+            shortUrls.add(shortUrl);
+            found.add(shortUrl.getKeyCode());
+        }
+        if (found.size() == keyCodes.size()) return shortUrls;
+
+        List<String> missing = new ArrayList<>();
+        for (String keyCode : keyCodes) if (!found.contains(keyCode)) missing.add(keyCode);
+        shortUrls.addAll(primary.findByKeyCodeIn(missing));
+        return shortUrls;
+    }
+
+    @Override
+    public List<ShortUrl> findByLongUrlIn(Collection<String> urls) {
+        return primary.findByLongUrlIn(urls);
+    }
+
+    @Override
+    public ShortUrl save(ShortUrl shortUrl) {
+        return primary.save(shortUrl);
+    }
+
+    @Override
+    public Map<Integer, String> insertUnordered(List<ShortUrl> shortUrls) {
+        return primary.insertUnordered(shortUrls);
+    }
+
+    @Override
+    public ShortUrl insertIfAbsent(ShortUrl shortUrl) {
+        return primary.insertIfAbsent(shortUrl);
+    }
+
+    @Override
+    public ShortUrl renew(ShortUrl shortUrl, LocalDateTime expireDate) {
+        return primary.renew(shortUrl, expireDate);
+    }
+
+    @Override
+    public void delete(ShortUrl shortUrl) {
+        primary.delete(shortUrl);
+    }
+
+    @Override
+    public void deleteAll(List<ShortUrl> shortUrls) {
+        primary.deleteAll(shortUrls);
+    }
+
+    @Override
+    public CloseableIterator<ShortUrl> streamForExport(LocalDateTime createdFrom, LocalDateTime createdTo, String afterId, int batchSize) {
+        return secondaries.streamForExport(createdFrom, createdTo, afterId, batchSize);
+    }
+
+    /**
+     * from the primary, a secondary lagging behind visits would make short urls being visited look cold
+     */
+    @Override
+    public CloseableIterator<ShortUrl> streamNotAccessedSince(LocalDateTime before, int batchSize) {
+        return primary.streamNotAccessedSince(before, batchSize);
+    }
+
+    @Override
+    public CloseableIterator<ShortUrl> streamAccessedSince(LocalDateTime since, int batchSize) {
+        return secondaries.streamAccessedSince(since, batchSize);
+    }
+}
@@ -0,0 +1,289 @@
+package com.itaborda.repository;
+
+import com.itaborda.util.ConsistentHashRing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.util.ByteUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * cache spread over several redis nodes, selected by the sharded-cache profile. a key belongs to one node of a
+ * {@link ConsistentHashRing}, each node being a plain {@link RedisCache} over its own connection factory.
+ * a failing node is skipped for retry-after: its reads are misses, so the cacheable link store methods read mongo,
+ * and its writes are dropped. the writes a node missed would leave it serving stale short urls, so their keys are
+ * recorded and a node coming back has them deleted, off the request threads, before it is used again. past
+ * max-missed keys they are no longer recorded and the node is only used again once the entries it held when it
+ * failed expired.
+ */
+public class ShardedRedisCache implements Cache {
+
+    private static final int RECOVERY_CHUNK = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final String name;
+    private final ConsistentHashRing<Node> ring;
+    private final long retryAfterMillis;
+    private final int maxMissed;
+
+    public ShardedRedisCache(String name, ConsistentHashRing<Node> ring, long retryAfterMillis) {
+        this(name, ring, retryAfterMillis, 100000);
+    }
+
+    public ShardedRedisCache(String name, ConsistentHashRing<Node> ring, long retryAfterMillis, int maxMissed) {
+        this.name = name;
+        this.ring = ring;
+        this.retryAfterMillis = retryAfterMillis;
+        this.maxMissed = maxMissed;
+    }
+
+    public Node nodeOf(Object key) {
+        return ring.nodeOf(String.valueOf(key));
+    }
+
+    public List<Node> nodes() {
+        return ring.nodes();
+    }
+
+    /**
+     * @return whether the node can be used. once the retry delay of a failed node elapsed its recovery is started
+     * on a thread of its own, the node being used again when the recovery succeeded
+     */
+    public boolean available(Node node) {
+        if (node.downUntil == 0) return true;
+        if (System.currentTimeMillis() < node.downUntil || !node.recovering.compareAndSet(false, true)) return false;
+        Thread thread = new Thread(() -> recover(node), "cache-recovery");
+        thread.setDaemon(true);
+        thread.start();
+        return false;
+    }
+
+    public void failed(Node node, RuntimeException e) {
+        if (node.downUntil == 0) {
+            log.warn("cache node {} failed, skipping it for {} ms: {}", node.name, retryAfterMillis, e.getMessage());
+            node.downSince = System.currentTimeMillis();
+        }
+        node.downUntil = System.currentTimeMillis() + retryAfterMillis;
+    }
+
+    /**
+     * records the key of a write or evict the node dropped, to be deleted when it comes back
+     */
+    public void missed(Node node, Object key) {
+        if (node.overflowed) return;
+        if (node.missed.size() >= maxMissed) {
+            node.overflowed = true;
+            node.missed.clear();
+            log.warn("cache node {} missed more than {} writes, it is used again once its entries expired", node.name, maxMissed);
+            return;
+        }
+        node.missed.add(String.valueOf(key));
+    }
+
+    /**
+     * deletes the keys the node missed, a chunk at a time, or waits for its entries to expire if it missed too many
+     */
+    private void recover(Node node) {
+        try {
+            if (node.overflowed) {
+                Duration ttl = node.cache.getCacheConfiguration().getTtl();
+                long expired = ttl.isZero() ? Long.MAX_VALUE : node.downSince + ttl.toMillis();
+                if (System.currentTimeMillis() < expired) {
+                    node.downUntil = Math.min(expired, System.currentTimeMillis() + retryAfterMillis);
+                    if (ttl.isZero()) log.warn("cache node {} missed too many writes and its entries never expire, it is not used again", node.name);
+                    return;
+                }
+                node.overflowed = false;
+            } else {
+                deleteMissed(node);
+            }
+            node.downUntil = 0;
+            log.info("cache node {} is back", node.name);
+        } catch (RuntimeException e) {
+            failed(node, e);
+        } finally {
+            node.recovering.set(false);
+        }
+    }
+
+    private void deleteMissed(Node node) {
+        RedisCacheConfiguration configuration = node.cache.getCacheConfiguration();
+        while (!node.missed.isEmpty()) {
+            List<String> chunk = new ArrayList<>(RECOVERY_CHUNK);
+            for (String key : node.missed) {
+                chunk.add(key);
+                if (chunk.size() == RECOVERY_CHUNK) break;
+            }
+            byte[][] keys = new byte[chunk.size()][];
+            for (int i = 0; i < keys.length; i++) {
+                String key = configuration.usePrefix() ? configuration.getKeyPrefixFor(node.cache.getName()) + chunk.get(i) : chunk.get(i);
+                keys[i] = ByteUtils.getBytes(configuration.getKeySerializationPair().write(key));
+            }
+            node.redisTemplate.execute((RedisCallback<Long>) connection -> connection.del(keys));
+            node.missed.removeAll(chunk);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return ring;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        Node node = nodeOf(key);
+        if (!available(node)) return null;
+        try {
+            return node.cache.get(key);
+        } catch (RuntimeException e) {
+            failed(node, e);
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper value = get(key);
+        Object stored = value == null ? null : value.get();
+        if (stored != null && type != null && !type.isInstance(stored)) {
+            throw new IllegalStateException("cached value is not of required type [" + type.getName() + "]: " + stored);
+        }
+        return (T) stored;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper value = get(key);
+        if (value != null) return (T) value.get();
+        T loaded;
+        try {
+            loaded = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, loaded);
+        return loaded;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        Node node = nodeOf(key);
+        if (!available(node)) {
+            missed(node, key);
+            return;
+        }
+        try {
+            node.cache.put(key, value);
+        } catch (RuntimeException e) {
+            failed(node, e);
+            missed(node, key);
+        }
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        Node node = nodeOf(key);
+        if (!available(node)) {
+            missed(node, key);
+            return null;
+        }
+        try {
+            return node.cache.putIfAbsent(key, value);
+        } catch (RuntimeException e) {
+            failed(node, e);
+            missed(node, key);
+            return null;
+        }
+    }
+
+    /**
+     * a node which is down keeps the entry, it is deleted when the node comes back
+     */
+    @Override
+    public void evict(Object key) {
+        Node node = nodeOf(key);
+        if (!available(node)) {
+            missed(node, key);
+            return;
+        }
+        try {
+            node.cache.evict(key);
+        } catch (RuntimeException e) {
+            failed(node, e);
+            missed(node, key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Node node : nodes()) {
+            if (!available(node)) continue;
+            try {
+                node.cache.clear();
+            } catch (RuntimeException e) {
+                failed(node, e);
+            }
+        }
+    }
+
+    /**
+     * one redis node of the ring. lettuce multiplexes the commands of every thread over one shared connection per
+     * node, pipelining them, so the node keeps no pool of its own.
+     */
+    public static final class Node {
+        private final String name;
+        private final RedisCache cache;
+        private final StringRedisTemplate redisTemplate;
+        private volatile long downUntil;
+        private volatile long downSince;
+        private final Set<String> missed = ConcurrentHashMap.newKeySet();
+        private volatile boolean overflowed;
+        private final AtomicBoolean recovering = new AtomicBoolean();
+
+        public Node(String name, String cacheName, RedisConnectionFactory connectionFactory, RedisCacheConfiguration configuration) {
+            this.name = name;
+            this.cache = (RedisCache) RedisCacheManager.builder(connectionFactory).cacheDefaults(configuration).build().getCache(cacheName);
+            this.redisTemplate = new StringRedisTemplate(connectionFactory);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public RedisCache getCache() {
+            return cache;
+        }
+
+        public StringRedisTemplate getRedisTemplate() {
+            return redisTemplate;
+        }
+
+        /**
+         * @return number of keys whose writes the node missed and which are deleted when it comes back
+         */
+        public int getMissed() {
+            return missed.size();
+        }
+    }
+}
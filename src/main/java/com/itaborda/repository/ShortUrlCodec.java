@@ -0,0 +1,199 @@
+package com.itaborda.repository;
+
+import com.itaborda.model.ShortUrl;
+import com.itaborda.model.embedded.DateStat;
+import com.itaborda.model.embedded.Stats;
+import com.itaborda.model.embedded.VisitSummary;
+import com.itaborda.util.Base58;
+import com.itaborda.util.ClickDimension;
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+import org.bson.Document;
+import org.bson.types.Binary;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * compact document of a short url, see {@link CompactLinkStore}:
+ * _id  numeric key of the key code, the base58 part
+ * s    the 2 characters following the numeric key in the key code
+ * u    long url
+ * h    url key as 20 binary bytes
+ * c, a, e  created, last access and expire dates in epoch millis, utc
+ * n    visit counters, one array per {@link ClickDimension} in ordinal order, indexed by label ordinal, trailing
+ *      zeros dropped
+ * d    date stats flattened as [day of year, visits, day of year, visits, ...]
+ * m    visit summary as [version, total, max, min closed, days, current day, current day visits], -1 for none
+ * p    visits per month
+ * numbers are written as 32 bit integers whenever they fit. absent values are not written.
+ */
+public final class ShortUrlCodec {
+
+    public static final String ID = "_id";
+    public static final String SUFFIX = "s";
+    public static final String LONG_URL = "u";
+    public static final String URL_KEY = "h";
+    public static final String CREATED = "c";
+    public static final String LAST_ACCESS = "a";
+    public static final String EXPIRE = "e";
+    public static final String COUNTERS = "n";
+    public static final String DATE_STATS = "d";
+    public static final String SUMMARY = "m";
+    public static final String PER_MONTH = "p";
+
+    private static final int SUFFIX_LENGTH = 2;
+
+    private ShortUrlCodec() {
+    }
+
+    /**
+     * @return numeric key of the key code, null if the key code was not generated from a key
+     */
+    public static Long keyOf(String keyCode) {
+        if (keyCode == null || keyCode.length() <= SUFFIX_LENGTH || keyCode.length() > 10 + SUFFIX_LENGTH) return null;
+        String encoded = keyCode.substring(0, keyCode.length() - SUFFIX_LENGTH);
+        for (int i = 0; i < encoded.length(); i++) {
+            if (Base58.ALPHABET.indexOf(encoded.charAt(i)) < 0) return null;
+        }
+        return Base58.toBase10(encoded);
+    }
+
+    /**
+     * ids are the numeric key in 24 hex digits, so they keep the shape of object ids and sort like the keys
+     */
+    public static String idOf(long key) {
+        return String.format("%024x", key);
+    }
+
+    public static long keyOfId(String id) {
+        return Long.parseUnsignedLong(id.substring(Math.max(0, id.length() - 16)), 16);
+    }
+
+    public static long millis(LocalDateTime date) {
+        return date.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    public static Object urlKey(String urlKey) {
+        try {
+            return new Binary(Hex.decodeHex(urlKey));
+        } catch (DecoderException e) {
+            return urlKey;
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the key code was not generated from a key
+     */
+    public static Document toDocument(ShortUrl shortUrl) {
+        Long key = keyOf(shortUrl.getKeyCode());
+        if (key == null) throw new IllegalArgumentException("key code " + shortUrl.getKeyCode() + " is not a generated key");
+
+        Document document = new Document(ID, key);
+        document.put(SUFFIX, shortUrl.getKeyCode().substring(shortUrl.getKeyCode().length() - SUFFIX_LENGTH));
+        if (shortUrl.getLongUrl() != null) document.put(LONG_URL, shortUrl.getLongUrl());
+        if (shortUrl.getUrlKey() != null) document.put(URL_KEY, urlKey(shortUrl.getUrlKey()));
+        if (shortUrl.getCreatedDate() != null) document.put(CREATED, millis(shortUrl.getCreatedDate()));
+        if (shortUrl.getLastAccessDate() != null) document.put(LAST_ACCESS, millis(shortUrl.getLastAccessDate()));
+        if (shortUrl.getExpireDate() != null) document.put(EXPIRE, millis(shortUrl.getExpireDate()));
+
+        Stats stats = shortUrl.getStats();
+        if (stats == null) return document;
+        List<List<Object>> counters = new ArrayList<>(ClickDimension.values().length);
+        for (ClickDimension dimension : ClickDimension.values()) {
+            long[] values = stats.dimensionCounters(dimension);
+            int length = values.length;
+            while (length > 0 && values[length - 1] == 0) length--;
+            List<Object> packed = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) packed.add(number(values[i]));
+            counters.add(packed);
+        }
+        document.put(COUNTERS, counters);
+
+        List<Integer> dateStats = new ArrayList<>(stats.getDateStats().size() * 2);
+        for (DateStat dateStat : stats.getDateStats()) {
+            dateStats.add(dateStat.getDayOfYear());
+            dateStats.add(dateStat.getVisits());
+        }
+        document.put(DATE_STATS, dateStats);
+
+        VisitSummary summary = stats.getSummary();
+        if (summary != null) {
+            List<Object> packed = new ArrayList<>(7);
+            packed.add(number(summary.getVersion()));
+            packed.add(number(summary.getTotal()));
+            packed.add(number(summary.getMax()));
+            packed.add(number(summary.getMinClosed() == null ? -1 : summary.getMinClosed()));
+            packed.add(summary.getDays());
+            packed.add(summary.getCurrentDay() == null ? -1 : summary.getCurrentDay());
+            packed.add(summary.getCurrentDayVisits());
+            document.put(SUMMARY, packed);
+            List<Object> perMonth = new ArrayList<>(12);
+            for (long visits : summary.getPerMonth()) perMonth.add(number(visits));
+            document.put(PER_MONTH, perMonth);
+        }
+        return document;
+    }
+
+    public static ShortUrl fromDocument(Document document) {
+        long key = ((Number) document.get(ID)).longValue();
+        ShortUrl shortUrl = new ShortUrl(Base58.fromBase10(key) + document.getString(SUFFIX));
+        shortUrl.setId(idOf(key));
+        shortUrl.setLongUrl(document.getString(LONG_URL));
+        Object urlKey = document.get(URL_KEY);
+        if (urlKey instanceof Binary) shortUrl.setUrlKey(Hex.encodeHexString(((Binary) urlKey).getData()));
+        else if (urlKey != null) shortUrl.setUrlKey(urlKey.toString());
+        shortUrl.setCreatedDate(date(document.get(CREATED)));
+        shortUrl.setLastAccessDate(date(document.get(LAST_ACCESS)));
+        shortUrl.setExpireDate(date(document.get(EXPIRE)));
+
+        Stats stats = new Stats();
+        shortUrl.setStats(stats);
+        List<?> counters = (List<?>) document.get(COUNTERS);
+        if (counters != null) {
+            ClickDimension[] dimensions = ClickDimension.values();
+            for (int d = 0; d < counters.size() && d < dimensions.length; d++) {
+                List<?> packed = (List<?>) counters.get(d);
+                long[] values = new long[packed.size()];
+                for (int i = 0; i < values.length; i++) values[i] = ((Number) packed.get(i)).longValue();
+                stats.getCounters().put(dimensions[d].getName(), values);
+            }
+        }
+        List<?> dateStats = (List<?>) document.get(DATE_STATS);
+        if (dateStats != null) {
+            for (int i = 0; i + 1 < dateStats.size(); i += 2) {
+                stats.getDateStats().add(new DateStat(((Number) dateStats.get(i)).intValue(), ((Number) dateStats.get(i + 1)).intValue()));
+            }
+        }
+        List<?> packed = (List<?>) document.get(SUMMARY);
+        if (packed != null) {
+            VisitSummary summary = new VisitSummary();
+            summary.setVersion(((Number) packed.get(0)).longValue());
+            summary.setTotal(((Number) packed.get(1)).longValue());
+            summary.setMax(((Number) packed.get(2)).longValue());
+            long minClosed = ((Number) packed.get(3)).longValue();
+            summary.setMinClosed(minClosed < 0 ? null : minClosed);
+            summary.setDays(((Number) packed.get(4)).intValue());
+            int currentDay = ((Number) packed.get(5)).intValue();
+            summary.setCurrentDay(currentDay < 0 ? null : currentDay);
+            summary.setCurrentDayVisits(((Number) packed.get(6)).intValue());
+            List<?> perMonth = (List<?>) document.get(PER_MONTH);
+            for (int i = 0; perMonth != null && i < perMonth.size() && i < 12; i++) {
+                summary.getPerMonth()[i] = ((Number) perMonth.get(i)).longValue();
+            }
+            stats.setSummary(summary);
+        }
+        return shortUrl;
+    }
+
+    private static Object number(long value) {
+        return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE ? (Object) (int) value : (Object) value;
+    }
+
+    private static LocalDateTime date(Object millis) {
+        return millis == null ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(((Number) millis).longValue()), ZoneOffset.UTC);
+    }
+}
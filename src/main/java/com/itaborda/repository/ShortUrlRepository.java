@@ -1,19 +1,28 @@
 package com.itaborda.repository;
 
 import com.itaborda.model.ShortUrl;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
-public interface ShortUrlRepository extends MongoRepository<ShortUrl, String> {
+public interface ShortUrlRepository extends MongoRepository<ShortUrl, String>, ShortUrlRepositoryCustom {
 
 	@Cacheable(value = ShortUrl.CACHE_NAME)
 	ShortUrl findByKeyCode(String key);
 
-	ShortUrl findByLongUrl(String url);
+	List<ShortUrl> findByKeyCodeIn(Collection<String> keys);
+
+	List<ShortUrl> findByLongUrlIn(Collection<String> urls);
 
 	@CachePut(value = ShortUrl.CACHE_NAME, key = "#shortUrl.keyCode")
 	ShortUrl save(ShortUrl shortUrl);
+
+	@CacheEvict(value = ShortUrl.CACHE_NAME, key = "#shortUrl.keyCode")
+	void delete(ShortUrl shortUrl);
 }
@@ -0,0 +1,32 @@
+package com.itaborda.repository;
+
+import com.itaborda.model.ShortUrl;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.data.util.CloseableIterator;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ShortUrl queries which are not expressible as derived repository methods.
+ */
+public interface ShortUrlRepositoryCustom {
+
+    CloseableIterator<ShortUrl> streamForExport(LocalDateTime createdFrom, LocalDateTime createdTo, String afterId, int batchSize);
+
+    CloseableIterator<ShortUrl> streamNotAccessedSince(LocalDateTime before, int batchSize);
+
+    CloseableIterator<ShortUrl> streamAccessedSince(LocalDateTime since, int batchSize);
+
+    Map<Integer, String> insertUnordered(List<ShortUrl> shortUrls);
+
+    void deleteByIds(Collection<String> ids);
+
+    @CachePut(value = ShortUrl.CACHE_NAME, key = "#result.keyCode")
+    ShortUrl insertIfAbsent(ShortUrl shortUrl);
+
+    @CachePut(value = ShortUrl.CACHE_NAME, key = "#result.keyCode")
+    ShortUrl renew(ShortUrl shortUrl, LocalDateTime expireDate);
+}
@@ -0,0 +1,155 @@
+package com.itaborda.repository;
+
+import com.itaborda.model.ShortUrl;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * implementation of {@link ShortUrlRepositoryCustom}, picked up by spring data as a fragment of {@link ShortUrlRepository}
+ */
+public class ShortUrlRepositoryImpl implements ShortUrlRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    public ShortUrlRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * opens a cursor over the short urls ordered by id, so an interrupted export can be resumed from the
+     * last exported id. documents are fetched {@code batchSize} at a time, the caller must close the iterator.
+     *
+     * @param createdFrom   inclusive lower bound of the created date, ignored if null
+     * @param createdTo     exclusive upper bound of the created date, ignored if null
+     * @param afterId       id of the last already exported short url, ignored if null
+     * @param batchSize     number of documents fetched per round trip
+     * @return cursor over the matching short urls
+     */
+    @Override
+    public CloseableIterator<ShortUrl> streamForExport(LocalDateTime createdFrom, LocalDateTime createdTo, String afterId, int batchSize) {
+        Query query = new Query();
+        if (createdFrom != null || createdTo != null) {
+            Criteria created = Criteria.where("createdDate");
+            if (createdFrom != null) created.gte(createdFrom);
+            if (createdTo != null) created.lt(createdTo);
+            query.addCriteria(created);
+        }
+        if (afterId != null) query.addCriteria(Criteria.where("id").gt(new ObjectId(afterId)));
+
+        query.with(Sort.by(Sort.Direction.ASC, "id")).cursorBatchSize(batchSize);
+        return mongoTemplate.stream(query, ShortUrl.class);
+    }
+
+    /**
+     * opens a cursor over the short urls last visited before the date, or never visited and created before it.
+     * the cursor walks the id index and filters on the server, the archived short urls being most of the ones
+     * it reads.
+     *
+     * @param before    exclusive upper bound of the last access date
+     * @param batchSize number of documents fetched per round trip
+     * @return cursor over the matching short urls, ordered by id
+     */
+    @Override
+    public CloseableIterator<ShortUrl> streamNotAccessedSince(LocalDateTime before, int batchSize) {
+        Query query = Query.query(new Criteria().orOperator(
+                Criteria.where("lastAccessDate").lt(before),
+                new Criteria().andOperator(Criteria.where("lastAccessDate").is(null), Criteria.where("createdDate").lt(before))));
+        query.with(Sort.by(Sort.Direction.ASC, "id")).cursorBatchSize(batchSize);
+        return mongoTemplate.stream(query, ShortUrl.class);
+    }
+
+    /**
+     * opens a cursor over the short urls last visited since the date. it walks the lastAccessDate index, so it is
+     * not sorted by id: the recently accessed short urls are a small part of the collection and sorting them by id
+     * would walk the id index over the whole collection instead.
+     *
+     * @param since     inclusive lower bound of the last access date
+     * @param batchSize number of documents fetched per round trip
+     * @return cursor over the matching short urls, in no particular order
+     */
+    @Override
+    public CloseableIterator<ShortUrl> streamAccessedSince(LocalDateTime since, int batchSize) {
+        Query query = Query.query(Criteria.where("lastAccessDate").gte(since)).cursorBatchSize(batchSize);
+        return mongoTemplate.stream(query, ShortUrl.class);
+    }
+
+    /**
+     * inserts the short urls with one unordered bulk write, a failing document does not stop the others.
+     *
+     * @param shortUrls short urls to insert
+     * @return error message of every document which was not inserted, by its position in {@code shortUrls}
+     */
+    @Override
+    public Map<Integer, String> insertUnordered(List<ShortUrl> shortUrls) {
+        Map<Integer, String> errors = new HashMap<>();
+        if (shortUrls.isEmpty()) return errors;
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ShortUrl.class).insert(shortUrls).execute();
+        } catch (BulkOperationException e) {
+            e.getErrors().forEach(error -> errors.put(error.getIndex(), error.getMessage()));
+        }
+        return errors;
+    }
+
+    /**
+     * a single atomic upsert on the unique url key: the short url is inserted if no short url exists for its
+     * url key, otherwise the existing one is returned untouched. two concurrent calls for the same url both
+     * missing may let one of them fail with a duplicate key error, retrying it returns the other one's insert.
+     *
+     * @param shortUrl short url to insert, with its url key
+     * @return the inserted short url, or the already existing one whose key code differs
+     */
+    @Override
+    public ShortUrl insertIfAbsent(ShortUrl shortUrl) {
+        Document document = new Document();
+        mongoTemplate.getConverter().write(shortUrl, document);
+        document.remove("_id");
+        document.remove(mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(ShortUrl.class)
+                .getRequiredPersistentProperty("urlKey").getFieldName());
+
+        Update update = new Update();
+        document.forEach(update::setOnInsert);
+        return mongoTemplate.findAndModify(Query.query(Criteria.where("urlKey").is(shortUrl.getUrlKey())), update,
+                FindAndModifyOptions.options().upsert(true).returnNew(true), ShortUrl.class);
+    }
+
+    /**
+     * extends an expired short url, the url key being unique an expired short url is given a new life
+     * instead of being shortened again
+     *
+     * @param shortUrl   expired short url
+     * @param expireDate new expire date
+     * @return the renewed short url, or its current state if it was renewed concurrently
+     */
+    @Override
+    public ShortUrl renew(ShortUrl shortUrl, LocalDateTime expireDate) {
+        Query query = Query.query(Criteria.where("id").is(shortUrl.getId()).and("expireDate").lte(LocalDateTime.now()));
+        ShortUrl renewed = mongoTemplate.findAndModify(query, new Update().set("expireDate", expireDate),
+                FindAndModifyOptions.options().returnNew(true), ShortUrl.class);
+        return renewed != null ? renewed : mongoTemplate.findById(shortUrl.getId(), ShortUrl.class);
+    }
+
+    /**
+     * removes the short urls in a single query, the caller evicts their key codes from the cache
+     */
+    @Override
+    public void deleteByIds(Collection<String> ids) {
+        if (ids.isEmpty()) return;
+        mongoTemplate.remove(Query.query(Criteria.where("id").in(ids)), ShortUrl.class);
+    }
+}
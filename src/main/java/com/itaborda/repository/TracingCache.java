@@ -0,0 +1,98 @@
+package com.itaborda.repository;
+
+import com.itaborda.util.Trace;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.cache.Cache;
+
+import java.util.concurrent.Callable;
+
+/**
+ * cache opening a span around every operation of the cache it decorates, see {@link Trace}, and counting the hits
+ * and misses of its lookups. code reading the decorated cache directly reports its lookups with {@link #count}.
+ */
+public class TracingCache implements Cache {
+
+    private final Cache delegate;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public TracingCache(Cache delegate) {
+        this.delegate = delegate;
+        this.hits = Counter.builder("shortify.cache.requests").description("lookups of a short url per tier")
+                .tags("tier", "cache", "cache", delegate.getName(), "result", "hit").register(Metrics.globalRegistry);
+        this.misses = Counter.builder("shortify.cache.requests").description("lookups of a short url per tier")
+                .tags("tier", "cache", "cache", delegate.getName(), "result", "miss").register(Metrics.globalRegistry);
+    }
+
+    public void count(int hits, int misses) {
+        this.hits.increment(hits);
+        this.misses.increment(misses);
+    }
+
+    public Cache getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        try (Trace.Span span = Trace.span("cache.get")) {
+            ValueWrapper value = delegate.get(key);
+            (value == null ? misses : hits).increment();
+            return value;
+        }
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        try (Trace.Span span = Trace.span("cache.get")) {
+            T value = delegate.get(key, type);
+            (value == null ? misses : hits).increment();
+            return value;
+        }
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        try (Trace.Span span = Trace.span("cache.get")) {
+            return delegate.get(key, valueLoader);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        try (Trace.Span span = Trace.span("cache.put")) {
+            delegate.put(key, value);
+        }
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        try (Trace.Span span = Trace.span("cache.putIfAbsent")) {
+            return delegate.putIfAbsent(key, value);
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        try (Trace.Span span = Trace.span("cache.evict")) {
+            delegate.evict(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+}
@@ -0,0 +1,34 @@
+package com.itaborda.repository;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * hands out the caches of the decorated cache manager as {@link TracingCache}s
+ */
+public class TracingCacheManager implements CacheManager {
+
+    private final CacheManager delegate;
+    private final Map<String, TracingCache> caches = new ConcurrentHashMap<>();
+
+    public TracingCacheManager(CacheManager delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        TracingCache cache = caches.get(name);
+        if (cache != null) return cache;
+        Cache target = delegate.getCache(name);
+        return target == null ? null : caches.computeIfAbsent(name, n -> new TracingCache(target));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return delegate.getCacheNames();
+    }
+}
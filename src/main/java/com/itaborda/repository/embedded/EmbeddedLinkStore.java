@@ -0,0 +1,598 @@
+package com.itaborda.repository.embedded;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itaborda.model.ShortUrl;
+import com.itaborda.repository.LinkStore;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * {@link LinkStore} running inside the service, for edge nodes and tests without mongo.
+ * short urls are appended to a log of memory-mapped segment files, every save appending the whole short url again.
+ * two off-heap indexes map the key code and the url key to the location of the latest record, they are rebuilt on
+ * startup by replaying the log, which stops at the first torn or corrupted record so a crash loses at most the
+ * record being written. records are:
+ * [int payload length][int crc32 of the payload][short key code length][key code][short url key length][url key][json]
+ * the length is written last, a zero length marking the end of a segment. a record without json is the tombstone
+ * of a deleted short url.
+ * superseded records are garbage, a sealed segment whose garbage ratio reaches the threshold is compacted in the
+ * background: its live records are appended again and the file is deleted. tombstones are appended again too,
+ * unless no older segment is left holding records they delete.
+ * writes go to the page cache and survive a crash of the process, syncing every write is optional.
+ */
+@Repository
+@Profile("embedded")
+public class EmbeddedLinkStore implements LinkStore {
+
+    private static final int HEADER = 8;
+    private static final Pattern SEGMENT_FILE = Pattern.compile("links-(\\d+)\\.log");
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final ObjectMapper objectMapper;
+    private final Path dir;
+    private final int segmentSize;
+    private final double compactionThreshold;
+    private final boolean sync;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final OffHeapIndex byKeyCode;
+    private final OffHeapIndex byUrlKey;
+    private Segment active;
+
+    public EmbeddedLinkStore(ObjectMapper objectMapper,
+                             @Value("${shortify.embedded.dir:data}") String dir,
+                             @Value("${shortify.embedded.segment-size:67108864}") int segmentSize,
+                             @Value("${shortify.embedded.index-capacity:65536}") int indexCapacity,
+                             @Value("${shortify.embedded.compaction-threshold:0.5}") double compactionThreshold,
+                             @Value("${shortify.embedded.sync:false}") boolean sync) throws IOException {
+        this.objectMapper = objectMapper.copy().findAndRegisterModules()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.dir = Paths.get(dir).toAbsolutePath();
+        this.segmentSize = segmentSize;
+        this.compactionThreshold = compactionThreshold;
+        this.sync = sync;
+        this.byKeyCode = new OffHeapIndex(indexCapacity);
+        this.byUrlKey = new OffHeapIndex(indexCapacity);
+        Files.createDirectories(this.dir);
+        recover();
+    }
+
+    @Override
+    public ShortUrl findByKeyCode(String keyCode) {
+        if (keyCode == null) return null;
+        lock.readLock().lock();
+        try {
+            long location = locate(keyCode);
+            return location == 0 ? null : read(location);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ShortUrl> findByKeyCodeIn(Collection<String> keyCodes) {
+        List<ShortUrl> shortUrls = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (String keyCode : keyCodes) {
+                long location = keyCode == null ? 0 : locate(keyCode);
+                if (location != 0) shortUrls.add(read(location));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return shortUrls;
+    }
+
+    @Override
+    public List<ShortUrl> findByLongUrlIn(Collection<String> urls) {
+        List<ShortUrl> shortUrls = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (String url : urls) {
+                String urlKey = ShortUrl.urlKeyOf(url);
+                long location = byUrlKey.get(OffHeapIndex.hash(urlKey), l -> urlKey.equals(urlKeyAt(l)));
+                if (location == 0) continue;
+                ShortUrl shortUrl = read(location);
+                if (url.equals(shortUrl.getLongUrl())) shortUrls.add(shortUrl);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return shortUrls;
+    }
+
+    @Override
+    public ShortUrl save(ShortUrl shortUrl) {
+        lock.writeLock().lock();
+        try {
+            if (shortUrl.getId() == null) shortUrl.setId(new ObjectId().toHexString());
+            write(shortUrl);
+            return shortUrl;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * like mongo, the url key is the only unique field
+     */
+    @Override
+    public Map<Integer, String> insertUnordered(List<ShortUrl> shortUrls) {
+        Map<Integer, String> errors = new HashMap<>();
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < shortUrls.size(); i++) {
+                ShortUrl shortUrl = shortUrls.get(i);
+                if (shortUrl.getUrlKey() != null && locateUrlKey(shortUrl.getUrlKey()) != 0) {
+                    errors.put(i, "duplicate key: urlKey " + shortUrl.getUrlKey());
+                    continue;
+                }
+                if (shortUrl.getId() == null) shortUrl.setId(new ObjectId().toHexString());
+                write(shortUrl);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return errors;
+    }
+
+    @Override
+    public ShortUrl insertIfAbsent(ShortUrl shortUrl) {
+        lock.writeLock().lock();
+        try {
+            long location = locateUrlKey(shortUrl.getUrlKey());
+            if (location != 0) return read(location);
+            shortUrl.setId(new ObjectId().toHexString());
+            write(shortUrl);
+            return shortUrl;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public ShortUrl renew(ShortUrl shortUrl, LocalDateTime expireDate) {
+        lock.writeLock().lock();
+        try {
+            long location = locate(shortUrl.getKeyCode());
+            if (location == 0) return null;
+            ShortUrl current = read(location);
+            if (current.getExpireDate() != null && !current.getExpireDate().isAfter(LocalDateTime.now())) {
+                current.setExpireDate(expireDate);
+                write(current);
+            }
+            return current;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * appends a tombstone, so replaying the log does not bring the short url back
+     */
+    @Override
+    public void delete(ShortUrl shortUrl) {
+        lock.writeLock().lock();
+        try {
+            long location = locate(shortUrl.getKeyCode());
+            if (location == 0) return;
+            ShortUrl tombstone = new ShortUrl(shortUrl.getKeyCode());
+            tombstone.setUrlKey(urlKeyAt(location));
+            append(payload(tombstone, new byte[0]));
+            unindex(tombstone.getKeyCode(), tombstone.getUrlKey());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * appends the tombstones under a single lock
+     */
+    @Override
+    public void deleteAll(List<ShortUrl> shortUrls) {
+        lock.writeLock().lock();
+        try {
+            for (ShortUrl shortUrl : shortUrls) delete(shortUrl);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public CloseableIterator<ShortUrl> streamForExport(LocalDateTime createdFrom, LocalDateTime createdTo, String afterId, int batchSize) {
+        return stream(shortUrl -> {
+            LocalDateTime created = shortUrl.getCreatedDate();
+            if (createdFrom != null && (created == null || created.isBefore(createdFrom))) return false;
+            if (createdTo != null && (created == null || !created.isBefore(createdTo))) return false;
+            return afterId == null || shortUrl.getId().compareTo(afterId) > 0;
+        });
+    }
+
+    @Override
+    public CloseableIterator<ShortUrl> streamNotAccessedSince(LocalDateTime before, int batchSize) {
+        return stream(shortUrl -> {
+            LocalDateTime accessed = shortUrl.getLastAccessDate() != null ? shortUrl.getLastAccessDate() : shortUrl.getCreatedDate();
+            return accessed != null && accessed.isBefore(before);
+        });
+    }
+
+    @Override
+    public CloseableIterator<ShortUrl> streamAccessedSince(LocalDateTime since, int batchSize) {
+        return stream(shortUrl -> shortUrl.getLastAccessDate() != null && !shortUrl.getLastAccessDate().isBefore(since));
+    }
+
+    /**
+     * the matching short urls are materialized and sorted in memory, which suits the size of embedded stores
+     */
+    private CloseableIterator<ShortUrl> stream(Predicate<ShortUrl> filter) {
+        List<ShortUrl> shortUrls = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            byKeyCode.forEach(location -> {
+                ShortUrl shortUrl = read(location);
+                if (filter.test(shortUrl)) shortUrls.add(shortUrl);
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        shortUrls.sort(Comparator.comparing(ShortUrl::getId));
+        Iterator<ShortUrl> iterator = shortUrls.iterator();
+        return new CloseableIterator<ShortUrl>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public ShortUrl next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * compacts the sealed segments with enough garbage, one record at a time so reads and writes go on meanwhile
+     */
+    @Scheduled(fixedDelayString = "${shortify.embedded.compaction-interval:60000}")
+    public void compact() {
+        List<Segment> candidates = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                if (segment != active && segment.garbageRatio() >= compactionThreshold) candidates.add(segment);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (Segment segment : candidates) compact(segment);
+    }
+
+    private void compact(Segment segment) {
+        int position = 0;
+        while (position < segment.position) {
+            lock.writeLock().lock();
+            try {
+                long location = location(segment.id, position);
+                int length = segment.buffer.getInt(position);
+                String keyCode = keyCodeAt(location);
+                if (isTombstone(location)) {
+                    if (segments.firstKey() != segment.id) {
+                        byte[] payload = new byte[length];
+                        read(segment, position + HEADER, payload);
+                        append(payload);
+                    }
+                } else if (byKeyCode.get(OffHeapIndex.hash(keyCode), l -> l == location) == location) {
+                    byte[] payload = new byte[length];
+                    read(segment, position + HEADER, payload);
+                    long moved = append(payload);
+                    segmentOf(moved).liveBytes += HEADER + length;
+                    byKeyCode.replace(OffHeapIndex.hash(keyCode), location, moved);
+                    String urlKey = urlKeyAt(moved);
+                    if (urlKey != null) byUrlKey.replace(OffHeapIndex.hash(urlKey), location, moved);
+                    segment.liveBytes -= HEADER + length;
+                }
+                position += HEADER + length;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            segments.remove(segment.id);
+            Files.delete(segment.file);
+            log.info("compacted embedded log segment {}", segment.file);
+        } catch (IOException e) {
+            log.warn("could not delete compacted segment " + segment.file, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) segment.buffer.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * number of short urls in the store
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byKeyCode.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * number of segment files of the log
+     */
+    public int segmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void recover() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "links-*.log")) {
+            for (Path file : files) {
+                Matcher matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    int id = Integer.parseInt(matcher.group(1));
+                    segments.put(id, Segment.map(id, file, (int) Files.size(file)));
+                }
+            }
+        }
+
+        long records = 0;
+        for (Segment segment : segments.values()) {
+            int position = 0;
+            while (position + HEADER <= segment.capacity()) {
+                int length = segment.buffer.getInt(position);
+                if (length == 0) break;
+                if (length < 0 || position + HEADER + length > segment.capacity() || !checksumMatches(segment, position, length)) {
+                    log.warn("discarding torn record at {} of {}", position, segment.file);
+                    for (int i = position; i < segment.capacity(); i++) segment.buffer.put(i, (byte) 0);
+                    break;
+                }
+                long location = location(segment.id, position);
+                if (isTombstone(location)) unindex(keyCodeAt(location), urlKeyAt(location));
+                else index(location, keyCodeAt(location), urlKeyAt(location), HEADER + length);
+                position += HEADER + length;
+                records++;
+            }
+            segment.position = position;
+        }
+
+        active = segments.isEmpty() ? createSegment(1, segmentSize) : segments.lastEntry().getValue();
+        log.info("embedded link store {} recovered {} records, {} short urls", dir, records, byKeyCode.size());
+    }
+
+    private void write(ShortUrl shortUrl) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(shortUrl);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] payload = payload(shortUrl, json);
+        long location = append(payload);
+        index(location, shortUrl.getKeyCode(), shortUrl.getUrlKey(), HEADER + payload.length);
+    }
+
+    private static byte[] payload(ShortUrl shortUrl, byte[] json) {
+        byte[] keyCode = shortUrl.getKeyCode().getBytes(StandardCharsets.UTF_8);
+        byte[] urlKey = shortUrl.getUrlKey() == null ? new byte[0] : shortUrl.getUrlKey().getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(4 + keyCode.length + urlKey.length + json.length)
+                .putShort((short) keyCode.length).put(keyCode)
+                .putShort((short) urlKey.length).put(urlKey)
+                .put(json).array();
+    }
+
+    /**
+     * points the indexes at the record, the record it supersedes becomes garbage
+     */
+    private void index(long location, String keyCode, String urlKey, int size) {
+        segmentOf(location).liveBytes += size;
+        long previous = byKeyCode.put(OffHeapIndex.hash(keyCode), location, l -> keyCode.equals(keyCodeAt(l)));
+        if (previous != 0) {
+            segmentOf(previous).liveBytes -= HEADER + segmentOf(previous).buffer.getInt(offsetOf(previous));
+        }
+        if (urlKey != null) byUrlKey.put(OffHeapIndex.hash(urlKey), location, l -> urlKey.equals(urlKeyAt(l)));
+    }
+
+    /**
+     * removes the short url from the indexes, the record it had becomes garbage
+     */
+    private void unindex(String keyCode, String urlKey) {
+        long previous = byKeyCode.remove(OffHeapIndex.hash(keyCode), l -> keyCode.equals(keyCodeAt(l)));
+        if (previous != 0) {
+            segmentOf(previous).liveBytes -= HEADER + segmentOf(previous).buffer.getInt(offsetOf(previous));
+        }
+        if (urlKey != null) byUrlKey.remove(OffHeapIndex.hash(urlKey), l -> urlKey.equals(urlKeyAt(l)));
+    }
+
+    private boolean isTombstone(long location) {
+        Segment segment = segmentOf(location);
+        int position = offsetOf(location);
+        int keyCodeLength = segment.buffer.getShort(position + HEADER);
+        int urlKeyLength = segment.buffer.getShort(position + HEADER + 2 + keyCodeLength);
+        return segment.buffer.getInt(position) == 4 + keyCodeLength + urlKeyLength;
+    }
+
+    private long append(byte[] payload) {
+        if (active.position + HEADER + payload.length > active.capacity()) {
+            active = createSegment(active.id + 1, Math.max(segmentSize, HEADER + payload.length));
+        }
+        int position = active.position;
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buffer = active.buffer.duplicate();
+        buffer.position(position + HEADER);
+        buffer.put(payload);
+        active.buffer.putInt(position + 4, (int) crc.getValue());
+        active.buffer.putInt(position, payload.length);
+        active.position = position + HEADER + payload.length;
+        if (sync) active.buffer.force();
+        return location(active.id, position);
+    }
+
+    private Segment createSegment(int id, int capacity) {
+        try {
+            Segment segment = Segment.map(id, dir.resolve("links-" + id + ".log"), capacity);
+            segments.put(id, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long locate(String keyCode) {
+        return byKeyCode.get(OffHeapIndex.hash(keyCode), l -> keyCode.equals(keyCodeAt(l)));
+    }
+
+    private long locateUrlKey(String urlKey) {
+        return byUrlKey.get(OffHeapIndex.hash(urlKey), l -> urlKey.equals(urlKeyAt(l)));
+    }
+
+    private ShortUrl read(long location) {
+        Segment segment = segmentOf(location);
+        int position = offsetOf(location);
+        int length = segment.buffer.getInt(position);
+        int keyCodeLength = segment.buffer.getShort(position + HEADER);
+        int urlKeyLength = segment.buffer.getShort(position + HEADER + 2 + keyCodeLength);
+        int jsonStart = HEADER + 4 + keyCodeLength + urlKeyLength;
+        byte[] json = new byte[length - jsonStart + HEADER];
+        read(segment, position + jsonStart, json);
+        try {
+            return objectMapper.readValue(json, ShortUrl.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String keyCodeAt(long location) {
+        Segment segment = segmentOf(location);
+        int position = offsetOf(location) + HEADER;
+        return string(segment, position + 2, segment.buffer.getShort(position));
+    }
+
+    private String urlKeyAt(long location) {
+        Segment segment = segmentOf(location);
+        int position = offsetOf(location) + HEADER;
+        position += 2 + segment.buffer.getShort(position);
+        int length = segment.buffer.getShort(position);
+        return length == 0 ? null : string(segment, position + 2, length);
+    }
+
+    private static String string(Segment segment, int position, int length) {
+        byte[] bytes = new byte[length];
+        read(segment, position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void read(Segment segment, int position, byte[] target) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(position);
+        buffer.get(target);
+    }
+
+    private static boolean checksumMatches(Segment segment, int position, int length) {
+        byte[] payload = new byte[length];
+        read(segment, position + HEADER, payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue() == segment.buffer.getInt(position + 4);
+    }
+
+    private Segment segmentOf(long location) {
+        return segments.get((int) (location >>> 32));
+    }
+
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+
+    private static long location(int segmentId, int position) {
+        return ((long) segmentId << 32) | position;
+    }
+
+    private static final class Segment {
+        private final int id;
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        private int position;
+        private long liveBytes;
+
+        private Segment(int id, Path file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        static Segment map(int id, Path file, int capacity) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return new Segment(id, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+            }
+        }
+
+        int capacity() {
+            return buffer.capacity();
+        }
+
+        double garbageRatio() {
+            return position == 0 ? 0 : 1 - (double) liveBytes / position;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.itaborda.repository.embedded;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itaborda.model.AllocatedRangePartitionStatus;
+import com.itaborda.model.ImportCheckpoint;
+import com.itaborda.model.WorkerStatus;
+import com.itaborda.repository.CheckpointStore;
+import com.itaborda.repository.KeyRangeStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link KeyRangeStore} and {@link CheckpointStore} of the embedded profile. the documents are few and small, each
+ * one is a json file replaced atomically on save.
+ * optimistic locking as with mongo: every read document remembers the revision it was read at, saving it fails
+ * if the file was saved since.
+ */
+@Repository
+@Profile("embedded")
+public class EmbeddedMetadataStore implements KeyRangeStore, CheckpointStore {
+
+    private static final String RANGE_PARTITION_STATUS = "range_partition_status";
+
+    private final ObjectMapper objectMapper;
+    private final Path dir;
+    private final Map<String, Long> revisions = new ConcurrentHashMap<>();
+    private final Map<Object, Long> readRevisions = Collections.synchronizedMap(new WeakHashMap<>());
+
+    public EmbeddedMetadataStore(ObjectMapper objectMapper, @Value("${shortify.embedded.dir:data}") String dir) throws IOException {
+        this.objectMapper = objectMapper.copy().findAndRegisterModules()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.dir = Paths.get(dir).toAbsolutePath().resolve("meta");
+        Files.createDirectories(this.dir);
+    }
+
+    @Override
+    public WorkerStatus findWorkerStatus(String workerId) {
+        return read("worker_status-" + workerId, WorkerStatus.class);
+    }
+
+    @Override
+    public WorkerStatus saveWorkerStatus(WorkerStatus workerStatus) {
+        if (workerStatus.getId() == null) workerStatus.setId(workerStatus.getWorkerId());
+        return write("worker_status-" + workerStatus.getWorkerId(), workerStatus);
+    }
+
+    @Override
+    public AllocatedRangePartitionStatus findRangePartitionStatus() {
+        return read(RANGE_PARTITION_STATUS, AllocatedRangePartitionStatus.class);
+    }
+
+    @Override
+    public AllocatedRangePartitionStatus saveRangePartitionStatus(AllocatedRangePartitionStatus status) {
+        if (status.getId() == null) status.setId(RANGE_PARTITION_STATUS);
+        return write(RANGE_PARTITION_STATUS, status);
+    }
+
+    @Override
+    public Optional<ImportCheckpoint> findCheckpoint(String importId) {
+        return Optional.ofNullable(read("import_checkpoint-" + importId, ImportCheckpoint.class));
+    }
+
+    @Override
+    public ImportCheckpoint saveCheckpoint(ImportCheckpoint checkpoint) {
+        return write("import_checkpoint-" + checkpoint.getId(), checkpoint);
+    }
+
+    private synchronized <T> T read(String name, Class<T> type) {
+        Path file = dir.resolve(name + ".json");
+        if (!Files.exists(file)) return null;
+        try {
+            T document = objectMapper.readValue(file.toFile(), type);
+            readRevisions.put(document, revisions.getOrDefault(name, 0L));
+            return document;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized <T> T write(String name, T document) {
+        Long readRevision = readRevisions.get(document);
+        long revision = revisions.getOrDefault(name, 0L);
+        if (readRevision != null ? readRevision != revision : Files.exists(dir.resolve(name + ".json"))) {
+            throw new OptimisticLockingFailureException(name + " was saved concurrently");
+        }
+        try {
+            Path temporary = dir.resolve(name + ".json.tmp");
+            objectMapper.writeValue(temporary.toFile(), document);
+            Files.move(temporary, dir.resolve(name + ".json"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        revisions.put(name, revision + 1);
+        readRevisions.put(document, revision + 1);
+        return document;
+    }
+}
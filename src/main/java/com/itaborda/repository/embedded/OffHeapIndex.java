@@ -0,0 +1,142 @@
+package com.itaborda.repository.embedded;
+
+import java.nio.ByteBuffer;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * open addressing hash table held in a direct buffer, mapping the 64 bit hash of a key to the location of its
+ * latest record in the log. slots are 16 bytes: the hash, then the location, 0 marking an empty slot.
+ * the key itself is not stored, entries with the same hash are told apart by reading the key at the location,
+ * which the caller does in the {@code matches} predicates. not thread safe, guarded by the store's lock.
+ */
+class OffHeapIndex {
+
+    private static final int SLOT = 16;
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    private ByteBuffer slots;
+    private int mask;
+    private int size;
+
+    OffHeapIndex(int capacity) {
+        int slotCount = Integer.highestOneBit(Math.max(16, Math.min(capacity, MAX_CAPACITY) - 1) << 1);
+        this.slots = ByteBuffer.allocateDirect(slotCount * SLOT);
+        this.mask = slotCount - 1;
+    }
+
+    /**
+     * @return location of the key, 0 if absent
+     */
+    long get(long hash, LongPredicate matches) {
+        for (int slot = slotOf(hash); ; slot = (slot + 1) & mask) {
+            long location = slots.getLong(slot * SLOT + 8);
+            if (location == 0) return 0;
+            if (slots.getLong(slot * SLOT) == hash && matches.test(location)) return location;
+        }
+    }
+
+    /**
+     * @return previous location of the key, 0 if it was absent
+     */
+    long put(long hash, long location, LongPredicate matches) {
+        if ((size + 1) * 4L > (mask + 1) * 3L) grow();
+        for (int slot = slotOf(hash); ; slot = (slot + 1) & mask) {
+            long current = slots.getLong(slot * SLOT + 8);
+            if (current == 0) {
+                slots.putLong(slot * SLOT, hash).putLong(slot * SLOT + 8, location);
+                size++;
+                return 0;
+            }
+            if (slots.getLong(slot * SLOT) == hash && matches.test(current)) {
+                slots.putLong(slot * SLOT + 8, location);
+                return current;
+            }
+        }
+    }
+
+    /**
+     * moves the entry pointing at {@code expected} to {@code location}, nothing happens if there is none
+     */
+    void replace(long hash, long expected, long location) {
+        for (int slot = slotOf(hash); ; slot = (slot + 1) & mask) {
+            long current = slots.getLong(slot * SLOT + 8);
+            if (current == 0) return;
+            if (current == expected && slots.getLong(slot * SLOT) == hash) {
+                slots.putLong(slot * SLOT + 8, location);
+                return;
+            }
+        }
+    }
+
+    /**
+     * removes the key, shifting back the entries probed after it so no lookup stops at the freed slot
+     *
+     * @return location the key had, 0 if it was absent
+     */
+    long remove(long hash, LongPredicate matches) {
+        for (int slot = slotOf(hash); ; slot = (slot + 1) & mask) {
+            long location = slots.getLong(slot * SLOT + 8);
+            if (location == 0) return 0;
+            if (slots.getLong(slot * SLOT) != hash || !matches.test(location)) continue;
+
+            int hole = slot;
+            for (int next = (hole + 1) & mask; slots.getLong(next * SLOT + 8) != 0; next = (next + 1) & mask) {
+                long nextHash = slots.getLong(next * SLOT);
+                if (((next - slotOf(nextHash)) & mask) >= ((next - hole) & mask)) {
+                    slots.putLong(hole * SLOT, nextHash).putLong(hole * SLOT + 8, slots.getLong(next * SLOT + 8));
+                    hole = next;
+                }
+            }
+            slots.putLong(hole * SLOT, 0).putLong(hole * SLOT + 8, 0);
+            size--;
+            return location;
+        }
+    }
+
+    void forEach(LongConsumer action) {
+        for (int slot = 0; slot <= mask; slot++) {
+            long location = slots.getLong(slot * SLOT + 8);
+            if (location != 0) action.accept(location);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        if (mask + 1 >= MAX_CAPACITY) throw new IllegalStateException("embedded index is full");
+        ByteBuffer previous = slots;
+        int previousCount = mask + 1;
+        slots = ByteBuffer.allocateDirect(previousCount * 2 * SLOT);
+        mask = previousCount * 2 - 1;
+        for (int slot = 0; slot < previousCount; slot++) {
+            long location = previous.getLong(slot * SLOT + 8);
+            if (location == 0) continue;
+            long hash = previous.getLong(slot * SLOT);
+            int target = slotOf(hash);
+            while (slots.getLong(target * SLOT + 8) != 0) target = (target + 1) & mask;
+            slots.putLong(target * SLOT, hash).putLong(target * SLOT + 8, location);
+        }
+    }
+
+    private int slotOf(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * 64 bit fnv-1a of the key, mixed so its low bits spread over the slots
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,11 @@
+package com.itaborda.service;
+
+import com.itaborda.exception.KeyNotFoundException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public interface ClickStreamService {
+
+    void record(String key, int[] ordinals);
+
+    SseEmitter subscribe(String key) throws KeyNotFoundException;
+}
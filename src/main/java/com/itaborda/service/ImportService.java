@@ -0,0 +1,15 @@
+package com.itaborda.service;
+
+import com.itaborda.controller.dto.ImportRequestDto;
+import com.itaborda.controller.dto.ImportStatusDto;
+import com.itaborda.exception.ImportNotFoundException;
+import com.itaborda.exception.InvalidImportException;
+
+public interface ImportService {
+
+    ImportStatusDto start(ImportRequestDto request) throws InvalidImportException;
+
+    ImportStatusDto await(String importId) throws ImportNotFoundException, InterruptedException;
+
+    ImportStatusDto getStatus(String importId) throws ImportNotFoundException;
+}
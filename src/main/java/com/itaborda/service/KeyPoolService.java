@@ -0,0 +1,14 @@
+package com.itaborda.service;
+
+import com.itaborda.exception.KeyOverFlowException;
+
+import java.net.UnknownHostException;
+
+public interface KeyPoolService {
+
+    long take() throws UnknownHostException, KeyOverFlowException;
+
+    void giveBack(long key);
+
+    int prefetch() throws UnknownHostException, KeyOverFlowException;
+}
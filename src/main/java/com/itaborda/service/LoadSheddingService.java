@@ -0,0 +1,25 @@
+package com.itaborda.service;
+
+public interface LoadSheddingService {
+
+    /**
+     * @return true if a call to mongo may run, it must then be followed by {@link #release(long, boolean)}
+     */
+    boolean tryAcquire();
+
+    /**
+     * @param startNanos {@link System#nanoTime()} at the start of the call
+     * @param failed     whether the call failed
+     */
+    void release(long startNanos, boolean failed);
+
+    /**
+     * @return true while mongo is slow or saturated, the service then only serves redirects
+     */
+    boolean isDegraded();
+
+    /**
+     * @return true if the stats of a visit are written, a share of them only while degraded
+     */
+    boolean admitStatsWrite();
+}
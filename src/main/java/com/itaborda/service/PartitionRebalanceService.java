@@ -0,0 +1,21 @@
+package com.itaborda.service;
+
+import com.itaborda.controller.dto.PartitionRoutesDto;
+import com.itaborda.exception.InvalidRebalanceException;
+
+/**
+ * moves key partitions between the backends of the routed profile while the service keeps serving them. a move
+ * goes through the states of {@link com.itaborda.model.PartitionRoute}:
+ * COPYING   writes go to the source, the partition is copied to the target
+ * SWITCHED  writes go to the target, reads missing on the target fall back to the source; once every replica
+ *           reloaded the route, short urls created on the source meanwhile are copied too
+ * DONE      the partition is deleted from the source, the target serves it alone
+ */
+public interface PartitionRebalanceService {
+
+    PartitionRoutesDto move(long partition, int backend) throws InvalidRebalanceException;
+
+    PartitionRoutesDto await(long partition) throws InterruptedException;
+
+    PartitionRoutesDto getRoutes();
+}
@@ -0,0 +1,19 @@
+package com.itaborda.service;
+
+public interface RateLimitService {
+
+    /**
+     * takes a token from the bucket of the client on the route
+     *
+     * @param route  shorten or stat
+     * @param client api key or address of the client
+     * @return 0 if the request is admitted, otherwise the nanoseconds to wait before retrying
+     */
+    long tryAcquire(String route, String client);
+
+    /**
+     * shares the requests admitted by this replica through redis and charges the buckets with the requests the
+     * other replicas admitted since the last reconciliation
+     */
+    void reconcile();
+}
@@ -0,0 +1,17 @@
+package com.itaborda.service;
+
+import com.itaborda.controller.dto.SchemaMigrationDto;
+import com.itaborda.exception.InvalidMigrationException;
+
+/**
+ * copies the short urls of the legacy shorturl collection to the compact schema of
+ * {@link com.itaborda.repository.CompactLinkStore}, enabled by the compact profile
+ */
+public interface SchemaMigrationService {
+
+    SchemaMigrationDto start() throws InvalidMigrationException;
+
+    SchemaMigrationDto await() throws InterruptedException;
+
+    SchemaMigrationDto getReport();
+}
@@ -1,8 +1,11 @@
 package com.itaborda.service;
 
+import com.itaborda.controller.dto.BatchResolveDto;
+import com.itaborda.controller.dto.BatchShortenDto;
 import com.itaborda.controller.dto.NewLinkDto;
 import com.itaborda.controller.dto.ResolveLinkDto;
 import com.itaborda.controller.dto.VisitStateDto;
+import com.itaborda.exception.BatchTooLargeException;
 import com.itaborda.exception.InvalidAddressException;
 import com.itaborda.exception.KeyNotFoundException;
 import com.itaborda.exception.KeyOverFlowException;
@@ -10,15 +13,24 @@ import com.itaborda.model.ShortUrl;
 
 import java.net.MalformedURLException;
 import java.net.UnknownHostException;
+import java.util.List;
 
 public interface ShortUrlService {
 
     String shorten(NewLinkDto linkDto) throws MalformedURLException, UnknownHostException, KeyOverFlowException;
 
+    BatchShortenDto shortenBatch(List<String> longUrls) throws UnknownHostException, KeyOverFlowException, BatchTooLargeException;
+
+    BatchShortenDto shortenNormalized(List<String> urls) throws UnknownHostException, KeyOverFlowException;
+
 	String getNewCode(String longUrl) throws UnknownHostException, KeyOverFlowException;
 
 	ShortUrl resolve(ResolveLinkDto dto) throws KeyNotFoundException, InvalidAddressException;
 
+    String redirect(ResolveLinkDto dto) throws KeyNotFoundException, InvalidAddressException;
+
+    BatchResolveDto resolveBatch(List<String> keys, boolean countClicks, String[] dimensions) throws BatchTooLargeException;
+
     VisitStateDto getVisitStateByKey(String key) throws KeyNotFoundException;
 
 }
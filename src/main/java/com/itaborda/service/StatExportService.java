@@ -0,0 +1,15 @@
+package com.itaborda.service;
+
+import com.itaborda.controller.dto.StatExportDto;
+import com.itaborda.exception.InvalidCursorException;
+import com.itaborda.exception.InvalidFormatException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface StatExportService {
+
+    void validate(StatExportDto request) throws InvalidCursorException, InvalidFormatException;
+
+    void export(StatExportDto request, OutputStream out) throws IOException;
+}
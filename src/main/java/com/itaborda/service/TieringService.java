@@ -0,0 +1,34 @@
+package com.itaborda.service;
+
+import com.itaborda.model.ShortUrl;
+
+/**
+ * tiering of the short urls, enabled by the tiering profile. short urls not visited for a while are moved from the
+ * link store to the {@link com.itaborda.repository.LinkArchive}, and moved back once visited or shortened again.
+ */
+public interface TieringService {
+
+    /**
+     * @return the archived short url of the key code, null if none
+     */
+    ShortUrl findArchived(String keyCode);
+
+    /**
+     * @return the archived short url of the url key, null if none
+     */
+    ShortUrl findArchivedByUrlKey(String urlKey);
+
+    /**
+     * moves the archived short url back to the link store
+     *
+     * @return the short url as saved in the link store
+     */
+    ShortUrl promote(ShortUrl shortUrl);
+
+    /**
+     * moves the cold short urls to the archive
+     *
+     * @return number of archived short urls
+     */
+    long archiveCold() throws InterruptedException;
+}
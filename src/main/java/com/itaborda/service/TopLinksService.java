@@ -0,0 +1,17 @@
+package com.itaborda.service;
+
+import com.itaborda.controller.dto.TopLinksDto;
+
+import java.util.List;
+
+public interface TopLinksService {
+
+    String WINDOW_ALL = "all";
+    String WINDOW_TRENDING = "trending";
+
+    void record(String key);
+
+    TopLinksDto getTopLinks(String window, int limit);
+
+    List<String> hotKeys(int limit);
+}
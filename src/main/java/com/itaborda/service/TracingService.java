@@ -0,0 +1,20 @@
+package com.itaborda.service;
+
+import com.itaborda.controller.dto.TracesDto;
+import com.itaborda.util.Trace;
+
+public interface TracingService {
+
+    /**
+     * @param force whether the request asked to be traced
+     * @return the trace bound to the current thread, null if the request is not sampled
+     */
+    Trace start(String name, boolean force);
+
+    /**
+     * ends the trace, it is kept among the recent slow traces if it took longer than the threshold
+     */
+    void finish(Trace trace);
+
+    TracesDto getTraces();
+}
@@ -0,0 +1,17 @@
+package com.itaborda.service;
+
+import com.itaborda.controller.dto.UrlKeyBackfillDto;
+import com.itaborda.exception.InvalidMigrationException;
+
+/**
+ * gives the short urls stored before url keys were introduced their url key, so the upsert on the url key
+ * finds them when their url is shortened again
+ */
+public interface UrlKeyBackfillService {
+
+    UrlKeyBackfillDto start() throws InvalidMigrationException;
+
+    UrlKeyBackfillDto await() throws InterruptedException;
+
+    UrlKeyBackfillDto getReport();
+}
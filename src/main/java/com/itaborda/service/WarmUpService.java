@@ -0,0 +1,15 @@
+package com.itaborda.service;
+
+import com.itaborda.controller.dto.WarmUpStatusDto;
+
+/**
+ * fills the caches of a starting replica before it reports ready
+ */
+public interface WarmUpService {
+
+    WarmUpStatusDto warmUp();
+
+    boolean isReady();
+
+    WarmUpStatusDto getStatus();
+}
@@ -5,4 +5,6 @@ import com.itaborda.exception.KeyOverFlowException;
 public interface WorkerStatusService {
 
     Long getNewKey(String workerId) throws KeyOverFlowException;
+
+    long[] reserveKeys(String workerId, int count) throws KeyOverFlowException;
 }
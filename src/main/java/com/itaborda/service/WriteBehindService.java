@@ -0,0 +1,31 @@
+package com.itaborda.service;
+
+import com.itaborda.controller.dto.WriteBehindStatusDto;
+import com.itaborda.model.ShortUrl;
+
+/**
+ * write-behind creation of short urls, enabled by the write-behind profile. a new short url is made durable in a
+ * local journal and put in the cache so it resolves right away, a background flusher persists the journaled short
+ * urls to the link store in bulk.
+ */
+public interface WriteBehindService {
+
+    /**
+     * @return the journaled short url, or the one already pending for the same url key
+     */
+    ShortUrl append(ShortUrl shortUrl);
+
+    /**
+     * @return the pending short url of the key code, null if none
+     */
+    ShortUrl findByKeyCode(String keyCode);
+
+    /**
+     * @return the pending short url of the url key, null if none
+     */
+    ShortUrl findByUrlKey(String urlKey);
+
+    void flush();
+
+    WriteBehindStatusDto getStatus();
+}
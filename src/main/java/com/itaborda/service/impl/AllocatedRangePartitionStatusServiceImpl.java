@@ -2,7 +2,7 @@ package com.itaborda.service.impl;
 
 import com.itaborda.aspect.Retry;
 import com.itaborda.model.AllocatedRangePartitionStatus;
-import com.itaborda.repository.AllocatedRangePartitionStatusRepository;
+import com.itaborda.repository.KeyRangeStore;
 import com.itaborda.service.AllocatedRangePartitionStatusService;
 import org.springframework.stereotype.Service;
 
@@ -16,10 +16,10 @@ import java.util.Optional;
 @Service
 public class AllocatedRangePartitionStatusServiceImpl implements AllocatedRangePartitionStatusService {
 
-    private AllocatedRangePartitionStatusRepository repository;
+    private KeyRangeStore keyRangeStore;
 
-    public AllocatedRangePartitionStatusServiceImpl(AllocatedRangePartitionStatusRepository repository) {
-        this.repository = repository;
+    public AllocatedRangePartitionStatusServiceImpl(KeyRangeStore keyRangeStore) {
+        this.keyRangeStore = keyRangeStore;
     }
 
 
@@ -39,9 +39,9 @@ public class AllocatedRangePartitionStatusServiceImpl implements AllocatedRangeP
     @Retry(times = 10, on = org.springframework.dao.OptimisticLockingFailureException.class)
     @Override
     public Integer allocateRangePartition() {
-        AllocatedRangePartitionStatus allocatedRangePartitionStatus = Optional.ofNullable(repository.findAll()).filter(l -> l.size() > 0).map(c -> c.get(0)).orElseGet(AllocatedRangePartitionStatus::new);
+        AllocatedRangePartitionStatus allocatedRangePartitionStatus = Optional.ofNullable(keyRangeStore.findRangePartitionStatus()).orElseGet(AllocatedRangePartitionStatus::new);
         allocatedRangePartitionStatus.incrementAllocatedPartitionNumber();
-        repository.save(allocatedRangePartitionStatus);
+        keyRangeStore.saveRangePartitionStatus(allocatedRangePartitionStatus);
         return allocatedRangePartitionStatus.getAllocatedPartitionNumber();
     }
 }
@@ -0,0 +1,293 @@
+package com.itaborda.service.impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itaborda.controller.dto.ClickDeltaDto;
+import com.itaborda.exception.KeyNotFoundException;
+import com.itaborda.repository.LinkStore;
+import com.itaborda.service.ClickStreamService;
+import com.itaborda.util.ClickDimension;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service pushing per second click deltas of short urls to Server-Sent Events subscribers.
+ * the redirect path only bumps lock free adders. once a second the adders are drained into deltas which are
+ * published on a redis channel, so every replica receives the deltas of all replicas and fans them out to its
+ * own subscribers. each subscriber has a bounded buffer drained by a sender task, when a slow subscriber
+ * fills its buffer the following deltas are dropped for it instead of blocking anybody else.
+ */
+@Service
+public class ClickStreamServiceImpl implements ClickStreamService, MessageListener {
+
+    private static final String CHANNEL = "shortify:clicks";
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final StringRedisTemplate redisTemplate;
+    private final LinkStore linkStore;
+    private final ObjectMapper objectMapper;
+
+    private final ConcurrentHashMap<String, PendingClicks> pending = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService senders;
+    private final int maxPending;
+    private final int bufferSize;
+    private final long timeoutMillis;
+
+    public ClickStreamServiceImpl(StringRedisTemplate redisTemplate, LinkStore linkStore, ObjectMapper objectMapper,
+                                  RedisMessageListenerContainer listenerContainer,
+                                  @Value("${shortify.click-stream.max-pending:100000}") int maxPending,
+                                  @Value("${shortify.click-stream.buffer-size:64}") int bufferSize,
+                                  @Value("${shortify.click-stream.senders:4}") int senders,
+                                  @Value("${shortify.click-stream.timeout:PT30M}") String timeout) {
+        this.redisTemplate = redisTemplate;
+        this.linkStore = linkStore;
+        this.objectMapper = objectMapper;
+        this.maxPending = maxPending;
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = Duration.parse(timeout).toMillis();
+        this.senders = Executors.newFixedThreadPool(senders);
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        Gauge.builder("shortify.click.pipeline.depth", pending::size).description("visits and keys waiting in the click pipeline per stage")
+                .tag("stage", "click-stream").register(Metrics.globalRegistry);
+        Gauge.builder("shortify.click.pipeline.depth", this::buffered).description("visits and keys waiting in the click pipeline per stage")
+                .tag("stage", "click-stream-subscribers").register(Metrics.globalRegistry);
+    }
+
+    /**
+     * called on the redirect path, only lock free increments are done here
+     *
+     * @param key      resolved short url
+     * @param ordinals label ordinals of the visit indexed by dimension ordinal
+     */
+    @Override
+    public void record(String key, int[] ordinals) {
+        PendingClicks clicks = pending.get(key);
+        if (clicks == null) {
+            if (pending.size() >= maxPending) return;
+            clicks = pending.computeIfAbsent(key, k -> new PendingClicks());
+        }
+        clicks.record(ordinals);
+    }
+
+    /**
+     * @param key short url whose click deltas are streamed
+     * @return emitter the deltas of the short url are sent to
+     * @throws KeyNotFoundException if the provided shortUrl is not available in the DB
+     */
+    @Override
+    public SseEmitter subscribe(String key) throws KeyNotFoundException {
+        Optional.ofNullable(linkStore.findByKeyCode(key)).orElseThrow(KeyNotFoundException::new);
+
+        SseEmitter emitter = newEmitter();
+        Subscriber subscriber = new Subscriber(emitter);
+        subscribers.compute(key, (k, l) -> {
+            List<Subscriber> keySubscribers = l == null ? new CopyOnWriteArrayList<>() : l;
+            keySubscribers.add(subscriber);
+            return keySubscribers;
+        });
+
+        Runnable unsubscribe = () -> subscribers.computeIfPresent(key, (k, l) -> {
+            l.remove(subscriber);
+            return l.isEmpty() ? null : l;
+        });
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(e -> unsubscribe.run());
+        return emitter;
+    }
+
+    /**
+     * @return an emitter completed once the subscription timeout elapses
+     */
+    protected SseEmitter newEmitter() {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    /**
+     * drains the pending clicks of the last second and publishes them to every replica
+     */
+    @Scheduled(fixedRateString = "${shortify.click-stream.interval:1000}")
+    public void publish() {
+        if (pending.isEmpty()) return;
+        long timestamp = System.currentTimeMillis() / 1000;
+        List<ClickDeltaDto> deltas = new ArrayList<>();
+        // the clicks of a key stay in the map while it is clicked, a click recorded during the drain is published
+        // next time. a key idle since the last publish is removed, and what a click racing the removal added is taken
+        for (Map.Entry<String, PendingClicks> entry : pending.entrySet()) {
+            PendingClicks clicks = entry.getValue();
+            ClickDeltaDto delta = clicks.drain(entry.getKey(), timestamp);
+            if (delta == null && pending.remove(entry.getKey(), clicks)) delta = clicks.drain(entry.getKey(), timestamp);
+            if (delta != null) deltas.add(delta);
+        }
+        if (deltas.isEmpty()) return;
+
+        try {
+            redisTemplate.convertAndSend(CHANNEL, objectMapper.writeValueAsString(deltas));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not publish click deltas through redis, delivering locally: {}", e.getMessage());
+            deliver(deltas);
+        }
+    }
+
+    /**
+     * deltas published by any replica, including this one
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        if (subscribers.isEmpty()) return;
+        try {
+            List<ClickDeltaDto> deltas = objectMapper.readValue(new String(message.getBody(), StandardCharsets.UTF_8),
+                    new TypeReference<List<ClickDeltaDto>>() {
+                    });
+            deliver(deltas);
+        } catch (IOException e) {
+            log.warn("Could not read click deltas: {}", e.getMessage());
+        }
+    }
+
+    private void deliver(List<ClickDeltaDto> deltas) {
+        for (ClickDeltaDto delta : deltas) {
+            List<Subscriber> keySubscribers = subscribers.get(delta.getKey());
+            if (keySubscribers == null) continue;
+            for (Subscriber subscriber : keySubscribers) {
+                if (subscriber.offer(delta)) senders.execute(subscriber::drain);
+            }
+        }
+    }
+
+    /**
+     * @return deltas buffered for all subscribers, read at scrape time
+     */
+    private int buffered() {
+        int buffered = 0;
+        for (List<Subscriber> keySubscribers : subscribers.values()) {
+            for (Subscriber subscriber : keySubscribers) buffered += subscriber.buffered.get();
+        }
+        return buffered;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+        subscribers.values().forEach(l -> l.forEach(s -> s.emitter.complete()));
+    }
+
+    /**
+     * clicks of a short url received since the last publish
+     */
+    private static class PendingClicks {
+        private final LongAdder clicks = new LongAdder();
+        private final AtomicLongArray[] counters = new AtomicLongArray[ClickDimension.values().length];
+
+        PendingClicks() {
+            for (ClickDimension dimension : ClickDimension.values()) {
+                counters[dimension.ordinal()] = new AtomicLongArray(dimension.size());
+            }
+        }
+
+        void record(int[] ordinals) {
+            clicks.increment();
+            for (int i = 0; i < counters.length; i++) counters[i].incrementAndGet(ordinals[i]);
+        }
+
+        /**
+         * takes the clicks counted so far and resets the counters, a click recorded meanwhile may have its
+         * breakdown in this delta and its count in the next one
+         *
+         * @return the delta of the clicks, null if there were none
+         */
+        ClickDeltaDto drain(String key, long timestamp) {
+            long count = clicks.sumThenReset();
+            if (count == 0) return null;
+            ClickDeltaDto delta = new ClickDeltaDto();
+            delta.setKey(key);
+            delta.setTimestamp(timestamp);
+            delta.setClicks(count);
+            for (ClickDimension dimension : ClickDimension.values()) {
+                AtomicLongArray values = counters[dimension.ordinal()];
+                Map<String, Long> breakdown = new LinkedHashMap<>();
+                for (int i = 0; i < values.length(); i++) {
+                    long value = values.get(i) > 0 ? values.getAndSet(i, 0) : 0;
+                    if (value > 0) breakdown.put(dimension.getLabels()[i], value);
+                }
+                delta.setBreakdown(dimension.getReportName(), breakdown);
+            }
+            return delta;
+        }
+    }
+
+    /**
+     * a subscriber with its bounded buffer, at most one sender task drains the buffer at a time
+     */
+    private class Subscriber {
+        private final SseEmitter emitter;
+        private final ConcurrentLinkedQueue<ClickDeltaDto> buffer = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger buffered = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        /**
+         * @return true if a sender task has to be started for this subscriber
+         */
+        boolean offer(ClickDeltaDto delta) {
+            if (buffered.incrementAndGet() > bufferSize) {
+                buffered.decrementAndGet();
+                return false;
+            }
+            buffer.offer(delta);
+            return draining.compareAndSet(false, true);
+        }
+
+        void drain() {
+            try {
+                ClickDeltaDto delta;
+                while ((delta = buffer.poll()) != null) {
+                    buffered.decrementAndGet();
+                    emitter.send(SseEmitter.event().name("clicks").data(delta, MediaType.APPLICATION_JSON));
+                }
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+                return;
+            } finally {
+                draining.set(false);
+            }
+            if (!buffer.isEmpty() && draining.compareAndSet(false, true)) senders.execute(this::drain);
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package com.itaborda.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itaborda.controller.dto.BaseResponse;
+import com.itaborda.controller.dto.BatchShortenDto;
+import com.itaborda.controller.dto.ImportRequestDto;
+import com.itaborda.controller.dto.ImportStageDto;
+import com.itaborda.controller.dto.ImportStatusDto;
+import com.itaborda.exception.ImportNotFoundException;
+import com.itaborda.exception.InvalidImportException;
+import com.itaborda.model.ImportCheckpoint;
+import com.itaborda.repository.CheckpointStore;
+import com.itaborda.service.ImportService;
+import com.itaborda.service.ShortUrlService;
+import com.itaborda.util.UrlNormalizer;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service importing dumps of long urls, one url per line as CSV (first column) or NDJSON (longUrl or url field).
+ * the file streams through bounded stages:
+ * a reader cuts the file into chunks of lines, the chunks are parsed and normalized in parallel, and a single
+ * writer stores them in file order through {@link ShortUrlService#shortenNormalized(List)}, which dedupes against
+ * mongo with one query, reserves keys in one allocation and bulk inserts.
+ * parsed chunks wait in a bounded queue of futures, so a slow writer blocks the reader and memory stays constant
+ * whatever the file size. after every stored chunk the last committed line is checkpointed, an interrupted or
+ * failed import resumes from there when started again; re-stored lines are found as existing links.
+ */
+@Service
+public class ImportServiceImpl implements ImportService {
+
+    private static final String READ = "read";
+    private static final String PARSE = "parse";
+    private static final String NORMALIZE = "normalize";
+    private static final String STORE = "store";
+    private static final CompletableFuture<Chunk> END = CompletableFuture.completedFuture(null);
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final ShortUrlService shortUrlService;
+    private final CheckpointStore checkpointStore;
+    private final ObjectMapper objectMapper;
+    private final UrlNormalizer urlNormalizer;
+
+    private final ExecutorService jobs = Executors.newCachedThreadPool();
+    private final ConcurrentHashMap<String, ImportJob> imports = new ConcurrentHashMap<>();
+    private final int chunkSize;
+    private final int queueDepth;
+    private final int parallelism;
+
+    public ImportServiceImpl(ShortUrlService shortUrlService, CheckpointStore checkpointStore, ObjectMapper objectMapper,
+                             UrlNormalizer urlNormalizer,
+                             @Value("${shortify.import.chunk-size:1000}") int chunkSize,
+                             @Value("${shortify.import.queue-depth:16}") int queueDepth,
+                             @Value("${shortify.import.parallelism:0}") int parallelism) {
+        this.shortUrlService = shortUrlService;
+        this.checkpointStore = checkpointStore;
+        this.objectMapper = objectMapper;
+        this.urlNormalizer = urlNormalizer;
+        this.chunkSize = chunkSize;
+        this.queueDepth = queueDepth;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * starts importing the file in the background, or resumes it from its checkpoint.
+     * the same file is identified by its path, size and modification time, starting an import which is running
+     * or done only returns its status.
+     *
+     * @param request file and format of the dump
+     * @return the status of the import
+     * @throws InvalidImportException if the file is not readable or the format is unknown
+     */
+    @Override
+    public ImportStatusDto start(ImportRequestDto request) throws InvalidImportException {
+        if (request.getFile() == null) throw new InvalidImportException();
+        Path path = Paths.get(request.getFile()).toAbsolutePath();
+        String format = request.getFormat() == null ? ImportRequestDto.CSV : request.getFormat().toLowerCase(Locale.ROOT);
+        if (!ImportRequestDto.CSV.equals(format) && !ImportRequestDto.NDJSON.equals(format)) throw new InvalidImportException();
+        if (!Files.isRegularFile(path) || !Files.isReadable(path)) throw new InvalidImportException();
+
+        String importId;
+        try {
+            importId = DigestUtils.sha1Hex(path + ":" + Files.size(path) + ":" + Files.getLastModifiedTime(path).toMillis()).substring(0, 16);
+        } catch (IOException e) {
+            throw new InvalidImportException(e.getMessage());
+        }
+
+        ImportJob job = imports.compute(importId, (id, current) -> {
+            if (current != null && (!current.completion.isDone() || ImportCheckpoint.DONE.equals(current.checkpoint.getState()))) {
+                return current;
+            }
+            ImportCheckpoint checkpoint = checkpointStore.findCheckpoint(id).orElseGet(() -> new ImportCheckpoint(id, path.toString(), format));
+            ImportJob newJob = new ImportJob(checkpoint, path, format);
+            newJob.completion = ImportCheckpoint.DONE.equals(checkpoint.getState())
+                    ? CompletableFuture.completedFuture(null)
+                    : CompletableFuture.runAsync(() -> run(newJob), jobs);
+            return newJob;
+        });
+        return status(job);
+    }
+
+    /**
+     * @param importId id of a started import
+     * @return the status of the import once it is done or failed
+     * @throws ImportNotFoundException if the import was never started
+     */
+    @Override
+    public ImportStatusDto await(String importId) throws ImportNotFoundException, InterruptedException {
+        ImportJob job = imports.get(importId);
+        if (job == null) return getStatus(importId);
+        try {
+            job.completion.get();
+        } catch (ExecutionException e) {
+            log.error("Import {} stopped unexpectedly", importId, e.getCause());
+        }
+        return status(job);
+    }
+
+    /**
+     * @param importId id of a started import
+     * @return the checkpoint of the import, with the throughput of its stages if it ran on this replica
+     * @throws ImportNotFoundException if the import was never started
+     */
+    @Override
+    public ImportStatusDto getStatus(String importId) throws ImportNotFoundException {
+        ImportJob job = imports.get(importId);
+        if (job != null) return status(job);
+
+        ImportStatusDto dto = new ImportStatusDto();
+        dto.setCheckpoint(checkpointStore.findCheckpoint(importId).orElseThrow(ImportNotFoundException::new));
+        dto.setCode(BaseResponse.SUCCESSFUL);
+        dto.setSuccess(true);
+        dto.setMessage("import");
+        return dto;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobs.shutdownNow();
+    }
+
+    private void run(ImportJob job) {
+        ImportCheckpoint checkpoint = job.checkpoint;
+        checkpoint.setState(ImportCheckpoint.RUNNING);
+        checkpoint.setError(null);
+        if (checkpoint.getStartedAt() == null) checkpoint.setStartedAt(LocalDateTime.now());
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        checkpointStore.saveCheckpoint(checkpoint);
+        log.info("Import {} of {} started from line {}", checkpoint.getId(), checkpoint.getFile(), checkpoint.getCommittedLines());
+
+        ExecutorService parsers = Executors.newFixedThreadPool(parallelism);
+        BlockingQueue<CompletableFuture<Chunk>> chunks = new ArrayBlockingQueue<>(queueDepth);
+        try {
+            Future<?> writer = jobs.submit(() -> write(job, chunks));
+            read(job, chunks, parsers);
+            writer.get();
+        } catch (IOException | ExecutionException | RuntimeException e) {
+            job.fail(e);
+        } catch (InterruptedException e) {
+            job.fail(e);
+            Thread.currentThread().interrupt();
+        } finally {
+            parsers.shutdownNow();
+        }
+
+        checkpoint.setState(job.error == null ? ImportCheckpoint.DONE : ImportCheckpoint.FAILED);
+        checkpoint.setError(job.error);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        checkpointStore.saveCheckpoint(checkpoint);
+        log.info("Import {} {} at line {}: {} created, {} existing, {} duplicates, {} invalid, {} failed",
+                checkpoint.getId(), checkpoint.getState(), checkpoint.getCommittedLines(), checkpoint.getCreated(),
+                checkpoint.getExisting(), checkpoint.getDuplicates(), checkpoint.getInvalid(), checkpoint.getFailed());
+    }
+
+    /**
+     * reader stage, skips the committed lines and hands chunks of lines to the parsers.
+     * putting into the bounded queue waits while the writer is behind, and gives up once the import failed.
+     */
+    private void read(ImportJob job, BlockingQueue<CompletableFuture<Chunk>> chunks, ExecutorService parsers) throws IOException, InterruptedException {
+        try (BufferedReader reader = Files.newBufferedReader(job.path, StandardCharsets.UTF_8)) {
+            long line = 0;
+            while (line < job.checkpoint.getCommittedLines() && reader.readLine() != null) line++;
+
+            List<String> lines = new ArrayList<>(chunkSize);
+            long started = System.nanoTime();
+            String text;
+            while (job.error == null && (text = reader.readLine()) != null) {
+                lines.add(text);
+                if (++line % chunkSize == 0) {
+                    job.record(READ, lines.size(), System.nanoTime() - started);
+                    submit(job, chunks, parsers, lines, line);
+                    lines = new ArrayList<>(chunkSize);
+                    started = System.nanoTime();
+                }
+            }
+            if (!lines.isEmpty()) {
+                job.record(READ, lines.size(), System.nanoTime() - started);
+                submit(job, chunks, parsers, lines, line);
+            }
+        } finally {
+            enqueue(job, chunks, END);
+        }
+    }
+
+    private void submit(ImportJob job, BlockingQueue<CompletableFuture<Chunk>> chunks, ExecutorService parsers,
+                        List<String> lines, long lastLine) throws InterruptedException {
+        enqueue(job, chunks, CompletableFuture.supplyAsync(() -> parse(job, lines, lastLine), parsers));
+    }
+
+    /**
+     * a failed import may have lost its writer, which then no longer takes from the queue, so the reader polls
+     * for the failure instead of blocking on a full queue
+     *
+     * @return false if the chunk was not queued because the import failed
+     */
+    private boolean enqueue(ImportJob job, BlockingQueue<CompletableFuture<Chunk>> chunks, CompletableFuture<Chunk> chunk) throws InterruptedException {
+        while (!chunks.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+            if (job.error != null) return false;
+        }
+        return true;
+    }
+
+    /**
+     * parse and normalize stages, run in parallel on the parsers
+     */
+    private Chunk parse(ImportJob job, List<String> lines, long lastLine) {
+        long started = System.nanoTime();
+        long firstLine = lastLine - lines.size() + 1;
+        List<String> raw = new ArrayList<>(lines.size());
+        int invalid = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            String text = lines.get(i);
+            if (text.trim().isEmpty()) continue;
+            String url = ImportRequestDto.NDJSON.equals(job.format) ? fromJson(text) : fromCsv(text);
+            if (url == null) invalid++;
+            else if (firstLine + i != 1 || !isHeader(url)) raw.add(url);
+        }
+        long parsed = System.nanoTime();
+        job.record(PARSE, lines.size(), parsed - started);
+
+        List<String> urls = new ArrayList<>(raw.size());
+        for (String url : raw) {
+            String normalized = urlNormalizer.normalize(url);
+            if (normalized != null) urls.add(normalized);
+            else invalid++;
+        }
+        job.record(NORMALIZE, raw.size(), System.nanoTime() - parsed);
+        return new Chunk(urls, invalid, lastLine);
+    }
+
+    /**
+     * writer stage, stores the chunks in file order and checkpoints after each of them.
+     * once the import failed the remaining chunks are only drained, an interrupted writer stops and the reader
+     * gives up queueing instead.
+     */
+    private void write(ImportJob job, BlockingQueue<CompletableFuture<Chunk>> chunks) {
+        while (true) {
+            CompletableFuture<Chunk> next;
+            try {
+                next = chunks.take();
+            } catch (InterruptedException e) {
+                job.fail(e);
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (next == END) return;
+            if (job.error != null) continue;
+            try {
+                store(job, next.get());
+            } catch (Exception e) {
+                job.fail(e);
+            }
+        }
+    }
+
+    private void store(ImportJob job, Chunk chunk) throws Exception {
+        long started = System.nanoTime();
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(chunk.urls));
+        BatchShortenDto result = distinct.isEmpty() ? new BatchShortenDto() : shortUrlService.shortenNormalized(distinct);
+
+        ImportCheckpoint checkpoint = job.checkpoint;
+        checkpoint.setCommittedLines(chunk.lastLine);
+        checkpoint.setCreated(checkpoint.getCreated() + result.getCreated());
+        checkpoint.setExisting(checkpoint.getExisting() + result.getExisting());
+        checkpoint.setFailed(checkpoint.getFailed() + result.getFailed());
+        checkpoint.setDuplicates(checkpoint.getDuplicates() + chunk.urls.size() - distinct.size());
+        checkpoint.setInvalid(checkpoint.getInvalid() + chunk.invalid);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        checkpointStore.saveCheckpoint(checkpoint);
+        job.record(STORE, chunk.urls.size(), System.nanoTime() - started);
+    }
+
+    private String fromCsv(String line) {
+        if (!line.startsWith("\"")) {
+            int comma = line.indexOf(',');
+            return comma < 0 ? line : line.substring(0, comma);
+        }
+        StringBuilder field = new StringBuilder();
+        for (int i = 1; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c != '"') {
+                field.append(c);
+            } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                field.append('"');
+                i++;
+            } else {
+                return field.toString();
+            }
+        }
+        return null;
+    }
+
+    private String fromJson(String line) {
+        try {
+            JsonNode node = objectMapper.readTree(line);
+            JsonNode url = node.has("longUrl") ? node.get("longUrl") : node.get("url");
+            return url == null || !url.isTextual() ? null : url.textValue();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private boolean isHeader(String firstField) {
+        return "longUrl".equalsIgnoreCase(firstField) || "url".equalsIgnoreCase(firstField);
+    }
+
+    private ImportStatusDto status(ImportJob job) {
+        ImportStatusDto dto = new ImportStatusDto();
+        dto.setCheckpoint(job.checkpoint);
+        for (String stage : new String[]{READ, PARSE, NORMALIZE, STORE}) {
+            dto.getStages().put(stage, new ImportStageDto(job.records.get(stage).sum(), job.nanos.get(stage).sum()));
+        }
+        dto.setCode(BaseResponse.SUCCESSFUL);
+        dto.setSuccess(true);
+        dto.setMessage("import");
+        return dto;
+    }
+
+    /**
+     * parsed and normalized lines of the file up to {@code lastLine}
+     */
+    private static class Chunk {
+        private final List<String> urls;
+        private final int invalid;
+        private final long lastLine;
+
+        Chunk(List<String> urls, int invalid, long lastLine) {
+            this.urls = urls;
+            this.invalid = invalid;
+            this.lastLine = lastLine;
+        }
+    }
+
+    /**
+     * an import running on this replica, with the records and busy time of each stage
+     */
+    private static class ImportJob {
+        private final ImportCheckpoint checkpoint;
+        private final Path path;
+        private final String format;
+        private final ConcurrentHashMap<String, LongAdder> records = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, LongAdder> nanos = new ConcurrentHashMap<>();
+        private volatile CompletableFuture<Void> completion;
+        private volatile String error;
+
+        ImportJob(ImportCheckpoint checkpoint, Path path, String format) {
+            this.checkpoint = checkpoint;
+            this.path = path;
+            this.format = format;
+            for (String stage : new String[]{READ, PARSE, NORMALIZE, STORE}) {
+                records.put(stage, new LongAdder());
+                nanos.put(stage, new LongAdder());
+            }
+        }
+
+        void record(String stage, long count, long elapsed) {
+            records.get(stage).add(count);
+            nanos.get(stage).add(elapsed);
+        }
+
+        void fail(Throwable e) {
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            if (error == null) error = cause.getClass().getSimpleName() + ": " + cause.getMessage();
+        }
+    }
+}
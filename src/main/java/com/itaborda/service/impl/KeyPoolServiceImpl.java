@@ -0,0 +1,87 @@
+package com.itaborda.service.impl;
+
+import com.itaborda.exception.KeyOverFlowException;
+import com.itaborda.service.KeyPoolService;
+import com.itaborda.service.WorkerStatusService;
+import com.itaborda.util.Utility;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.UnknownHostException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * local pool of keys leased from the worker status in blocks, so taking a key is not a mongo round trip.
+ * a key which ended up not being used is given back and handed out again.
+ * keys still pooled when the instance stops are lost, at most one block per instance.
+ */
+@Service
+public class KeyPoolServiceImpl implements KeyPoolService {
+
+    private final WorkerStatusService workerStatusService;
+    private final int blockSize;
+    private final Deque<Long> keys = new ArrayDeque<>();
+    private volatile int pooled;
+
+    /**
+     * time a shorten waits for a block, retries included
+     */
+    private final Timer refillLatency = Timer.builder("shortify.key.pool.refill").description("latency of leasing a block of keys")
+            .publishPercentileHistogram().register(Metrics.globalRegistry);
+
+    public KeyPoolServiceImpl(WorkerStatusService workerStatusService,
+                              @Value("${shortify.key-pool.block-size:100}") int blockSize) {
+        this.workerStatusService = workerStatusService;
+        this.blockSize = blockSize;
+        Gauge.builder("shortify.key.pool.size", () -> pooled).description("keys leased and not taken yet").register(Metrics.globalRegistry);
+    }
+
+    /**
+     * @return a key nobody else holds
+     * @throws UnknownHostException if the system requesting, does not have proper hostname
+     * @throws KeyOverFlowException if the system has exhausted the maximum amount of counters
+     */
+    @Override
+    public synchronized long take() throws UnknownHostException, KeyOverFlowException {
+        this.refillIfEmpty();
+        long key = keys.pollFirst();
+        pooled = keys.size();
+        return key;
+    }
+
+    /**
+     * @param key a key taken from the pool which was not used
+     */
+    @Override
+    public synchronized void giveBack(long key) {
+        keys.addFirst(key);
+        pooled = keys.size();
+    }
+
+    /**
+     * leases a block ahead of the first shorten if the pool is empty
+     *
+     * @return number of pooled keys
+     */
+    @Override
+    public synchronized int prefetch() throws UnknownHostException, KeyOverFlowException {
+        this.refillIfEmpty();
+        return keys.size();
+    }
+
+    private void refillIfEmpty() throws UnknownHostException, KeyOverFlowException {
+        if (!keys.isEmpty()) return;
+        long start = System.nanoTime();
+        try {
+            for (long key : workerStatusService.reserveKeys(Utility.getHostname(), blockSize)) keys.addLast(key);
+        } finally {
+            refillLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        pooled = keys.size();
+    }
+}
@@ -0,0 +1,74 @@
+package com.itaborda.service.impl;
+
+import com.itaborda.service.LoadSheddingService;
+import com.itaborda.util.AdaptiveLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * adaptive concurrency limit of the calls to mongo, see {@link AdaptiveLimiter}. calls answering slower than
+ * shortify.shedding.target-latency shrink the limit and the calls beyond it are refused, so request threads do not
+ * pile up behind a slow mongo. the service is degraded for shortify.shedding.hold after the last slow or refused
+ * call: stats are then served to nobody, only a shortify.shedding.stats-sample-rate share of the visits write their
+ * stats, and redirects are answered from the cache first.
+ */
+@Service
+public class LoadSheddingServiceImpl implements LoadSheddingService {
+
+    private final AdaptiveLimiter limiter;
+    private final double statsSampleRate;
+
+    private final Counter rejected = Counter.builder("shortify.shedding").description("calls and stats writes shed")
+            .tag("reason", "limit").register(Metrics.globalRegistry);
+    private final Counter droppedStats = Counter.builder("shortify.shedding").description("calls and stats writes shed")
+            .tag("reason", "stats-sampling").register(Metrics.globalRegistry);
+
+    public LoadSheddingServiceImpl(@Value("${shortify.shedding.initial-limit:32}") int initialLimit,
+                                   @Value("${shortify.shedding.min-limit:4}") int minLimit,
+                                   @Value("${shortify.shedding.max-limit:256}") int maxLimit,
+                                   @Value("${shortify.shedding.target-latency:PT0.05S}") String targetLatency,
+                                   @Value("${shortify.shedding.hold:PT5S}") String hold,
+                                   @Value("${shortify.shedding.stats-sample-rate:0.1}") double statsSampleRate) {
+        this.limiter = new AdaptiveLimiter(initialLimit, minLimit, maxLimit, Duration.parse(targetLatency).toNanos(), Duration.parse(hold).toNanos());
+        this.statsSampleRate = statsSampleRate;
+        Gauge.builder("shortify.shedding.limit", limiter::getLimit).description("concurrent calls to mongo allowed").register(Metrics.globalRegistry);
+        Gauge.builder("shortify.shedding.in.flight", limiter::getInFlight).description("calls to mongo running").register(Metrics.globalRegistry);
+        Gauge.builder("shortify.shedding.degraded", () -> limiter.isOverloaded() ? 1 : 0)
+                .description("1 while mongo is slow and the service only serves redirects").register(Metrics.globalRegistry);
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        if (limiter.tryAcquire()) return true;
+        rejected.increment();
+        return false;
+    }
+
+    @Override
+    public void release(long startNanos, boolean failed) {
+        limiter.release(System.nanoTime() - startNanos, failed);
+    }
+
+    @Override
+    public boolean isDegraded() {
+        return limiter.isOverloaded();
+    }
+
+    /**
+     * a write admitted here holds a call of the limit, to be released once saved
+     */
+    @Override
+    public boolean admitStatsWrite() {
+        if (limiter.isOverloaded() && ThreadLocalRandom.current().nextDouble() >= statsSampleRate) {
+            droppedStats.increment();
+            return false;
+        }
+        return this.tryAcquire();
+    }
+}
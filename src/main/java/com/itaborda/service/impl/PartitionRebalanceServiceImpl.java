@@ -0,0 +1,183 @@
+package com.itaborda.service.impl;
+
+import com.itaborda.controller.dto.BaseResponse;
+import com.itaborda.controller.dto.PartitionRoutesDto;
+import com.itaborda.exception.InvalidRebalanceException;
+import com.itaborda.model.PartitionRoute;
+import com.itaborda.model.ShortUrl;
+import com.itaborda.repository.LinkStore;
+import com.itaborda.repository.PartitionRouteRepository;
+import com.itaborda.repository.RoutingLinkStore;
+import com.itaborda.service.PartitionRebalanceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * moves run in the background on the replica they were requested on, their progress is saved in the route.
+ * a partition is found on its source by scanning it, moves are meant to be rare operations.
+ * stat updates made on the source between the switch and the last replica reloading the routes are lost.
+ */
+@Service
+@Profile("routed")
+public class PartitionRebalanceServiceImpl implements PartitionRebalanceService {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final RoutingLinkStore linkStore;
+    private final PartitionRouteRepository routeRepository;
+    private final Duration switchGrace;
+    private final int batchSize;
+
+    private final ExecutorService moves = Executors.newSingleThreadExecutor();
+    private final Map<Long, CompletableFuture<Void>> running = new ConcurrentHashMap<>();
+
+    public PartitionRebalanceServiceImpl(RoutingLinkStore linkStore, PartitionRouteRepository routeRepository,
+                                         @Value("${shortify.routing.switch-grace:PT15S}") String switchGrace,
+                                         @Value("${shortify.export.batch-size:500}") int batchSize) {
+        this.linkStore = linkStore;
+        this.routeRepository = routeRepository;
+        this.switchGrace = Duration.parse(switchGrace);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * starts moving the partition to the backend
+     *
+     * @param partition key partition
+     * @param backend   index of the target backend
+     * @return the route of the partition, in its first state
+     * @throws InvalidRebalanceException if the backend does not exist, already holds the partition, or the partition
+     *                                   is already moving
+     */
+    @Override
+    public synchronized PartitionRoutesDto move(long partition, int backend) throws InvalidRebalanceException {
+        if (backend < 0 || backend >= linkStore.backendCount()) throw new InvalidRebalanceException("unknown backend " + backend);
+        CompletableFuture<Void> current = running.get(partition);
+        if (current != null && !current.isDone()) throw new InvalidRebalanceException("partition " + partition + " is already moving");
+        linkStore.refresh();
+        int source = linkStore.backendOf(partition);
+        if (source == backend) throw new InvalidRebalanceException("partition " + partition + " is already on backend " + backend);
+
+        PartitionRoute route = new PartitionRoute(partition, source, backend);
+        route.setBackend(source);
+        route.setFallback(backend);
+        route.setStartedAt(LocalDateTime.now());
+        save(route, PartitionRoute.COPYING);
+        running.put(partition, CompletableFuture.runAsync(() -> run(route), moves));
+        return routes(Collections.singletonList(route));
+    }
+
+    /**
+     * @return the routes once the move of the partition is over
+     */
+    @Override
+    public PartitionRoutesDto await(long partition) throws InterruptedException {
+        CompletableFuture<Void> move = running.get(partition);
+        if (move != null) {
+            try {
+                move.get();
+            } catch (ExecutionException e) {
+                log.error("Move of partition {} stopped unexpectedly", partition, e.getCause());
+            }
+        }
+        return getRoutes();
+    }
+
+    @Override
+    public PartitionRoutesDto getRoutes() {
+        return routes(routeRepository.findAll());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        moves.shutdownNow();
+    }
+
+    private void run(PartitionRoute route) {
+        LinkStore source = linkStore.backend(route.getSource());
+        LinkStore target = linkStore.backend(route.getTarget());
+        try {
+            route.setCopied(copy(route.getPartition(), source, target, false));
+            route.setBackend(route.getTarget());
+            route.setFallback(route.getSource());
+            save(route, PartitionRoute.SWITCHED);
+
+            Thread.sleep(switchGrace.toMillis());
+            route.setCopied(route.getCopied() + copy(route.getPartition(), source, target, true));
+            route.setDeleted(delete(route.getPartition(), source));
+            route.setFallback(null);
+            save(route, PartitionRoute.DONE);
+            log.info("Partition {} moved from backend {} to {}", route.getPartition(), route.getSource(), route.getTarget());
+        } catch (Exception e) {
+            log.error("Move of partition {} failed", route.getPartition(), e);
+            route.setError(e.getMessage());
+            save(route, PartitionRoute.FAILED);
+        }
+    }
+
+    /**
+     * copies the short urls of the partition keeping their ids, so copying again overwrites instead of duplicating
+     *
+     * @param missingOnly only copy the short urls the target does not have
+     * @return number of copied short urls
+     */
+    private long copy(long partition, LinkStore source, LinkStore target, boolean missingOnly) {
+        long copied = 0;
+        try (CloseableIterator<ShortUrl> cursor = source.streamForExport(null, null, null, batchSize)) {
+            while (cursor.hasNext()) {
+                ShortUrl shortUrl = cursor.next();
+                if (RoutingLinkStore.partitionOf(shortUrl.getKeyCode()) != partition) continue;
+                if (missingOnly && target.findByKeyCode(shortUrl.getKeyCode()) != null) continue;
+                target.save(shortUrl);
+                copied++;
+            }
+        }
+        return copied;
+    }
+
+    private long delete(long partition, LinkStore source) {
+        long deleted = 0;
+        try (CloseableIterator<ShortUrl> cursor = source.streamForExport(null, null, null, batchSize)) {
+            while (cursor.hasNext()) {
+                ShortUrl shortUrl = cursor.next();
+                if (RoutingLinkStore.partitionOf(shortUrl.getKeyCode()) != partition) continue;
+                source.delete(shortUrl);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private void save(PartitionRoute route, String state) {
+        route.setState(state);
+        route.setUpdatedAt(LocalDateTime.now());
+        routeRepository.save(route);
+        linkStore.refresh();
+    }
+
+    private PartitionRoutesDto routes(List<PartitionRoute> routes) {
+        PartitionRoutesDto dto = new PartitionRoutesDto();
+        dto.setBackends(linkStore.backendCount());
+        dto.setRoutes(routes);
+        dto.setCode(BaseResponse.SUCCESSFUL);
+        dto.setSuccess(true);
+        dto.setMessage("partitions");
+        return dto;
+    }
+}
@@ -0,0 +1,193 @@
+package com.itaborda.service.impl;
+
+import com.itaborda.service.RateLimitService;
+import com.itaborda.util.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * token buckets per route and client, kept locally so admitting a request is a map lookup and a compare and set.
+ * every shortify.rate-limit.sync-interval the requests each bucket admitted are added to a counter of the client in
+ * redis, the counter grown by more than this replica added was grown by the other replicas and their requests are
+ * taken from the local bucket, so a client spreading its requests over the replicas gets the limit about once.
+ * a full bucket which admitted nothing since the last reconciliation is dropped, it would be recreated full.
+ * past shortify.rate-limit.max-clients buckets on a route the reconciliation drops the ones used the longest ago, so
+ * a route holds at most max-clients buckets plus the clients new since the last reconciliation, and a dropped client
+ * which comes back starts over with a full bucket. when redis is not reachable every replica enforces the limit on
+ * its own.
+ */
+@Service
+public class RateLimitServiceImpl implements RateLimitService {
+
+    private static final String KEY_PREFIX = "shortify:rate:";
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final StringRedisTemplate redisTemplate;
+    private final Map<String, Route> routes = new HashMap<>();
+    private final long counterTtlMillis;
+
+    public RateLimitServiceImpl(StringRedisTemplate redisTemplate,
+                                @Value("${shortify.rate-limit.shorten.rate:20}") double shortenRate,
+                                @Value("${shortify.rate-limit.shorten.burst:100}") int shortenBurst,
+                                @Value("${shortify.rate-limit.stat.rate:50}") double statRate,
+                                @Value("${shortify.rate-limit.stat.burst:200}") int statBurst,
+                                @Value("${shortify.rate-limit.max-clients:100000}") int maxClients,
+                                @Value("${shortify.rate-limit.sync-interval:1000}") long syncIntervalMillis) {
+        this.redisTemplate = redisTemplate;
+        this.counterTtlMillis = syncIntervalMillis * 10;
+        routes.put("shorten", new Route("shorten", shortenRate, shortenBurst, maxClients));
+        routes.put("stat", new Route("stat", statRate, statBurst, maxClients));
+    }
+
+    /**
+     * a route whose rate is not positive is not limited
+     */
+    @Override
+    public long tryAcquire(String route, String client) {
+        Route limits = routes.get(route);
+        if (limits == null || limits.rate <= 0) return 0;
+        Bucket bucket = limits.buckets.get(client);
+        if (bucket == null) bucket = limits.bucketOf(client);
+        long wait = bucket.tokens.tryAcquire(System.nanoTime());
+        if (wait > 0) {
+            bucket.rejected.increment();
+            limits.rejected.increment();
+            return wait;
+        }
+        bucket.admitted.increment();
+        limits.accepted.increment();
+        return 0;
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${shortify.rate-limit.sync-interval:1000}")
+    public void reconcile() {
+        for (Route route : routes.values()) {
+            List<String> clients = new ArrayList<>();
+            List<Bucket> buckets = new ArrayList<>();
+            long now = System.nanoTime();
+            Iterator<Map.Entry<String, Bucket>> it = route.buckets.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Bucket> entry = it.next();
+                Bucket bucket = entry.getValue();
+                bucket.sent = bucket.admitted.sumThenReset();
+                long rejected = bucket.rejected.sumThenReset();
+                if (bucket.sent > 0 || rejected > 0) bucket.used = now;
+                if (bucket.sent == 0 && bucket.tokens.isFull(now)) {
+                    it.remove();
+                    continue;
+                }
+                clients.add(entry.getKey());
+                buckets.add(bucket);
+            }
+            if (clients.size() > route.maxClients) evict(route, clients, buckets);
+            if (!clients.isEmpty()) share(route, clients, buckets);
+        }
+    }
+
+    /**
+     * drops the buckets used the longest ago down to max-clients, they still share what they admitted
+     */
+    private void evict(Route route, List<String> clients, List<Bucket> buckets) {
+        Integer[] order = new Integer[clients.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingLong(i -> buckets.get(i).used));
+        for (int i = 0; i < order.length - route.maxClients; i++) route.buckets.remove(clients.get(order[i]), buckets.get(order[i]));
+    }
+
+    private void share(Route route, List<String> clients, List<Bucket> buckets) {
+        List<Object> totals;
+        try {
+            totals = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (int i = 0; i < clients.size(); i++) {
+                    byte[] key = (KEY_PREFIX + route.name + ":" + clients.get(i)).getBytes(StandardCharsets.UTF_8);
+                    connection.incrBy(key, buckets.get(i).sent);
+                    connection.pExpire(key, counterTtlMillis);
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Could not reconcile the rate limits of {} clients: {}", clients.size(), e.getMessage());
+            return;
+        }
+        long now = System.nanoTime();
+        for (int i = 0; i < buckets.size() && i * 2 < totals.size(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (!(totals.get(i * 2) instanceof Long)) continue;
+            long total = (Long) totals.get(i * 2);
+            // a counter which expired starts over
+            long others = bucket.total < 0 || total < bucket.total ? 0 : total - bucket.total - bucket.sent;
+            bucket.total = total;
+            if (others > 0) bucket.tokens.consume(others, now);
+        }
+    }
+
+    private static class Route {
+        private final String name;
+        private final double rate;
+        private final int burst;
+        private final int maxClients;
+        private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+        private final Counter accepted;
+        private final Counter rejected;
+
+        private Route(String name, double rate, int burst, int maxClients) {
+            this.name = name;
+            this.rate = rate;
+            this.burst = burst;
+            this.maxClients = maxClients;
+            this.accepted = Counter.builder("shortify.rate.limit.requests").description("requests seen by the rate limiter")
+                    .tags("route", name, "result", "accepted").register(Metrics.globalRegistry);
+            this.rejected = Counter.builder("shortify.rate.limit.requests").description("requests seen by the rate limiter")
+                    .tags("route", name, "result", "rejected").register(Metrics.globalRegistry);
+            Gauge.builder("shortify.rate.limit.clients", buckets::size).description("clients holding a token bucket")
+                    .tag("route", name).register(Metrics.globalRegistry);
+        }
+
+        private Bucket bucketOf(String client) {
+            return buckets.computeIfAbsent(client, c -> new Bucket(rate, burst));
+        }
+    }
+
+    /**
+     * {@link #admitted} and {@link #rejected} are written by the requests, the other fields by the reconciliation only
+     */
+    private static class Bucket {
+        private final TokenBucket tokens;
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private long sent;
+        /**
+         * nano time of the last reconciliation which saw requests of the client, the creation time before
+         */
+        private long used = System.nanoTime();
+        /**
+         * value of the redis counter at the last reconciliation, -1 before the first one
+         */
+        private long total = -1;
+
+        private Bucket(double rate, int burst) {
+            this.tokens = new TokenBucket(rate, burst);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.itaborda.service.impl;
+
+import com.itaborda.controller.dto.BaseResponse;
+import com.itaborda.controller.dto.CollectionSizeDto;
+import com.itaborda.controller.dto.SchemaMigrationDto;
+import com.itaborda.exception.InvalidMigrationException;
+import com.itaborda.model.ShortUrl;
+import com.itaborda.repository.CompactLinkStore;
+import com.itaborda.repository.ShortUrlCodec;
+import com.itaborda.service.SchemaMigrationService;
+import com.mongodb.MongoNamespace;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * the legacy collection is streamed in id order and copied a batch at a time, pausing between batches. a copy never
+ * overwrites a compact document, so short urls copied on the fly and updated since keep their state, and running
+ * the migration again only copies what is missing. a legacy short url whose numeric key is held by another compact
+ * document is not copied but reported as a collision, and a pass with collisions fails, leaving the legacy collection
+ * in place and looked up. once a pass is over without collisions the legacy collection is renamed to
+ * shorturl_legacy, to be dropped once the report is checked. every replica must run with the compact profile
+ * before migrating, or the legacy collection could still receive writes.
+ */
+@Service
+@Profile("compact & !embedded & !routed")
+public class SchemaMigrationServiceImpl implements SchemaMigrationService {
+
+    public static final String RENAMED_LEGACY_COLLECTION = "shorturl_legacy";
+    private static final int REPORTED_COLLISIONS = 100;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final CompactLinkStore linkStore;
+    private final MongoTemplate mongoTemplate;
+    private final int batchSize;
+    private final long pause;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private volatile CompletableFuture<Void> running;
+    private final SchemaMigrationDto progress = new SchemaMigrationDto();
+
+    public SchemaMigrationServiceImpl(CompactLinkStore linkStore, MongoTemplate mongoTemplate,
+                                      @Value("${shortify.schema.batch-size:1000}") int batchSize,
+                                      @Value("${shortify.schema.pause:100}") long pause) {
+        this.linkStore = linkStore;
+        this.mongoTemplate = mongoTemplate;
+        this.batchSize = batchSize;
+        this.pause = pause;
+    }
+
+    /**
+     * @throws InvalidMigrationException if a migration is already running
+     */
+    @Override
+    public synchronized SchemaMigrationDto start() throws InvalidMigrationException {
+        if (running != null && !running.isDone()) throw new InvalidMigrationException("migration is already running");
+        synchronized (progress) {
+            progress.setState(SchemaMigrationDto.RUNNING);
+            progress.setScanned(0);
+            progress.setCopied(0);
+            progress.setCollisions(0);
+            progress.getCollidedKeyCodes().clear();
+            progress.setStartedAt(LocalDateTime.now());
+            progress.setFinishedAt(null);
+            progress.setError(null);
+        }
+        running = CompletableFuture.runAsync(this::run, executor);
+        return getReport();
+    }
+
+    @Override
+    public SchemaMigrationDto await() throws InterruptedException {
+        CompletableFuture<Void> migration = running;
+        if (migration != null) {
+            try {
+                migration.get();
+            } catch (ExecutionException e) {
+                log.error("Schema migration stopped unexpectedly", e.getCause());
+            }
+        }
+        return getReport();
+    }
+
+    /**
+     * sizes are read from collStats, the legacy collection being reported under its new name once renamed
+     */
+    @Override
+    public SchemaMigrationDto getReport() {
+        SchemaMigrationDto dto = new SchemaMigrationDto();
+        synchronized (progress) {
+            dto.setState(progress.getState());
+            dto.setScanned(progress.getScanned());
+            dto.setCopied(progress.getCopied());
+            dto.setCollisions(progress.getCollisions());
+            dto.setCollidedKeyCodes(new ArrayList<>(progress.getCollidedKeyCodes()));
+            dto.setStartedAt(progress.getStartedAt());
+            dto.setFinishedAt(progress.getFinishedAt());
+            dto.setError(progress.getError());
+        }
+        dto.setLegacy(size(mongoTemplate.collectionExists(RENAMED_LEGACY_COLLECTION) ? RENAMED_LEGACY_COLLECTION : CompactLinkStore.LEGACY_COLLECTION));
+        dto.setCompact(size(CompactLinkStore.COLLECTION));
+        dto.setCode(BaseResponse.SUCCESSFUL);
+        dto.setSuccess(true);
+        dto.setMessage("schema");
+        return dto;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run() {
+        try {
+            List<ShortUrl> batch = new ArrayList<>(batchSize);
+            Query query = new Query().with(Sort.by(Sort.Direction.ASC, "id")).cursorBatchSize(batchSize);
+            try (CloseableIterator<ShortUrl> cursor = mongoTemplate.stream(query, ShortUrl.class, CompactLinkStore.LEGACY_COLLECTION)) {
+                while (cursor.hasNext()) {
+                    batch.add(cursor.next());
+                    if (batch.size() < batchSize) continue;
+                    copy(batch);
+                    Thread.sleep(pause);
+                }
+            }
+            copy(batch);
+            if (progress.getCollisions() > 0) {
+                finish(SchemaMigrationDto.FAILED, progress.getCollisions() + " short urls collide with another short url on their numeric key, "
+                        + CompactLinkStore.LEGACY_COLLECTION + " is kept");
+                log.error("Schema migration found {} short urls colliding on their numeric key", progress.getCollisions());
+                return;
+            }
+            linkStore.legacyDrained();
+            renameLegacy();
+            finish(SchemaMigrationDto.DONE, null);
+            log.info("Schema migration copied {} of {} short urls", progress.getCopied(), progress.getScanned());
+        } catch (Exception e) {
+            log.error("Schema migration failed", e);
+            finish(SchemaMigrationDto.FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * short urls whose key code was not generated from a key have no compact form, they are only counted as scanned
+     */
+    private void copy(List<ShortUrl> batch) {
+        List<ShortUrl> copyable = new ArrayList<>(batch.size());
+        for (ShortUrl shortUrl : batch) {
+            if (ShortUrlCodec.keyOf(shortUrl.getKeyCode()) != null) copyable.add(shortUrl);
+            else log.warn("short url {} has no compact form, it is not migrated", shortUrl.getKeyCode());
+        }
+        long copied = linkStore.copy(copyable);
+        List<ShortUrl> collisions = linkStore.collisions(copyable);
+        for (ShortUrl collision : collisions) log.warn("short url {} collides with another short url on its numeric key, it is not migrated", collision.getKeyCode());
+        synchronized (progress) {
+            progress.setScanned(progress.getScanned() + batch.size());
+            progress.setCopied(progress.getCopied() + copied);
+            progress.setCollisions(progress.getCollisions() + collisions.size());
+            for (int i = 0; i < collisions.size() && progress.getCollidedKeyCodes().size() < REPORTED_COLLISIONS; i++) {
+                progress.getCollidedKeyCodes().add(collisions.get(i).getKeyCode());
+            }
+        }
+        batch.clear();
+    }
+
+    private void renameLegacy() {
+        if (mongoTemplate.collectionExists(RENAMED_LEGACY_COLLECTION)) {
+            log.warn("{} already exists, {} is not renamed", RENAMED_LEGACY_COLLECTION, CompactLinkStore.LEGACY_COLLECTION);
+            return;
+        }
+        mongoTemplate.getCollection(CompactLinkStore.LEGACY_COLLECTION)
+                .renameCollection(new MongoNamespace(mongoTemplate.getDb().getName(), RENAMED_LEGACY_COLLECTION));
+    }
+
+    private void finish(String state, String error) {
+        synchronized (progress) {
+            progress.setState(state);
+            progress.setError(error);
+            progress.setFinishedAt(LocalDateTime.now());
+        }
+    }
+
+    private CollectionSizeDto size(String collection) {
+        if (!mongoTemplate.collectionExists(collection)) return null;
+        Document stats = mongoTemplate.getDb().runCommand(new Document("collStats", collection));
+        CollectionSizeDto dto = new CollectionSizeDto();
+        dto.setCollection(collection);
+        dto.setCount(number(stats.get("count")));
+        dto.setSize(number(stats.get("size")));
+        dto.setAvgObjSize(number(stats.get("avgObjSize")));
+        dto.setStorageSize(number(stats.get("storageSize")));
+        dto.setTotalIndexSize(number(stats.get("totalIndexSize")));
+        return dto;
+    }
+
+    private static Long number(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : null;
+    }
+}
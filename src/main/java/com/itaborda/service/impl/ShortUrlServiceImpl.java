@@ -1,33 +1,66 @@
 package com.itaborda.service.impl;
 
+import com.itaborda.aspect.Retry;
 import com.itaborda.controller.dto.BaseResponse;
+import com.itaborda.controller.dto.BatchResolveDto;
+import com.itaborda.controller.dto.BatchResolveItemDto;
+import com.itaborda.controller.dto.BatchShortenDto;
+import com.itaborda.controller.dto.BatchShortenItemDto;
 import com.itaborda.controller.dto.NewLinkDto;
 import com.itaborda.controller.dto.ResolveLinkDto;
 import com.itaborda.controller.dto.VisitStateDto;
+import com.itaborda.exception.BatchTooLargeException;
 import com.itaborda.exception.InvalidAddressException;
 import com.itaborda.exception.KeyNotFoundException;
 import com.itaborda.exception.KeyOverFlowException;
-import com.itaborda.model.embedded.BrowserStats;
+import com.itaborda.exception.ServiceOverloadedException;
 import com.itaborda.model.embedded.DateStat;
-import com.itaborda.model.embedded.OsStat;
 import com.itaborda.model.embedded.Stats;
-import com.itaborda.repository.ShortUrlRepository;
+import com.itaborda.model.embedded.VisitSummary;
+import com.itaborda.repository.LinkCache;
+import com.itaborda.repository.LinkStore;
+import com.itaborda.repository.RedirectStore;
+import com.itaborda.service.ClickStreamService;
+import com.itaborda.service.KeyPoolService;
+import com.itaborda.service.LoadSheddingService;
 import com.itaborda.service.ShortUrlService;
+import com.itaborda.service.TieringService;
+import com.itaborda.service.TopLinksService;
 import com.itaborda.service.WorkerStatusService;
+import com.itaborda.service.WriteBehindService;
 import com.itaborda.util.Base58;
+import com.itaborda.util.ClickDimension;
+import com.itaborda.util.Trace;
+import com.itaborda.util.UrlNormalizer;
 import com.itaborda.util.Utility;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
 import com.itaborda.model.ShortUrl;
 import org.apache.commons.codec.digest.DigestUtils;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
 import java.net.MalformedURLException;
 import java.net.UnknownHostException;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+import java.time.ZoneId;
 import java.time.format.TextStyle;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Service for shortening , expanding and providing statistics
@@ -36,22 +69,89 @@ import java.util.*;
  */
 @Service
 public class ShortUrlServiceImpl implements ShortUrlService {
-	private ShortUrlRepository shortUrlRepository;
+	private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+	private LinkStore linkStore;
+	private LinkCache linkCache;
 	private WorkerStatusService workerStatusService;
+	private TopLinksService topLinksService;
+	private ClickStreamService clickStreamService;
+	private KeyPoolService keyPoolService;
+	private UrlNormalizer urlNormalizer;
+	private LoadSheddingService loadSheddingService;
+	private Optional<WriteBehindService> writeBehindService;
+	private Optional<TieringService> tieringService;
+	private Optional<RedirectStore> redirectStore;
+
+	/**
+	 * visits of the redirects answered by the redirect store, waiting to be recorded
+	 */
+	private final Queue<PendingVisit> pendingVisits = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pendingCount = new AtomicInteger();
+
+	private final Counter archiveHits = Counter.builder("shortify.cache.requests").description("lookups of a short url per tier")
+			.tags("tier", "archive", "cache", ShortUrl.CACHE_NAME, "result", "hit").register(Metrics.globalRegistry);
+	private final Counter archiveMisses = Counter.builder("shortify.cache.requests").description("lookups of a short url per tier")
+			.tags("tier", "archive", "cache", ShortUrl.CACHE_NAME, "result", "miss").register(Metrics.globalRegistry);
+	private final Counter revalidated = revalidationCounter("refreshed");
+	private final Counter invalidated = revalidationCounter("removed");
+	private final Counter revalidationFailures = revalidationCounter("failed");
 
 	@Value("${spring.cache.redis.time-to-live}")
 	private String ttl;
 
-	public ShortUrlServiceImpl(ShortUrlRepository shortUrlRepository, WorkerStatusService workerStatusService) {
-		this.shortUrlRepository = shortUrlRepository;
+	@Value("${shortify.batch.max-size:100000}")
+	private int maxBatchSize;
+
+	@Value("${shortify.batch.lookup-chunk:10000}")
+	private int lookupChunk;
+
+	@Value("${shortify.redirect-store.max-pending-visits:10000}")
+	private int maxPendingVisits;
+
+	@Value("${shortify.url-key.legacy-lookup:false}")
+	private boolean legacyLookup;
+
+	@Value("${shortify.redirect-store.soft-ttl:PT5M}")
+	private String softTtl;
+
+	@Value("${shortify.redirect-store.hard-ttl:PT24H}")
+	private String hardTtl;
+
+	public ShortUrlServiceImpl(LinkStore linkStore, LinkCache linkCache, WorkerStatusService workerStatusService,
+							   TopLinksService topLinksService, ClickStreamService clickStreamService, KeyPoolService keyPoolService,
+							   UrlNormalizer urlNormalizer, LoadSheddingService loadSheddingService, Optional<WriteBehindService> writeBehindService,
+							   Optional<TieringService> tieringService, Optional<RedirectStore> redirectStore) {
+		this.linkStore = linkStore;
+		this.linkCache = linkCache;
 		this.workerStatusService = workerStatusService;
+		this.topLinksService = topLinksService;
+		this.clickStreamService = clickStreamService;
+		this.keyPoolService = keyPoolService;
+		this.urlNormalizer = urlNormalizer;
+		this.loadSheddingService = loadSheddingService;
+		this.writeBehindService = writeBehindService;
+		this.tieringService = tieringService;
+		this.redirectStore = redirectStore;
+		Gauge.builder("shortify.click.pipeline.depth", pendingCount::get).description("visits and keys waiting in the click pipeline per stage")
+				.tag("stage", "redirect-visits").register(Metrics.globalRegistry);
+	}
+
+	private static Counter revalidationCounter(String result) {
+		return Counter.builder("shortify.redirect.store.revalidations").description("stale redirect store entries revalidated")
+				.tag("result", result).register(Metrics.globalRegistry);
 	}
 
 	/**
 	 * the service that provides shortening url
-	 * for shortening purpose, workerID (docker Container instance hostname) should be extracted
-	 * and based on that a new code is used to be encoded in base58.
-	 * after code assignement , created date , stats are also initilized.
+	 * for shortening purpose, a key is taken from the local key pool and encoded in base58.
+	 * the shortUrl is stored with a single atomic upsert on the unique url key, which either inserts it or returns
+	 * the shortUrl already existing for the url. the key is given back to the pool when nothing was inserted,
+	 * so keys are only consumed by actual inserts. an expired existing shortUrl is renewed.
+	 * two concurrent upserts of the same new url may collide on the unique index, the loser is retried and finds
+	 * the winner's shortUrl.
+	 * with the write-behind profile the shortUrl is journaled instead, see {@link #shortenWriteBehind(String)}.
+	 * with the tiering profile an archived shortUrl of the url is promoted back and returned.
 	 *
 	 * @param linkDto a container to hold the provided long url
 	 * @return short url generated based on base58 encoding mechanism
@@ -59,27 +159,240 @@ public class ShortUrlServiceImpl implements ShortUrlService {
 	 * @throws UnknownHostException  if the system requesting, does not have proper hostname
 	 * @throws KeyOverFlowException  if the system has exhausted the maximum amount of counters
 	 */
+	@Retry(times = 3, on = DuplicateKeyException.class)
 	@Override
 	public String shorten(NewLinkDto linkDto) throws UnknownHostException, MalformedURLException, KeyOverFlowException {
 
-		linkDto.setLongUrl(Utility.urlNormalization(linkDto.getLongUrl()));
+		String longUrl = urlNormalizer.normalize(linkDto.getLongUrl());
+		if (longUrl == null) throw new MalformedURLException();
+		linkDto.setLongUrl(longUrl);
+		ShortUrl archived = this.promoteArchived(longUrl);
+		if (archived != null) return archived.getKeyCode();
+		ShortUrl legacy = this.findLegacy(longUrl);
+		if (legacy != null) return this.adoptLegacy(legacy).getKeyCode();
+		if (writeBehindService.isPresent()) return this.shortenWriteBehind(longUrl);
+
+		long key = keyPoolService.take();
+		ShortUrl newShortUrl = this.newShortUrl(linkDto.getLongUrl(), encodeKey(key, linkDto.getLongUrl()), LocalDateTime.now());
+		ShortUrl shortUrl;
+		try (Trace.Span span = Trace.span("link-store.insertIfAbsent")) {
+			shortUrl = linkStore.insertIfAbsent(newShortUrl);
+		} catch (DuplicateKeyException e) {
+			// the key may be held by another short url, given back it would be taken again by the retry
+			throw e;
+		} catch (RuntimeException e) {
+			keyPoolService.giveBack(key);
+			throw e;
+		}
+		if (newShortUrl.getKeyCode().equals(shortUrl.getKeyCode())) return shortUrl.getKeyCode();
 
-		if (!Utility.isUrlValid(linkDto.getLongUrl())) throw new MalformedURLException();
+		keyPoolService.giveBack(key);
+		if (!shortUrl.isNotExpired()) shortUrl = linkStore.renew(shortUrl, LocalDateTime.now().plus(Duration.parse(ttl)));
+		return shortUrl.getKeyCode();
+	}
 
-		Optional<ShortUrl> existingShortUrl = Optional.ofNullable(shortUrlRepository.findByLongUrl(linkDto.getLongUrl()))
-				.filter(s -> s.isNotExpired());
+	/**
+	 * @param longUrl normalized url
+	 * @return the archived shortUrl of the url moved back to the link store and renewed if expired, null if none
+	 */
+	private ShortUrl promoteArchived(String longUrl) {
+		if (!tieringService.isPresent()) return null;
+		ShortUrl archived = tieringService.get().findArchivedByUrlKey(ShortUrl.urlKeyOf(longUrl));
+		if (archived == null) return null;
+		if (!archived.isNotExpired()) archived.setExpireDate(LocalDateTime.now().plus(Duration.parse(ttl)));
+		return tieringService.get().promote(archived);
+	}
 
-		if (existingShortUrl.isPresent()) return existingShortUrl.get().getKeyCode();
+	/**
+	 * shortUrls stored before url keys were introduced have none, the upsert on the url key misses them. while
+	 * shortify.url-key.legacy-lookup is on they are looked up by long url, the way the batch shortening finds them,
+	 * at the cost of a query before every upsert.
+	 *
+	 * @param longUrl normalized url
+	 * @return the shortUrl of the url without url key, null if none or if one with the url key exists
+	 */
+	private ShortUrl findLegacy(String longUrl) {
+		if (!legacyLookup) return null;
+		String urlKey = ShortUrl.urlKeyOf(longUrl);
+		ShortUrl legacy = null;
+		for (ShortUrl existing : linkStore.findByLongUrlIn(Collections.singletonList(longUrl))) {
+			if (urlKey.equals(existing.getUrlKey())) return null;
+			if (legacy == null && existing.getUrlKey() == null && longUrl.equals(existing.getLongUrl())) legacy = existing;
+		}
+		return legacy;
+	}
 
-		ShortUrl newShortUrl = new ShortUrl();
-		newShortUrl.setKeyCode(getNewCode(linkDto.getLongUrl()));
-		newShortUrl.setLongUrl(linkDto.getLongUrl());
-		newShortUrl.setStats(this.initState());
-		newShortUrl.setCreatedDate(LocalDateTime.now());
-		newShortUrl.setExpireDate(newShortUrl.getCreatedDate().plus(Duration.parse(ttl)));
+	/**
+	 * renews the legacy shortUrl if expired and gives it its url key, so the following shortenings of its url
+	 * find it with the upsert
+	 *
+	 * @param legacy shortUrl without url key
+	 * @return the legacy shortUrl
+	 */
+	private ShortUrl adoptLegacy(ShortUrl legacy) {
+		if (!legacy.isNotExpired()) legacy = linkStore.renew(legacy, LocalDateTime.now().plus(Duration.parse(ttl)));
+		legacy.setUrlKey(ShortUrl.urlKeyOf(legacy.getLongUrl()));
+		try {
+			linkStore.save(legacy);
+		} catch (DuplicateKeyException e) {
+			// a concurrent shortening stored the url with its url key, the legacy key still redirects to it
+			log.debug("url key of {} already taken", legacy.getKeyCode());
+		}
+		return legacy;
+	}
 
-		shortUrlRepository.save(newShortUrl);
-		return newShortUrl.getKeyCode();
+	/**
+	 * the url is looked up among the shortUrls pending in the journal, then in the link store, and a new shortUrl is
+	 * only appended to the journal, so shortening does not wait for a write to the link store.
+	 *
+	 * @param longUrl normalized url
+	 * @return key of the new or existing shortUrl
+	 * @throws UnknownHostException if the system requesting, does not have proper hostname
+	 * @throws KeyOverFlowException if the system has exhausted the maximum amount of counters
+	 */
+	private String shortenWriteBehind(String longUrl) throws UnknownHostException, KeyOverFlowException {
+		String urlKey = ShortUrl.urlKeyOf(longUrl);
+		ShortUrl pending = writeBehindService.get().findByUrlKey(urlKey);
+		if (pending != null) return pending.getKeyCode();
+		for (ShortUrl existing : linkStore.findByLongUrlIn(Collections.singletonList(longUrl))) {
+			if (!urlKey.equals(existing.getUrlKey())) continue;
+			if (!existing.isNotExpired()) existing = linkStore.renew(existing, LocalDateTime.now().plus(Duration.parse(ttl)));
+			return existing.getKeyCode();
+		}
+
+		long key = keyPoolService.take();
+		ShortUrl newShortUrl = this.newShortUrl(longUrl, encodeKey(key, longUrl), LocalDateTime.now());
+		newShortUrl.setId(new ObjectId().toHexString());
+		ShortUrl shortUrl;
+		try {
+			shortUrl = writeBehindService.get().append(newShortUrl);
+		} catch (RuntimeException e) {
+			keyPoolService.giveBack(key);
+			throw e;
+		}
+		if (shortUrl != newShortUrl) keyPoolService.giveBack(key);
+		return shortUrl.getKeyCode();
+	}
+
+	/**
+	 * shortening many urls at once. urls are normalized and validated in parallel and deduplicated before being
+	 * stored in bulk, see {@link #shortenNormalized(List)}.
+	 * an invalid or failing url does not fail the batch, its item carries the error instead.
+	 *
+	 * @param longUrls urls to shorten
+	 * @return one item per provided url, in the same order, holding its key or its error
+	 * @throws UnknownHostException   if the system requesting, does not have proper hostname
+	 * @throws KeyOverFlowException   if the system has exhausted the maximum amount of counters
+	 * @throws BatchTooLargeException if more urls than the configured maximum are provided
+	 */
+	@Override
+	public BatchShortenDto shortenBatch(List<String> longUrls) throws UnknownHostException, KeyOverFlowException, BatchTooLargeException {
+		if (longUrls.size() > maxBatchSize) throw new BatchTooLargeException();
+
+		String[] normalized = new String[longUrls.size()];
+		IntStream.range(0, longUrls.size()).parallel().forEach(i -> {
+			String longUrl = longUrls.get(i);
+			normalized[i] = urlNormalizer.normalize(longUrl);
+		});
+
+		List<BatchShortenItemDto> items = new ArrayList<>(longUrls.size());
+		Map<String, List<BatchShortenItemDto>> itemsByUrl = new LinkedHashMap<>();
+		for (int i = 0; i < longUrls.size(); i++) {
+			BatchShortenItemDto item = new BatchShortenItemDto(longUrls.get(i));
+			items.add(item);
+			if (normalized[i] == null) {
+				item.setStatus(BatchShortenItemDto.INVALID);
+				item.setError("Invalid Url format.");
+			} else {
+				itemsByUrl.computeIfAbsent(normalized[i], k -> new ArrayList<>()).add(item);
+			}
+		}
+
+		BatchShortenDto stored = this.shortenNormalized(new ArrayList<>(itemsByUrl.keySet()));
+		for (BatchShortenItemDto storedItem : stored.getItems()) {
+			itemsByUrl.get(storedItem.getLongUrl()).forEach(item -> {
+				item.setStatus(storedItem.getStatus());
+				item.setKey(storedItem.getKey());
+				item.setError(storedItem.getError());
+			});
+		}
+		return batchResult(items);
+	}
+
+	/**
+	 * stores already normalized, valid and distinct urls. the already shortened ones are found with a single $in
+	 * query per lookup chunk, keys for all the others are reserved with one allocation and the new shortUrls are
+	 * persisted with one unordered bulk insert.
+	 *
+	 * @param urls normalized, valid and distinct urls
+	 * @return one item per url, in the same order, holding its key or its error
+	 * @throws UnknownHostException if the system requesting, does not have proper hostname
+	 * @throws KeyOverFlowException if the system has exhausted the maximum amount of counters
+	 */
+	@Override
+	public BatchShortenDto shortenNormalized(List<String> urls) throws UnknownHostException, KeyOverFlowException {
+		Map<String, String> existingKeys = new HashMap<>();
+		List<ShortUrl> expired = new ArrayList<>();
+		for (int from = 0; from < urls.size(); from += lookupChunk) {
+			for (ShortUrl s : linkStore.findByLongUrlIn(urls.subList(from, Math.min(urls.size(), from + lookupChunk)))) {
+				// the shortUrl holding the url key wins over one stored before url keys, as with a single shortening
+				if (s.isNotExpired() && s.getUrlKey() != null) existingKeys.put(s.getLongUrl(), s.getKeyCode());
+				else if (s.isNotExpired()) existingKeys.putIfAbsent(s.getLongUrl(), s.getKeyCode());
+				else if (ShortUrl.urlKeyOf(s.getLongUrl()).equals(s.getUrlKey()) || legacyLookup && s.getUrlKey() == null) expired.add(s);
+			}
+		}
+		// the url key being unique, expired shortUrls holding one are renewed rather than inserted again, and so are
+		// the ones stored before url keys, the way a single shortening renews them
+		LocalDateTime expireDate = LocalDateTime.now().plus(Duration.parse(ttl));
+		for (ShortUrl s : expired) {
+			if (!existingKeys.containsKey(s.getLongUrl())) existingKeys.put(s.getLongUrl(), linkStore.renew(s, expireDate).getKeyCode());
+		}
+
+		List<ShortUrl> newShortUrls = new ArrayList<>();
+		List<String> missing = urls.stream().filter(u -> !existingKeys.containsKey(u)).collect(Collectors.toList());
+		if (!missing.isEmpty()) {
+			long[] keys = workerStatusService.reserveKeys(Utility.getHostname(), missing.size());
+			LocalDateTime now = LocalDateTime.now();
+			for (int i = 0; i < keys.length; i++) {
+				newShortUrls.add(this.newShortUrl(missing.get(i), encodeKey(keys[i], missing.get(i)), now));
+			}
+		}
+		Map<Integer, String> insertErrors = linkStore.insertUnordered(newShortUrls);
+
+		Map<String, BatchShortenItemDto> itemsByUrl = new LinkedHashMap<>();
+		for (String url : urls) {
+			BatchShortenItemDto item = new BatchShortenItemDto(url);
+			if (existingKeys.containsKey(url)) {
+				item.setStatus(BatchShortenItemDto.EXISTING);
+				item.setKey(existingKeys.get(url));
+			}
+			itemsByUrl.put(url, item);
+		}
+		for (int i = 0; i < newShortUrls.size(); i++) {
+			BatchShortenItemDto item = itemsByUrl.get(newShortUrls.get(i).getLongUrl());
+			if (insertErrors.containsKey(i)) {
+				item.setStatus(BatchShortenItemDto.FAILED);
+				item.setError("Could not be stored, please retry.");
+			} else {
+				item.setStatus(BatchShortenItemDto.CREATED);
+				item.setKey(newShortUrls.get(i).getKeyCode());
+			}
+		}
+		return batchResult(new ArrayList<>(itemsByUrl.values()));
+	}
+
+	private BatchShortenDto batchResult(List<BatchShortenItemDto> items) {
+		BatchShortenDto dto = new BatchShortenDto();
+		dto.setItems(items);
+		for (BatchShortenItemDto item : items) {
+			if (BatchShortenItemDto.CREATED.equals(item.getStatus())) dto.setCreated(dto.getCreated() + 1);
+			else if (BatchShortenItemDto.EXISTING.equals(item.getStatus())) dto.setExisting(dto.getExisting() + 1);
+			else dto.setFailed(dto.getFailed() + 1);
+		}
+		dto.setCode(BaseResponse.SUCCESSFUL);
+		dto.setSuccess(true);
+		dto.setMessage("batch");
+		return dto;
 	}
 
 
@@ -98,17 +411,40 @@ public class ShortUrlServiceImpl implements ShortUrlService {
 		String workerID = Utility.getHostname();
 		Long newKey = workerStatusService.getNewKey(workerID);
 
+		return encodeKey(newKey, longUrl);
+	}
+
+	/**
+	 * @param key     decimal key allocated to the worker
+	 * @param longUrl the url the key is generated for
+	 * @return the key encoded in base58 followed by two random characters of the url sha1Hex
+	 */
+	private String encodeKey(long key, String longUrl) {
 		String hash = DigestUtils.sha1Hex(longUrl);
 		int pos = new Random().nextInt(hash.length() - 2);
 
-		return Base58.fromBase10(newKey) + hash.substring(pos, pos + 2);
+		return Base58.fromBase10(key) + hash.substring(pos, pos + 2);
+	}
+
+	private ShortUrl newShortUrl(String longUrl, String keyCode, LocalDateTime createdDate) {
+		ShortUrl newShortUrl = new ShortUrl();
+		newShortUrl.setKeyCode(keyCode);
+		newShortUrl.setLongUrl(longUrl);
+		newShortUrl.setUrlKey(ShortUrl.urlKeyOf(longUrl));
+		newShortUrl.setStats(this.initState());
+		newShortUrl.setCreatedDate(createdDate);
+		newShortUrl.setExpireDate(createdDate.plus(Duration.parse(ttl)));
+		return newShortUrl;
 	}
 
 	/**
 	 * once shortUrl is provided , this method will return corresponding url by decoding and converting in back
-	 * to decimal system and finding appropriate long url with that decimal key in the DB
+	 * to decimal system and finding appropriate long url with that decimal key in the DB.
+	 * with the tiering profile a key missing in the link store is looked up in the archive, and its shortUrl is
+	 * promoted back to the link store along with the stats of the visit.
+	 * while mongo is slow the shortUrl is read from the cache first, and the stats of the visit may be dropped.
 	 *
-	 * @param dto container that holds requesting browser , os and shortUrl
+	 * @param dto container that holds the requesting click dimensions and shortUrl
 	 * @return founded ShortUrl Entity matching the given in the dto shortUrl.
 	 * @throws KeyNotFoundException    if the provided shortUrl is not available in the DB
 	 * @throws InvalidAddressException if the key (or short url) is empty or null
@@ -118,40 +454,270 @@ public class ShortUrlServiceImpl implements ShortUrlService {
 
 		if (dto.getShortUrl() == null || "".equals(dto.getShortUrl())) throw new InvalidAddressException();
 
-		ShortUrl shortUrl = Optional.ofNullable(shortUrlRepository.findByKeyCode(dto.getShortUrl()))
-				.filter(c -> c.isNotExpired())
-				.orElseThrow(KeyNotFoundException::new);
+		try (Trace.Span span = Trace.span("service.resolve")) {
+			ShortUrl hot = loadSheddingService.isDegraded() ? linkCache.get(dto.getShortUrl()) : null;
+			if (hot == null) hot = this.findByKeyCode(dto.getShortUrl());
+			ShortUrl archived = hot == null ? this.findArchived(dto.getShortUrl()) : null;
+			ShortUrl shortUrl = Optional.ofNullable(hot != null ? hot : archived)
+					.filter(c -> c.isNotExpired())
+					.orElseThrow(KeyNotFoundException::new);
 
-		this.updateStats(dto, shortUrl);
-		shortUrl.setLastAccessDate(LocalDateTime.now());
-		shortUrlRepository.save(shortUrl);
+			this.visit(shortUrl, archived != null, Collections.singletonList(ClickDimension.ordinalsOf(dto.getDimensions())));
 
-		return shortUrl;
+			return shortUrl;
+		}
 	}
 
+	/**
+	 * the long url to redirect to. with the redirect-store profile the long url is read from the off heap redirect
+	 * store and the visit is only queued, to be recorded by {@link #recordVisits()}. a key missing from the store,
+	 * or a visit finding the queue full, is resolved as usual and its long url is stored for the next redirects.
+	 * an entry past its soft expiry is still served while {@link #refreshStale()} revalidates it, and keeps being
+	 * served until its hard expiry when the lookups fail, so an outage of redis and mongo does not fail the
+	 * redirects of recently visited keys. the hard expiry never passes the expire date of the shortUrl.
+	 *
+	 * @param dto container that holds the requesting click dimensions and shortUrl
+	 * @return long url of the given in the dto shortUrl
+	 * @throws KeyNotFoundException    if the provided shortUrl is not available in the DB
+	 * @throws InvalidAddressException if the key (or short url) is empty or null
+	 */
+	@Override
+	public String redirect(ResolveLinkDto dto) throws KeyNotFoundException, InvalidAddressException {
+		if (!redirectStore.isPresent()) return this.resolve(dto).getLongUrl();
+		if (dto.getShortUrl() == null || "".equals(dto.getShortUrl())) throw new InvalidAddressException();
+
+		String longUrl;
+		try (Trace.Span span = Trace.span("redirect-store.get")) {
+			longUrl = redirectStore.get().get(dto.getShortUrl(), System.currentTimeMillis());
+		}
+		if (longUrl != null) {
+			if (pendingCount.incrementAndGet() <= maxPendingVisits) {
+				pendingVisits.add(new PendingVisit(dto.getShortUrl(), ClickDimension.ordinalsOf(dto.getDimensions())));
+				return longUrl;
+			}
+			pendingCount.decrementAndGet();
+		}
+
+		ShortUrl shortUrl;
+		try {
+			shortUrl = this.resolve(dto);
+		} catch (RuntimeException e) {
+			// the visit of a redirect served from the store with the queue full and the lookup failing is lost
+			if (longUrl != null) return longUrl;
+			throw e;
+		}
+		this.storeRedirect(shortUrl);
+		return shortUrl.getLongUrl();
+	}
+
+	/**
+	 * stores the long url of the shortUrl in the redirect store, stale after the soft ttl and dropped after the hard
+	 * ttl or once the shortUrl expires, whichever comes first
+	 */
+	private void storeRedirect(ShortUrl shortUrl) {
+		long now = System.currentTimeMillis();
+		long expire = shortUrl.getExpireDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		redirectStore.get().put(shortUrl.getKeyCode(), shortUrl.getLongUrl(), now + Duration.parse(softTtl).toMillis(),
+				Math.min(expire, now + Duration.parse(hardTtl).toMillis()));
+	}
+
+	/**
+	 * revalidates the redirect store entries served past their soft expiry, each one once however often it was
+	 * served. they are read from the link store with one $in query per lookup chunk, going to mongo rather than the
+	 * cache, then from the write-behind journal and the archive. a found shortUrl is stored again, a missing or
+	 * expired one is removed. an entry whose lookup failed keeps being served until its hard expiry, and is
+	 * revalidated again after its next stale read.
+	 */
+	@Scheduled(fixedDelayString = "${shortify.redirect-store.refresh-interval:500}")
+	public void refreshStale() {
+		if (!redirectStore.isPresent()) return;
+		List<String> keys = redirectStore.get().getStaleKeys();
+		for (int from = 0; from < keys.size(); from += lookupChunk) {
+			List<String> chunk = keys.subList(from, Math.min(keys.size(), from + lookupChunk));
+			try (Trace.Span span = Trace.span("redirect-store.refresh")) {
+				this.revalidate(chunk);
+			} catch (RuntimeException e) {
+				revalidationFailures.increment(chunk.size());
+				log.warn("could not revalidate {} stale redirects, served until their hard expiry: {}", chunk.size(), e.getMessage());
+			} finally {
+				chunk.forEach(redirectStore.get()::clearStale);
+			}
+		}
+	}
+
+	private void revalidate(List<String> keys) {
+		if (!loadSheddingService.tryAcquire()) throw new ServiceOverloadedException("link store lookup shed");
+		Map<String, ShortUrl> found = new HashMap<>();
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			linkStore.findByKeyCodeIn(keys).forEach(s -> found.put(s.getKeyCode(), s));
+			failed = false;
+		} finally {
+			loadSheddingService.release(start, failed);
+		}
+		for (String key : keys) {
+			ShortUrl shortUrl = found.get(key);
+			if (shortUrl == null) shortUrl = writeBehindService.map(w -> w.findByKeyCode(key)).orElse(null);
+			if (shortUrl == null) shortUrl = this.findArchived(key);
+			if (shortUrl != null && shortUrl.isNotExpired()) {
+				this.storeRedirect(shortUrl);
+				revalidated.increment();
+			} else {
+				redirectStore.get().remove(key);
+				invalidated.increment();
+			}
+		}
+	}
+
+	/**
+	 * records the queued visits of the redirects answered by the redirect store, each visited shortUrl being read
+	 * and saved once for all its visits. a key found neither in the link store nor in the archive is dropped from
+	 * the redirect store along with its visits.
+	 */
+	@Scheduled(fixedDelayString = "${shortify.redirect-store.visit-interval:1000}")
+	@PreDestroy
+	public synchronized void recordVisits() {
+		Map<String, List<int[]>> visitsByKey = new LinkedHashMap<>();
+		for (PendingVisit visit; (visit = pendingVisits.poll()) != null; ) {
+			pendingCount.decrementAndGet();
+			visitsByKey.computeIfAbsent(visit.keyCode, k -> new ArrayList<>()).add(visit.ordinals);
+		}
+		for (Map.Entry<String, List<int[]>> visits : visitsByKey.entrySet()) {
+			try {
+				ShortUrl hot = this.findByKeyCode(visits.getKey());
+				ShortUrl archived = hot == null ? this.findArchived(visits.getKey()) : null;
+				if (hot == null && archived == null) {
+					redirectStore.ifPresent(r -> r.remove(visits.getKey()));
+					continue;
+				}
+				this.visit(hot != null ? hot : archived, archived != null, visits.getValue());
+			} catch (ServiceOverloadedException e) {
+				// shed, like the stats writes of the resolved visits
+			} catch (RuntimeException e) {
+				log.warn("could not record {} visits of {}", visits.getValue().size(), visits.getKey(), e);
+			}
+		}
+	}
+
+	/**
+	 * many keys are resolved at once without redirecting. the distinct keys are read from the cache with a single
+	 * multi-key get, the misses are loaded from the link store with one $in query per lookup chunk and put back in
+	 * the cache. keys still missing are looked up among the pending shortUrls of the write-behind journal and in
+	 * the archive, one by one. visits are only recorded when asked to, once per occurrence of a found key.
+	 *
+	 * @param keys        keys to resolve
+	 * @param countClicks whether the found keys are visited
+	 * @param dimensions  raw values of the visits indexed by {@link ClickDimension} ordinal
+	 * @return one item per provided key, in the same order, holding its long url or why it was not resolved
+	 * @throws BatchTooLargeException if more keys than the configured maximum are provided
+	 */
+	@Override
+	public BatchResolveDto resolveBatch(List<String> keys, boolean countClicks, String[] dimensions) throws BatchTooLargeException {
+		if (keys.size() > maxBatchSize) throw new BatchTooLargeException();
+
+		List<String> distinct = keys.stream().filter(k -> k != null && !k.isEmpty()).distinct().collect(Collectors.toList());
+		Map<String, ShortUrl> found = linkCache.getAll(distinct);
+		int cacheHits = found.size();
+		List<String> misses = distinct.stream().filter(k -> !found.containsKey(k)).collect(Collectors.toList());
+		List<ShortUrl> loaded = new ArrayList<>();
+		for (int from = 0; from < misses.size(); from += lookupChunk) {
+			loaded.addAll(linkStore.findByKeyCodeIn(misses.subList(from, Math.min(misses.size(), from + lookupChunk))));
+		}
+		loaded.forEach(s -> found.put(s.getKeyCode(), s));
+		linkCache.putAll(loaded);
+
+		Set<String> archived = new HashSet<>();
+		for (String key : misses) {
+			if (found.containsKey(key)) continue;
+			ShortUrl shortUrl = writeBehindService.map(w -> w.findByKeyCode(key)).orElse(null);
+			if (shortUrl == null && (shortUrl = this.findArchived(key)) != null) archived.add(key);
+			if (shortUrl != null) found.put(key, shortUrl);
+		}
+
+		int[] ordinals = countClicks ? ClickDimension.ordinalsOf(dimensions) : null;
+		BatchResolveDto dto = new BatchResolveDto();
+		List<BatchResolveItemDto> items = new ArrayList<>(keys.size());
+		for (String key : keys) {
+			BatchResolveItemDto item = new BatchResolveItemDto(key);
+			items.add(item);
+			ShortUrl shortUrl = key == null ? null : found.get(key);
+			if (shortUrl == null) {
+				item.setStatus(BatchResolveItemDto.MISSING);
+				dto.setMissing(dto.getMissing() + 1);
+				continue;
+			}
+			item.setExpireDate(shortUrl.getExpireDate());
+			if (!shortUrl.isNotExpired()) {
+				item.setStatus(BatchResolveItemDto.EXPIRED);
+				dto.setExpired(dto.getExpired() + 1);
+				continue;
+			}
+			item.setStatus(BatchResolveItemDto.FOUND);
+			item.setLongUrl(shortUrl.getLongUrl());
+			dto.setFound(dto.getFound() + 1);
+			// a promoted shortUrl is in the link store for the next occurrences
+			if (countClicks) this.visit(shortUrl, archived.remove(key), Collections.singletonList(ordinals));
+		}
+		dto.setItems(items);
+		dto.setCacheHits(cacheHits);
+		dto.setCode(BaseResponse.SUCCESSFUL);
+		dto.setSuccess(true);
+		dto.setMessage("batch resolve");
+		return dto;
+	}
 
 	/**
-	 * give the shortUrl generated code, statistics is calculated and will be returned
+	 * stats, last access date, top links and click stream are updated for visits of the shortUrl, which is saved once
+	 *
+	 * @param shortUrl resolved shortUrl
+	 * @param archived whether the shortUrl was found in the archive, it is then promoted back to the link store
+	 * @param visits   label ordinals of each visit indexed by dimension ordinal
+	 */
+	private void visit(ShortUrl shortUrl, boolean archived, List<int[]> visits) {
+		for (int[] ordinals : visits) this.updateStats(ordinals, shortUrl);
+		shortUrl.setLastAccessDate(LocalDateTime.now());
+		try (Trace.Span span = Trace.span("link-store.save")) {
+			if (archived) tieringService.get().promote(shortUrl);
+			else this.saveStats(shortUrl);
+		}
+		for (int[] ordinals : visits) {
+			topLinksService.record(shortUrl.getKeyCode());
+			clickStreamService.record(shortUrl.getKeyCode(), ordinals);
+		}
+	}
+
+
+	/**
+	 * give the shortUrl generated code, statistics is read from the materialized summary of the shortUrl
+	 * which is maintained on every visit, so no scan over the date stats is needed.
+	 * the summary version is returned so the caller can tag the response.
+	 * stats are the first requests shed while mongo is slow, before any redirect.
 	 *
 	 * @param key give the shortUrl generated code,
 	 * @return analytics information for the give shortUrl generated code in the VisitStateDto Obj
-	 * @throws KeyNotFoundException if the provided shortUrl is not available in the DB
+	 * @throws KeyNotFoundException       if the provided shortUrl is not available in the DB
+	 * @throws ServiceOverloadedException while mongo is slow
 	 */
 	public VisitStateDto getVisitStateByKey(String key) throws KeyNotFoundException {
+		if (loadSheddingService.isDegraded()) throw new ServiceOverloadedException("stats are shed while mongo is slow");
 		VisitStateDto dto = new VisitStateDto();
-		ShortUrl shortUrl = Optional.ofNullable(shortUrlRepository.findByKeyCode(key))
+		ShortUrl found = this.findByKeyCode(key);
+		ShortUrl shortUrl = Optional.ofNullable(found != null ? found : this.findArchived(key))
 				.map(c -> c)
 				.orElseThrow(KeyNotFoundException::new);
 
-		LongSummaryStatistics longSummaryStatistics = shortUrl.getStats().getDateStats().stream().mapToLong(d -> d.getVisits()).summaryStatistics();
-		dto.setDailyAverage(longSummaryStatistics.getAverage());
-		dto.setMax(longSummaryStatistics.getMax());
-		dto.setMin(longSummaryStatistics.getMin());
-		dto.setTotalPerYear(longSummaryStatistics.getSum());
-		dto.setPerMonth(getMonthlyVisitReport(shortUrl));
-		dto.setByOs(shortUrl.getStats().getOsStat());
-		dto.setByBrowsers(shortUrl.getStats().getBrowserStats());
+		VisitSummary summary = this.getSummary(shortUrl);
+		dto.setDailyAverage(summary.getDailyAverage());
+		dto.setMax(summary.getMax());
+		dto.setMin(summary.getMin());
+		dto.setTotalPerYear(summary.getTotal());
+		dto.setPerMonth(getMonthlyVisitReport(summary));
+		for (ClickDimension dimension : ClickDimension.values()) {
+			dto.setBreakdown(dimension.getReportName(), shortUrl.getStats().breakdown(dimension));
+		}
 		dto.setLastAccessDate(shortUrl.getLastAccessDate());
+		dto.setVersion(summary.getVersion());
 		dto.setCode(BaseResponse.SUCCESSFUL);
 		dto.setSuccess(true);
 		dto.setMessage("analytics");
@@ -159,62 +725,67 @@ public class ShortUrlServiceImpl implements ShortUrlService {
 		return dto;
 	}
 
+	/**
+	 * @return the shortUrl of the key from the link store, or pending in the write-behind journal
+	 */
+	private ShortUrl findByKeyCode(String key) {
+		if (!loadSheddingService.tryAcquire()) throw new ServiceOverloadedException("link store lookup shed");
+		ShortUrl shortUrl;
+		long start = System.nanoTime();
+		boolean failed = true;
+		try (Trace.Span span = Trace.span("link-store.findByKeyCode")) {
+			shortUrl = linkStore.findByKeyCode(key);
+			failed = false;
+		} finally {
+			loadSheddingService.release(start, failed);
+		}
+		if (shortUrl == null && writeBehindService.isPresent()) shortUrl = writeBehindService.get().findByKeyCode(key);
+		return shortUrl;
+	}
+
+	/**
+	 * saves the stats of a visit unless the write is shed, the visit then stays counted by the top links and the
+	 * click stream only
+	 */
+	private void saveStats(ShortUrl shortUrl) {
+		if (!loadSheddingService.admitStatsWrite()) return;
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			linkStore.save(shortUrl);
+			failed = false;
+		} finally {
+			loadSheddingService.release(start, failed);
+		}
+	}
+
+	/**
+	 * @return the archived shortUrl of the key, null if none or if tiering is not enabled
+	 */
+	private ShortUrl findArchived(String key) {
+		if (!tieringService.isPresent()) return null;
+		ShortUrl shortUrl = tieringService.get().findArchived(key);
+		(shortUrl == null ? archiveMisses : archiveHits).increment();
+		return shortUrl;
+	}
+
 	/**
 	 * once expanding request, the stats such as browser and os requesting , nth day of year request has come are updated
 	 *
-	 * @param dto      container that holds requesting browser , os and shortUrl
+	 * @param ordinals label ordinals of the visit indexed by dimension ordinal
 	 * @param shortUrl founded shortUrl from DB , to be updated
 	 * @return stats updated obj of the requested shortURL
 	 */
-	private ShortUrl updateStats(ResolveLinkDto dto, ShortUrl shortUrl) {
-		switch (dto.getBrowser().toLowerCase()) {
-			case "internet explorer":
-				shortUrl.getStats().getBrowserStats().incrementIe();
-				break;
-			case "safari":
-				shortUrl.getStats().getBrowserStats().incrementSafari();
-				break;
-			case "chrome":
-				shortUrl.getStats().getBrowserStats().incrementChrome();
-				break;
-			case "firefox":
-				shortUrl.getStats().getBrowserStats().incrementFireFox();
-				break;
-			case "opera":
-				shortUrl.getStats().getBrowserStats().incrementOpera();
-				break;
-
-			default:
-				shortUrl.getStats().getBrowserStats().incrementOthers();
-				break;
-		}
-
-		switch (dto.getOs().toLowerCase()) {
-			case "windows":
-				shortUrl.getStats().getOsStat().incrementWindows();
-				break;
-			case "mac_os":
-				shortUrl.getStats().getOsStat().incrementMacOs();
-				break;
-			case "linux":
-				shortUrl.getStats().getOsStat().incrementLinux();
-				break;
-			case "android":
-				shortUrl.getStats().getOsStat().incrementAndroid();
-				break;
-			case "iphone":
-				shortUrl.getStats().getOsStat().incrementIos();
-				break;
-
-			default:
-				shortUrl.getStats().getOsStat().incrementOthers();
-				break;
-		}
-
-		Calendar calendar = Calendar.getInstance();
-		int dayOfYear = calendar.get(Calendar.DAY_OF_YEAR);
-
-		shortUrl.getStats().getDateStats().stream().filter((d) -> d.getDayOfYear() == dayOfYear).findFirst().map(d -> {
+	private ShortUrl updateStats(int[] ordinals, ShortUrl shortUrl) {
+		for (ClickDimension dimension : ClickDimension.values()) {
+			shortUrl.getStats().increment(dimension, ordinals[dimension.ordinal()]);
+		}
+
+		LocalDate today = LocalDate.now();
+		int dayOfYear = today.getDayOfYear();
+
+		VisitSummary summary = this.getSummary(shortUrl);
+		DateStat dateStat = shortUrl.getStats().getDateStats().stream().filter((d) -> d.getDayOfYear() == dayOfYear).findFirst().map(d -> {
 			d.incrementVisit();
 			return d;
 		}).orElseGet(() -> {
@@ -222,6 +793,7 @@ public class ShortUrlServiceImpl implements ShortUrlService {
 			shortUrl.getStats().getDateStats().add(newDateStat);
 			return newDateStat;
 		});
+		summary.recordVisit(dayOfYear, today.getMonthValue(), dateStat.getVisits(), dateStat.getVisits() == 1);
 
 		return shortUrl;
 	}
@@ -233,40 +805,47 @@ public class ShortUrlServiceImpl implements ShortUrlService {
 	 */
 	private Stats initState() {
 		Stats state = new Stats();
-		state.setBrowserStats(new BrowserStats());
-		state.setOsStat(new OsStat());
+		state.setSummary(new VisitSummary());
 		return state;
 	}
 
 	/**
-	 * request are recorded as the nth day of the year in the DateStats,so this methos loops through the each month
-	 * and calculates total visit of each month by summing during that month.
+	 * summary of shortUrls persisted before summaries were maintained is built once from the date stats,
+	 * and persisted along the next visit.
 	 *
-	 * @param shortUrl founded shortUrl from DB for which date are going to be calculated monthly
-	 * @return a map of that key represent month name, and value is equal to the sum of visits in that month
+	 * @param shortUrl founded shortUrl from DB
+	 * @return the materialized visit summary of the shortUrl
 	 */
-	private Map<String, Long> getMonthlyVisitReport(ShortUrl shortUrl) {
-		int year = LocalDate.now().getYear();
-		Map<String, Long> monthlyVisitsReport = new HashMap<>();
-		for (LocalDate date = LocalDate.of(year, 1, 1); date.isBefore(LocalDate.of(year + 1, 1, 1)); date = date.plusMonths(1)) {
-			String month = date.getMonth().getDisplayName(TextStyle.FULL, Locale.getDefault());
-			Long totalVisits = this.getTotalVisitForAMonth(shortUrl, date.getDayOfYear(), date.plusMonths(1).getDayOfYear());
-			monthlyVisitsReport.put(month, totalVisits);
+	private VisitSummary getSummary(ShortUrl shortUrl) {
+		if (shortUrl.getStats().getSummary() == null) {
+			shortUrl.getStats().setSummary(VisitSummary.of(shortUrl.getStats().getDateStats(), Year.now()));
 		}
-
-		return monthlyVisitsReport;
+		return shortUrl.getStats().getSummary();
 	}
 
 	/**
-	 * a helper to calculate the sum of visit during a date range by startDay number of year to endDay number in the year
+	 * monthly totals are kept in the summary indexed by month
 	 *
-	 * @param shortUrl founded shortUrl from DB for which date are going to be calculated monthly
-	 * @param startDay start nth day of the range
-	 * @param lastDay  end nth day of the range
-	 * @return sum of visits in the duration
+	 * @param summary materialized visit summary of a shortUrl
+	 * @return a map of that key represent month name, and value is equal to the sum of visits in that month
 	 */
-	private Long getTotalVisitForAMonth(ShortUrl shortUrl, Integer startDay, Integer lastDay) {
-		return shortUrl.getStats().getDateStats().stream().filter(d -> d.getDayOfYear() >= startDay && d.getDayOfYear() < lastDay).mapToLong(d -> d.getVisits()).sum();
+	private Map<String, Long> getMonthlyVisitReport(VisitSummary summary) {
+		Map<String, Long> monthlyVisitsReport = new HashMap<>();
+		for (Month month : Month.values()) {
+			monthlyVisitsReport.put(month.getDisplayName(TextStyle.FULL, Locale.getDefault()), summary.getPerMonth()[month.ordinal()]);
+		}
+
+		return monthlyVisitsReport;
 	}
 
+
+	private static final class PendingVisit {
+		private final String keyCode;
+		private final int[] ordinals;
+
+		PendingVisit(String keyCode, int[] ordinals) {
+			this.keyCode = keyCode;
+			this.ordinals = ordinals;
+		}
+	}
 }
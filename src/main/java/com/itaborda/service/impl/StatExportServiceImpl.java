@@ -0,0 +1,205 @@
+package com.itaborda.service.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itaborda.controller.dto.StatExportDto;
+import com.itaborda.exception.InvalidCursorException;
+import com.itaborda.exception.InvalidFormatException;
+import com.itaborda.model.ShortUrl;
+import com.itaborda.model.embedded.DateStat;
+import com.itaborda.model.embedded.Stats;
+import com.itaborda.model.embedded.VisitSummary;
+import com.itaborda.repository.LinkStore;
+import com.itaborda.service.StatExportService;
+import com.itaborda.util.ClickDimension;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.Year;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Service writing the statistics of all short urls as NDJSON or CSV.
+ * short urls are read through a mongo cursor fetching a bounded batch per round trip and every row is written
+ * as soon as it is read, so memory use does not depend on the collection size.
+ * every row carries the cursor token of its short url, an interrupted export is resumed by passing the last
+ * received token as {@code after}.
+ */
+@Service
+public class StatExportServiceImpl implements StatExportService {
+
+    private static final String CSV_HEADER = csvHeader();
+
+    private LinkStore linkStore;
+    private ObjectMapper objectMapper;
+
+    @Value("${shortify.export.batch-size:500}")
+    private int batchSize;
+
+    @Value("${shortify.export.flush-every:1000}")
+    private int flushEvery;
+
+    public StatExportServiceImpl(LinkStore linkStore, ObjectMapper objectMapper) {
+        this.linkStore = linkStore;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param request export parameters
+     * @throws InvalidCursorException if the resume token is not a cursor token emitted by a previous export
+     * @throws InvalidFormatException if the format is neither ndjson nor csv
+     */
+    @Override
+    public void validate(StatExportDto request) throws InvalidCursorException, InvalidFormatException {
+        if (!request.isNdjson() && !request.isCsv()) throw new InvalidFormatException();
+        if (request.getAfter() != null && !ObjectId.isValid(request.getAfter())) throw new InvalidCursorException();
+    }
+
+    /**
+     * @param request export parameters
+     * @param out     stream the rows are written to, it is flushed but not closed
+     * @throws IOException if the client went away
+     */
+    @Override
+    public void export(StatExportDto request, OutputStream out) throws IOException {
+        try (CloseableIterator<ShortUrl> cursor = linkStore.streamForExport(request.getFrom(), request.getTo(),
+                request.getAfter(), batchSize)) {
+            if (request.isCsv()) {
+                writeCsv(cursor, request.isSeries(), out);
+            } else {
+                writeNdjson(cursor, request.isSeries(), out);
+            }
+        }
+    }
+
+    private void writeNdjson(CloseableIterator<ShortUrl> cursor, boolean series, OutputStream out) throws IOException {
+        JsonGenerator json = objectMapper.getFactory().createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .setRootValueSeparator(null);
+        int rows = 0;
+        while (cursor.hasNext()) {
+            ShortUrl shortUrl = cursor.next();
+            Stats stats = shortUrl.getStats();
+            VisitSummary summary = summary(stats);
+
+            json.writeStartObject();
+            json.writeStringField("cursor", shortUrl.getId());
+            json.writeStringField("key", shortUrl.getKeyCode());
+            json.writeStringField("longUrl", shortUrl.getLongUrl());
+            json.writeStringField("createdDate", format(shortUrl.getCreatedDate()));
+            json.writeStringField("lastAccessDate", format(shortUrl.getLastAccessDate()));
+            json.writeNumberField("total", summary.getTotal());
+            json.writeNumberField("dailyAverage", summary.getDailyAverage());
+            json.writeNumberField("min", summary.getMin());
+            json.writeNumberField("max", summary.getMax());
+            json.writeFieldName("perMonth");
+            json.writeArray(summary.getPerMonth(), 0, summary.getPerMonth().length);
+
+            for (ClickDimension dimension : ClickDimension.values()) {
+                json.writeObjectFieldStart(dimension.getReportName());
+                long[] counters = stats.dimensionCounters(dimension);
+                for (int i = 0; i < dimension.size(); i++) {
+                    json.writeNumberField(dimension.getLabels()[i], counters[i]);
+                }
+                json.writeEndObject();
+            }
+
+            if (series) {
+                json.writeObjectFieldStart("series");
+                for (DateStat dateStat : dateStats(stats)) {
+                    json.writeNumberField(String.valueOf(dateStat.getDayOfYear()), dateStat.getVisits());
+                }
+                json.writeEndObject();
+            }
+            json.writeEndObject();
+            json.writeRaw('\n');
+
+            if (++rows % flushEvery == 0) json.flush();
+        }
+        json.flush();
+    }
+
+    private void writeCsv(CloseableIterator<ShortUrl> cursor, boolean series, OutputStream out) throws IOException {
+        Writer csv = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        csv.write(CSV_HEADER);
+        csv.write('\n');
+        int rows = 0;
+        while (cursor.hasNext()) {
+            ShortUrl shortUrl = cursor.next();
+            Stats stats = shortUrl.getStats();
+            VisitSummary summary = summary(stats);
+
+            StringBuilder row = new StringBuilder(256);
+            row.append(shortUrl.getId()).append(',');
+            appendQuoted(row, shortUrl.getKeyCode()).append(',');
+            appendQuoted(row, shortUrl.getLongUrl()).append(',');
+            row.append(format(shortUrl.getCreatedDate())).append(',');
+            row.append(format(shortUrl.getLastAccessDate())).append(',');
+            row.append(summary.getTotal()).append(',');
+            row.append(summary.getDailyAverage()).append(',');
+            row.append(summary.getMin()).append(',');
+            row.append(summary.getMax()).append(',');
+            for (int m = 0; m < summary.getPerMonth().length; m++) {
+                if (m > 0) row.append(';');
+                row.append(summary.getPerMonth()[m]);
+            }
+            for (ClickDimension dimension : ClickDimension.values()) {
+                for (long count : stats.dimensionCounters(dimension)) row.append(',').append(count);
+            }
+            row.append(',');
+            if (series) {
+                boolean first = true;
+                for (DateStat dateStat : dateStats(stats)) {
+                    if (!first) row.append(';');
+                    row.append(dateStat.getDayOfYear()).append(':').append(dateStat.getVisits());
+                    first = false;
+                }
+            }
+            row.append('\n');
+            csv.write(row.toString());
+
+            if (++rows % flushEvery == 0) csv.flush();
+        }
+        csv.flush();
+    }
+
+    /**
+     * one column per label of every click dimension, named dimension.label
+     */
+    private static String csvHeader() {
+        StringBuilder header = new StringBuilder("cursor,key,longUrl,createdDate,lastAccessDate,total,dailyAverage,min,max,perMonth");
+        for (ClickDimension dimension : ClickDimension.values()) {
+            for (String label : dimension.getLabels()) header.append(',').append(dimension.getName()).append('.').append(label);
+        }
+        return header.append(",series").toString();
+    }
+
+    private VisitSummary summary(Stats stats) {
+        return Optional.ofNullable(stats.getSummary()).orElseGet(() -> VisitSummary.of(dateStats(stats), Year.now()));
+    }
+
+    private List<DateStat> dateStats(Stats stats) {
+        return stats.getDateStats() == null ? Collections.emptyList() : stats.getDateStats();
+    }
+
+    private String format(LocalDateTime date) {
+        return date == null ? "" : date.toString();
+    }
+
+    private StringBuilder appendQuoted(StringBuilder row, String value) {
+        if (value == null) return row;
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) return row.append(value);
+        return row.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
@@ -0,0 +1,107 @@
+package com.itaborda.service.impl;
+
+import com.itaborda.model.ShortUrl;
+import com.itaborda.repository.LinkArchive;
+import com.itaborda.repository.LinkStore;
+import com.itaborda.service.TieringService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * cold short urls are copied to the archive a batch at a time, then deleted from the link store, pausing between
+ * batches so the move does not compete with the traffic. every step can be repeated, a run interrupted or running
+ * on several replicas at once only does some work twice. a visit racing with the move of its short url may find
+ * it in neither tier for a moment, or have its stats update overwritten by the archived copy.
+ */
+@Service
+@Profile("tiering")
+public class TieringServiceImpl implements TieringService {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final LinkStore linkStore;
+    private final LinkArchive linkArchive;
+    private final Duration coldAfter;
+    private final int batchSize;
+    private final long pause;
+
+    public TieringServiceImpl(LinkStore linkStore, LinkArchive linkArchive,
+                              @Value("${shortify.tiering.cold-after:P7D}") String coldAfter,
+                              @Value("${shortify.tiering.batch-size:500}") int batchSize,
+                              @Value("${shortify.tiering.pause:1000}") long pause) {
+        this.linkStore = linkStore;
+        this.linkArchive = linkArchive;
+        this.coldAfter = Duration.parse(coldAfter);
+        this.batchSize = batchSize;
+        this.pause = pause;
+    }
+
+    @Override
+    public ShortUrl findArchived(String keyCode) {
+        return keyCode == null ? null : linkArchive.findByKeyCode(keyCode);
+    }
+
+    @Override
+    public ShortUrl findArchivedByUrlKey(String urlKey) {
+        return linkArchive.findByUrlKey(urlKey);
+    }
+
+    /**
+     * a url shortened again while its short url was archived holds the url key in the link store, the promoted
+     * short url is then saved without url key so both keys keep resolving
+     */
+    @Override
+    public ShortUrl promote(ShortUrl shortUrl) {
+        ShortUrl promoted;
+        try {
+            promoted = linkStore.save(shortUrl);
+        } catch (DuplicateKeyException e) {
+            shortUrl.setUrlKey(null);
+            promoted = linkStore.save(shortUrl);
+        }
+        linkArchive.delete(shortUrl);
+        return promoted;
+    }
+
+    @Scheduled(fixedDelayString = "${shortify.tiering.interval:3600000}", initialDelayString = "${shortify.tiering.interval:3600000}")
+    public void scheduledArchive() throws InterruptedException {
+        archiveCold();
+    }
+
+    @Override
+    public synchronized long archiveCold() throws InterruptedException {
+        LocalDateTime before = LocalDateTime.now().minus(coldAfter);
+        long archived = 0;
+        List<ShortUrl> batch = new ArrayList<>(batchSize);
+        try (CloseableIterator<ShortUrl> cursor = linkStore.streamNotAccessedSince(before, batchSize)) {
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() < batchSize) continue;
+                archived += move(batch);
+                batch.clear();
+                Thread.sleep(pause);
+            }
+        }
+        archived += move(batch);
+        if (archived > 0) log.info("archived {} short urls not visited since {}", archived, before);
+        return archived;
+    }
+
+    private int move(List<ShortUrl> batch) {
+        if (batch.isEmpty()) return 0;
+        linkArchive.archive(batch);
+        linkStore.deleteAll(batch);
+        return batch.size();
+    }
+}
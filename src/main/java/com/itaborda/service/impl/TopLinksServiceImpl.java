@@ -0,0 +1,248 @@
+package com.itaborda.service.impl;
+
+import com.itaborda.controller.dto.BaseResponse;
+import com.itaborda.controller.dto.TopLinkDto;
+import com.itaborda.controller.dto.TopLinksDto;
+import com.itaborda.repository.LinkStore;
+import com.itaborda.service.TopLinksService;
+import com.itaborda.util.SpaceSaving;
+import com.itaborda.util.Utility;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service keeping the heavy hitter (most resolved) short urls of the whole system.
+ * resolve only bumps a per key adder, the adders are drained periodically into two Space-Saving summaries,
+ * an all-time one and a trending one that is exponentially decayed. each replica pushes its summaries to redis
+ * and merges the summaries of all live replicas so every replica serves the same system wide view.
+ * the merged views are immutable lists swapped on each merge, so reading them costs constant time.
+ */
+@Service
+public class TopLinksServiceImpl implements TopLinksService {
+
+    private static final String REPLICAS_KEY = "shortify:top:replicas";
+    private static final String SUMMARY_KEY_PREFIX = "shortify:top:";
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final StringRedisTemplate redisTemplate;
+    private final LinkStore linkStore;
+
+    private final ConcurrentHashMap<String, LongAdder> pending = new ConcurrentHashMap<>();
+    private final SpaceSaving allTime;
+    private final SpaceSaving trending;
+    private final String workerId;
+    private final int maxPending;
+    private final int prewarmSize;
+    private final long halfLifeMillis;
+    private final long mergeIntervalMillis;
+    private long lastDrain = System.currentTimeMillis();
+
+    private volatile List<TopLinkDto> allTimeView = Collections.emptyList();
+    private volatile List<TopLinkDto> trendingView = Collections.emptyList();
+    private volatile LocalDateTime mergedAt;
+    private Set<String> prewarmed = Collections.emptySet();
+
+    public TopLinksServiceImpl(StringRedisTemplate redisTemplate, LinkStore linkStore,
+                               @Value("${shortify.top.capacity:1000}") int capacity,
+                               @Value("${shortify.top.max-pending:100000}") int maxPending,
+                               @Value("${shortify.top.prewarm-size:100}") int prewarmSize,
+                               @Value("${shortify.top.trending-half-life:PT10M}") String halfLife,
+                               @Value("${shortify.top.merge-interval:10000}") long mergeIntervalMillis) throws UnknownHostException {
+        this.redisTemplate = redisTemplate;
+        this.linkStore = linkStore;
+        this.allTime = new SpaceSaving(capacity);
+        this.trending = new SpaceSaving(capacity);
+        this.maxPending = maxPending;
+        this.prewarmSize = prewarmSize;
+        this.halfLifeMillis = Duration.parse(halfLife).toMillis();
+        this.mergeIntervalMillis = mergeIntervalMillis;
+        this.workerId = Utility.getHostname();
+        Gauge.builder("shortify.click.pipeline.depth", pending::size).description("visits and keys waiting in the click pipeline per stage")
+                .tag("stage", "top-links").register(Metrics.globalRegistry);
+    }
+
+    /**
+     * called on the resolve path, a lock free increment of the key adder.
+     * if too many distinct keys are waiting for the next drain the click is not counted, the summaries are
+     * approximate anyway and the redirect must never pay for them.
+     *
+     * @param key resolved short url
+     */
+    @Override
+    public void record(String key) {
+        LongAdder adder = pending.get(key);
+        if (adder == null) {
+            if (pending.size() >= maxPending) return;
+            adder = pending.computeIfAbsent(key, k -> new LongAdder());
+        }
+        adder.increment();
+    }
+
+    /**
+     * @param window {@link #WINDOW_ALL} or {@link #WINDOW_TRENDING}
+     * @param limit  maximum number of links to return
+     * @return the latest merged view of the requested window
+     */
+    @Override
+    public TopLinksDto getTopLinks(String window, int limit) {
+        boolean all = WINDOW_ALL.equalsIgnoreCase(window);
+        List<TopLinkDto> view = all ? allTimeView : trendingView;
+
+        TopLinksDto dto = new TopLinksDto();
+        dto.setWindow(all ? WINDOW_ALL : WINDOW_TRENDING);
+        dto.setLinks(view.subList(0, Math.max(0, Math.min(limit, view.size()))));
+        dto.setMergedAt(mergedAt);
+        dto.setCode(BaseResponse.SUCCESSFUL);
+        dto.setSuccess(true);
+        dto.setMessage("top links");
+        return dto;
+    }
+
+    /**
+     * reads the summaries the live replicas published to redis without merging the local one, so a replica
+     * which just started gets the keys hot across the system before it served any visit.
+     * trending keys come first, then the all-time ones.
+     *
+     * @param limit maximum number of keys to return
+     * @return hottest keys, empty when redis is not reachable
+     */
+    @Override
+    public List<String> hotKeys(int limit) {
+        Set<String> keys = new LinkedHashSet<>();
+        try {
+            Set<String> replicas = Optional.ofNullable(redisTemplate.opsForSet().members(REPLICAS_KEY)).orElse(Collections.emptySet());
+            for (String window : new String[]{WINDOW_TRENDING, WINDOW_ALL}) {
+                for (String key : SpaceSaving.merge(fetch(window, replicas), limit).keySet()) {
+                    if (keys.size() >= limit) break;
+                    keys.add(key);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not read the hot keys of the replicas: {}", e.getMessage());
+        }
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * moves the pending clicks into the summaries and decays the trending one by the elapsed time
+     */
+    @Scheduled(fixedDelayString = "${shortify.top.drain-interval:1000}")
+    public void drain() {
+        long now = System.currentTimeMillis();
+        trending.decay(Math.pow(0.5, (double) (now - lastDrain) / halfLifeMillis));
+        lastDrain = now;
+
+        // the adder stays in the map while it is counting, a click recorded on it during the drain is taken by the
+        // next one. an adder idle since the last drain is removed, and what a record racing the removal added is taken
+        for (Map.Entry<String, LongAdder> entry : pending.entrySet()) {
+            LongAdder adder = entry.getValue();
+            long clicks = adder.sumThenReset();
+            if (clicks == 0 && pending.remove(entry.getKey(), adder)) clicks = adder.sumThenReset();
+            if (clicks == 0) continue;
+            allTime.offer(entry.getKey(), clicks);
+            trending.offer(entry.getKey(), clicks);
+        }
+    }
+
+    /**
+     * publishes the local summaries to redis and merges the summaries of every live replica.
+     * when redis is not reachable the local summaries are served instead.
+     */
+    @Scheduled(fixedDelayString = "${shortify.top.merge-interval:10000}")
+    public void merge() {
+        Map<String, Double> localAll = allTime.top(allTime.getCapacity());
+        Map<String, Double> localTrending = trending.top(trending.getCapacity());
+        Map<String, Double> mergedAll = localAll;
+        Map<String, Double> mergedTrending = localTrending;
+        try {
+            publish(WINDOW_ALL, localAll);
+            publish(WINDOW_TRENDING, localTrending);
+            redisTemplate.opsForSet().add(REPLICAS_KEY, workerId);
+
+            Set<String> replicas = Optional.ofNullable(redisTemplate.opsForSet().members(REPLICAS_KEY)).orElse(Collections.emptySet());
+            mergedAll = SpaceSaving.merge(fetch(WINDOW_ALL, replicas), allTime.getCapacity());
+            mergedTrending = SpaceSaving.merge(fetch(WINDOW_TRENDING, replicas), trending.getCapacity());
+        } catch (RuntimeException e) {
+            log.warn("Could not merge top links through redis, serving local view: {}", e.getMessage());
+        }
+
+        allTimeView = toView(mergedAll);
+        trendingView = toView(mergedTrending);
+        mergedAt = LocalDateTime.now();
+        prewarm(trendingView);
+    }
+
+    private void publish(String window, Map<String, Double> summary) {
+        String key = SUMMARY_KEY_PREFIX + window + ":" + workerId;
+        Map<String, String> hash = new HashMap<>();
+        summary.forEach((k, v) -> hash.put(k, Double.toString(v)));
+        redisTemplate.delete(key);
+        if (!hash.isEmpty()) redisTemplate.opsForHash().putAll(key, hash);
+        redisTemplate.expire(key, mergeIntervalMillis * 3, TimeUnit.MILLISECONDS);
+    }
+
+    private List<Map<String, Double>> fetch(String window, Set<String> replicas) {
+        List<Map<String, Double>> summaries = new ArrayList<>();
+        for (String replica : replicas) {
+            String key = SUMMARY_KEY_PREFIX + window + ":" + replica;
+            Map<Object, Object> hash = redisTemplate.opsForHash().entries(key);
+            if (hash.isEmpty() && !redisTemplate.hasKey(key)) {
+                // summary expired, the replica is gone
+                redisTemplate.opsForSet().remove(REPLICAS_KEY, replica);
+                continue;
+            }
+            Map<String, Double> summary = new HashMap<>();
+            hash.forEach((k, v) -> summary.put((String) k, Double.valueOf((String) v)));
+            summaries.add(summary);
+        }
+        return summaries;
+    }
+
+    private List<TopLinkDto> toView(Map<String, Double> summary) {
+        List<TopLinkDto> view = new ArrayList<>(summary.size());
+        summary.forEach((k, v) -> view.add(new TopLinkDto(k, Math.round(v))));
+        return Collections.unmodifiableList(view);
+    }
+
+    /**
+     * keys entering the trending view are loaded into the shortify cache, the lookup goes through
+     * the cacheable repository method so keys which are already cached cost a single cache hit.
+     */
+    private void prewarm(List<TopLinkDto> view) {
+        Set<String> warmed = new HashSet<>();
+        for (TopLinkDto link : view.subList(0, Math.min(prewarmSize, view.size()))) {
+            warmed.add(link.getKey());
+            if (prewarmed.contains(link.getKey())) continue;
+            try {
+                linkStore.findByKeyCode(link.getKey());
+            } catch (RuntimeException e) {
+                log.warn("Could not pre-warm key {}: {}", link.getKey(), e.getMessage());
+                return;
+            }
+        }
+        prewarmed = warmed;
+    }
+}
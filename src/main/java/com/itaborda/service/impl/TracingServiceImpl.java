@@ -0,0 +1,90 @@
+package com.itaborda.service.impl;
+
+import com.itaborda.controller.dto.BaseResponse;
+import com.itaborda.controller.dto.SpanDto;
+import com.itaborda.controller.dto.TraceDto;
+import com.itaborda.controller.dto.TracesDto;
+import com.itaborda.service.TracingService;
+import com.itaborda.util.Trace;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * samples requests at shortify.tracing.sample-rate, a request asking for it being always sampled. the slow traces
+ * are written to a ring buffer by claiming the next slot with a single atomic increment, a slot being overwritten
+ * once the ring wrapped around, so recording never blocks a request.
+ */
+@Service
+public class TracingServiceImpl implements TracingService {
+
+    private final double sampleRate;
+    private final long slowThreshold;
+    private final AtomicReferenceArray<Trace> ring;
+    private final AtomicLong next = new AtomicLong();
+
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder slow = new LongAdder();
+
+    public TracingServiceImpl(@Value("${shortify.tracing.sample-rate:0.01}") double sampleRate,
+                              @Value("${shortify.tracing.slow-threshold:PT0.05S}") String slowThreshold,
+                              @Value("${shortify.tracing.capacity:256}") int capacity) {
+        this.sampleRate = sampleRate;
+        this.slowThreshold = Duration.parse(slowThreshold).toNanos();
+        this.ring = new AtomicReferenceArray<>(capacity);
+    }
+
+    @Override
+    public Trace start(String name, boolean force) {
+        if (!force && (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) return null;
+        sampled.increment();
+        return Trace.start(name);
+    }
+
+    @Override
+    public void finish(Trace trace) {
+        trace.close();
+        if (trace.getDuration() < slowThreshold || ring.length() == 0) return;
+        slow.increment();
+        ring.set((int) (next.getAndIncrement() % ring.length()), trace);
+    }
+
+    @Override
+    public TracesDto getTraces() {
+        TracesDto dto = new TracesDto();
+        dto.setSampleRate(sampleRate);
+        dto.setSlowThresholdMillis(TimeUnit.NANOSECONDS.toMillis(slowThreshold));
+        dto.setSampled(sampled.sum());
+        dto.setSlow(slow.sum());
+        long last = next.get();
+        for (long i = last - 1; i >= 0 && i >= last - ring.length(); i--) {
+            Trace trace = ring.get((int) (i % ring.length()));
+            // a slot claimed but not written yet
+            if (trace != null) dto.getTraces().add(toDto(trace));
+        }
+        dto.setCode(BaseResponse.SUCCESSFUL);
+        dto.setSuccess(true);
+        dto.setMessage("traces");
+        return dto;
+    }
+
+    private static TraceDto toDto(Trace trace) {
+        TraceDto dto = new TraceDto();
+        dto.setName(trace.getName());
+        dto.setStartedAt(trace.getStartedAt());
+        dto.setDurationMicros(TimeUnit.NANOSECONDS.toMicros(trace.getDuration()));
+        dto.setDropped(trace.getDropped());
+        for (int span = 0; span < trace.getSpanCount(); span++) {
+            long duration = trace.getSpanDuration(span);
+            dto.getSpans().add(new SpanDto(trace.getSpanName(span), trace.getSpanDepth(span),
+                    TimeUnit.NANOSECONDS.toMicros(trace.getSpanStart(span)), duration < 0 ? -1 : TimeUnit.NANOSECONDS.toMicros(duration)));
+        }
+        return dto;
+    }
+}
@@ -0,0 +1,147 @@
+package com.itaborda.service.impl;
+
+import com.itaborda.controller.dto.BaseResponse;
+import com.itaborda.controller.dto.UrlKeyBackfillDto;
+import com.itaborda.exception.InvalidMigrationException;
+import com.itaborda.model.ShortUrl;
+import com.itaborda.repository.LinkStore;
+import com.itaborda.service.UrlKeyBackfillService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * the short urls are streamed in id order, a batch at a time, pausing between batches. a short url without url key
+ * is saved with the url key of its long url. when another short url already holds that url key the unique index
+ * rejects the save, the short url is then counted as a duplicate and left as it is, shortening its url returns the
+ * other one. running the backfill again only saves the short urls still missing their url key.
+ * shortify.url-key.legacy-lookup is meant to be on from the upgrade until the backfill is done, and off afterwards.
+ */
+@Service
+public class UrlKeyBackfillServiceImpl implements UrlKeyBackfillService {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final LinkStore linkStore;
+    private final int batchSize;
+    private final long pause;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private volatile CompletableFuture<Void> running;
+    private final UrlKeyBackfillDto progress = new UrlKeyBackfillDto();
+
+    public UrlKeyBackfillServiceImpl(LinkStore linkStore,
+                                     @Value("${shortify.url-key.batch-size:1000}") int batchSize,
+                                     @Value("${shortify.url-key.pause:100}") long pause) {
+        this.linkStore = linkStore;
+        this.batchSize = batchSize;
+        this.pause = pause;
+    }
+
+    /**
+     * @throws InvalidMigrationException if a backfill is already running
+     */
+    @Override
+    public synchronized UrlKeyBackfillDto start() throws InvalidMigrationException {
+        if (running != null && !running.isDone()) throw new InvalidMigrationException("backfill is already running");
+        synchronized (progress) {
+            progress.setState(UrlKeyBackfillDto.RUNNING);
+            progress.setScanned(0);
+            progress.setBackfilled(0);
+            progress.setDuplicates(0);
+            progress.setStartedAt(LocalDateTime.now());
+            progress.setFinishedAt(null);
+            progress.setError(null);
+        }
+        running = CompletableFuture.runAsync(this::run, executor);
+        return getReport();
+    }
+
+    @Override
+    public UrlKeyBackfillDto await() throws InterruptedException {
+        CompletableFuture<Void> backfill = running;
+        if (backfill != null) {
+            try {
+                backfill.get();
+            } catch (ExecutionException e) {
+                log.error("Url key backfill stopped unexpectedly", e.getCause());
+            }
+        }
+        return getReport();
+    }
+
+    @Override
+    public UrlKeyBackfillDto getReport() {
+        UrlKeyBackfillDto dto = new UrlKeyBackfillDto();
+        synchronized (progress) {
+            dto.setState(progress.getState());
+            dto.setScanned(progress.getScanned());
+            dto.setBackfilled(progress.getBackfilled());
+            dto.setDuplicates(progress.getDuplicates());
+            dto.setStartedAt(progress.getStartedAt());
+            dto.setFinishedAt(progress.getFinishedAt());
+            dto.setError(progress.getError());
+        }
+        dto.setCode(BaseResponse.SUCCESSFUL);
+        dto.setSuccess(true);
+        dto.setMessage("url-keys");
+        return dto;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run() {
+        try (CloseableIterator<ShortUrl> cursor = linkStore.streamForExport(null, null, null, batchSize)) {
+            long scanned = 0;
+            while (cursor.hasNext()) {
+                backfill(cursor.next());
+                if (++scanned % batchSize == 0) Thread.sleep(pause);
+            }
+            finish(UrlKeyBackfillDto.DONE, null);
+            log.info("Url key backfill gave {} short urls their url key, {} duplicates", progress.getBackfilled(), progress.getDuplicates());
+        } catch (Exception e) {
+            log.error("Url key backfill failed", e);
+            finish(UrlKeyBackfillDto.FAILED, e.getMessage());
+        }
+    }
+
+    private void backfill(ShortUrl shortUrl) {
+        boolean saved = false;
+        boolean duplicate = false;
+        if (shortUrl.getUrlKey() == null && shortUrl.getLongUrl() != null) {
+            shortUrl.setUrlKey(ShortUrl.urlKeyOf(shortUrl.getLongUrl()));
+            try {
+                linkStore.save(shortUrl);
+                saved = true;
+            } catch (DuplicateKeyException e) {
+                duplicate = true;
+            }
+        }
+        synchronized (progress) {
+            progress.setScanned(progress.getScanned() + 1);
+            if (saved) progress.setBackfilled(progress.getBackfilled() + 1);
+            if (duplicate) progress.setDuplicates(progress.getDuplicates() + 1);
+        }
+    }
+
+    private void finish(String state, String error) {
+        synchronized (progress) {
+            progress.setState(state);
+            progress.setError(error);
+            progress.setFinishedAt(LocalDateTime.now());
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.itaborda.service.impl;
+
+import com.itaborda.controller.dto.BaseResponse;
+import com.itaborda.controller.dto.WarmUpStatusDto;
+import com.itaborda.model.ShortUrl;
+import com.itaborda.repository.LinkStore;
+import com.itaborda.service.KeyPoolService;
+import com.itaborda.service.TopLinksService;
+import com.itaborda.service.WarmUpService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * once the application is started, a warm-up thread leases a block of keys and loads the short urls likely to be
+ * visited first into the shortify cache: the keys hot across the replicas, read from the top links summaries, then
+ * the short urls accessed within accessed-within, up to size short urls in all. batches are loaded by parallelism
+ * threads while the recently accessed short urls are still streamed. until the warm-up is over, or its timeout
+ * elapsed, the replica reports not ready so it gets no traffic. a failing step is logged and counted, it does not
+ * keep the replica from becoming ready.
+ */
+@Service
+public class WarmUpServiceImpl implements WarmUpService {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final LinkStore linkStore;
+    private final KeyPoolService keyPoolService;
+    private final TopLinksService topLinksService;
+    private final CacheManager cacheManager;
+    private final int size;
+    private final Duration accessedWithin;
+    private final int parallelism;
+    private final int batchSize;
+    private final Duration timeout;
+
+    private final WarmUpStatusDto status = new WarmUpStatusDto();
+    private final AtomicLong loaded = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile boolean ready;
+
+    public WarmUpServiceImpl(LinkStore linkStore, KeyPoolService keyPoolService, TopLinksService topLinksService, CacheManager cacheManager,
+                             @Value("${shortify.warm-up.size:10000}") int size,
+                             @Value("${shortify.warm-up.accessed-within:PT24H}") String accessedWithin,
+                             @Value("${shortify.warm-up.parallelism:4}") int parallelism,
+                             @Value("${shortify.warm-up.batch-size:500}") int batchSize,
+                             @Value("${shortify.warm-up.timeout:PT2M}") String timeout) {
+        this.linkStore = linkStore;
+        this.keyPoolService = keyPoolService;
+        this.topLinksService = topLinksService;
+        this.cacheManager = cacheManager;
+        this.size = size;
+        this.accessedWithin = Duration.parse(accessedWithin);
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.timeout = Duration.parse(timeout);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Thread thread = new Thread(this::warmUp, "warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public WarmUpStatusDto warmUp() {
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        synchronized (status) {
+            status.setState(WarmUpStatusDto.RUNNING);
+            status.setStartedAt(LocalDateTime.now());
+        }
+        leaseKeys();
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        List<Future<?>> batches = new ArrayList<>();
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        boolean timedOut = false;
+        try {
+            List<String> hotKeys = size > 0 ? topLinksService.hotKeys(size) : new ArrayList<>();
+            seen.addAll(hotKeys);
+            synchronized (status) {
+                status.setHotKeys(hotKeys.size());
+            }
+            for (int i = 0; i < hotKeys.size(); i += batchSize) {
+                List<String> batch = hotKeys.subList(i, Math.min(i + batchSize, hotKeys.size()));
+                batches.add(executor.submit(() -> load(batch)));
+            }
+            timedOut = !streamRecent(seen, executor, batches, deadline);
+            for (Future<?> batch : batches) {
+                if (timedOut) break;
+                try {
+                    batch.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    timedOut = true;
+                } catch (ExecutionException e) {
+                    failures.incrementAndGet();
+                    log.warn("Could not warm up a batch of short urls", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            timedOut = true;
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            log.warn("Warm-up stopped early: {}", e.getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        synchronized (status) {
+            status.setState(timedOut ? WarmUpStatusDto.TIMED_OUT : WarmUpStatusDto.DONE);
+            status.setDurationMillis(duration);
+        }
+        ready = true;
+        log.info("Warm-up loaded {} short urls in {} ms{}", loaded.get(), duration, timedOut ? ", timed out" : "");
+        return getStatus();
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public WarmUpStatusDto getStatus() {
+        WarmUpStatusDto dto = new WarmUpStatusDto();
+        synchronized (status) {
+            dto.setState(status.getState());
+            dto.setStartedAt(status.getStartedAt());
+            dto.setDurationMillis(status.getDurationMillis());
+            dto.setKeysLeased(status.getKeysLeased());
+            dto.setHotKeys(status.getHotKeys());
+            dto.setRecentLinks(status.getRecentLinks());
+        }
+        dto.setLoaded(loaded.get());
+        dto.setFailures(failures.get());
+        dto.setReady(ready);
+        dto.setCode(BaseResponse.SUCCESSFUL);
+        dto.setSuccess(true);
+        dto.setMessage(ready ? "ready" : "warming up");
+        return dto;
+    }
+
+    private void leaseKeys() {
+        try {
+            int leased = keyPoolService.prefetch();
+            synchronized (status) {
+                status.setKeysLeased(leased);
+            }
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            log.warn("Could not lease keys on startup: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return false if the deadline elapsed before the cursor was drained
+     */
+    private boolean streamRecent(Set<String> seen, ExecutorService executor, List<Future<?>> batches, long deadline) {
+        long recent = 0;
+        List<ShortUrl> batch = new ArrayList<>(batchSize);
+        try (CloseableIterator<ShortUrl> cursor = linkStore.streamAccessedSince(LocalDateTime.now().minus(accessedWithin), batchSize)) {
+            while (seen.size() < size && cursor.hasNext()) {
+                if (System.nanoTime() > deadline) return false;
+                ShortUrl shortUrl = cursor.next();
+                if (!seen.add(shortUrl.getKeyCode())) continue;
+                recent++;
+                batch.add(shortUrl);
+                if (batch.size() < batchSize) continue;
+                List<ShortUrl> full = batch;
+                batches.add(executor.submit(() -> cache(full)));
+                batch = new ArrayList<>(batchSize);
+            }
+            if (!batch.isEmpty()) {
+                List<ShortUrl> last = batch;
+                batches.add(executor.submit(() -> cache(last)));
+            }
+        } finally {
+            synchronized (status) {
+                status.setRecentLinks(recent);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * the lookup goes through the cacheable link store method, so a key which is already cached costs a single hit
+     */
+    private void load(List<String> keyCodes) {
+        for (String keyCode : keyCodes) {
+            if (Thread.currentThread().isInterrupted()) return;
+            if (linkStore.findByKeyCode(keyCode) != null) loaded.incrementAndGet();
+        }
+    }
+
+    /**
+     * short urls are only put if absent, a visit may have cached a fresher state since they were read
+     */
+    private void cache(List<ShortUrl> shortUrls) {
+        Cache cache = cacheManager.getCache(ShortUrl.CACHE_NAME);
+        if (cache == null) return;
+        for (ShortUrl shortUrl : shortUrls) {
+            if (Thread.currentThread().isInterrupted()) return;
+            cache.putIfAbsent(shortUrl.getKeyCode(), shortUrl);
+            loaded.incrementAndGet();
+        }
+    }
+}
@@ -3,14 +3,18 @@ package com.itaborda.service.impl;
 import com.itaborda.aspect.Retry;
 import com.itaborda.exception.KeyOverFlowException;
 import com.itaborda.model.embedded.AllocatedCounter;
-import com.itaborda.repository.WorkerStatusRepository;
+import com.itaborda.repository.KeyRangeStore;
 import com.itaborda.service.AllocatedRangePartitionStatusService;
 import com.itaborda.service.WorkerStatusService;
 import com.itaborda.model.WorkerStatus;
 import com.itaborda.util.GlobalConstants;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 /**
  * service used to manage key pool allocated to each worker (service container in docker)
@@ -19,15 +23,29 @@ import java.util.Optional;
  */
 @Service
 public class WorkerStatusServiceImpl implements WorkerStatusService {
-    private WorkerStatusRepository workerStatusRepository;
+    private KeyRangeStore keyRangeStore;
     private AllocatedRangePartitionStatusService allocatedRangePartitionStatusService;
 
+    /**
+     * latency of a single attempt, the retries of an attempt losing the optimistic lock are counted by the retry aspect
+     */
+    private final Timer getNewKeyLatency = allocationTimer("getNewKey");
+    private final Timer reserveKeysLatency = allocationTimer("reserveKeys");
+    private final Counter allocatedKeys = Counter.builder("shortify.keys.allocated")
+            .description("keys allocated to this worker from its range partitions").register(Metrics.globalRegistry);
+    private final Counter allocatedRanges = Counter.builder("shortify.key.ranges.allocated")
+            .description("range partitions allocated to this worker").register(Metrics.globalRegistry);
 
-    public WorkerStatusServiceImpl(WorkerStatusRepository workerStatusRepository, AllocatedRangePartitionStatusService allocatedRangePartitionStatusService) {
-        this.workerStatusRepository = workerStatusRepository;
+    public WorkerStatusServiceImpl(KeyRangeStore keyRangeStore, AllocatedRangePartitionStatusService allocatedRangePartitionStatusService) {
+        this.keyRangeStore = keyRangeStore;
         this.allocatedRangePartitionStatusService = allocatedRangePartitionStatusService;
     }
 
+    private static Timer allocationTimer(String operation) {
+        return Timer.builder("shortify.key.allocation").description("latency of an attempt to allocate keys").tag("operation", operation)
+                .publishPercentileHistogram().register(Metrics.globalRegistry);
+    }
+
     /**
      * there are 2 scenarios : 1- when workeriD (container hostname of service) is not available /or allocated range
      * exaused by the worker so new range partition should be assigned
@@ -49,7 +67,16 @@ public class WorkerStatusServiceImpl implements WorkerStatusService {
     @Retry(times = 10, on = org.springframework.dao.OptimisticLockingFailureException.class)
     @Override
     public Long getNewKey(String workerId) throws KeyOverFlowException {
-        WorkerStatus workerStatus = Optional.ofNullable(workerStatusRepository.findByWorkerId(workerId))
+        long start = System.nanoTime();
+        try {
+            return this.newKey(workerId);
+        } finally {
+            getNewKeyLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Long newKey(String workerId) throws KeyOverFlowException {
+        WorkerStatus workerStatus = Optional.ofNullable(keyRangeStore.findWorkerStatus(workerId))
                 .map(c -> c)
                 .orElseGet(() -> new WorkerStatus(workerId));
 
@@ -59,7 +86,7 @@ public class WorkerStatusServiceImpl implements WorkerStatusService {
                     Long key2 = workerStatus.getAllocatedRanges().stream().filter(a -> a.getExhausted() == false).mapToLong(a -> {
                         if (a.getCounter() == Long.MAX_VALUE) return -1; // in case of key overflow in the system
                         a.incrementCounter();
-                        a.setExhausted(a.getCounter() == ((a.getRangeNumber() + 1) * GlobalConstants.KeyNumbersInPartitions - 1));
+                        a.setExhausted(a.getCounter() == lastKeyOf(a.getRangeNumber()));
                         return a.getCounter();
                     }).findFirst().getAsLong();
                     return key2;
@@ -67,10 +94,11 @@ public class WorkerStatusServiceImpl implements WorkerStatusService {
                 .orElseGet(() -> {
                     //1st scenario
                     Integer newRangePartitionNumber = allocatedRangePartitionStatusService.allocateRangePartition();
+                    allocatedRanges.increment();
 
                     AllocatedCounter allocatedCounter = new AllocatedCounter();
                     allocatedCounter.setRangeNumber(newRangePartitionNumber);
-                    allocatedCounter.setCounter((long) ((newRangePartitionNumber - 1) * GlobalConstants.KeyNumbersInPartitions + 1));
+                    allocatedCounter.setCounter(firstKeyOf(newRangePartitionNumber));
 
                     workerStatus.getAllocatedRanges().add(allocatedCounter);
                     Long key2 = allocatedCounter.getCounter();
@@ -78,8 +106,76 @@ public class WorkerStatusServiceImpl implements WorkerStatusService {
                 });
 
         if (key < 0) throw new KeyOverFlowException();
-        workerStatusRepository.save(workerStatus);
+        keyRangeStore.saveWorkerStatus(workerStatus);
+        allocatedKeys.increment();
         return key;
 
     }
+
+    /**
+     * reserves {@code count} keys with a single read and write of the worker status, so a batch pays one
+     * allocation instead of one per key. keys are taken contiguously from the current range partition, when it
+     * gets exhausted the remaining keys are taken from a newly allocated range partition.
+     *
+     * @param workerId hostname of the service container in the docker
+     * @param count    number of keys to reserve
+     * @return the reserved decimal keys in ascending order
+     * @throws KeyOverFlowException if the system has exhausted the maximum amount of counters
+     */
+    @Retry(times = 10, on = org.springframework.dao.OptimisticLockingFailureException.class)
+    @Override
+    public long[] reserveKeys(String workerId, int count) throws KeyOverFlowException {
+        long start = System.nanoTime();
+        try {
+            return this.reserve(workerId, count);
+        } finally {
+            reserveKeysLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private long[] reserve(String workerId, int count) throws KeyOverFlowException {
+        WorkerStatus workerStatus = Optional.ofNullable(keyRangeStore.findWorkerStatus(workerId))
+                .orElseGet(() -> new WorkerStatus(workerId));
+
+        long[] keys = new long[count];
+        int reserved = 0;
+        while (reserved < count) {
+            AllocatedCounter allocatedCounter = workerStatus.getAllocatedRanges().stream().filter(a -> a.getExhausted() == false)
+                    .findFirst()
+                    .orElseGet(() -> {
+                        Integer newRangePartitionNumber = allocatedRangePartitionStatusService.allocateRangePartition();
+                        allocatedRanges.increment();
+
+                        AllocatedCounter newCounter = new AllocatedCounter();
+                        newCounter.setRangeNumber(newRangePartitionNumber);
+                        // the counter holds the last handed out key
+                        newCounter.setCounter(firstKeyOf(newRangePartitionNumber) - 1);
+                        workerStatus.getAllocatedRanges().add(newCounter);
+                        return newCounter;
+                    });
+
+            long lastKey = lastKeyOf(allocatedCounter.getRangeNumber());
+            if (allocatedCounter.getCounter() >= lastKey) throw new KeyOverFlowException();
+            int taken = (int) Math.min(count - reserved, lastKey - allocatedCounter.getCounter());
+            for (int i = 1; i <= taken; i++) keys[reserved++] = allocatedCounter.getCounter() + i;
+            allocatedCounter.setCounter(allocatedCounter.getCounter() + taken);
+            allocatedCounter.setExhausted(allocatedCounter.getCounter() == lastKey);
+        }
+
+        keyRangeStore.saveWorkerStatus(workerStatus);
+        allocatedKeys.increment(count);
+        return keys;
+    }
+
+    /**
+     * range partition n holds the keys [n * KeyNumbersInPartitions, (n + 1) * KeyNumbersInPartitions), so the ranges
+     * of two workers never share a key and the partition of a key is its key / KeyNumbersInPartitions
+     */
+    private static long firstKeyOf(int rangeNumber) {
+        return (long) rangeNumber * GlobalConstants.KeyNumbersInPartitions;
+    }
+
+    private static long lastKeyOf(int rangeNumber) {
+        return firstKeyOf(rangeNumber + 1) - 1;
+    }
 }
@@ -0,0 +1,244 @@
+package com.itaborda.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itaborda.controller.dto.BaseResponse;
+import com.itaborda.controller.dto.WriteBehindStatusDto;
+import com.itaborda.model.ShortUrl;
+import com.itaborda.repository.LinkJournal;
+import com.itaborda.repository.LinkStore;
+import com.itaborda.service.WriteBehindService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * the pending short urls are kept in memory until flushed, so they resolve on this replica even if the cache
+ * dropped them. a pending short url already has its id, a visit saving it before the flush persists it early and
+ * the flush then finds it in place. the url key being only checked against the link store and this replica's
+ * pending short urls, a url shortened meanwhile elsewhere makes the flush conflict: the pending short url is then
+ * persisted without url key, the key handed out keeps resolving and the url has two keys.
+ */
+@Service
+@Profile("write-behind")
+public class WriteBehindServiceImpl implements WriteBehindService {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final LinkStore linkStore;
+    private final CacheManager cacheManager;
+    private final LinkJournal journal;
+    private final int batchSize;
+
+    private final Map<String, CompletableFuture<LinkJournal.Entry>> byUrlKey = new ConcurrentHashMap<>();
+    private final Map<String, ShortUrl> byKeyCode = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedDeque<LinkJournal.Entry> unflushed = new ConcurrentLinkedDeque<>();
+
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong lastBatchSize = new AtomicLong();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final DistributionSummary batchSizes;
+
+    public WriteBehindServiceImpl(LinkStore linkStore, CacheManager cacheManager, ObjectMapper objectMapper,
+                                  @Value("${shortify.write-behind.dir:journal}") String dir,
+                                  @Value("${shortify.write-behind.segment-size:16777216}") long segmentSize,
+                                  @Value("${shortify.write-behind.group-size:256}") int groupSize,
+                                  @Value("${shortify.write-behind.batch-size:1000}") int batchSize) throws IOException {
+        this.linkStore = linkStore;
+        this.cacheManager = cacheManager;
+        this.journal = new LinkJournal(objectMapper, dir, segmentSize, groupSize);
+        this.batchSize = batchSize;
+        this.batchSizes = DistributionSummary.builder("shortify.write.behind.batch.size").description("short urls persisted per flushed batch")
+                .publishPercentileHistogram().minimumExpectedValue(1L).maximumExpectedValue((long) batchSize).register(Metrics.globalRegistry);
+        Gauge.builder("shortify.write.behind.lag", () -> lagMillis() / 1000.0).baseUnit("seconds")
+                .description("age of the oldest journaled short url not flushed yet").register(Metrics.globalRegistry);
+        Gauge.builder("shortify.write.behind.pending", byKeyCode::size).description("journaled short urls not flushed yet")
+                .register(Metrics.globalRegistry);
+        for (LinkJournal.Entry entry : journal.recovered()) {
+            byUrlKey.put(entry.getShortUrl().getUrlKey(), CompletableFuture.completedFuture(entry));
+            register(entry);
+            cache(entry.getShortUrl());
+        }
+    }
+
+    /**
+     * returns once the short url is durable in the journal, a journal failure is thrown as an UncheckedIOException
+     */
+    @Override
+    public ShortUrl append(ShortUrl shortUrl) {
+        CompletableFuture<LinkJournal.Entry> pending = byUrlKey.computeIfAbsent(shortUrl.getUrlKey(),
+                urlKey -> journal.append(shortUrl).thenApply(this::register));
+        LinkJournal.Entry entry;
+        try {
+            entry = pending.join();
+        } catch (CompletionException e) {
+            byUrlKey.remove(shortUrl.getUrlKey(), pending);
+            throw new UncheckedIOException(new IOException("could not journal the short url", e.getCause()));
+        }
+        if (entry.getShortUrl() == shortUrl) cache(shortUrl);
+        return entry.getShortUrl();
+    }
+
+    @Override
+    public ShortUrl findByKeyCode(String keyCode) {
+        return keyCode == null ? null : byKeyCode.get(keyCode);
+    }
+
+    @Override
+    public ShortUrl findByUrlKey(String urlKey) {
+        CompletableFuture<LinkJournal.Entry> pending = byUrlKey.get(urlKey);
+        if (pending == null || !pending.isDone() || pending.isCompletedExceptionally()) return null;
+        return pending.join().getShortUrl();
+    }
+
+    /**
+     * persists the pending short urls in bulk, in journal order. a batch failing as a whole, or holding short urls
+     * which could not be persisted, is retried on the next run
+     */
+    @Scheduled(fixedDelayString = "${shortify.write-behind.flush-interval:200}")
+    @Override
+    public synchronized void flush() {
+        while (!unflushed.isEmpty()) {
+            List<LinkJournal.Entry> batch = new ArrayList<>(batchSize);
+            for (LinkJournal.Entry entry; batch.size() < batchSize && (entry = unflushed.pollFirst()) != null; ) batch.add(entry);
+            List<ShortUrl> shortUrls = new ArrayList<>(batch.size());
+            for (LinkJournal.Entry entry : batch) shortUrls.add(entry.getShortUrl());
+
+            Map<Integer, String> errors;
+            try {
+                errors = linkStore.insertUnordered(shortUrls);
+            } catch (RuntimeException e) {
+                log.warn("could not flush {} journaled short urls", batch.size(), e);
+                failures.incrementAndGet();
+                requeue(batch);
+                return;
+            }
+
+            List<LinkJournal.Entry> retry = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                if (!errors.containsKey(i) || resolveConflict(batch.get(i).getShortUrl())) done(batch.get(i));
+                else retry.add(batch.get(i));
+            }
+            long persisted = batch.size() - retry.size();
+            flushes.incrementAndGet();
+            flushed.addAndGet(persisted);
+            lastBatchSize.set(persisted);
+            batchSizes.record(persisted);
+            maxBatchSize.accumulateAndGet(persisted, Math::max);
+            if (!retry.isEmpty()) {
+                failures.incrementAndGet();
+                requeue(retry);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public WriteBehindStatusDto getStatus() {
+        WriteBehindStatusDto dto = new WriteBehindStatusDto();
+        dto.setEnabled(true);
+        dto.setPending(byKeyCode.size());
+        dto.setLagMillis(lagMillis());
+        dto.setJournalBytes(journal.size());
+        dto.setFlushed(flushed.get());
+        dto.setFlushes(flushes.get());
+        dto.setLastBatchSize(lastBatchSize.get());
+        dto.setMaxBatchSize(maxBatchSize.get());
+        dto.setConflicts(conflicts.get());
+        dto.setFailures(failures.get());
+        dto.setCode(BaseResponse.SUCCESSFUL);
+        dto.setSuccess(true);
+        dto.setMessage("write-behind");
+        return dto;
+    }
+
+    /**
+     * the short urls still pending after the last flush are replayed from the journal on the next start
+     */
+    @PreDestroy
+    public void close() {
+        journal.close();
+        flush();
+    }
+
+    private long lagMillis() {
+        LinkJournal.Entry oldest = unflushed.peekFirst();
+        return oldest == null ? 0 : Math.max(0, Duration.between(oldest.getShortUrl().getCreatedDate(), LocalDateTime.now()).toMillis());
+    }
+
+    private LinkJournal.Entry register(LinkJournal.Entry entry) {
+        byKeyCode.put(entry.getShortUrl().getKeyCode(), entry.getShortUrl());
+        unflushed.addLast(entry);
+        return entry;
+    }
+
+    private void done(LinkJournal.Entry entry) {
+        ShortUrl shortUrl = entry.getShortUrl();
+        journal.flushed(entry);
+        byKeyCode.remove(shortUrl.getKeyCode());
+        byUrlKey.remove(ShortUrl.urlKeyOf(shortUrl.getLongUrl()));
+    }
+
+    private void requeue(List<LinkJournal.Entry> entries) {
+        for (int i = entries.size() - 1; i >= 0; i--) unflushed.addFirst(entries.get(i));
+    }
+
+    /**
+     * @return true if the short url which could not be inserted is persisted after all
+     */
+    private boolean resolveConflict(ShortUrl shortUrl) {
+        try {
+            for (ShortUrl existing : linkStore.findByLongUrlIn(Collections.singletonList(shortUrl.getLongUrl()))) {
+                if (shortUrl.getKeyCode().equals(existing.getKeyCode())) return true;
+                if (shortUrl.getUrlKey() != null && shortUrl.getUrlKey().equals(existing.getUrlKey())) {
+                    log.warn("url key of {} was taken by {}, persisting it without url key", shortUrl.getKeyCode(), existing.getKeyCode());
+                    shortUrl.setUrlKey(null);
+                    linkStore.save(shortUrl);
+                    conflicts.incrementAndGet();
+                    return true;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("could not check the journaled short url {}", shortUrl.getKeyCode(), e);
+        }
+        return false;
+    }
+
+    /**
+     * the link store caches the short urls by key code, putting the pending ones there makes them resolve on
+     * every replica. the short url being durable in the journal, a cache failure is only logged
+     */
+    private void cache(ShortUrl shortUrl) {
+        try {
+            Cache cache = cacheManager.getCache(ShortUrl.CACHE_NAME);
+            if (cache != null) cache.put(shortUrl.getKeyCode(), shortUrl);
+        } catch (RuntimeException e) {
+            log.warn("could not cache the journaled short url {}", shortUrl.getKeyCode(), e);
+        }
+    }
+}
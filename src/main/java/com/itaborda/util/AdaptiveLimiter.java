@@ -0,0 +1,82 @@
+package com.itaborda.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * concurrency limit adapted by additive increase and multiplicative decrease: a call answering within the target
+ * latency while the limit is in use raises the limit by 1/limit, about 1 per limit calls, a slower or failed call
+ * multiplies it by the backoff, once per target latency so the calls which were in flight together count once.
+ * a call beyond the limit is refused instead of queueing behind the slow ones.
+ * the limiter reports itself overloaded for a hold time after a slow call or a refusal.
+ */
+public class AdaptiveLimiter {
+
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetNanos;
+    private final long holdNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+    private long decreasedAt;
+    private volatile long overloadedAt;
+
+    public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit, long targetNanos, long holdNanos) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.targetNanos = targetNanos;
+        this.holdNanos = holdNanos;
+        this.decreasedAt = System.nanoTime() - targetNanos;
+        this.overloadedAt = System.nanoTime() - holdNanos;
+    }
+
+    /**
+     * @return true if the call may run, it must then be followed by {@link #release(long, boolean)}
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                overloadedAt = System.nanoTime();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) return true;
+        }
+    }
+
+    /**
+     * @param latencyNanos time the call took
+     * @param failed       whether the call failed, which counts as slow
+     */
+    public void release(long latencyNanos, boolean failed) {
+        int current = inFlight.getAndDecrement();
+        long now = System.nanoTime();
+        if (failed || latencyNanos > targetNanos) {
+            overloadedAt = now;
+            synchronized (this) {
+                if (now - decreasedAt < targetNanos) return;
+                decreasedAt = now;
+                limit = Math.max(minLimit, limit * BACKOFF);
+            }
+        } else if (current * 2 >= limit && limit < maxLimit) {
+            synchronized (this) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+        }
+    }
+
+    public boolean isOverloaded() {
+        return System.nanoTime() - overloadedAt < holdNanos;
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,168 @@
+package com.itaborda.util;
+
+import eu.bitwalker.useragentutils.UserAgent;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * registry of the dimensions visits are broken down by.
+ * each dimension extracts a raw value from the request and maps it to the ordinal of one of its labels, the last
+ * label being the catch-all bucket. mappings are computed once per distinct raw value and cached, so counting a
+ * visit is an array increment. adding a dimension is adding a constant here, counters and reports are generic.
+ * labels may only be appended, persisted counters are indexed by label ordinal.
+ */
+public enum ClickDimension {
+
+    BROWSER("browsers", "byBrowsers", new String[]{"ie", "fireFox", "chrome", "opera", "safari", "others"},
+            "internet explorer", "ie") {
+        @Override
+        String extract(UserAgent userAgent, HttpServletRequest request) {
+            return userAgent.getBrowser().getGroup().getName();
+        }
+    },
+
+    OS("os", "byOs", new String[]{"windows", "macOs", "linux", "android", "ios", "others"},
+            "mac_os", "macOs", "mac os", "macOs", "mac os x", "macOs", "iphone", "ios") {
+        @Override
+        String extract(UserAgent userAgent, HttpServletRequest request) {
+            return userAgent.getOperatingSystem().getGroup().getName();
+        }
+    },
+
+    DEVICE("devices", "byDevices", new String[]{"computer", "mobile", "tablet", "others"}) {
+        @Override
+        String extract(UserAgent userAgent, HttpServletRequest request) {
+            return userAgent.getOperatingSystem().getDeviceType().getName();
+        }
+    },
+
+    REFERRER("referrers", "byReferrers", new String[]{"direct", "search", "social", "email", "others"}) {
+        private final List<String> search = Arrays.asList("google.", "bing.", "yahoo.", "duckduckgo.", "baidu.", "yandex.", "ecosia.");
+        private final List<String> social = Arrays.asList("facebook.", "t.co", "twitter.", "linkedin.", "lnkd.in", "instagram.",
+                "reddit.", "youtube.", "pinterest.", "tiktok.", "whatsapp.", "telegram.");
+        private final List<String> email = Arrays.asList("mail.", "outlook.", "mail.yahoo.", "proton");
+
+        @Override
+        String extract(UserAgent userAgent, HttpServletRequest request) {
+            return Utility.getHost(request.getHeader("Referer"));
+        }
+
+        @Override
+        int classify(String host) {
+            if (host == null || host.isEmpty()) return 0;
+            String h = host.startsWith("www.") ? host.substring(4) : host;
+            if (matches(h, email)) return 3;
+            if (matches(h, search)) return 1;
+            if (matches(h, social)) return 2;
+            return 4;
+        }
+
+        private boolean matches(String host, List<String> prefixes) {
+            for (String prefix : prefixes) {
+                if (host.startsWith(prefix) || host.contains("." + prefix)) return true;
+            }
+            return false;
+        }
+    },
+
+    LANGUAGE("languages", "byLanguages", new String[]{"en", "es", "pt", "fr", "de", "it", "ru", "zh", "ja", "ar", "others"}) {
+        @Override
+        String extract(UserAgent userAgent, HttpServletRequest request) {
+            String header = request.getHeader("Accept-Language");
+            if (header == null) return null;
+            int end = 0;
+            while (end < header.length() && Character.isLetter(header.charAt(end))) end++;
+            return header.substring(0, end);
+        }
+    };
+
+    private static final int MAX_CACHED_VALUES = 1024;
+
+    private final String name;
+    private final String reportName;
+    private final String[] labels;
+    private final Map<String, Integer> aliases = new HashMap<>();
+    private final ConcurrentHashMap<String, Integer> ordinals = new ConcurrentHashMap<>();
+
+    ClickDimension(String name, String reportName, String[] labels, String... aliasPairs) {
+        this.name = name;
+        this.reportName = reportName;
+        this.labels = labels;
+        for (int i = 0; i < labels.length; i++) aliases.put(labels[i].toLowerCase(Locale.ROOT), i);
+        for (int i = 0; i < aliasPairs.length; i += 2) {
+            aliases.put(aliasPairs[i], Arrays.asList(labels).indexOf(aliasPairs[i + 1]));
+        }
+    }
+
+    abstract String extract(UserAgent userAgent, HttpServletRequest request);
+
+    /**
+     * default classification, the lower cased raw value is looked up in the labels and aliases
+     */
+    int classify(String raw) {
+        if (raw == null) return labels.length - 1;
+        return aliases.getOrDefault(raw.toLowerCase(Locale.ROOT), labels.length - 1);
+    }
+
+    /**
+     * @param raw raw value extracted from a request
+     * @return ordinal of the label the raw value falls in
+     */
+    public int ordinalOf(String raw) {
+        if (raw == null) return classify(null);
+        Integer ordinal = ordinals.get(raw);
+        if (ordinal == null) {
+            ordinal = classify(raw);
+            if (ordinals.size() < MAX_CACHED_VALUES) ordinals.put(raw, ordinal);
+        }
+        return ordinal;
+    }
+
+    /**
+     * @return raw values of every dimension indexed by dimension ordinal, the user agent is parsed once
+     */
+    public static String[] extractAll(HttpServletRequest request) {
+        UserAgent userAgent = UserAgent.parseUserAgentString(request.getHeader("User-Agent"));
+        ClickDimension[] dimensions = values();
+        String[] raw = new String[dimensions.length];
+        for (ClickDimension dimension : dimensions) {
+            raw[dimension.ordinal()] = dimension.extract(userAgent, request);
+        }
+        return raw;
+    }
+
+    /**
+     * @param raw raw values indexed by dimension ordinal
+     * @return label ordinals indexed by dimension ordinal
+     */
+    public static int[] ordinalsOf(String[] raw) {
+        ClickDimension[] dimensions = values();
+        int[] ordinals = new int[dimensions.length];
+        for (ClickDimension dimension : dimensions) {
+            ordinals[dimension.ordinal()] = dimension.ordinalOf(raw[dimension.ordinal()]);
+        }
+        return ordinals;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getReportName() {
+        return reportName;
+    }
+
+    public String[] getLabels() {
+        return labels;
+    }
+
+    public int size() {
+        return labels.length;
+    }
+}
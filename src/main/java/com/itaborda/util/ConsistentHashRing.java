@@ -0,0 +1,66 @@
+package com.itaborda.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * consistent hash ring placing every node at {@code virtualNodes} points, a key belongs to the first point at or
+ * after its hash. adding a node only moves the keys falling on its points, about 1/n of them, and the virtual nodes
+ * even out the share of each node. points are hashed with 64 bit FNV-1a followed by the murmur3 finalizer, so
+ * similar keys spread over the whole ring. the ring is immutable, adding a node returns a new one.
+ */
+public class ConsistentHashRing<T> {
+
+    private final int virtualNodes;
+    private final Map<String, T> nodes;
+    private final TreeMap<Long, T> points = new TreeMap<>();
+
+    public ConsistentHashRing(Map<String, T> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) throw new IllegalArgumentException("a ring needs at least one node");
+        if (virtualNodes <= 0) throw new IllegalArgumentException("virtualNodes should be greater than 0");
+        this.virtualNodes = virtualNodes;
+        this.nodes = Collections.unmodifiableMap(new TreeMap<>(nodes));
+        for (Map.Entry<String, T> node : this.nodes.entrySet()) {
+            for (int i = 0; i < virtualNodes; i++) points.putIfAbsent(hash(node.getKey() + "#" + i), node.getValue());
+        }
+    }
+
+    /**
+     * @return the node owning the key
+     */
+    public T nodeOf(String key) {
+        Map.Entry<Long, T> point = points.ceilingEntry(hash(key));
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    /**
+     * @return a ring with the node added, the node name being its identity on the ring
+     */
+    public ConsistentHashRing<T> with(String name, T node) {
+        Map<String, T> added = new TreeMap<>(nodes);
+        added.put(name, node);
+        return new ConsistentHashRing<>(added, virtualNodes);
+    }
+
+    public List<T> nodes() {
+        return new ArrayList<>(nodes.values());
+    }
+
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
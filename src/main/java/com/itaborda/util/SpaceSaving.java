@@ -0,0 +1,159 @@
+package com.itaborda.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving heavy hitter summary (Metwally et al.) keeping at most {@code capacity} monitored keys.
+ * counters are kept in a min-heap over fixed slots so an offer costs O(log capacity) and never allocates
+ * once the summary is full. counts are doubles so that the summary can be decayed in place for trending views.
+ */
+public class SpaceSaving {
+
+    private final int capacity;
+    private final Map<String, Integer> index;
+    private final String[] keys;
+    private final double[] counts;
+    private final double[] errors;
+    private final int[] heap;
+    private final int[] position;
+    private int size;
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity should be greater than 0");
+        this.capacity = capacity;
+        this.index = new HashMap<>(capacity * 2);
+        this.keys = new String[capacity];
+        this.counts = new double[capacity];
+        this.errors = new double[capacity];
+        this.heap = new int[capacity];
+        this.position = new int[capacity];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * count {@code weight} occurrences of the given key, evicting the least frequent key when the summary is full
+     */
+    public synchronized void offer(String key, double weight) {
+        Integer slot = index.get(key);
+        if (slot != null) {
+            counts[slot] += weight;
+            siftDown(position[slot]);
+            return;
+        }
+        if (size < capacity) {
+            int s = size++;
+            keys[s] = key;
+            counts[s] = weight;
+            errors[s] = 0;
+            heap[s] = s;
+            position[s] = s;
+            index.put(key, s);
+            siftUp(s);
+            return;
+        }
+        int min = heap[0];
+        index.remove(keys[min]);
+        keys[min] = key;
+        errors[min] = counts[min];
+        counts[min] += weight;
+        index.put(key, min);
+        siftDown(0);
+    }
+
+    /**
+     * multiply every counter by the given factor, relative order of the counters is preserved so the heap stays valid
+     */
+    public synchronized void decay(double factor) {
+        for (int i = 0; i < size; i++) {
+            counts[i] *= factor;
+            errors[i] *= factor;
+        }
+    }
+
+    public synchronized double count(String key) {
+        Integer slot = index.get(key);
+        return slot == null ? 0 : counts[slot];
+    }
+
+    public synchronized double error(String key) {
+        Integer slot = index.get(key);
+        return slot == null ? 0 : errors[slot];
+    }
+
+    /**
+     * @param limit maximum number of keys to return
+     * @return monitored keys ordered by descending estimated count
+     */
+    public synchronized Map<String, Double> top(int limit) {
+        Integer[] slots = new Integer[size];
+        for (int i = 0; i < size; i++) slots[i] = i;
+        Arrays.sort(slots, Comparator.comparingDouble((Integer s) -> counts[s]).reversed());
+
+        Map<String, Double> top = new LinkedHashMap<>();
+        for (int i = 0; i < Math.min(limit, size); i++) {
+            top.put(keys[slots[i]], counts[slots[i]]);
+        }
+        return top;
+    }
+
+    /**
+     * sums the given per-replica summaries and keeps the {@code limit} largest counts, summing is the standard
+     * way of merging Space-Saving summaries and keeps the over-estimation bounded by the sum of the input errors.
+     */
+    public static Map<String, Double> merge(List<Map<String, Double>> summaries, int limit) {
+        Map<String, Double> merged = new HashMap<>();
+        for (Map<String, Double> summary : summaries) {
+            summary.forEach((k, v) -> merged.merge(k, v, Double::sum));
+        }
+        List<Map.Entry<String, Double>> entries = new ArrayList<>(merged.entrySet());
+        entries.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+
+        Map<String, Double> top = new LinkedHashMap<>();
+        for (int i = 0; i < Math.min(limit, entries.size()); i++) {
+            top.put(entries.get(i).getKey(), entries.get(i).getValue());
+        }
+        return top;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[heap[i]]) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) break;
+            int right = left + 1;
+            int smallest = (right < size && counts[heap[right]] < counts[heap[left]]) ? right : left;
+            if (counts[heap[i]] <= counts[heap[smallest]]) break;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+        position[heap[i]] = i;
+        position[heap[j]] = j;
+    }
+}
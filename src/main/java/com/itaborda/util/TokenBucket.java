@@ -0,0 +1,55 @@
+package com.itaborda.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * lock free token bucket, kept as the time at which the bucket will be full again (the theoretical arrival time of
+ * the generic cell rate algorithm): taking a token moves it one interval forward, which is refused when it would
+ * end up more than a burst of intervals ahead of now. taking a token is a read and a compare and set.
+ */
+public class TokenBucket {
+
+    private final long interval;
+    private final long capacity;
+    private final AtomicLong fullAt;
+
+    /**
+     * @param ratePerSecond tokens given back per second
+     * @param burst         tokens held at most, the bucket starts full
+     */
+    public TokenBucket(double ratePerSecond, int burst) {
+        this.interval = Math.max(1, (long) (1e9 / ratePerSecond));
+        this.capacity = interval * Math.max(1, burst);
+        this.fullAt = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * @return 0 if a token was taken, otherwise the nanoseconds to wait for one
+     */
+    public long tryAcquire(long now) {
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + interval;
+            if (next - now > capacity) return next - now - capacity;
+            if (fullAt.compareAndSet(current, next)) return 0;
+        }
+    }
+
+    /**
+     * takes tokens without asking, as the ones used elsewhere for the same client. the bucket is emptied at most
+     */
+    public void consume(long tokens, long now) {
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.min(Math.max(current, now) + Math.min(tokens, capacity / interval) * interval, now + capacity);
+            if (next <= current || fullAt.compareAndSet(current, next)) return;
+        }
+    }
+
+    /**
+     * @return true if no token is missing, a full bucket being the same as a new one
+     */
+    public boolean isFull(long now) {
+        return fullAt.get() <= now;
+    }
+}
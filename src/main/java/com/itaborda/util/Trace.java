@@ -0,0 +1,166 @@
+package com.itaborda.util;
+
+import java.time.LocalDateTime;
+
+/**
+ * timings of a sampled request, bound to the thread serving it. the code opens nested spans with
+ * {@code try (Trace.Span span = Trace.span("name")) {...}}, which returns a shared no-op span when the thread
+ * runs no sampled trace, so an unsampled request pays a thread local read per span and allocates nothing.
+ * a trace holds {@link #MAX_SPANS} spans at most, the following ones are only counted as dropped.
+ * spans are kept in parallel arrays in the order they were opened, with their depth.
+ */
+public final class Trace implements AutoCloseable {
+
+    public static final int MAX_SPANS = 64;
+
+    private static final ThreadLocal<Trace> CURRENT = new ThreadLocal<>();
+    private static final Span NOOP = () -> {
+    };
+
+    private String name;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private final long start = System.nanoTime();
+    private long duration = -1;
+
+    private final String[] names = new String[MAX_SPANS];
+    private final int[] depths = new int[MAX_SPANS];
+    private final long[] starts = new long[MAX_SPANS];
+    private final long[] durations = new long[MAX_SPANS];
+    private int spans;
+    private int dropped;
+
+    /**
+     * opened spans, by index, innermost last. a dropped span is pushed as -1
+     */
+    private final int[] stack = new int[MAX_SPANS * 2];
+    private int depth;
+    /**
+     * spans opened past the depth of the stack
+     */
+    private int overflow;
+
+    private final Span closer = this::closeSpan;
+
+    private Trace(String name) {
+        this.name = name;
+    }
+
+    /**
+     * starts a trace on the current thread, it runs until {@link #close()}
+     */
+    public static Trace start(String name) {
+        Trace trace = new Trace(name);
+        CURRENT.set(trace);
+        return trace;
+    }
+
+    /**
+     * @return the trace of the current thread, null if it is not sampled
+     */
+    public static Trace current() {
+        return CURRENT.get();
+    }
+
+    public static Span span(String name) {
+        Trace trace = CURRENT.get();
+        return trace == null ? NOOP : trace.open(name);
+    }
+
+    /**
+     * opens a span to be closed by {@link #closeSpan()}, for callbacks which cannot use try-with-resources
+     */
+    public Span open(String name) {
+        if (depth == stack.length) {
+            overflow++;
+            dropped++;
+            return closer;
+        }
+        if (spans == MAX_SPANS) {
+            dropped++;
+            stack[depth++] = -1;
+            return closer;
+        }
+        names[spans] = name;
+        depths[spans] = depth;
+        starts[spans] = System.nanoTime() - start;
+        durations[spans] = -1;
+        stack[depth++] = spans++;
+        return closer;
+    }
+
+    /**
+     * closes the innermost open span
+     */
+    public void closeSpan() {
+        if (overflow > 0) {
+            overflow--;
+            return;
+        }
+        if (depth == 0) return;
+        int span = stack[--depth];
+        if (span >= 0) durations[span] = System.nanoTime() - start - starts[span];
+    }
+
+    /**
+     * ends the trace and unbinds it from the thread
+     */
+    @Override
+    public void close() {
+        duration = System.nanoTime() - start;
+        if (CURRENT.get() == this) CURRENT.remove();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * @return nanoseconds of the trace, -1 while it runs
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    public int getSpanCount() {
+        return spans;
+    }
+
+    public String getSpanName(int span) {
+        return names[span];
+    }
+
+    public int getSpanDepth(int span) {
+        return depths[span];
+    }
+
+    /**
+     * @return nanoseconds between the start of the trace and the start of the span
+     */
+    public long getSpanStart(int span) {
+        return starts[span];
+    }
+
+    /**
+     * @return nanoseconds of the span, -1 if it was not closed
+     */
+    public long getSpanDuration(int span) {
+        return durations[span];
+    }
+
+    public int getDropped() {
+        return dropped;
+    }
+
+    public interface Span extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,368 @@
+package com.itaborda.util;
+
+import java.net.IDN;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * parses and canonicalizes http(s) urls in one pass over the input, so equivalent forms of a url share one
+ * short url and one cache entry. the canonical form:
+ * - scheme and host are lower cased, http is assumed when the scheme is missing, the host is kept as given (no www.)
+ * - default ports, empty ports, empty query parameters and empty fragments are removed
+ * - percent-encoding is normalized: unreserved characters are decoded, other escapes upper cased, characters not
+ *   allowed in their component encoded as utf-8
+ * - dot segments are removed from the path, and a trailing slash when nothing follows the path
+ * - query parameters are sorted by name, keeping the order of repeated names, and the configured tracking
+ *   parameters are removed, a name ending with * strips every parameter with that prefix
+ * urls with user info, an invalid host or port, or another scheme are rejected.
+ */
+public class UrlNormalizer {
+
+    private static final int MAX_LENGTH = 2048;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private static final int PATH = 0;
+    private static final int QUERY = 1;
+    private static final int FRAGMENT = 2;
+
+    private final Set<String> strippedParams = new HashSet<>();
+    private final List<String> strippedPrefixes = new ArrayList<>();
+
+    /**
+     * @param strippedParams names of the query parameters to remove, case insensitive, a trailing * matches a prefix
+     */
+    public UrlNormalizer(Collection<String> strippedParams) {
+        for (String param : strippedParams) {
+            String name = param.trim().toLowerCase(Locale.ROOT);
+            if (name.isEmpty()) continue;
+            if (name.endsWith("*")) this.strippedPrefixes.add(name.substring(0, name.length() - 1));
+            else this.strippedParams.add(name);
+        }
+    }
+
+    /**
+     * @param url url as provided by a user
+     * @return the canonical form of the url, null if it is not a valid http(s) url
+     */
+    public String normalize(String url) {
+        if (url == null) return null;
+        int start = 0;
+        int end = url.length();
+        while (start < end && url.charAt(start) <= ' ') start++;
+        while (end > start && url.charAt(end - 1) <= ' ') end--;
+        if (start == end || end - start > MAX_LENGTH) return null;
+
+        StringBuilder out = new StringBuilder(end - start + 8);
+
+        // scheme
+        int i = start;
+        int defaultPort = 80;
+        int schemeEnd = schemeEnd(url, start, end);
+        if (schemeEnd < 0) {
+            out.append("http://");
+        } else {
+            int length = schemeEnd - start;
+            if (length == 4 && url.regionMatches(true, start, "http", 0, 4)) {
+                out.append("http://");
+            } else if (length == 5 && url.regionMatches(true, start, "https", 0, 5)) {
+                out.append("https://");
+                defaultPort = 443;
+            } else {
+                return null;
+            }
+            i = schemeEnd + 3;
+        }
+
+        // authority
+        int authorityEnd = i;
+        while (authorityEnd < end && "/?#".indexOf(url.charAt(authorityEnd)) < 0) authorityEnd++;
+        if (!appendAuthority(url, i, authorityEnd, defaultPort, out)) return null;
+        i = authorityEnd;
+
+        // path
+        int pathStart = out.length();
+        int pathEnd = i;
+        while (pathEnd < end && url.charAt(pathEnd) != '?' && url.charAt(pathEnd) != '#') pathEnd++;
+        appendEncoded(url, i, pathEnd, PATH, out);
+        if (out.indexOf("/.", pathStart) >= 0) removeDotSegments(out, pathStart);
+        i = pathEnd;
+
+        // query
+        boolean hasQuery = false;
+        if (i < end && url.charAt(i) == '?') {
+            int queryEnd = url.indexOf('#', i);
+            if (queryEnd < 0) queryEnd = end;
+            hasQuery = appendQuery(url, i + 1, queryEnd, out, pathStart);
+            i = queryEnd;
+        }
+
+        // fragment
+        boolean hasFragment = i + 1 < end;
+        if (!hasQuery && !hasFragment && out.length() > pathStart && out.charAt(out.length() - 1) == '/') {
+            out.setLength(out.length() - 1);
+        }
+        if (hasFragment) {
+            out.append('#');
+            appendEncoded(url, i + 1, end, FRAGMENT, out);
+        }
+
+        return out.length() > MAX_LENGTH ? null : out.toString();
+    }
+
+    /**
+     * @return index of the colon ending the scheme if the url starts with scheme://, -1 otherwise
+     */
+    private int schemeEnd(String url, int start, int end) {
+        if (start >= end || !isAlpha(url.charAt(start))) return -1;
+        for (int i = start + 1; i < end; i++) {
+            char c = url.charAt(i);
+            if (c == ':') return i + 2 < end && url.charAt(i + 1) == '/' && url.charAt(i + 2) == '/' ? i : -1;
+            if (!isAlpha(c) && !isDigit(c) && c != '+' && c != '-' && c != '.') return -1;
+        }
+        return -1;
+    }
+
+    private boolean appendAuthority(String url, int start, int end, int defaultPort, StringBuilder out) {
+        if (start == end || url.lastIndexOf('@', end - 1) >= start) return false;
+
+        int hostEnd;
+        if (url.charAt(start) == '[') {
+            hostEnd = url.indexOf(']', start);
+            if (hostEnd < 0 || hostEnd >= end) return false;
+            hostEnd++;
+            for (int i = start + 1; i < hostEnd - 1; i++) {
+                char c = Character.toLowerCase(url.charAt(i));
+                if (!isDigit(c) && (c < 'a' || c > 'f') && c != ':' && c != '.') return false;
+            }
+            if (hostEnd - start < 4) return false;
+            for (int i = start; i < hostEnd; i++) out.append(Character.toLowerCase(url.charAt(i)));
+        } else {
+            hostEnd = url.indexOf(':', start);
+            if (hostEnd < 0 || hostEnd > end) hostEnd = end;
+            int hostStart = out.length();
+            if (!appendHost(url, start, hostEnd, out)) return false;
+            if (!isValidHost(out, hostStart)) return false;
+        }
+
+        if (hostEnd < end) {
+            if (url.charAt(hostEnd) != ':') return false;
+            int port = 0;
+            for (int i = hostEnd + 1; i < end; i++) {
+                char c = url.charAt(i);
+                if (!isDigit(c) || i - hostEnd > 5) return false;
+                port = port * 10 + (c - '0');
+            }
+            if (hostEnd + 1 < end) {
+                if (port < 1 || port > 65535) return false;
+                if (port != defaultPort) out.append(':').append(port);
+            }
+        }
+        return true;
+    }
+
+    private boolean appendHost(String url, int start, int end, StringBuilder out) {
+        int hostStart = out.length();
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            if (c >= 0x80) {
+                out.setLength(hostStart);
+                try {
+                    out.append(IDN.toASCII(url.substring(start, end), IDN.ALLOW_UNASSIGNED).toLowerCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    return false;
+                }
+                break;
+            }
+            out.append(c >= 'A' && c <= 'Z' ? (char) (c + 32) : c);
+        }
+        if (out.length() > 0 && out.charAt(out.length() - 1) == '.') out.setLength(out.length() - 1);
+        return true;
+    }
+
+    /**
+     * a domain name of at least two labels with an alphabetic or punycode top level label, or an ipv4 address
+     */
+    private boolean isValidHost(StringBuilder out, int start) {
+        int length = out.length() - start;
+        if (length == 0 || length > 253) return false;
+        int labels = 0;
+        int labelStart = start;
+        boolean numeric = true;
+        boolean tldAlpha = true;
+        for (int i = start; i <= out.length(); i++) {
+            char c = i < out.length() ? out.charAt(i) : '.';
+            if (c == '.') {
+                int labelLength = i - labelStart;
+                if (labelLength == 0 || labelLength > 63) return false;
+                if (out.charAt(labelStart) == '-' || out.charAt(i - 1) == '-') return false;
+                labels++;
+                tldAlpha = labelLength >= 2;
+                for (int j = labelStart; j < i && tldAlpha; j++) tldAlpha = isAlpha(out.charAt(j));
+                if (!tldAlpha && labelLength > 4 && out.charAt(labelStart) == 'x' && out.charAt(labelStart + 1) == 'n'
+                        && out.charAt(labelStart + 2) == '-' && out.charAt(labelStart + 3) == '-') {
+                    tldAlpha = true;
+                }
+                labelStart = i + 1;
+            } else if (isDigit(c)) {
+                continue;
+            } else if (isAlpha(c) || c == '-') {
+                numeric = false;
+            } else {
+                return false;
+            }
+        }
+        if (labels < 2) return false;
+        if (numeric) return isIpv4(out, start);
+        return tldAlpha;
+    }
+
+    private boolean isIpv4(StringBuilder out, int start) {
+        int octets = 0;
+        int value = 0;
+        int digits = 0;
+        for (int i = start; i <= out.length(); i++) {
+            char c = i < out.length() ? out.charAt(i) : '.';
+            if (c == '.') {
+                if (digits == 0 || value > 255) return false;
+                octets++;
+                value = 0;
+                digits = 0;
+            } else {
+                value = value * 10 + (c - '0');
+                if (++digits > 3) return false;
+            }
+        }
+        return octets == 4;
+    }
+
+    /**
+     * appends the non empty parameters of the query which are not stripped, sorted by name
+     *
+     * @return true if any parameter was kept
+     */
+    private boolean appendQuery(String url, int start, int end, StringBuilder out, int pathStart) {
+        List<String> params = null;
+        StringBuilder param = new StringBuilder();
+        int i = start;
+        while (i <= end) {
+            int paramEnd = url.indexOf('&', i);
+            if (paramEnd < 0 || paramEnd > end) paramEnd = end;
+            if (paramEnd > i) {
+                param.setLength(0);
+                appendEncoded(url, i, paramEnd, QUERY, param);
+                if (!isStripped(param)) {
+                    if (params == null) params = new ArrayList<>();
+                    params.add(param.toString());
+                }
+            }
+            i = paramEnd + 1;
+        }
+        if (params == null) return false;
+
+        if (params.size() > 1) params.sort((a, b) -> name(a).compareTo(name(b)));
+        if (out.length() == pathStart) out.append('/');
+        out.append('?');
+        for (int p = 0; p < params.size(); p++) {
+            if (p > 0) out.append('&');
+            out.append(params.get(p));
+        }
+        return true;
+    }
+
+    private boolean isStripped(StringBuilder param) {
+        if (strippedParams.isEmpty() && strippedPrefixes.isEmpty()) return false;
+        String name = name(param.toString()).toLowerCase(Locale.ROOT);
+        if (strippedParams.contains(name)) return true;
+        for (String prefix : strippedPrefixes) {
+            if (name.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    private static String name(String param) {
+        int eq = param.indexOf('=');
+        return eq < 0 ? param : param.substring(0, eq);
+    }
+
+    /**
+     * appends the component normalizing its percent-encoding
+     */
+    private void appendEncoded(String url, int start, int end, int component, StringBuilder out) {
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            if (c == '%') {
+                int high = i + 2 < end ? Character.digit(url.charAt(i + 1), 16) : -1;
+                int low = high >= 0 ? Character.digit(url.charAt(i + 2), 16) : -1;
+                if (low < 0) {
+                    out.append("%25");
+                    continue;
+                }
+                int value = (high << 4) | low;
+                if (isUnreserved((char) value)) out.append((char) value);
+                else out.append('%').append(HEX[high]).append(HEX[low]);
+                i += 2;
+            } else if (isAllowed(c, component)) {
+                out.append(c);
+            } else if (c < 0x80) {
+                appendEscaped(c, out);
+            } else {
+                int codePointEnd = Character.isHighSurrogate(c) && i + 1 < end ? i + 2 : i + 1;
+                for (byte b : url.substring(i, codePointEnd).getBytes(StandardCharsets.UTF_8)) appendEscaped(b & 0xFF, out);
+                i = codePointEnd - 1;
+            }
+        }
+    }
+
+    private static void appendEscaped(int b, StringBuilder out) {
+        out.append('%').append(HEX[b >> 4]).append(HEX[b & 0xF]);
+    }
+
+    /**
+     * rfc 3986 5.2.4, applied in place on the path appended from {@code pathStart}
+     */
+    private static void removeDotSegments(StringBuilder out, int pathStart) {
+        String path = out.substring(pathStart);
+        List<String> segments = new ArrayList<>();
+        int i = 1;
+        while (i <= path.length()) {
+            int next = path.indexOf('/', i);
+            if (next < 0) next = path.length();
+            String segment = path.substring(i, next);
+            boolean last = next == path.length();
+            if (".".equals(segment)) {
+                if (last) segments.add("");
+            } else if ("..".equals(segment)) {
+                if (!segments.isEmpty()) segments.remove(segments.size() - 1);
+                if (last) segments.add("");
+            } else {
+                segments.add(segment);
+            }
+            i = next + 1;
+        }
+        out.setLength(pathStart);
+        for (String segment : segments) out.append('/').append(segment);
+    }
+
+    private static boolean isAllowed(char c, int component) {
+        if (isUnreserved(c) || "!$&'()*+,;=:@".indexOf(c) >= 0) return c != '&' || component != QUERY;
+        if (c == '/') return true;
+        return c == '?' && component != PATH;
+    }
+
+    private static boolean isUnreserved(char c) {
+        return isAlpha(c) || isDigit(c) || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    private static boolean isAlpha(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -1,11 +1,13 @@
 package com.itaborda.util;
 
 import eu.bitwalker.useragentutils.UserAgent;
-import org.apache.commons.validator.UrlValidator;
 
 import javax.servlet.http.HttpServletRequest;
 import java.net.InetAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.UnknownHostException;
+import java.util.Locale;
 
 public class Utility {
     public static String getOperatingSystemType(HttpServletRequest request){
@@ -17,25 +19,21 @@ public class Utility {
         return userAgent.getBrowser().getGroup().getName();
     }
 
+    /**
+     * @return lower cased host of the url, null if the url is missing or malformed
+     */
+    public static String getHost(String url) {
+        if (url == null) return null;
+        try {
+            String host = new URI(url.trim()).getHost();
+            return host == null ? null : host.toLowerCase(Locale.ROOT);
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
     public static String getHostname() throws UnknownHostException {
         String hostName = InetAddress.getLocalHost().getHostName();
         return hostName;
     }
-
-    public static boolean isUrlValid(String url) {
-        UrlValidator urlValidator = new UrlValidator();
-        return urlValidator.isValid(url);
-    }
-
-    public static String urlNormalization(String url) {
-        if (!url.toLowerCase().startsWith("https://") && !url.toLowerCase().startsWith("http://"))
-            url = "http://".concat(url);
-        if (url.indexOf("www") < 0)
-            url = url.replace("://", "://www.");
-
-        if (url.charAt(url.length() - 1) == '/')
-            url = url.substring(0, url.length() - 1);
-
-        return url;
-    }
 }
@@ -0,0 +1,49 @@
+package com.itaborda.benchmark;
+
+import com.itaborda.service.impl.RateLimitServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * admitting a request through the rate limiter, 4 threads hitting 1000 clients whose limits are never reached.
+ * run the main method from the test classpath, with -prof gc in the arguments for allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class RateLimitBenchmark {
+
+    private final RateLimitServiceImpl rateLimitService = new RateLimitServiceImpl(null, 1e9, 1000, 0, 0, 100000, 1000);
+    private final String[] clients = new String[1000];
+
+    {
+        for (int i = 0; i < clients.length; i++) clients[i] = "10.0." + i / 256 + "." + i % 256;
+    }
+
+    @Benchmark
+    public long tryAcquire() {
+        return rateLimitService.tryAcquire("shorten", clients[ThreadLocalRandom.current().nextInt(clients.length)]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RateLimitBenchmark.class.getSimpleName()).build()).run();
+    }
+}
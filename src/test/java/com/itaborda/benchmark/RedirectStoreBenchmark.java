@@ -0,0 +1,101 @@
+package com.itaborda.benchmark;
+
+import com.itaborda.repository.RedirectStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * redirect lookups over a skewed set of keys, a miss storing the long url as the resolve path does, against a
+ * synchronized lru LinkedHashMap of the same capacity. both run in a 128m heap, the gc profiler reports the
+ * allocation rate and the gc count and time, the map also keeping its entries and urls on the heap.
+ * run the main method from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx128m", "-XX:MaxDirectMemorySize=256m"})
+public class RedirectStoreBenchmark {
+
+    private static final int CAPACITY = 200_000;
+
+    /**
+     * distinct keys looked up, over the capacity some lookups miss and evict
+     */
+    @Param({"100000", "400000"})
+    private int keys;
+
+    private String[] keyCodes;
+    private String[] longUrls;
+    private int[] sequence;
+    private int next;
+
+    private RedirectStore store;
+    private Map<String, String> map;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        keyCodes = new String[keys];
+        longUrls = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            keyCodes[i] = Long.toString(1_000_000_000L + i, 36) + "ab";
+            longUrls[i] = "https://shop.example.com/p/" + random.nextInt(1_000_000) + "?color=red&size=m&ref=" + i;
+        }
+        // a quarter of the keys draws most lookups
+        sequence = new int[1 << 20];
+        for (int i = 0; i < sequence.length; i++) {
+            sequence[i] = random.nextInt(4) == 0 ? random.nextInt(keys) : random.nextInt(Math.max(1, keys / 4));
+        }
+        store = new RedirectStore(CAPACITY * (128L + 16), 128);
+        map = Collections.synchronizedMap(new LinkedHashMap<String, String>(CAPACITY * 4 / 3, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > CAPACITY;
+            }
+        });
+    }
+
+    @Benchmark
+    public String offHeap() {
+        int i = sequence[next++ & (sequence.length - 1)];
+        String longUrl = store.get(keyCodes[i], 0);
+        if (longUrl != null) return longUrl;
+        store.put(keyCodes[i], longUrls[i], Long.MAX_VALUE);
+        return longUrls[i];
+    }
+
+    @Benchmark
+    public String onHeap() {
+        int i = sequence[next++ & (sequence.length - 1)];
+        String longUrl = map.get(keyCodes[i]);
+        if (longUrl != null) return longUrl;
+        // the long url of a miss is a new string, as read from the cache or the link store
+        map.put(keyCodes[i], new String(longUrls[i].toCharArray()));
+        return longUrls[i];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RedirectStoreBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -0,0 +1,72 @@
+package com.itaborda.benchmark;
+
+import com.itaborda.util.UrlNormalizer;
+import org.apache.commons.validator.UrlValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * normalizing and validating a mix of user provided urls, against the former Utility.urlNormalization and
+ * Utility.isUrlValid which built a commons UrlValidator per call.
+ * run the main method from the test classpath, with -prof gc in the arguments for allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UrlNormalizerBenchmark {
+
+    private final String[] urls = {
+            "www.google.com",
+            "https://github.com/itaborda/url-shortener-api/blob/master/README.md",
+            "HTTP://Example.COM:80/a/./b/../c/",
+            "https://shop.example.com/p/123?utm_source=news&utm_medium=email&color=red&size=m&fbclid=IwAR0abc",
+            "http://example.com/search?q=caf%c3%a9+au+lait&lang=fr#results",
+            "badURL"
+    };
+
+    private final UrlNormalizer normalizer = new UrlNormalizer(Arrays.asList("utm_*", "fbclid", "gclid"));
+
+    @Benchmark
+    public void normalizer(Blackhole blackhole) {
+        for (String url : urls) blackhole.consume(normalizer.normalize(url));
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        for (String url : urls) {
+            String normalized = legacyNormalization(url);
+            blackhole.consume(new UrlValidator().isValid(normalized) ? normalized : null);
+        }
+    }
+
+    private static String legacyNormalization(String url) {
+        if (!url.toLowerCase().startsWith("https://") && !url.toLowerCase().startsWith("http://"))
+            url = "http://".concat(url);
+        if (url.indexOf("www") < 0)
+            url = url.replace("://", "://www.");
+        if (url.charAt(url.length() - 1) == '/')
+            url = url.substring(0, url.length() - 1);
+        return url;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(UrlNormalizerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
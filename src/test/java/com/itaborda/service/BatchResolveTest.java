@@ -0,0 +1,116 @@
+package com.itaborda.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itaborda.controller.dto.BatchResolveDto;
+import com.itaborda.controller.dto.BatchResolveItemDto;
+import com.itaborda.model.ShortUrl;
+import com.itaborda.model.embedded.Stats;
+import com.itaborda.model.embedded.VisitSummary;
+import com.itaborda.repository.LinkCache;
+import com.itaborda.repository.embedded.EmbeddedLinkStore;
+import com.itaborda.service.impl.LoadSheddingServiceImpl;
+import com.itaborda.service.impl.ShortUrlServiceImpl;
+import com.itaborda.util.ClickDimension;
+import com.itaborda.util.UrlNormalizer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class BatchResolveTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private EmbeddedLinkStore linkStore;
+	private Cache cache;
+	private ClickStreamService clickStreamService;
+	private ShortUrlService shortUrlService;
+
+	@Before
+	public void setup() throws Exception {
+		linkStore = new EmbeddedLinkStore(new ObjectMapper(), folder.newFolder().getPath(), 1 << 20, 16, 0.5, false);
+		ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager(ShortUrl.CACHE_NAME);
+		cache = cacheManager.getCache(ShortUrl.CACHE_NAME);
+		clickStreamService = mock(ClickStreamService.class);
+		shortUrlService = new ShortUrlServiceImpl(linkStore, new LinkCache(cacheManager, null), mock(WorkerStatusService.class),
+				mock(TopLinksService.class), clickStreamService, mock(KeyPoolService.class),
+				new UrlNormalizer(Collections.emptyList()), new LoadSheddingServiceImpl(32, 4, 256, "PT1S", "PT5S", 1), Optional.empty(), Optional.empty(), Optional.empty());
+		ReflectionTestUtils.setField(shortUrlService, "maxBatchSize", 100);
+		ReflectionTestUtils.setField(shortUrlService, "lookupChunk", 2);
+	}
+
+	private ShortUrl shortUrl(String keyCode, LocalDateTime expireDate) {
+		String longUrl = "http://" + keyCode + ".com";
+		ShortUrl shortUrl = new ShortUrl(keyCode);
+		shortUrl.setLongUrl(longUrl);
+		shortUrl.setUrlKey(ShortUrl.urlKeyOf(longUrl));
+		shortUrl.setCreatedDate(LocalDateTime.now().minusDays(1));
+		shortUrl.setExpireDate(expireDate);
+		Stats stats = new Stats();
+		stats.setSummary(new VisitSummary());
+		shortUrl.setStats(stats);
+		return linkStore.insertIfAbsent(shortUrl);
+	}
+
+	@Test
+	public void should_keepRequestOrder_when_resolvingFromCacheAndStore() throws Exception {
+		//Given
+		LocalDateTime future = LocalDateTime.now().plusDays(30);
+		cache.put("cached", shortUrl("cached", future));
+		shortUrl("stored1", future);
+		shortUrl("stored2", future);
+		shortUrl("stored3", future);
+		shortUrl("expired", LocalDateTime.now().minusDays(1));
+
+		//When
+		BatchResolveDto dto = shortUrlService.resolveBatch(
+				Arrays.asList("stored2", "unknown", "cached", "expired", "stored1", "stored2", "stored3", null), false, null);
+
+		//Then
+		assertThat(dto.getItems()).extracting(BatchResolveItemDto::getStatus).containsExactly(
+				BatchResolveItemDto.FOUND, BatchResolveItemDto.MISSING, BatchResolveItemDto.FOUND, BatchResolveItemDto.EXPIRED,
+				BatchResolveItemDto.FOUND, BatchResolveItemDto.FOUND, BatchResolveItemDto.FOUND, BatchResolveItemDto.MISSING);
+		assertThat(dto.getItems().get(0).getLongUrl()).isEqualTo("http://stored2.com");
+		assertThat(dto.getItems().get(3).getLongUrl()).isNull();
+		assertThat(dto.getFound()).isEqualTo(5);
+		assertThat(dto.getMissing()).isEqualTo(2);
+		assertThat(dto.getExpired()).isEqualTo(1);
+		assertThat(dto.getCacheHits()).isEqualTo(1);
+		assertThat(cache.get("stored3")).isNotNull();
+		assertThat(cache.get("unknown")).isNull();
+		verify(clickStreamService, never()).record(any(), any());
+	}
+
+	@Test
+	public void should_countEveryOccurrence_when_clicksAreCounted() throws Exception {
+		//Given
+		shortUrl("visited", LocalDateTime.now().plusDays(30));
+		String[] dimensions = new String[ClickDimension.values().length];
+
+		//When
+		BatchResolveDto dto = shortUrlService.resolveBatch(Arrays.asList("visited", "visited", "unknown"), true, dimensions);
+
+		//Then
+		assertThat(dto.getFound()).isEqualTo(2);
+		verify(clickStreamService, times(2)).record(eq("visited"), any());
+		assertThat(linkStore.findByKeyCode("visited").getStats().getSummary().getTotal()).isEqualTo(2);
+		assertThat(linkStore.findByKeyCode("visited").getLastAccessDate()).isNotNull();
+	}
+}
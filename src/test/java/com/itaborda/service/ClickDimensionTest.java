@@ -0,0 +1,47 @@
+package com.itaborda.service;
+
+import com.itaborda.model.embedded.BrowserStats;
+import com.itaborda.model.embedded.Stats;
+import com.itaborda.util.ClickDimension;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ClickDimensionTest {
+
+	@Test
+	public void should_mapRawValuesToLabels_when_classified() {
+		//When
+		int chrome = ClickDimension.BROWSER.ordinalOf("Chrome");
+		int unknownBrowser = ClickDimension.BROWSER.ordinalOf("Lynx");
+		int search = ClickDimension.REFERRER.ordinalOf("www.google.com");
+		int social = ClickDimension.REFERRER.ordinalOf("t.co");
+		int direct = ClickDimension.REFERRER.ordinalOf(null);
+		int portuguese = ClickDimension.LANGUAGE.ordinalOf("pt");
+
+		//Then
+		assertThat(ClickDimension.BROWSER.getLabels()[chrome]).isEqualTo("chrome");
+		assertThat(ClickDimension.BROWSER.getLabels()[unknownBrowser]).isEqualTo("others");
+		assertThat(ClickDimension.REFERRER.getLabels()[search]).isEqualTo("search");
+		assertThat(ClickDimension.REFERRER.getLabels()[social]).isEqualTo("social");
+		assertThat(ClickDimension.REFERRER.getLabels()[direct]).isEqualTo("direct");
+		assertThat(ClickDimension.LANGUAGE.getLabels()[portuguese]).isEqualTo("pt");
+	}
+
+	@Test
+	public void should_foldLegacyCounters_when_statsPersistedBeforeDimensions() {
+		//Given
+		Stats stats = new Stats();
+		BrowserStats browserStats = new BrowserStats();
+		browserStats.setSafari(4L);
+		stats.setBrowserStats(browserStats);
+
+		//When
+		stats.increment(ClickDimension.BROWSER, ClickDimension.BROWSER.ordinalOf("safari"));
+
+		//Then
+		assertThat(stats.count(ClickDimension.BROWSER, "safari")).isEqualTo(5);
+		assertThat(stats.getBrowserStats()).isNull();
+		assertThat(stats.breakdown(ClickDimension.DEVICE)).containsOnlyKeys("computer", "mobile", "tablet", "others");
+	}
+}
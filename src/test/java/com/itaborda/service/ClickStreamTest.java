@@ -0,0 +1,165 @@
+package com.itaborda.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itaborda.controller.dto.ClickDeltaDto;
+import com.itaborda.model.ShortUrl;
+import com.itaborda.repository.LinkStore;
+import com.itaborda.service.impl.ClickStreamServiceImpl;
+import com.itaborda.util.ClickDimension;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ClickStreamTest {
+
+	private static final String CHANNEL = "shortify:clicks";
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private StringRedisTemplate redisTemplate;
+	private List<RecordingEmitter> emitters;
+	private ClickStreamServiceImpl clickStreamService;
+
+	@Before
+	public void setup() {
+		redisTemplate = mock(StringRedisTemplate.class);
+		LinkStore linkStore = mock(LinkStore.class);
+		when(linkStore.findByKeyCode(anyString())).then(i -> new ShortUrl(i.getArgument(0)));
+		emitters = new ArrayList<>();
+		clickStreamService = new ClickStreamServiceImpl(redisTemplate, linkStore, objectMapper, mock(RedisMessageListenerContainer.class),
+				100, 2, 2, "PT1M") {
+			@Override
+			protected SseEmitter newEmitter() {
+				return emitters.remove(0);
+			}
+		};
+	}
+
+	@After
+	public void tearDown() {
+		clickStreamService.shutdown();
+	}
+
+	@Test
+	public void should_publishOneAggregatedDeltaPerKey_when_clicksAreRecorded() throws Exception {
+		//Given
+		int[] chromeOnLinux = ClickDimension.ordinalsOf(new String[]{"chrome", "linux", "computer", null, "en"});
+		int[] safariOnIos = ClickDimension.ordinalsOf(new String[]{"safari", "ios", "mobile", "t.co", "en"});
+		clickStreamService.record("abc", chromeOnLinux);
+		clickStreamService.record("abc", chromeOnLinux);
+		clickStreamService.record("abc", safariOnIos);
+		clickStreamService.record("xyz", safariOnIos);
+
+		//When
+		clickStreamService.publish();
+		clickStreamService.publish();
+
+		//Then
+		ArgumentCaptor<String> published = ArgumentCaptor.forClass(String.class);
+		verify(redisTemplate).convertAndSend(eq(CHANNEL), published.capture());
+		List<ClickDeltaDto> deltas = objectMapper.readValue(published.getValue(), new TypeReference<List<ClickDeltaDto>>() {
+		});
+		ClickDeltaDto abc = deltas.stream().filter(d -> d.getKey().equals("abc")).findFirst().get();
+		assertThat(deltas).hasSize(2);
+		assertThat(abc.getClicks()).isEqualTo(3);
+		assertThat(abc.getBreakdowns().get(ClickDimension.BROWSER.getReportName())).containsEntry("chrome", 2L).containsEntry("safari", 1L);
+		assertThat(abc.getBreakdowns().get(ClickDimension.REFERRER.getReportName())).containsEntry("direct", 2L).containsEntry("social", 1L);
+	}
+
+	@Test
+	public void should_fanOutToEverySubscriber_and_dropForSlowOne_when_deltasAreReceived() throws Exception {
+		//Given
+		RecordingEmitter first = new RecordingEmitter(null);
+		RecordingEmitter second = new RecordingEmitter(null);
+		CountDownLatch release = new CountDownLatch(1);
+		RecordingEmitter slow = new RecordingEmitter(release);
+		Collections.addAll(emitters, first, second, slow);
+		clickStreamService.subscribe("abc");
+		clickStreamService.subscribe("abc");
+		clickStreamService.subscribe("abc");
+
+		//When
+		clickStreamService.onMessage(message(delta("abc", 1), delta("other", 1)), null);
+		assertThat(slow.sending.await(5, TimeUnit.SECONDS)).isTrue();
+		for (int timestamp = 2; timestamp <= 6; timestamp++) {
+			clickStreamService.onMessage(message(delta("abc", timestamp)), null);
+			// the fast subscribers keep up, delta after delta
+			first.await(timestamp);
+			second.await(timestamp);
+		}
+		release.countDown();
+
+		//Then
+		assertThat(first.await(6)).containsExactly(1L, 2L, 3L, 4L, 5L, 6L);
+		assertThat(second.await(6)).containsExactly(1L, 2L, 3L, 4L, 5L, 6L);
+		// the first delta was being sent while the buffer of two filled up, the others were dropped
+		assertThat(slow.await(3)).containsExactly(1L, 2L, 3L);
+		Thread.sleep(100);
+		assertThat(slow.timestamps).hasSize(3);
+	}
+
+	private static ClickDeltaDto delta(String key, long timestamp) {
+		ClickDeltaDto delta = new ClickDeltaDto();
+		delta.setKey(key);
+		delta.setTimestamp(timestamp);
+		delta.setClicks(1L);
+		return delta;
+	}
+
+	private DefaultMessage message(ClickDeltaDto... deltas) throws IOException {
+		byte[] body = objectMapper.writeValueAsString(deltas).getBytes(StandardCharsets.UTF_8);
+		return new DefaultMessage(CHANNEL.getBytes(StandardCharsets.UTF_8), body);
+	}
+
+	/**
+	 * records the timestamps of the deltas sent, the first send blocking until released when a latch is given
+	 */
+	private static class RecordingEmitter extends SseEmitter {
+		private final List<Long> timestamps = new CopyOnWriteArrayList<>();
+		private final CountDownLatch sending = new CountDownLatch(1);
+		private final CountDownLatch release;
+
+		RecordingEmitter(CountDownLatch release) {
+			this.release = release;
+		}
+
+		@Override
+		public void send(SseEventBuilder builder) throws IOException {
+			sending.countDown();
+			try {
+				if (release != null) release.await();
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			builder.build().stream()
+					.filter(d -> d.getData() instanceof ClickDeltaDto)
+					.forEach(d -> timestamps.add(((ClickDeltaDto) d.getData()).getTimestamp()));
+		}
+
+		List<Long> await(int count) throws InterruptedException {
+			for (int i = 0; i < 500 && timestamps.size() < count; i++) Thread.sleep(10);
+			return timestamps;
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package com.itaborda.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itaborda.model.ShortUrl;
+import com.itaborda.repository.embedded.EmbeddedLinkStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EmbeddedLinkStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private EmbeddedLinkStore open(int segmentSize) throws IOException {
+		return new EmbeddedLinkStore(new ObjectMapper(), folder.getRoot().getPath(), segmentSize, 16, 0.5, false);
+	}
+
+	private ShortUrl shortUrl(String keyCode, String longUrl) {
+		ShortUrl shortUrl = new ShortUrl(keyCode);
+		shortUrl.setLongUrl(longUrl);
+		shortUrl.setUrlKey(ShortUrl.urlKeyOf(longUrl));
+		shortUrl.setCreatedDate(LocalDateTime.now());
+		shortUrl.setExpireDate(LocalDateTime.now().plusDays(1));
+		return shortUrl;
+	}
+
+	@Test
+	public void should_findLatestShortUrls_when_storeIsReopened() throws IOException {
+		//Given
+		EmbeddedLinkStore store = open(1 << 20);
+		store.insertIfAbsent(shortUrl("a1", "http://site1.com"));
+		ShortUrl second = store.insertIfAbsent(shortUrl("b2", "http://site2.com"));
+		second.setLastAccessDate(LocalDateTime.now());
+		store.save(second);
+		ShortUrl existing = store.insertIfAbsent(shortUrl("c3", "http://site1.com"));
+		store.close();
+
+		//When
+		EmbeddedLinkStore reopened = open(1 << 20);
+
+		//Then
+		assertThat(existing.getKeyCode()).isEqualTo("a1");
+		assertThat(reopened.size()).isEqualTo(2);
+		assertThat(reopened.findByKeyCode("b2").getLastAccessDate()).isNotNull();
+		assertThat(reopened.findByKeyCode("c3")).isNull();
+		assertThat(reopened.findByLongUrlIn(Arrays.asList("http://site1.com", "http://site3.com")))
+				.extracting(ShortUrl::getKeyCode).containsExactly("a1");
+		assertThat(reopened.insertUnordered(Arrays.asList(shortUrl("d4", "http://site2.com"), shortUrl("e5", "http://site5.com"))))
+				.containsOnlyKeys(0);
+	}
+
+	@Test
+	public void should_discardTornRecord_when_recoveringAfterCrash() throws IOException {
+		//Given
+		EmbeddedLinkStore store = open(1 << 20);
+		store.save(shortUrl("kept", "http://site1.com"));
+		store.save(shortUrl("torn", "http://site2.com"));
+		store.close();
+		File segment = new File(folder.getRoot(), "links-1.log");
+		byte[] content = Files.readAllBytes(segment.toPath());
+		int tornAt = new String(content, StandardCharsets.ISO_8859_1).lastIndexOf("http://site2.com");
+		try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+			file.seek(tornAt);
+			file.write('X');
+		}
+
+		//When
+		EmbeddedLinkStore recovered = open(1 << 20);
+		recovered.save(shortUrl("next", "http://site3.com"));
+		recovered.close();
+
+		//Then
+		EmbeddedLinkStore reopened = open(1 << 20);
+		assertThat(reopened.findByKeyCode("kept")).isNotNull();
+		assertThat(reopened.findByKeyCode("torn")).isNull();
+		assertThat(reopened.findByKeyCode("next").getLongUrl()).isEqualTo("http://site3.com");
+	}
+
+	@Test
+	public void should_deleteSegments_when_compactedAfterOverwrites() throws IOException {
+		//Given
+		EmbeddedLinkStore store = open(4096);
+		ShortUrl stable = store.insertIfAbsent(shortUrl("stable", "http://stable.com"));
+		ShortUrl hot = store.insertIfAbsent(shortUrl("hot", "http://hot.com"));
+		for (int i = 0; i < 100; i++) {
+			hot.setLastAccessDate(LocalDateTime.now().plusSeconds(i));
+			store.save(hot);
+		}
+		int segmentsBefore = store.segmentCount();
+
+		//When
+		store.compact();
+
+		//Then
+		assertThat(segmentsBefore).isGreaterThan(2);
+		assertThat(store.segmentCount()).isLessThan(segmentsBefore);
+		assertThat(store.findByKeyCode("stable").getId()).isEqualTo(stable.getId());
+		assertThat(store.findByKeyCode("hot").getLastAccessDate()).isEqualTo(hot.getLastAccessDate());
+		store.close();
+		assertThat(open(4096).findByLongUrlIn(Arrays.asList("http://stable.com", "http://hot.com"))).hasSize(2);
+	}
+}
@@ -0,0 +1,145 @@
+package com.itaborda.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itaborda.controller.dto.BatchShortenDto;
+import com.itaborda.controller.dto.ImportRequestDto;
+import com.itaborda.controller.dto.ImportStatusDto;
+import com.itaborda.model.ImportCheckpoint;
+import com.itaborda.repository.CheckpointStore;
+import com.itaborda.service.impl.ImportServiceImpl;
+import com.itaborda.util.UrlNormalizer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ImportServiceTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ShortUrlService shortUrlService;
+	private CheckpointStore checkpointStore;
+	private ImportServiceImpl importService;
+	private List<String> stored;
+
+	@Before
+	public void setup() throws Exception {
+		shortUrlService = mock(ShortUrlService.class);
+		checkpointStore = mock(CheckpointStore.class);
+		importService = new ImportServiceImpl(shortUrlService, checkpointStore, new ObjectMapper(),
+				new UrlNormalizer(Collections.singletonList("utm_*")), 100, 2, 4);
+		stored = new ArrayList<>();
+
+		when(checkpointStore.saveCheckpoint(any(ImportCheckpoint.class))).then(i -> i.getArgument(0));
+		when(shortUrlService.shortenNormalized(anyList())).then(i -> {
+			List<String> urls = i.getArgument(0);
+			stored.addAll(urls);
+			BatchShortenDto dto = new BatchShortenDto();
+			dto.setCreated(urls.size());
+			return dto;
+		});
+	}
+
+	@Test
+	public void should_storeEveryValidUrlInFileOrder_when_csvIsImported() throws Exception {
+		//Given
+		File file = dump("longUrl,comment", 1, 1050, "badURL", "\"site1.com/a,b\",quoted");
+		when(checkpointStore.findCheckpoint(anyString())).thenReturn(Optional.empty());
+
+		//When
+		ImportStatusDto status = importService.await(importService.start(request(file)).getCheckpoint().getId());
+
+		//Then
+		assertThat(status.getCheckpoint().getState()).isEqualTo(ImportCheckpoint.DONE);
+		assertThat(status.getCheckpoint().getCommittedLines()).isEqualTo(1053);
+		assertThat(status.getCheckpoint().getInvalid()).isEqualTo(1);
+		assertThat(status.getCheckpoint().getCreated()).isEqualTo(1051);
+		assertThat(stored.get(0)).isEqualTo("http://site1.com");
+		assertThat(stored.get(1049)).isEqualTo("http://site1050.com");
+		assertThat(stored.get(1050)).isEqualTo("http://site1.com/a,b");
+		assertThat(status.getStages().get("store").getRecords()).isEqualTo(1051);
+	}
+
+	@Test
+	public void should_resumeAfterLastCommittedLine_when_checkpointExists() throws Exception {
+		//Given
+		File file = dump("longUrl", 1, 300);
+		when(checkpointStore.findCheckpoint(anyString())).then(i -> {
+			ImportCheckpoint checkpoint = new ImportCheckpoint(i.getArgument(0), file.getAbsolutePath(), ImportRequestDto.CSV);
+			checkpoint.setState(ImportCheckpoint.FAILED);
+			checkpoint.setCommittedLines(201L);
+			return Optional.of(checkpoint);
+		});
+
+		//When
+		ImportStatusDto status = importService.await(importService.start(request(file)).getCheckpoint().getId());
+
+		//Then
+		assertThat(status.getCheckpoint().getState()).isEqualTo(ImportCheckpoint.DONE);
+		assertThat(stored).hasSize(100);
+		assertThat(stored.get(0)).isEqualTo("http://site201.com");
+	}
+
+	@Test
+	public void should_failWithoutHanging_when_writerIsInterrupted() throws Exception {
+		//Given
+		File file = dump("longUrl", 1, 2000);
+		when(checkpointStore.findCheckpoint(anyString())).thenReturn(Optional.empty());
+		when(shortUrlService.shortenNormalized(anyList())).then(i -> {
+			// lets the reader fill the queue before the writer stops taking from it
+			Thread.sleep(300);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("store interrupted");
+		});
+		String importId = importService.start(request(file)).getCheckpoint().getId();
+
+		//When
+		ImportStatusDto status = CompletableFuture.supplyAsync(() -> {
+			try {
+				return importService.await(importId);
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}).get(10, TimeUnit.SECONDS);
+
+		//Then
+		assertThat(status.getCheckpoint().getState()).isEqualTo(ImportCheckpoint.FAILED);
+		assertThat(status.getCheckpoint().getError()).contains("store interrupted");
+		assertThat(status.getCheckpoint().getCommittedLines()).isEqualTo(0);
+	}
+
+	private File dump(String header, int from, int to, String... extraLines) throws Exception {
+		List<String> lines = new ArrayList<>();
+		lines.add(header);
+		for (int i = from; i <= to; i++) lines.add("site" + i + ".com," + i);
+		for (String line : extraLines) lines.add(line);
+		File file = folder.newFile();
+		Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+		return file;
+	}
+
+	private ImportRequestDto request(File file) {
+		ImportRequestDto request = new ImportRequestDto();
+		request.setFile(file.getAbsolutePath());
+		request.setFormat(ImportRequestDto.CSV);
+		return request;
+	}
+}
@@ -0,0 +1,150 @@
+package com.itaborda.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itaborda.controller.dto.ResolveLinkDto;
+import com.itaborda.exception.ServiceOverloadedException;
+import com.itaborda.model.ShortUrl;
+import com.itaborda.model.embedded.Stats;
+import com.itaborda.model.embedded.VisitSummary;
+import com.itaborda.repository.LinkCache;
+import com.itaborda.repository.LinkStore;
+import com.itaborda.repository.embedded.EmbeddedLinkStore;
+import com.itaborda.service.impl.LoadSheddingServiceImpl;
+import com.itaborda.service.impl.ShortUrlServiceImpl;
+import com.itaborda.util.UrlNormalizer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.lang.reflect.InvocationTargetException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+public class LoadSheddingTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * the slow mongo stand-in: an embedded link store answering after the injected latency
+	 */
+	private EmbeddedLinkStore embeddedLinkStore;
+	private final AtomicLong latencyMillis = new AtomicLong();
+	private final AtomicInteger calls = new AtomicInteger();
+	private Cache cache;
+	private LoadSheddingService loadSheddingService;
+	private ShortUrlService shortUrlService;
+
+	@Before
+	public void setup() throws Exception {
+		embeddedLinkStore = new EmbeddedLinkStore(new ObjectMapper(), folder.newFolder().getPath(), 1 << 20, 16, 0.5, false);
+		LinkStore linkStore = mock(LinkStore.class, invocation -> {
+			calls.incrementAndGet();
+			Thread.sleep(latencyMillis.get());
+			try {
+				return invocation.getMethod().invoke(embeddedLinkStore, invocation.getArguments());
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		});
+		ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager(ShortUrl.CACHE_NAME);
+		cache = cacheManager.getCache(ShortUrl.CACHE_NAME);
+		loadSheddingService = new LoadSheddingServiceImpl(4, 1, 8, "PT0.05S", "PT0.5S", 0);
+		shortUrlService = new ShortUrlServiceImpl(linkStore, new LinkCache(cacheManager, null), mock(WorkerStatusService.class),
+				mock(TopLinksService.class), mock(ClickStreamService.class), mock(KeyPoolService.class),
+				new UrlNormalizer(Collections.emptyList()), loadSheddingService, Optional.empty(), Optional.empty(), Optional.empty());
+	}
+
+	private ShortUrl shortUrl(String keyCode) {
+		String longUrl = "http://" + keyCode + ".com";
+		ShortUrl shortUrl = new ShortUrl(keyCode);
+		shortUrl.setLongUrl(longUrl);
+		shortUrl.setUrlKey(ShortUrl.urlKeyOf(longUrl));
+		shortUrl.setCreatedDate(LocalDateTime.now().minusDays(1));
+		shortUrl.setExpireDate(LocalDateTime.now().plusDays(30));
+		Stats stats = new Stats();
+		stats.setSummary(new VisitSummary());
+		shortUrl.setStats(stats);
+		return embeddedLinkStore.insertIfAbsent(shortUrl);
+	}
+
+	private static ResolveLinkDto resolve(String key) {
+		ResolveLinkDto dto = new ResolveLinkDto();
+		dto.setShortUrl(key);
+		return dto;
+	}
+
+	@Test
+	public void should_shedStatsAndServeCachedRedirects_when_mongoIsSlow() throws Exception {
+		//Given
+		cache.put("cached", shortUrl("cached"));
+		shortUrl("stored");
+		latencyMillis.set(100);
+
+		//When
+		shortUrlService.resolve(resolve("stored"));
+		int callsWhenDegraded = calls.get();
+		ShortUrl cached = shortUrlService.resolve(resolve("cached"));
+
+		//Then
+		assertThat(loadSheddingService.isDegraded()).isTrue();
+		assertThat(cached.getLongUrl()).isEqualTo("http://cached.com");
+		// neither looked up nor saved
+		assertThat(calls.get()).isEqualTo(callsWhenDegraded);
+		assertThatThrownBy(() -> shortUrlService.getVisitStateByKey("cached")).isInstanceOf(ServiceOverloadedException.class);
+
+		latencyMillis.set(0);
+		Thread.sleep(600);
+		assertThat(loadSheddingService.isDegraded()).isFalse();
+		shortUrlService.resolve(resolve("stored"));
+		// the visit which found mongo slow was not written
+		assertThat(shortUrlService.getVisitStateByKey("stored").getTotalPerYear()).isEqualTo(1);
+	}
+
+	@Test
+	public void should_refuseLookupsBeyondTheLimit_when_mongoIsSaturated() throws Exception {
+		//Given
+		List<String> keys = new ArrayList<>();
+		for (int i = 0; i < 8; i++) keys.add(shortUrl("key" + i).getKeyCode());
+		latencyMillis.set(300);
+		ExecutorService executor = Executors.newFixedThreadPool(keys.size());
+
+		//When
+		List<Future<ShortUrl>> futures = new ArrayList<>();
+		for (String key : keys) futures.add(executor.submit((Callable<ShortUrl>) () -> shortUrlService.resolve(resolve(key))));
+		int resolved = 0;
+		int shed = 0;
+		for (Future<ShortUrl> future : futures) {
+			try {
+				future.get();
+				resolved++;
+			} catch (ExecutionException e) {
+				assertThat(e.getCause()).isInstanceOf(ServiceOverloadedException.class);
+				shed++;
+			}
+		}
+		executor.shutdown();
+
+		//Then
+		assertThat(resolved).isEqualTo(4);
+		assertThat(shed).isEqualTo(4);
+		assertThat(loadSheddingService.isDegraded()).isTrue();
+	}
+}
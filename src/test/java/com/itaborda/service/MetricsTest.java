@@ -0,0 +1,116 @@
+package com.itaborda.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itaborda.controller.ShortUrlController;
+import com.itaborda.controller.dto.ResolveLinkDto;
+import com.itaborda.model.ShortUrl;
+import com.itaborda.repository.TracingCache;
+import com.itaborda.repository.embedded.EmbeddedLinkStore;
+import com.itaborda.service.impl.WriteBehindServiceImpl;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.junit.After;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MetricsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private PrometheusMeterRegistry registry;
+
+	@Before
+	public void setup() {
+		registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+		Metrics.addRegistry(registry);
+	}
+
+	@After
+	public void teardown() {
+		Metrics.removeRegistry(registry);
+		registry.close();
+	}
+
+	@Test
+	public void should_publishLatencyHistogram_when_redirectIsServed() throws Exception {
+		//Given
+		ShortUrlService shortUrlService = mock(ShortUrlService.class);
+		when(shortUrlService.redirect(any(ResolveLinkDto.class))).thenReturn("http://site.com");
+		ShortUrlController controller = new ShortUrlController(shortUrlService);
+
+		//When
+		controller.expandingUrl("abc", new MockHttpServletRequest(), new MockHttpServletResponse());
+		controller.expandingUrl("abc", new MockHttpServletRequest(), new MockHttpServletResponse());
+		String text = registry.scrape();
+
+		//Then
+		assertThat(text).contains("# TYPE shortify_request_seconds histogram\n")
+				.contains("shortify_request_seconds_bucket{endpoint=\"redirect\",le=\"0.001\",}")
+				.contains("shortify_request_seconds_bucket{endpoint=\"redirect\",le=\"+Inf\",} 2.0\n")
+				.contains("shortify_request_seconds_count{endpoint=\"redirect\",} 2.0\n")
+				.contains("shortify_request_seconds_max{endpoint=\"redirect\",}");
+	}
+
+	@Test
+	public void should_countHitsAndMisses_when_cacheIsRead() {
+		//Given
+		TracingCache cache = new TracingCache(new ConcurrentMapCache("metrics-test"));
+
+		//When
+		cache.put("a", "http://site.com");
+		cache.get("a");
+		cache.get("b");
+		cache.count(2, 1);
+		String text = registry.scrape();
+
+		//Then
+		assertThat(text).contains("# TYPE shortify_cache_requests_total counter\n")
+				.contains("shortify_cache_requests_total{cache=\"metrics-test\",result=\"hit\",tier=\"cache\",} 3.0\n")
+				.contains("shortify_cache_requests_total{cache=\"metrics-test\",result=\"miss\",tier=\"cache\",} 2.0\n");
+	}
+
+	@Test
+	public void should_publishLagAndBatchSizes_when_writeBehindFlushes() throws Exception {
+		//Given
+		WriteBehindServiceImpl writeBehind = new WriteBehindServiceImpl(
+				new EmbeddedLinkStore(new ObjectMapper(), folder.newFolder().getPath(), 1 << 20, 16, 0.5, false),
+				new ConcurrentMapCacheManager(ShortUrl.CACHE_NAME), new ObjectMapper(), folder.newFolder().getPath(), 1024, 16, 2);
+		for (int i = 1; i <= 3; i++) {
+			ShortUrl shortUrl = new ShortUrl("k" + i);
+			shortUrl.setId(new ObjectId().toHexString());
+			shortUrl.setLongUrl("http://site" + i + ".com");
+			shortUrl.setUrlKey(ShortUrl.urlKeyOf(shortUrl.getLongUrl()));
+			shortUrl.setCreatedDate(LocalDateTime.now());
+			shortUrl.setExpireDate(LocalDateTime.now().plusDays(1));
+			writeBehind.append(shortUrl);
+		}
+
+		//When
+		writeBehind.flush();
+		String text = registry.scrape();
+		writeBehind.close();
+
+		//Then
+		assertThat(text).contains("# TYPE shortify_write_behind_lag_seconds gauge\n")
+				.contains("# TYPE shortify_write_behind_pending gauge\n")
+				.contains("# TYPE shortify_write_behind_batch_size histogram\n")
+				.contains("shortify_write_behind_batch_size_count 2.0\n")
+				.contains("shortify_write_behind_batch_size_sum 3.0\n");
+	}
+}
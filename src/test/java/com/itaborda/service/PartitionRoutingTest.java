@@ -0,0 +1,192 @@
+package com.itaborda.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itaborda.controller.dto.PartitionRoutesDto;
+import com.itaborda.model.PartitionRoute;
+import com.itaborda.model.ShortUrl;
+import com.itaborda.repository.LinkCache;
+import com.itaborda.repository.LinkStore;
+import com.itaborda.repository.PartitionRouteRepository;
+import com.itaborda.repository.RoutingLinkStore;
+import com.itaborda.repository.embedded.EmbeddedLinkStore;
+import com.itaborda.service.impl.PartitionRebalanceServiceImpl;
+import com.itaborda.util.Base58;
+import com.itaborda.util.GlobalConstants;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.util.CloseableIterator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PartitionRoutingTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private List<LinkStore> backends;
+	private RoutingLinkStore store;
+	private PartitionRouteRepository routeRepository;
+
+	@Before
+	public void setup() throws Exception {
+		backends = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			backends.add(new EmbeddedLinkStore(new ObjectMapper(), folder.newFolder().getPath(), 1 << 20, 16, 0.5, false));
+		}
+		Map<Long, PartitionRoute> routes = new ConcurrentHashMap<>();
+		routeRepository = mock(PartitionRouteRepository.class);
+		when(routeRepository.findAll()).then(i -> new ArrayList<>(routes.values()));
+		when(routeRepository.save(any(PartitionRoute.class))).then(i -> {
+			PartitionRoute route = i.getArgument(0);
+			routes.put(route.getPartition(), route);
+			return route;
+		});
+		store = new RoutingLinkStore(backends, routeRepository, 1);
+	}
+
+	private ShortUrl shortUrl(long partition, int n) {
+		String longUrl = "http://site" + partition + "-" + n + ".com";
+		ShortUrl shortUrl = new ShortUrl(Base58.fromBase10(partition * GlobalConstants.KeyNumbersInPartitions + n) + "ab");
+		shortUrl.setLongUrl(longUrl);
+		shortUrl.setUrlKey(ShortUrl.urlKeyOf(longUrl));
+		return shortUrl;
+	}
+
+	@Test
+	public void should_storeOnOwningBackendOnly_when_routedByPartition() {
+		//Given
+		ShortUrl legacy = store.insertIfAbsent(shortUrl(0, 1));
+		ShortUrl first = store.insertIfAbsent(shortUrl(1, 1));
+		ShortUrl second = store.insertIfAbsent(shortUrl(5, 1));
+
+		//When
+		ShortUrl duplicate = store.insertIfAbsent(withUrl(shortUrl(2, 7), first.getLongUrl()));
+
+		//Then
+		assertThat(RoutingLinkStore.partitionOf(second.getKeyCode())).isEqualTo(5);
+		assertThat(backends.get(0).findByKeyCode(legacy.getKeyCode())).isNotNull();
+		assertThat(backends.get(1).findByKeyCode(first.getKeyCode())).isNotNull();
+		assertThat(backends.get(2).findByKeyCode(second.getKeyCode())).isNotNull();
+		assertThat(backends.get(0).findByKeyCode(second.getKeyCode())).isNull();
+		assertThat(store.findByKeyCode(second.getKeyCode()).getLongUrl()).isEqualTo(second.getLongUrl());
+		assertThat(duplicate.getKeyCode()).isEqualTo(first.getKeyCode());
+		assertThat(store.findByLongUrlIn(Arrays.asList(first.getLongUrl(), second.getLongUrl()))).hasSize(2);
+		try (CloseableIterator<ShortUrl> cursor = store.streamForExport(null, null, null, 10)) {
+			String previous = "";
+			int count = 0;
+			while (cursor.hasNext()) {
+				String id = cursor.next().getId();
+				assertThat(id.compareTo(previous)).isPositive();
+				previous = id;
+				count++;
+			}
+			assertThat(count).isEqualTo(3);
+		}
+	}
+
+	@Test
+	public void should_miss_when_keyCodeIsNotAGeneratedKey() {
+		//Given
+		RoutingLinkStore unpartitioned = new RoutingLinkStore(backends, routeRepository, 0);
+		unpartitioned.insertIfAbsent(shortUrl(1, 1));
+
+		//When
+		ShortUrl outsideAlphabet = unpartitioned.findByKeyCode("llllllllab");
+		ShortUrl tooLong = unpartitioned.findByKeyCode("0000000000ab");
+		List<ShortUrl> batch = unpartitioned.findByKeyCodeIn(Arrays.asList("llllllllab", "0000000000ab"));
+
+		//Then
+		assertThat(RoutingLinkStore.partitionOf("llllllllab")).isEqualTo(0);
+		assertThat(RoutingLinkStore.partitionOf("0000000000ab")).isEqualTo(0);
+		assertThat(outsideAlphabet).isNull();
+		assertThat(tooLong).isNull();
+		assertThat(batch).isEmpty();
+	}
+
+	@Test
+	public void should_serveMovedPartitionFromTarget_when_moveIsDone() throws Exception {
+		//Given
+		PartitionRebalanceServiceImpl rebalancer = new PartitionRebalanceServiceImpl(store, routeRepository, "PT0S", 10);
+		List<ShortUrl> shortUrls = new ArrayList<>();
+		for (int n = 1; n <= 25; n++) shortUrls.add(store.insertIfAbsent(shortUrl(4, n)));
+		ShortUrl stay = store.insertIfAbsent(shortUrl(7, 1));
+
+		//When
+		rebalancer.move(4, 2);
+		PartitionRoutesDto routes = rebalancer.await(4);
+
+		//Then
+		assertThat(routes.getRoutes()).hasSize(1);
+		assertThat(routes.getRoutes().get(0).getState()).isEqualTo(PartitionRoute.DONE);
+		assertThat(routes.getRoutes().get(0).getCopied()).isEqualTo(25);
+		assertThat(routes.getRoutes().get(0).getDeleted()).isEqualTo(25);
+		assertThat(store.backendOf(4)).isEqualTo(2);
+		for (ShortUrl shortUrl : shortUrls) {
+			assertThat(backends.get(1).findByKeyCode(shortUrl.getKeyCode())).isNull();
+			assertThat(store.findByKeyCode(shortUrl.getKeyCode()).getId()).isEqualTo(shortUrl.getId());
+		}
+		assertThat(backends.get(1).findByKeyCode(stay.getKeyCode())).isNotNull();
+	}
+
+	@Test
+	public void should_fallBackToSource_when_partitionIsSwitchedButNotCopied() {
+		//Given
+		ShortUrl shortUrl = store.insertIfAbsent(shortUrl(4, 1));
+		PartitionRoute route = new PartitionRoute(4L, 1, 2);
+		route.setBackend(2);
+		route.setFallback(1);
+		route.setState(PartitionRoute.SWITCHED);
+		routeRepository.save(route);
+
+		//When
+		store.refresh();
+
+		//Then
+		assertThat(backends.get(2).findByKeyCode(shortUrl.getKeyCode())).isNull();
+		assertThat(store.findByKeyCode(shortUrl.getKeyCode())).isNotNull();
+	}
+
+	private ShortUrl withUrl(ShortUrl shortUrl, String longUrl) {
+		shortUrl.setLongUrl(longUrl);
+		shortUrl.setUrlKey(ShortUrl.urlKeyOf(longUrl));
+		return shortUrl;
+	}
+
+	@Test
+	public void should_deleteFromOwningBackendsAndEvictCache_when_deletingInBulk() {
+		//Given
+		ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager(ShortUrl.CACHE_NAME);
+		Cache cache = cacheManager.getCache(ShortUrl.CACHE_NAME);
+		RoutingLinkStore cached = new RoutingLinkStore(backends, routeRepository, 1, new LinkCache(cacheManager, null));
+		ShortUrl first = cached.insertIfAbsent(shortUrl(1, 1));
+		ShortUrl second = cached.insertIfAbsent(shortUrl(5, 1));
+		ShortUrl kept = cached.insertIfAbsent(shortUrl(5, 2));
+		cache.put(first.getKeyCode(), first);
+		cache.put(second.getKeyCode(), second);
+		cache.put(kept.getKeyCode(), kept);
+
+		//When
+		cached.deleteAll(Arrays.asList(first, second));
+
+		//Then
+		assertThat(backends.get(1).findByKeyCode(first.getKeyCode())).isNull();
+		assertThat(backends.get(2).findByKeyCode(second.getKeyCode())).isNull();
+		assertThat(backends.get(2).findByKeyCode(kept.getKeyCode())).isNotNull();
+		assertThat(cache.get(first.getKeyCode())).isNull();
+		assertThat(cache.get(second.getKeyCode())).isNull();
+		assertThat(cache.get(kept.getKeyCode())).isNotNull();
+	}
+}
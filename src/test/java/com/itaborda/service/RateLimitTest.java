@@ -0,0 +1,108 @@
+package com.itaborda.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itaborda.config.RateLimitFilter;
+import com.itaborda.service.impl.RateLimitServiceImpl;
+import org.junit.Test;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RateLimitTest {
+
+	@Test
+	public void should_reject429WithRetryAfter_when_clientExhaustsItsBurst() throws Exception {
+		//Given
+		RateLimitServiceImpl rateLimitService = new RateLimitServiceImpl(mock(StringRedisTemplate.class), 0.5, 2, 0, 0, 100, 1000);
+		RateLimitFilter filter = new RateLimitFilter(rateLimitService, "shorten", new ObjectMapper(), new HashSet<>(Arrays.asList("client-a", "client-b")));
+
+		//When
+		int[] statuses = new int[4];
+		for (int i = 0; i < 3; i++) statuses[i] = shorten(filter, "client-a").getStatus();
+		MockHttpServletResponse rejected = shorten(filter, "client-a");
+		statuses[3] = shorten(filter, "client-b").getStatus();
+
+		//Then
+		assertThat(statuses).containsExactly(200, 200, 429, 200);
+		assertThat(rejected.getStatus()).isEqualTo(429);
+		assertThat(Long.parseLong(rejected.getHeader("Retry-After"))).isBetween(1L, 2L);
+		assertThat(rejected.getContentAsString()).contains("\"success\":false").contains("\"code\":5");
+		assertThat(rateLimitService.tryAcquire("stat", "client-a")).isEqualTo(0);
+	}
+
+	@Test
+	public void should_limitByAddress_when_apiKeyIsNotConfigured() throws Exception {
+		//Given
+		RateLimitServiceImpl rateLimitService = new RateLimitServiceImpl(mock(StringRedisTemplate.class), 0.5, 2, 0, 0, 100, 1000);
+		RateLimitFilter filter = new RateLimitFilter(rateLimitService, "shorten", new ObjectMapper(), Collections.singleton("client-a"));
+
+		//When
+		int[] statuses = new int[4];
+		for (int i = 0; i < 3; i++) statuses[i] = shorten(filter, UUID.randomUUID().toString()).getStatus();
+		statuses[3] = shorten(filter, "client-a").getStatus();
+
+		//Then
+		assertThat(statuses).containsExactly(200, 200, 429, 200);
+	}
+
+	@Test
+	public void should_dropTheBucketUsedTheLongestAgo_when_maxClientsIsExceeded() {
+		//Given
+		RateLimitServiceImpl rateLimitService = new RateLimitServiceImpl(mock(StringRedisTemplate.class), 0.01, 1, 0, 0, 2, 1000);
+		rateLimitService.tryAcquire("shorten", "client-a");
+		rateLimitService.reconcile();
+		rateLimitService.tryAcquire("shorten", "client-b");
+		long newClient = rateLimitService.tryAcquire("shorten", "client-c");
+
+		//When
+		rateLimitService.reconcile();
+		long recentClient = rateLimitService.tryAcquire("shorten", "client-b");
+		long droppedClient = rateLimitService.tryAcquire("shorten", "client-a");
+
+		//Then
+		assertThat(newClient).isEqualTo(0);
+		assertThat(recentClient).isGreaterThan(0);
+		assertThat(droppedClient).isEqualTo(0);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void should_takeTheRequestsOfOtherReplicas_when_reconciled() {
+		//Given
+		StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+		when(redisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(Arrays.asList(5L, true), Arrays.asList(15L, true));
+		RateLimitServiceImpl rateLimitService = new RateLimitServiceImpl(redisTemplate, 0.01, 10, 0, 0, 100, 1000);
+		rateLimitService.tryAcquire("shorten", "client-a");
+		rateLimitService.tryAcquire("shorten", "client-a");
+		rateLimitService.reconcile();
+
+		//When
+		long beforeOthers = rateLimitService.tryAcquire("shorten", "client-a");
+		rateLimitService.reconcile();
+		long afterOthers = rateLimitService.tryAcquire("shorten", "client-a");
+
+		//Then
+		assertThat(beforeOthers).isEqualTo(0);
+		assertThat(afterOthers).isGreaterThan(0);
+	}
+
+	private static MockHttpServletResponse shorten(RateLimitFilter filter, String client) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/shortify");
+		request.addHeader(RateLimitFilter.API_KEY_HEADER, client);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, new MockFilterChain());
+		return response;
+	}
+}
@@ -0,0 +1,193 @@
+package com.itaborda.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itaborda.controller.dto.ResolveLinkDto;
+import com.itaborda.model.ShortUrl;
+import com.itaborda.model.embedded.Stats;
+import com.itaborda.model.embedded.VisitSummary;
+import com.itaborda.repository.LinkCache;
+import com.itaborda.repository.LinkStore;
+import com.itaborda.repository.RedirectStore;
+import com.itaborda.repository.embedded.EmbeddedLinkStore;
+import com.itaborda.service.impl.LoadSheddingServiceImpl;
+import com.itaborda.service.impl.ShortUrlServiceImpl;
+import com.itaborda.util.UrlNormalizer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class RedirectStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void should_evictUnreferencedEntries_when_storeIsFull() {
+		//Given
+		RedirectStore store = new RedirectStore(8 * (64 + 16), 64);
+		long expire = System.currentTimeMillis() + 60000;
+		for (int i = 0; i < 8; i++) store.put("key" + i, "http://site" + i + ".com", expire);
+		store.get("key2", System.currentTimeMillis());
+		store.get("key5", System.currentTimeMillis());
+
+		//When
+		for (int i = 8; i < 12; i++) store.put("key" + i, "http://site" + i + ".com", expire);
+
+		//Then
+		assertThat(store.capacity()).isEqualTo(8);
+		assertThat(store.size()).isEqualTo(8);
+		assertThat(store.getEvictions()).isEqualTo(4);
+		assertThat(store.get("key2", System.currentTimeMillis())).isEqualTo("http://site2.com");
+		assertThat(store.get("key5", System.currentTimeMillis())).isEqualTo("http://site5.com");
+		assertThat(store.get("key11", System.currentTimeMillis())).isEqualTo("http://site11.com");
+		assertThat(store.get("key0", System.currentTimeMillis())).isNull();
+		assertThat(store.put("long", "http://site.com/" + String.join("", Collections.nCopies(64, "a")), expire)).isFalse();
+		store.remove("key2");
+		assertThat(store.get("key2", System.currentTimeMillis())).isNull();
+		assertThat(store.get("key5", expire)).isNull();
+		assertThat(store.get("key5", System.currentTimeMillis())).isEqualTo("http://site5.com");
+	}
+
+	@Test
+	public void should_miss_when_keyIsNotAscii() {
+		//Given
+		RedirectStore store = new RedirectStore(8 * (64 + 16), 64);
+		long expire = System.currentTimeMillis() + 60000;
+		store.put("Abc12", "http://site.com", expire);
+
+		//When
+		String found = store.get("\u0141bc12", System.currentTimeMillis());
+		store.remove("\u0141bc12");
+
+		//Then
+		assertThat(found).isNull();
+		assertThat(store.getMisses()).isEqualTo(1);
+		assertThat(store.put("\u0141bc12", "http://other.com", expire)).isFalse();
+		assertThat(store.get("Abc12", System.currentTimeMillis())).isEqualTo("http://site.com");
+	}
+
+	@Test
+	public void should_recordQueuedVisits_when_redirectIsServedFromStore() throws Exception {
+		//Given
+		EmbeddedLinkStore linkStore = new EmbeddedLinkStore(new ObjectMapper(), folder.newFolder().getPath(), 1 << 20, 16, 0.5, false);
+		ShortUrl shortUrl = new ShortUrl("abc");
+		shortUrl.setLongUrl("http://abc.com/été");
+		shortUrl.setUrlKey(ShortUrl.urlKeyOf(shortUrl.getLongUrl()));
+		shortUrl.setCreatedDate(LocalDateTime.now());
+		shortUrl.setExpireDate(LocalDateTime.now().plusDays(30));
+		Stats stats = new Stats();
+		stats.setSummary(new VisitSummary());
+		shortUrl.setStats(stats);
+		linkStore.insertIfAbsent(shortUrl);
+		RedirectStore store = new RedirectStore(1 << 16, 256);
+		ShortUrlServiceImpl shortUrlService = new ShortUrlServiceImpl(linkStore, mock(LinkCache.class), mock(WorkerStatusService.class),
+				mock(TopLinksService.class), mock(ClickStreamService.class), mock(KeyPoolService.class),
+				new UrlNormalizer(Collections.emptyList()), new LoadSheddingServiceImpl(32, 4, 256, "PT1S", "PT5S", 1), Optional.empty(), Optional.empty(), Optional.of(store));
+		ReflectionTestUtils.setField(shortUrlService, "maxPendingVisits", 100);
+		ReflectionTestUtils.setField(shortUrlService, "softTtl", "PT1H");
+		ReflectionTestUtils.setField(shortUrlService, "hardTtl", "PT24H");
+		ResolveLinkDto dto = new ResolveLinkDto();
+		dto.setShortUrl("abc");
+
+		//When
+		String first = shortUrlService.redirect(dto);
+		String second = shortUrlService.redirect(dto);
+		String third = shortUrlService.redirect(dto);
+		long totalBeforeRecording = linkStore.findByKeyCode("abc").getStats().getSummary().getTotal();
+		shortUrlService.recordVisits();
+
+		//Then
+		assertThat(first).isEqualTo(shortUrl.getLongUrl());
+		assertThat(second).isEqualTo(shortUrl.getLongUrl());
+		assertThat(third).isEqualTo(shortUrl.getLongUrl());
+		assertThat(store.getHits()).isEqualTo(2);
+		assertThat(totalBeforeRecording).isEqualTo(1);
+		assertThat(linkStore.findByKeyCode("abc").getStats().getSummary().getTotal()).isEqualTo(3);
+	}
+
+	@Test
+	public void should_serveStaleRedirectsUntilHardExpiry_when_linkStoreIsDown() throws Exception {
+		//Given
+		EmbeddedLinkStore embeddedLinkStore = new EmbeddedLinkStore(new ObjectMapper(), folder.newFolder().getPath(), 1 << 20, 16, 0.5, false);
+		AtomicBoolean down = new AtomicBoolean();
+		LinkStore linkStore = mock(LinkStore.class, invocation -> {
+			if (down.get()) throw new DataAccessResourceFailureException("mongo is down");
+			try {
+				return invocation.getMethod().invoke(embeddedLinkStore, invocation.getArguments());
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		});
+		embeddedLinkStore.insertIfAbsent(shortUrl("abc", LocalDateTime.now().plusDays(30)));
+		embeddedLinkStore.insertIfAbsent(shortUrl("soon", LocalDateTime.now().plusNanos(400_000_000)));
+		RedirectStore store = new RedirectStore(1 << 16, 256);
+		ShortUrlServiceImpl shortUrlService = new ShortUrlServiceImpl(linkStore, mock(LinkCache.class), mock(WorkerStatusService.class),
+				mock(TopLinksService.class), mock(ClickStreamService.class), mock(KeyPoolService.class),
+				new UrlNormalizer(Collections.emptyList()), new LoadSheddingServiceImpl(32, 4, 256, "PT1S", "PT5S", 1), Optional.empty(), Optional.empty(), Optional.of(store));
+		ReflectionTestUtils.setField(shortUrlService, "maxPendingVisits", 100);
+		ReflectionTestUtils.setField(shortUrlService, "lookupChunk", 100);
+		ReflectionTestUtils.setField(shortUrlService, "softTtl", "PT0.1S");
+		ReflectionTestUtils.setField(shortUrlService, "hardTtl", "PT1H");
+		shortUrlService.redirect(resolve("abc"));
+		shortUrlService.redirect(resolve("soon"));
+		Thread.sleep(150);
+		down.set(true);
+
+		//When
+		List<String> served = new ArrayList<>();
+		for (int i = 0; i < 3; i++) served.add(shortUrlService.redirect(resolve("abc")));
+		List<String> staleKeys = store.getStaleKeys();
+		shortUrlService.refreshStale();
+		served.add(shortUrlService.redirect(resolve("abc")));
+		Thread.sleep(300);
+
+		//Then
+		assertThat(served).containsOnly("http://abc.com");
+		assertThat(staleKeys).containsExactly("abc");
+		// a single revalidation of the stale key, which failed
+		verify(linkStore, times(1)).findByKeyCodeIn(anyCollection());
+		assertThatThrownBy(() -> shortUrlService.redirect(resolve("soon"))).isInstanceOf(DataAccessResourceFailureException.class);
+
+		down.set(false);
+		shortUrlService.refreshStale();
+		assertThat(store.getStaleKeys()).isEmpty();
+		assertThat(shortUrlService.redirect(resolve("abc"))).isEqualTo("http://abc.com");
+		assertThat(store.getStaleKeys()).isEmpty();
+		assertThat(store.getStaleHits()).isEqualTo(4);
+	}
+
+	private static ShortUrl shortUrl(String keyCode, LocalDateTime expireDate) {
+		ShortUrl shortUrl = new ShortUrl(keyCode);
+		shortUrl.setLongUrl("http://" + keyCode + ".com");
+		shortUrl.setUrlKey(ShortUrl.urlKeyOf(shortUrl.getLongUrl()));
+		shortUrl.setCreatedDate(LocalDateTime.now());
+		shortUrl.setExpireDate(expireDate);
+		Stats stats = new Stats();
+		stats.setSummary(new VisitSummary());
+		shortUrl.setStats(stats);
+		return shortUrl;
+	}
+
+	private static ResolveLinkDto resolve(String key) {
+		ResolveLinkDto dto = new ResolveLinkDto();
+		dto.setShortUrl(key);
+		return dto;
+	}
+}
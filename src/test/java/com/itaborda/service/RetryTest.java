@@ -0,0 +1,93 @@
+package com.itaborda.service;
+
+import com.itaborda.aspect.Retry;
+import com.itaborda.aspect.RetryAspect;
+import com.itaborda.aspect.RetryBudget;
+import com.itaborda.controller.dto.RetryStatsDto;
+import org.junit.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class RetryTest {
+
+	public static class Flaky {
+		private int failures;
+		private int attempts;
+
+		@Retry(times = 3, on = DuplicateKeyException.class, delay = 1, maxDelay = 4)
+		public int insert() {
+			attempts++;
+			if (failures-- > 0) throw new DataIntegrityViolationException("wrapped", new DuplicateKeyException("duplicate"));
+			return attempts;
+		}
+
+		@Retry(times = 3, on = DuplicateKeyException.class, delay = 1, maxDelay = 4)
+		public int update() {
+			attempts++;
+			throw new OptimisticLockingFailureException("locked");
+		}
+	}
+
+	private Flaky proxy(Flaky target, RetryAspect aspect) {
+		AspectJProxyFactory factory = new AspectJProxyFactory(target);
+		factory.setProxyTargetClass(true);
+		factory.addAspect(aspect);
+		return factory.getProxy();
+	}
+
+	@Test
+	public void should_retryWithBackoff_when_causeIsRetryable() {
+		//Given
+		RetryAspect aspect = new RetryAspect(new RetryBudget(0, 100));
+		Flaky target = new Flaky();
+		Flaky flaky = proxy(target, aspect);
+
+		//When
+		target.failures = 2;
+		int recovered = flaky.insert();
+		target.attempts = 0;
+		target.failures = 10;
+		Throwable exhausted = catchThrowable(flaky::insert);
+		target.attempts = 0;
+		Throwable notRetried = catchThrowable(flaky::update);
+
+		//Then
+		RetryStatsDto stats = aspect.getStats();
+		assertThat(recovered).isEqualTo(3);
+		assertThat(exhausted).isInstanceOf(DataIntegrityViolationException.class);
+		assertThat(notRetried).isInstanceOf(OptimisticLockingFailureException.class);
+		assertThat(target.attempts).isEqualTo(1);
+		assertThat(stats.getPolicies().get("Flaky.insert").getCalls()).isEqualTo(2);
+		assertThat(stats.getPolicies().get("Flaky.insert").getRetries()).isEqualTo(5);
+		assertThat(stats.getPolicies().get("Flaky.insert").getRecovered()).isEqualTo(1);
+		assertThat(stats.getPolicies().get("Flaky.insert").getExhausted()).isEqualTo(1);
+		assertThat(stats.getPolicies().get("Flaky.update").getCalls()).isEqualTo(1);
+		assertThat(stats.getBudgetTokens()).isEqualTo(95);
+	}
+
+	@Test
+	public void should_failFast_when_retryBudgetIsEmpty() {
+		//Given
+		RetryAspect aspect = new RetryAspect(new RetryBudget(0, 2));
+		Flaky target = new Flaky();
+		Flaky flaky = proxy(target, aspect);
+		target.failures = 100;
+
+		//When
+		Throwable first = catchThrowable(flaky::insert);
+		int firstAttempts = target.attempts;
+		Throwable second = catchThrowable(flaky::insert);
+
+		//Then
+		assertThat(first).isInstanceOf(DataIntegrityViolationException.class);
+		assertThat(second).isInstanceOf(DataIntegrityViolationException.class);
+		assertThat(firstAttempts).isEqualTo(3);
+		assertThat(target.attempts).isEqualTo(4);
+		assertThat(aspect.getStats().getPolicies().get("Flaky.insert").getRejected()).isEqualTo(2);
+	}
+}
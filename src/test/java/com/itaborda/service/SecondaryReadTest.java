@@ -0,0 +1,78 @@
+package com.itaborda.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itaborda.model.ShortUrl;
+import com.itaborda.repository.SecondaryReadLinkStore;
+import com.itaborda.repository.embedded.EmbeddedLinkStore;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.data.util.CloseableIterator;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SecondaryReadTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private EmbeddedLinkStore primary;
+	private EmbeddedLinkStore secondary;
+	private SecondaryReadLinkStore store;
+
+	@Before
+	public void setup() throws Exception {
+		primary = new EmbeddedLinkStore(new ObjectMapper(), folder.newFolder().getPath(), 1 << 20, 16, 0.5, false);
+		secondary = new EmbeddedLinkStore(new ObjectMapper(), folder.newFolder().getPath(), 1 << 20, 16, 0.5, false);
+		store = new SecondaryReadLinkStore(primary, secondary);
+	}
+
+	private ShortUrl shortUrl(String keyCode, LocalDateTime expireDate) {
+		ShortUrl shortUrl = new ShortUrl(keyCode);
+		shortUrl.setLongUrl("http://" + keyCode + ".com");
+		shortUrl.setUrlKey(ShortUrl.urlKeyOf(shortUrl.getLongUrl()));
+		shortUrl.setCreatedDate(LocalDateTime.now());
+		shortUrl.setExpireDate(expireDate);
+		return shortUrl;
+	}
+
+	@Test
+	public void should_readFromSecondary_when_replicated() {
+		//Given
+		ShortUrl replicated = shortUrl("replicated", LocalDateTime.now().plusDays(1));
+		secondary.save(replicated);
+		replicated.setLongUrl("http://changed.com");
+		primary.save(replicated);
+
+		//When
+		ShortUrl found = store.findByKeyCode("replicated");
+
+		//Then
+		assertThat(found.getLongUrl()).isEqualTo("http://replicated.com");
+		try (CloseableIterator<ShortUrl> cursor = store.streamForExport(null, null, null, 10)) {
+			assertThat(cursor.next().getLongUrl()).isEqualTo("http://replicated.com");
+		}
+	}
+
+	@Test
+	public void should_fallBackToPrimary_when_secondaryIsStale() {
+		//Given
+		primary.insertIfAbsent(shortUrl("justCreated", LocalDateTime.now().plusDays(1)));
+		secondary.save(shortUrl("renewed", LocalDateTime.now().minusDays(1)));
+		primary.save(shortUrl("renewed", LocalDateTime.now().plusDays(1)));
+
+		//When
+		ShortUrl justCreated = store.findByKeyCode("justCreated");
+		ShortUrl renewed = store.findByKeyCode("renewed");
+
+		//Then
+		assertThat(justCreated).isNotNull();
+		assertThat(renewed.isNotExpired()).isTrue();
+		assertThat(store.findByKeyCode("missing")).isNull();
+		assertThat(store.insertIfAbsent(shortUrl("created", LocalDateTime.now().plusDays(1))).getKeyCode()).isEqualTo("created");
+		assertThat(secondary.findByKeyCode("created")).isNull();
+	}
+}
@@ -0,0 +1,128 @@
+package com.itaborda.service;
+
+import com.itaborda.model.ShortUrl;
+import com.itaborda.repository.LinkCache;
+import com.itaborda.repository.ShardedRedisCache;
+import com.itaborda.util.ConsistentHashRing;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ShardedCacheTest {
+
+	private final List<LettuceConnectionFactory> factories = new ArrayList<>();
+
+	@After
+	public void tearDown() {
+		factories.forEach(LettuceConnectionFactory::destroy);
+	}
+
+	private ConsistentHashRing<String> ring(String... nodes) {
+		Map<String, String> byName = new LinkedHashMap<>();
+		for (String node : nodes) byName.put(node, node);
+		return new ConsistentHashRing<>(byName, 160);
+	}
+
+	@Test
+	public void should_moveOnlyKeysOfNewNode_when_nodeIsAdded() {
+		//Given
+		ConsistentHashRing<String> ring = ring("redis://a:6379", "redis://b:6379", "redis://c:6379");
+		Map<String, String> owners = new HashMap<>();
+		Map<String, Integer> shares = new HashMap<>();
+		for (int i = 0; i < 30000; i++) {
+			String owner = ring.nodeOf("key" + i);
+			owners.put("key" + i, owner);
+			shares.merge(owner, 1, Integer::sum);
+		}
+
+		//When
+		ConsistentHashRing<String> grown = ring.with("redis://d:6379", "redis://d:6379");
+
+		//Then
+		int moved = 0;
+		for (Map.Entry<String, String> owner : owners.entrySet()) {
+			String newOwner = grown.nodeOf(owner.getKey());
+			if (newOwner.equals(owner.getValue())) continue;
+			assertThat(newOwner).isEqualTo("redis://d:6379");
+			moved++;
+		}
+		assertThat(shares.values()).allSatisfy(share -> assertThat(share).isBetween(7000, 13000));
+		assertThat(moved).isBetween(4500, 10500);
+		assertThat(ring("redis://c:6379", "redis://a:6379", "redis://b:6379").nodeOf("key1")).isEqualTo(ring.nodeOf("key1"));
+	}
+
+	@Test
+	public void should_readThroughLoader_when_nodeIsDown() throws Exception {
+		//Given
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		LettuceConnectionFactory factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port),
+				LettuceClientConfiguration.builder().commandTimeout(Duration.ofMillis(500)).build());
+		factory.afterPropertiesSet();
+		factories.add(factory);
+		String name = "redis://localhost:" + port;
+		ShardedRedisCache.Node node = new ShardedRedisCache.Node(name, ShortUrl.CACHE_NAME, factory, RedisCacheConfiguration.defaultCacheConfig());
+		ShardedRedisCache cache = new ShardedRedisCache(ShortUrl.CACHE_NAME,
+				new ConsistentHashRing<>(Collections.singletonMap(name, node), 16), 60000);
+		SimpleCacheManager cacheManager = new SimpleCacheManager();
+		cacheManager.setCaches(Collections.singletonList(cache));
+		cacheManager.afterPropertiesSet();
+		ShortUrl shortUrl = new ShortUrl("abc");
+
+		//When
+		ShortUrl loaded = cache.get("abc", () -> shortUrl);
+
+		//Then
+		assertThat(loaded).isSameAs(shortUrl);
+		assertThat(cache.available(node)).isFalse();
+		assertThat(cache.get("abc")).isNull();
+		cache.put("abc", shortUrl);
+		cache.evict("abc");
+		assertThat(new LinkCache(cacheManager, null).getAll(Arrays.asList("abc", "def"))).isEmpty();
+	}
+
+	@Test
+	public void should_notBlockTheCaller_when_failedNodeIsRetried() throws Exception {
+		//Given
+		try (ServerSocket silent = new ServerSocket(0)) {
+			LettuceConnectionFactory factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", silent.getLocalPort()),
+					LettuceClientConfiguration.builder().commandTimeout(Duration.ofMillis(500)).build());
+			factory.afterPropertiesSet();
+			factories.add(factory);
+			String name = "redis://localhost:" + silent.getLocalPort();
+			ShardedRedisCache.Node node = new ShardedRedisCache.Node(name, ShortUrl.CACHE_NAME, factory, RedisCacheConfiguration.defaultCacheConfig());
+			ShardedRedisCache cache = new ShardedRedisCache(ShortUrl.CACHE_NAME,
+					new ConsistentHashRing<>(Collections.singletonMap(name, node), 16), 0);
+			cache.put("abc", new ShortUrl("abc"));
+
+			//When
+			long start = System.nanoTime();
+			boolean available = cache.available(node);
+			cache.evict("def");
+			long elapsed = System.nanoTime() - start;
+
+			//Then
+			assertThat(available).isFalse();
+			assertThat(elapsed).isLessThan(Duration.ofMillis(200).toNanos());
+			assertThat(node.getMissed()).isEqualTo(2);
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package com.itaborda.service;
+
+import com.itaborda.model.ShortUrl;
+import com.itaborda.model.embedded.DateStat;
+import com.itaborda.model.embedded.Stats;
+import com.itaborda.model.embedded.VisitSummary;
+import com.itaborda.repository.ShortUrlCodec;
+import com.itaborda.util.Base58;
+import com.itaborda.util.ClickDimension;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.junit.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.time.LocalDateTime;
+import java.time.Year;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ShortUrlCodecTest {
+
+	private ShortUrl shortUrl() {
+		String longUrl = "http://www.example.com/some/long/path?with=query";
+		ShortUrl shortUrl = new ShortUrl(Base58.fromBase10(123456789L) + "xy");
+		shortUrl.setId(ShortUrlCodec.idOf(123456789L));
+		shortUrl.setLongUrl(longUrl);
+		shortUrl.setUrlKey(ShortUrl.urlKeyOf(longUrl));
+		shortUrl.setCreatedDate(LocalDateTime.of(2020, 3, 1, 10, 15, 30, 123000000));
+		shortUrl.setLastAccessDate(LocalDateTime.of(2020, 3, 4, 8, 0));
+		shortUrl.setExpireDate(LocalDateTime.of(2021, 3, 1, 10, 15, 30));
+		Stats stats = new Stats();
+		for (int i = 0; i < 40; i++) {
+			stats.increment(ClickDimension.BROWSER, ClickDimension.BROWSER.ordinalOf(i % 3 == 0 ? "safari" : "chrome"));
+			stats.increment(ClickDimension.REFERRER, ClickDimension.REFERRER.ordinalOf(null));
+		}
+		for (int day = 61; day < 64; day++) stats.getDateStats().add(new DateStat(day, 10 + day));
+		stats.setSummary(VisitSummary.of(stats.getDateStats(), Year.of(2020)));
+		shortUrl.setStats(stats);
+		return shortUrl;
+	}
+
+	@Test
+	public void should_restoreShortUrl_when_decodingCompactDocument() {
+		//Given
+		ShortUrl shortUrl = shortUrl();
+
+		//When
+		ShortUrl decoded = ShortUrlCodec.fromDocument(ShortUrlCodec.toDocument(shortUrl));
+
+		//Then
+		assertThat(decoded.getId()).isEqualTo(shortUrl.getId());
+		assertThat(decoded.getKeyCode()).isEqualTo(shortUrl.getKeyCode());
+		assertThat(decoded.getUrlKey()).isEqualTo(shortUrl.getUrlKey());
+		assertThat(decoded.getLongUrl()).isEqualTo(shortUrl.getLongUrl());
+		assertThat(decoded.getCreatedDate()).isEqualTo(shortUrl.getCreatedDate());
+		assertThat(decoded.getLastAccessDate()).isEqualTo(shortUrl.getLastAccessDate());
+		assertThat(decoded.getExpireDate()).isEqualTo(shortUrl.getExpireDate());
+		assertThat(decoded.getStats().count(ClickDimension.BROWSER, "safari")).isEqualTo(14);
+		assertThat(decoded.getStats().count(ClickDimension.BROWSER, "chrome")).isEqualTo(26);
+		assertThat(decoded.getStats().count(ClickDimension.REFERRER, "direct")).isEqualTo(40);
+		assertThat(decoded.getStats().getDateStats()).hasSize(3);
+		assertThat(decoded.getStats().getDateStats().get(2).getVisits()).isEqualTo(73);
+		assertThat(decoded.getStats().getSummary().getTotal()).isEqualTo(shortUrl.getStats().getSummary().getTotal());
+		assertThat(decoded.getStats().getSummary().getMinClosed()).isEqualTo(shortUrl.getStats().getSummary().getMinClosed());
+		assertThat(decoded.getStats().getSummary().getCurrentDay()).isEqualTo(shortUrl.getStats().getSummary().getCurrentDay());
+		assertThat(decoded.getStats().getSummary().getPerMonth()).isEqualTo(shortUrl.getStats().getSummary().getPerMonth());
+	}
+
+	@Test
+	public void should_takeLessSpace_when_encodedInCompactSchema() {
+		//Given
+		ShortUrl shortUrl = shortUrl();
+		shortUrl.setId("5e5b8a3c2f1d4b0a1c9e8f7d");
+		MongoCustomConversions conversions = new MongoCustomConversions(Collections.emptyList());
+		MongoMappingContext mappingContext = new MongoMappingContext();
+		mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+		MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+		converter.setCustomConversions(conversions);
+		converter.afterPropertiesSet();
+		Document legacy = new Document();
+		converter.write(shortUrl, legacy);
+
+		//When
+		Document compact = ShortUrlCodec.toDocument(shortUrl);
+
+		//Then
+		int legacySize = new RawBsonDocument(legacy, new DocumentCodec()).getByteBuffer().remaining();
+		int compactSize = new RawBsonDocument(compact, new DocumentCodec()).getByteBuffer().remaining();
+		assertThat(compactSize).isLessThan(legacySize * 2 / 3);
+	}
+
+	@Test
+	public void should_haveNoCompactForm_when_keyCodeIsNotGenerated() {
+		//When
+		Long key = ShortUrlCodec.keyOf(Base58.fromBase10(42L) + "ab");
+
+		//Then
+		assertThat(key).isEqualTo(42L);
+		assertThat(ShortUrlCodec.keyOf("ab")).isNull();
+		assertThat(ShortUrlCodec.keyOf("my-alias")).isNull();
+		assertThat(ShortUrlCodec.idOf(42L)).hasSize(24);
+		assertThat(ShortUrlCodec.keyOfId(ShortUrlCodec.idOf(42L))).isEqualTo(42L);
+		assertThat(ShortUrlCodec.idOf(42L).compareTo(ShortUrlCodec.idOf(43L))).isNegative();
+	}
+}
@@ -2,6 +2,8 @@ package com.itaborda.service;
 
 import com.itaborda.controller.ShortUrlController;
 import com.itaborda.controller.dto.BaseResponse;
+import com.itaborda.controller.dto.BatchShortenDto;
+import com.itaborda.controller.dto.BatchShortenItemDto;
 import com.itaborda.controller.dto.NewLinkDto;
 import com.itaborda.controller.dto.ResolveLinkDto;
 import com.itaborda.controller.dto.VisitStateDto;
@@ -10,6 +12,7 @@ import com.itaborda.model.embedded.DateStat;
 import com.itaborda.model.embedded.OsStat;
 import com.itaborda.model.embedded.Stats;
 import com.itaborda.model.ShortUrl;
+import com.itaborda.util.ClickDimension;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Before;
 import org.junit.Test;
@@ -125,6 +128,34 @@ public class ShortUrlControllerTest {
 				.andReturn();
 	}
 
+	@Test
+	public void should_returnKeyOrErrorPerUrl_whenBatchIsShortened() throws Exception {
+		//Given
+		BatchShortenItemDto shortened = new BatchShortenItemDto("www.google.com");
+		shortened.setKey("b");
+		BatchShortenItemDto invalid = new BatchShortenItemDto("badURL");
+		invalid.setError("Invalid Url format.");
+		BatchShortenDto dto = new BatchShortenDto();
+		dto.setItems(Arrays.asList(shortened, invalid));
+		dto.setCreated(1);
+		dto.setFailed(1);
+		dto.setSuccess(true);
+		given(shortUrlService.shortenBatch(any())).willReturn(dto);
+
+		//When
+		RequestBuilder requestBuilder = MockMvcRequestBuilders.post(
+				"/api/v1/shortify/batch").accept(MediaType.APPLICATION_JSON)
+				.content("{\"longUrls\":[\"www.google.com\",\"badURL\"]}")
+				.contentType(MediaType.APPLICATION_JSON);
+
+		//Then
+		mockMvc.perform(requestBuilder).andExpect(status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.items[0].key").value("b"))
+				.andExpect(MockMvcResultMatchers.jsonPath("$.items[1].error").value("Invalid Url format."))
+				.andExpect(MockMvcResultMatchers.jsonPath("$.items[1].key").doesNotExist())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.failed").value(1));
+	}
+
 	@Test
 	public void should_returnStats_whenUrlIsValid() throws Exception {
 		//Given
@@ -167,25 +198,42 @@ public class ShortUrlControllerTest {
 				.andExpect(MockMvcResultMatchers.jsonPath("$.perMonth.November").value(0))
 				.andExpect(MockMvcResultMatchers.jsonPath("$.byBrowsers.ie").value(0))
 				.andExpect(MockMvcResultMatchers.jsonPath("$.byBrowsers.fireFox").value(0))
-				.andExpect(MockMvcResultMatchers.jsonPath("$.byBrowsers.chrome").value(dto.getByBrowsers().getChrome()))
+				.andExpect(MockMvcResultMatchers.jsonPath("$.byBrowsers.chrome").value(dto.getBreakdowns().get("byBrowsers").get("chrome")))
 				.andExpect(MockMvcResultMatchers.jsonPath("$.byBrowsers.opera").value(0))
 				.andExpect(MockMvcResultMatchers.jsonPath("$.byBrowsers.safari").value(0))
 				.andExpect(MockMvcResultMatchers.jsonPath("$.byBrowsers.others").value(0))
 				.andExpect(MockMvcResultMatchers.jsonPath("$.byOs.windows").value(0))
 				.andExpect(MockMvcResultMatchers.jsonPath("$.byOs.macOs").value(0))
-				.andExpect(MockMvcResultMatchers.jsonPath("$.byOs.linux").value(dto.getByOs().getLinux()))
+				.andExpect(MockMvcResultMatchers.jsonPath("$.byOs.linux").value(dto.getBreakdowns().get("byOs").get("linux")))
 				.andExpect(MockMvcResultMatchers.jsonPath("$.byOs.android").value(0))
 				.andExpect(MockMvcResultMatchers.jsonPath("$.byOs.ios").value(0))
 				.andExpect(MockMvcResultMatchers.jsonPath("$.byOs.others").value(0))
+				.andExpect(MockMvcResultMatchers.jsonPath("$.byDevices.mobile").value(0))
 				.andReturn();
 	}
 
+	@Test
+	public void should_returnNotModified_whenStatsVersionIsUnchanged() throws Exception {
+		//Given
+		VisitStateDto dto = this.initVisitStateDto();
+		dto.setVersion(7L);
+		given(shortUrlService.getVisitStateByKey(any(String.class))).willReturn(dto);
+
+		//When
+		RequestBuilder requestBuilder = MockMvcRequestBuilders.get(
+				"/api/v1/stat/YqrE3").header("If-None-Match", "\"YqrE3-7\"");
+
+		//Then
+		mockMvc.perform(requestBuilder).andExpect(status().isNotModified())
+				.andExpect(MockMvcResultMatchers.header().string("ETag", "\"YqrE3-7\""));
+	}
+
 	@Test
 	public void should_redirectUrl_whenUrlIsReturned() throws Exception {
 		//Given
 		ShortUrl shortUrl = initShortUrl();
 		final String linkDTOJson = getShortUrl.write(shortUrl).getJson();
-		given(shortUrlService.resolve(any(ResolveLinkDto.class))).willReturn(shortUrl);
+		given(shortUrlService.redirect(any(ResolveLinkDto.class))).willReturn(shortUrl.getLongUrl());
 
 		//When
 		RequestBuilder requestBuilder = MockMvcRequestBuilders.get(
@@ -207,13 +255,16 @@ public class ShortUrlControllerTest {
 		dto.setMin(10L);
 		dto.setMax(29L);
 
+		Stats stats = new Stats();
 		BrowserStats browserStats = new BrowserStats();
 		browserStats.setChrome(19L);
-		dto.setByBrowsers(browserStats);
-
+		stats.setBrowserStats(browserStats);
 		OsStat osStat = new OsStat();
 		osStat.setLinux(12L);
-		dto.setByOs(osStat);
+		stats.setOsStat(osStat);
+		for (ClickDimension dimension : ClickDimension.values()) {
+			dto.setBreakdown(dimension.getReportName(), stats.breakdown(dimension));
+		}
 
 		Map<String, Long> permonth = new HashMap<>();
 		permonth.put("June", 0L);
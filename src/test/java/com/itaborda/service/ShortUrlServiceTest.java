@@ -1,9 +1,11 @@
 package com.itaborda.service;
 
 import com.itaborda.controller.dto.BaseResponse;
+import com.itaborda.controller.dto.BatchShortenDto;
 import com.itaborda.controller.dto.NewLinkDto;
 import com.itaborda.controller.dto.ResolveLinkDto;
 import com.itaborda.controller.dto.VisitStateDto;
+import com.itaborda.exception.BatchTooLargeException;
 import com.itaborda.exception.InvalidAddressException;
 import com.itaborda.exception.KeyNotFoundException;
 import com.itaborda.exception.KeyOverFlowException;
@@ -13,6 +15,7 @@ import com.itaborda.model.embedded.OsStat;
 import com.itaborda.model.embedded.Stats;
 import com.itaborda.repository.ShortUrlRepository;
 import com.itaborda.model.ShortUrl;
+import com.itaborda.util.ClickDimension;
 import org.assertj.core.api.Assertions;
 import org.junit.Before;
 import org.junit.Rule;
@@ -29,9 +32,15 @@ import java.net.MalformedURLException;
 import java.net.UnknownHostException;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collections;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 
 @RunWith(SpringRunner.class)
@@ -107,8 +116,8 @@ public class ShortUrlServiceTest {
 		when(repository.findByKeyCode(dto.getShortUrl())).thenReturn(shortUrl);
 
 
-		Long previousChromStat = shortUrl.getStats().getBrowserStats().getChrome();
-		Long previousWinStat = shortUrl.getStats().getOsStat().getWindows();
+		long previousChromStat = shortUrl.getStats().count(ClickDimension.BROWSER, "chrome");
+		long previousWinStat = shortUrl.getStats().count(ClickDimension.OS, "windows");
 
 		// When
 		ShortUrl shortenedUrl = service.resolve(dto);
@@ -116,8 +125,8 @@ public class ShortUrlServiceTest {
 		// Then
 		assertThat(shortenedUrl).isNotNull();
 		assertThat(shortenedUrl.getLongUrl()).isEqualTo("http://www.google.com");
-		assertThat(shortUrl.getStats().getBrowserStats().getChrome()).isEqualTo(previousChromStat + 1);
-		assertThat(shortUrl.getStats().getOsStat().getWindows()).isEqualTo(previousWinStat + 1);
+		assertThat(shortUrl.getStats().count(ClickDimension.BROWSER, "chrome")).isEqualTo(previousChromStat + 1);
+		assertThat(shortUrl.getStats().count(ClickDimension.OS, "windows")).isEqualTo(previousWinStat + 1);
 	}
 
 
@@ -149,7 +158,8 @@ public class ShortUrlServiceTest {
 		NewLinkDto dto = newLinkDtoInit();
 		long key = 1L;
 
-		when(workerStatusService.getNewKey(anyString())).thenReturn(key);
+		when(workerStatusService.reserveKeys(anyString(), anyInt())).thenReturn(new long[]{key});
+		when(repository.insertIfAbsent(any(ShortUrl.class))).then(i -> i.getArgument(0));
 
 		// When
 		String shortedUrl = service.shorten(dto);
@@ -160,6 +170,49 @@ public class ShortUrlServiceTest {
 	}
 
 
+	@Test
+	public void should_returnExistingKey_when_urlIsAlreadyShortened() throws MalformedURLException, UnknownHostException, KeyOverFlowException {
+
+		// Given
+		ShortUrl existing = this.shortUtilInit();
+		existing.setKeyCode("b");
+		existing.setExpireDate(LocalDateTime.now().plusDays(1));
+		when(workerStatusService.reserveKeys(anyString(), anyInt())).thenReturn(new long[]{1L});
+		when(repository.insertIfAbsent(any(ShortUrl.class))).thenReturn(existing);
+
+		// When
+		String shortedUrl = service.shorten(newLinkDtoInit());
+
+		// Then
+		assertThat(shortedUrl).isEqualTo("b");
+	}
+
+
+	@Test
+	public void should_shortenBatch_when_batchHasExistingDuplicateAndInvalidUrls() throws UnknownHostException, KeyOverFlowException, BatchTooLargeException {
+
+		// Given
+		ShortUrl existing = this.shortUtilInit();
+		existing.setKeyCode("b");
+		existing.setExpireDate(LocalDateTime.now().plusDays(1));
+		when(repository.findByLongUrlIn(anyCollection())).thenReturn(Collections.singletonList(existing));
+		when(workerStatusService.reserveKeys(anyString(), eq(1))).thenReturn(new long[]{1L});
+		when(repository.insertUnordered(anyList())).thenReturn(Collections.emptyMap());
+
+		// When
+		BatchShortenDto dto = service.shortenBatch(Arrays.asList("www.google.com", "github.com", "www.github.com", "badURL"));
+
+		// Then
+		assertThat(dto.getItems()).hasSize(4);
+		assertThat(dto.getItems().get(0).getKey()).isEqualTo("b");
+		assertThat(dto.getItems().get(1).getKey()).isNotNull().isEqualTo(dto.getItems().get(2).getKey());
+		assertThat(dto.getItems().get(3).getError()).isNotNull();
+		assertThat(dto.getExisting()).isEqualTo(1);
+		assertThat(dto.getCreated()).isEqualTo(2);
+		assertThat(dto.getFailed()).isEqualTo(1);
+	}
+
+
 	@Test(expected = MalformedURLException.class)
 	public void should_throwException_when_urlIsNotValid() throws MalformedURLException, UnknownHostException, KeyOverFlowException {
 
@@ -185,13 +238,29 @@ public class ShortUrlServiceTest {
 		assertThat(dto.getMin()).isNotNull();
 		assertThat(dto.getTotalPerYear()).isNotNull();
 		assertThat(dto.getPerMonth()).isNotNull();
-		Assertions.assertThat(dto.getByBrowsers()).isNotNull();
-		Assertions.assertThat(dto.getByOs()).isNotNull();
+		Assertions.assertThat(dto.getBreakdowns().get("byBrowsers")).isNotNull();
+		Assertions.assertThat(dto.getBreakdowns().get("byOs")).isNotNull();
 		assertThat(dto.getCode()).isEqualTo(BaseResponse.SUCCESSFUL);
 		assertThat(dto.getMessage()).isEqualTo("analytics");
 	}
 
 
+	@Test
+	public void should_buildSummary_when_ShortUrlHasNoMaterializedStats() throws KeyNotFoundException {
+		// Given
+		String key = "1";
+		when(repository.findByKeyCode(key)).thenReturn(shortUtilInit());
+		//When
+		VisitStateDto dto = service.getVisitStateByKey(key);
+		//Then
+		assertThat(dto.getMin()).isEqualTo(1L);
+		assertThat(dto.getMax()).isEqualTo(23L);
+		assertThat(dto.getTotalPerYear()).isEqualTo(26L);
+		assertThat(dto.getDailyAverage()).isEqualTo(26.0 / 3);
+		assertThat(dto.getVersion()).isNotNull();
+	}
+
+
 	@Test(expected = KeyNotFoundException.class)
 	public void should_throwExceptionOnStatCalculation_when_shortUrlDoesNotExist() throws KeyNotFoundException {
 		// Given
@@ -0,0 +1,65 @@
+package com.itaborda.service;
+
+import com.itaborda.util.SpaceSaving;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SpaceSavingTest {
+
+	@Test
+	public void should_keepHeavyHitters_when_streamHasMoreKeysThanCapacity() {
+		//Given
+		SpaceSaving summary = new SpaceSaving(10);
+		Random random = new Random(7);
+
+		//When
+		for (int i = 0; i < 10000; i++) {
+			summary.offer("hot" + (i % 3), 1);
+			summary.offer("cold" + random.nextInt(5000), 1);
+		}
+
+		//Then
+		assertThat(summary.size()).isEqualTo(10);
+		assertThat(summary.top(3).keySet()).containsExactlyInAnyOrder("hot0", "hot1", "hot2");
+		assertThat(summary.count("hot0") - summary.error("hot0")).isLessThanOrEqualTo(3334);
+		assertThat(summary.count("hot0")).isGreaterThanOrEqualTo(3334);
+	}
+
+	@Test
+	public void should_forgetOldKeys_when_decayed() {
+		//Given
+		SpaceSaving summary = new SpaceSaving(10);
+		summary.offer("old", 100);
+
+		//When
+		summary.decay(0.01);
+		summary.offer("new", 5);
+
+		//Then
+		assertThat(summary.top(1).keySet()).containsExactly("new");
+	}
+
+	@Test
+	public void should_sumCounts_when_replicaSummariesMerged() {
+		//Given
+		Map<String, Double> replica1 = new HashMap<>();
+		replica1.put("a", 10.0);
+		replica1.put("b", 4.0);
+		Map<String, Double> replica2 = new HashMap<>();
+		replica2.put("b", 9.0);
+		replica2.put("c", 1.0);
+
+		//When
+		Map<String, Double> merged = SpaceSaving.merge(Arrays.asList(replica1, replica2), 2);
+
+		//Then
+		assertThat(merged.keySet()).containsExactly("b", "a");
+		assertThat(merged.get("b")).isEqualTo(13.0);
+	}
+}
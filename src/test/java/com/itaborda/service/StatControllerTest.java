@@ -0,0 +1,95 @@
+package com.itaborda.service;
+
+import com.itaborda.controller.StatController;
+import com.itaborda.controller.dto.BaseResponse;
+import com.itaborda.controller.dto.StatExportDto;
+import com.itaborda.exception.InvalidCursorException;
+import com.itaborda.exception.InvalidFormatException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(value = StatController.class)
+public class StatControllerTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@MockBean
+	private TopLinksService topLinksService;
+
+	@MockBean
+	private StatExportService statExportService;
+
+	@MockBean
+	private ClickStreamService clickStreamService;
+
+	@Test
+	public void should_streamCsvRows_when_exportIsRequested() throws Exception {
+		//Given
+		willAnswer(i -> {
+			i.getArgument(1, OutputStream.class).write("cursor,key\n5e0000000000000000000001,a1\n".getBytes(StandardCharsets.UTF_8));
+			return null;
+		}).given(statExportService).export(any(StatExportDto.class), any(OutputStream.class));
+
+		//When
+		MvcResult started = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/stat/export").param("format", "csv"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		//Then
+		mockMvc.perform(asyncDispatch(started))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType("text/csv"))
+				.andExpect(content().string("cursor,key\n5e0000000000000000000001,a1\n"));
+	}
+
+	@Test
+	public void should_returnError_when_exportFormatIsUnknown() throws Exception {
+		//Given
+		willThrow(new InvalidFormatException()).given(statExportService).validate(any(StatExportDto.class));
+
+		//When
+		RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/api/v1/stat/export").param("format", "xml");
+
+		//Then
+		mockMvc.perform(requestBuilder).andExpect(status().isBadRequest())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.message").value("Invalid export format."))
+				.andExpect(MockMvcResultMatchers.jsonPath("$.code").value(BaseResponse.BAD_REQUEST))
+				.andExpect(MockMvcResultMatchers.jsonPath("$.success").value("false"));
+	}
+
+	@Test
+	public void should_returnError_when_resumeCursorIsInvalid() throws Exception {
+		//Given
+		willThrow(new InvalidCursorException()).given(statExportService).validate(any(StatExportDto.class));
+
+		//When
+		RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/api/v1/stat/export").param("after", "not-a-cursor");
+
+		//Then
+		mockMvc.perform(requestBuilder).andExpect(status().isBadRequest())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.message").value("Invalid cursor."))
+				.andExpect(MockMvcResultMatchers.jsonPath("$.success").value("false"));
+	}
+}
@@ -0,0 +1,138 @@
+package com.itaborda.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itaborda.controller.dto.StatExportDto;
+import com.itaborda.exception.InvalidCursorException;
+import com.itaborda.exception.InvalidFormatException;
+import com.itaborda.model.ShortUrl;
+import com.itaborda.model.embedded.DateStat;
+import com.itaborda.model.embedded.Stats;
+import com.itaborda.model.embedded.VisitSummary;
+import com.itaborda.repository.embedded.EmbeddedLinkStore;
+import com.itaborda.service.impl.StatExportServiceImpl;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class StatExportTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private StatExportServiceImpl statExportService;
+	private List<ShortUrl> shortUrls;
+
+	@Before
+	public void setup() throws Exception {
+		EmbeddedLinkStore linkStore = new EmbeddedLinkStore(objectMapper, folder.newFolder().getPath(), 1 << 20, 16, 0.5, false);
+		statExportService = new StatExportServiceImpl(linkStore, objectMapper);
+		ReflectionTestUtils.setField(statExportService, "batchSize", 2);
+		ReflectionTestUtils.setField(statExportService, "flushEvery", 2);
+		shortUrls = new ArrayList<>();
+		shortUrls.add(linkStore.insertIfAbsent(shortUrl("a1", "http://a.com", 3)));
+		shortUrls.add(linkStore.insertIfAbsent(shortUrl("b2", "http://b.com/x,\"y\"", 1)));
+		shortUrls.add(linkStore.insertIfAbsent(shortUrl("c3", "http://c.com", 0)));
+	}
+
+	@Test
+	public void should_writeOneNdjsonRowPerShortUrl_and_resumeAfterCursor_when_exported() throws Exception {
+		//Given
+		StatExportDto request = new StatExportDto();
+		request.setSeries(true);
+
+		//When
+		List<JsonNode> rows = ndjson(export(request));
+		request.setAfter(rows.get(0).get("cursor").asText());
+		List<JsonNode> resumed = ndjson(export(request));
+
+		//Then
+		assertThat(rows).hasSize(3);
+		assertThat(rows.get(0).get("key").asText()).isEqualTo("a1");
+		assertThat(rows.get(0).get("cursor").asText()).isEqualTo(shortUrls.get(0).getId());
+		assertThat(rows.get(0).get("total").asLong()).isEqualTo(3);
+		assertThat(rows.get(0).get("series").get("10").asLong()).isEqualTo(3);
+		assertThat(rows.get(1).get("longUrl").asText()).isEqualTo("http://b.com/x,\"y\"");
+		assertThat(resumed).extracting(row -> row.get("key").asText()).containsExactly("b2", "c3");
+	}
+
+	@Test
+	public void should_writeHeaderAndQuotedCsvRows_when_csvIsExported() throws Exception {
+		//Given
+		StatExportDto request = new StatExportDto();
+		request.setFormat("CSV");
+		request.setAfter(shortUrls.get(0).getId());
+
+		//When
+		String[] lines = export(request).split("\n");
+
+		//Then
+		assertThat(lines).hasSize(3);
+		assertThat(lines[0]).startsWith("cursor,key,longUrl,").endsWith(",series");
+		assertThat(lines[1]).startsWith(shortUrls.get(1).getId() + ",b2,\"http://b.com/x,\"\"y\"\"\",");
+		assertThat(lines[2]).startsWith(shortUrls.get(2).getId() + ",c3,http://c.com,");
+		assertThat(lines[1].split(",", -1)).hasSize(lines[0].split(",").length + 1);
+	}
+
+	@Test
+	public void should_rejectRequest_when_cursorOrFormatIsInvalid() throws Exception {
+		//Given
+		StatExportDto badCursor = new StatExportDto();
+		badCursor.setAfter("not-a-cursor");
+		StatExportDto badFormat = new StatExportDto();
+		badFormat.setFormat("xml");
+		StatExportDto valid = new StatExportDto();
+		valid.setFormat("ndjson");
+		valid.setAfter(shortUrls.get(2).getId());
+
+		//When
+		statExportService.validate(valid);
+
+		//Then
+		assertThatThrownBy(() -> statExportService.validate(badCursor)).isInstanceOf(InvalidCursorException.class);
+		assertThatThrownBy(() -> statExportService.validate(badFormat)).isInstanceOf(InvalidFormatException.class);
+		assertThat(export(valid)).isEmpty();
+	}
+
+	private String export(StatExportDto request) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		statExportService.export(request, out);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private List<JsonNode> ndjson(String body) throws Exception {
+		List<JsonNode> rows = new ArrayList<>();
+		for (String line : body.split("\n")) {
+			if (!line.isEmpty()) rows.add(objectMapper.readTree(line));
+		}
+		return rows;
+	}
+
+	private static ShortUrl shortUrl(String keyCode, String longUrl, int visits) {
+		ShortUrl shortUrl = new ShortUrl(keyCode);
+		shortUrl.setLongUrl(longUrl);
+		shortUrl.setUrlKey(ShortUrl.urlKeyOf(longUrl));
+		shortUrl.setCreatedDate(LocalDateTime.now().minusDays(1));
+		shortUrl.setExpireDate(LocalDateTime.now().plusDays(30));
+		Stats stats = new Stats();
+		stats.setSummary(new VisitSummary());
+		if (visits > 0) {
+			stats.getDateStats().add(new DateStat(10, visits));
+			for (int i = 1; i <= visits; i++) stats.getSummary().recordVisit(10, 1, i, i == 1);
+		}
+		shortUrl.setStats(stats);
+		return shortUrl;
+	}
+}
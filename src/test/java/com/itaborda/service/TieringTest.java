@@ -0,0 +1,114 @@
+package com.itaborda.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itaborda.controller.dto.ResolveLinkDto;
+import com.itaborda.model.ShortUrl;
+import com.itaborda.model.embedded.Stats;
+import com.itaborda.model.embedded.VisitSummary;
+import com.itaborda.repository.LinkArchive;
+import com.itaborda.repository.LinkCache;
+import com.itaborda.repository.embedded.EmbeddedLinkStore;
+import com.itaborda.service.impl.LoadSheddingServiceImpl;
+import com.itaborda.service.impl.ShortUrlServiceImpl;
+import com.itaborda.service.impl.TieringServiceImpl;
+import com.itaborda.util.UrlNormalizer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TieringTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private EmbeddedLinkStore linkStore;
+	private Map<String, ShortUrl> archived;
+	private TieringServiceImpl tieringService;
+
+	@Before
+	public void setup() throws Exception {
+		linkStore = new EmbeddedLinkStore(new ObjectMapper(), folder.newFolder().getPath(), 1 << 20, 16, 0.5, false);
+		archived = new ConcurrentHashMap<>();
+		LinkArchive linkArchive = mock(LinkArchive.class);
+		when(linkArchive.findByKeyCode(anyString())).then(i -> archived.get(i.<String>getArgument(0)));
+		doAnswer(i -> {
+			for (ShortUrl shortUrl : i.<List<ShortUrl>>getArgument(0)) archived.put(shortUrl.getKeyCode(), shortUrl);
+			return null;
+		}).when(linkArchive).archive(anyList());
+		doAnswer(i -> archived.remove(i.<ShortUrl>getArgument(0).getKeyCode())).when(linkArchive).delete(any(ShortUrl.class));
+		tieringService = new TieringServiceImpl(linkStore, linkArchive, "P7D", 2, 0);
+	}
+
+	private ShortUrl shortUrl(String keyCode, LocalDateTime createdDate, LocalDateTime lastAccessDate) {
+		String longUrl = "http://" + keyCode + ".com";
+		ShortUrl shortUrl = new ShortUrl(keyCode);
+		shortUrl.setLongUrl(longUrl);
+		shortUrl.setUrlKey(ShortUrl.urlKeyOf(longUrl));
+		shortUrl.setCreatedDate(createdDate);
+		shortUrl.setLastAccessDate(lastAccessDate);
+		shortUrl.setExpireDate(LocalDateTime.now().plusDays(30));
+		Stats stats = new Stats();
+		stats.setSummary(new VisitSummary());
+		shortUrl.setStats(stats);
+		return linkStore.insertIfAbsent(shortUrl);
+	}
+
+	@Test
+	public void should_archiveOnlyColdLinks_when_tiering() throws Exception {
+		//Given
+		LocalDateTime old = LocalDateTime.now().minusDays(10);
+		shortUrl("visitedLongAgo", old, old.plusDays(1));
+		shortUrl("neverVisited", old, null);
+		shortUrl("visitedToday", old, LocalDateTime.now());
+		shortUrl("createdToday", LocalDateTime.now(), null);
+		shortUrl("alsoNeverVisited", old, null);
+
+		//When
+		long count = tieringService.archiveCold();
+
+		//Then
+		assertThat(count).isEqualTo(3);
+		assertThat(archived).containsOnlyKeys("visitedLongAgo", "neverVisited", "alsoNeverVisited");
+		assertThat(linkStore.size()).isEqualTo(2);
+		assertThat(linkStore.findByKeyCode("neverVisited")).isNull();
+		assertThat(tieringService.archiveCold()).isEqualTo(0);
+	}
+
+	@Test
+	public void should_promoteArchivedLink_when_visitedAgain() throws Exception {
+		//Given
+		LocalDateTime old = LocalDateTime.now().minusDays(10);
+		shortUrl("cold", old, null);
+		tieringService.archiveCold();
+		ShortUrlService shortUrlService = new ShortUrlServiceImpl(linkStore, mock(LinkCache.class), mock(WorkerStatusService.class),
+				mock(TopLinksService.class), mock(ClickStreamService.class), mock(KeyPoolService.class),
+				new UrlNormalizer(Collections.emptyList()), new LoadSheddingServiceImpl(32, 4, 256, "PT1S", "PT5S", 1), Optional.empty(), Optional.of(tieringService), Optional.empty());
+		ResolveLinkDto dto = new ResolveLinkDto();
+		dto.setShortUrl("cold");
+
+		//When
+		ShortUrl resolved = shortUrlService.resolve(dto);
+
+		//Then
+		assertThat(resolved.getLongUrl()).isEqualTo("http://cold.com");
+		assertThat(archived).isEmpty();
+		assertThat(linkStore.findByKeyCode("cold").getLastAccessDate()).isAfter(old);
+		assertThat(linkStore.findByKeyCode("cold").getStats().getSummary().getTotal()).isEqualTo(1);
+	}
+}
@@ -0,0 +1,78 @@
+package com.itaborda.service;
+
+import com.itaborda.config.TracingFilter;
+import com.itaborda.controller.dto.TraceDto;
+import com.itaborda.controller.dto.TracesDto;
+import com.itaborda.repository.TracingCache;
+import com.itaborda.service.impl.TracingServiceImpl;
+import com.itaborda.util.Trace;
+import org.junit.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TracingTest {
+
+	@Test
+	public void should_recordNothing_when_requestIsNotSampled() {
+		//Given
+		TracingServiceImpl tracingService = new TracingServiceImpl(0, "PT0S", 4);
+
+		//When
+		Trace trace = tracingService.start("GET", false);
+		Trace.Span first = Trace.span("cache.get");
+		Trace.Span second = Trace.span("mongo.find");
+		first.close();
+		second.close();
+
+		//Then
+		assertThat(trace).isNull();
+		assertThat(Trace.current()).isNull();
+		assertThat(first).isSameAs(second);
+		assertThat(tracingService.getTraces().getSampled()).isEqualTo(0);
+	}
+
+	@Test
+	public void should_keepRecentSlowTracesWithNestedSpans_when_requestsAreSampled() throws Exception {
+		//Given
+		TracingServiceImpl tracingService = new TracingServiceImpl(0, "PT0S", 2);
+		TracingFilter filter = new TracingFilter(tracingService);
+		TracingCache cache = new TracingCache(new ConcurrentMapCache("shortify"));
+		HttpServlet servlet = new HttpServlet() {
+			@Override
+			protected void service(HttpServletRequest request, HttpServletResponse response) {
+				try (Trace.Span span = Trace.span("service.resolve")) {
+					cache.put(request.getRequestURI(), "http://site.com");
+					cache.get(request.getRequestURI());
+				}
+			}
+		};
+
+		//When
+		for (String key : new String[]{"a", "b", "c"}) {
+			MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/" + key);
+			request.addHeader(TracingFilter.TRACE_HEADER, "1");
+			filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain(servlet));
+		}
+		filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/d"), new MockHttpServletResponse(), new MockFilterChain(servlet));
+
+		//Then
+		TracesDto traces = tracingService.getTraces();
+		assertThat(Trace.current()).isNull();
+		assertThat(traces.getSampled()).isEqualTo(3);
+		assertThat(traces.getSlow()).isEqualTo(3);
+		assertThat(traces.getTraces()).extracting(TraceDto::getName).containsExactly("GET /api/v1/c", "GET /api/v1/b");
+		TraceDto trace = traces.getTraces().get(0);
+		assertThat(trace.getSpans()).extracting("name").containsExactly("request", "service.resolve", "cache.put", "cache.get");
+		assertThat(trace.getSpans()).extracting("depth").containsExactly(0, 1, 2, 2);
+		assertThat(trace.getSpans()).allMatch(span -> span.getDurationMicros() >= 0);
+		assertThat(trace.getSpans().get(3).getStartMicros()).isGreaterThanOrEqualTo(trace.getSpans().get(2).getStartMicros());
+	}
+}
@@ -0,0 +1,131 @@
+package com.itaborda.service;
+
+import com.itaborda.controller.dto.NewLinkDto;
+import com.itaborda.controller.dto.UrlKeyBackfillDto;
+import com.itaborda.model.ShortUrl;
+import com.itaborda.repository.LinkCache;
+import com.itaborda.repository.LinkStore;
+import com.itaborda.service.impl.LoadSheddingServiceImpl;
+import com.itaborda.service.impl.ShortUrlServiceImpl;
+import com.itaborda.service.impl.UrlKeyBackfillServiceImpl;
+import com.itaborda.util.UrlNormalizer;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UrlKeyBackfillTest {
+
+	private LinkStore linkStore;
+	private KeyPoolService keyPoolService;
+	private UrlNormalizer urlNormalizer;
+	private ShortUrlService shortUrlService;
+
+	@Before
+	public void setup() {
+		linkStore = mock(LinkStore.class);
+		keyPoolService = mock(KeyPoolService.class);
+		urlNormalizer = new UrlNormalizer(Collections.emptyList());
+		shortUrlService = new ShortUrlServiceImpl(linkStore, new LinkCache(new ConcurrentMapCacheManager(ShortUrl.CACHE_NAME), null),
+				mock(WorkerStatusService.class), mock(TopLinksService.class), mock(ClickStreamService.class), keyPoolService,
+				urlNormalizer, new LoadSheddingServiceImpl(32, 4, 256, "PT1S", "PT5S", 1), Optional.empty(), Optional.empty(), Optional.empty());
+		ReflectionTestUtils.setField(shortUrlService, "ttl", "PT24H");
+		ReflectionTestUtils.setField(shortUrlService, "lookupChunk", 10);
+		ReflectionTestUtils.setField(shortUrlService, "legacyLookup", true);
+	}
+
+	private ShortUrl legacy(String keyCode, String longUrl) {
+		ShortUrl shortUrl = new ShortUrl(keyCode);
+		shortUrl.setId(keyCode);
+		shortUrl.setLongUrl(longUrl);
+		shortUrl.setCreatedDate(LocalDateTime.now().minusDays(1));
+		shortUrl.setExpireDate(LocalDateTime.now().plusDays(1));
+		return shortUrl;
+	}
+
+	private static CloseableIterator<ShortUrl> cursor(List<ShortUrl> shortUrls) {
+		Iterator<ShortUrl> it = shortUrls.iterator();
+		return new CloseableIterator<ShortUrl>() {
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public ShortUrl next() {
+				return it.next();
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+
+	@Test
+	public void should_returnLegacyKey_when_shorteningUrlStoredWithoutUrlKey() throws Exception {
+		//Given
+		String longUrl = urlNormalizer.normalize("http://legacy.com/page");
+		ShortUrl legacy = legacy("legacy1", longUrl);
+		when(linkStore.findByLongUrlIn(any())).thenReturn(Collections.singletonList(legacy));
+		NewLinkDto linkDto = new NewLinkDto();
+		linkDto.setLongUrl(longUrl);
+
+		//When
+		String key = shortUrlService.shorten(linkDto);
+		String batchKey = shortUrlService.shortenNormalized(Collections.singletonList(longUrl)).getItems().get(0).getKey();
+
+		//Then
+		assertThat(key).isEqualTo("legacy1");
+		assertThat(batchKey).isEqualTo(key);
+		verify(keyPoolService, never()).take();
+		verify(linkStore, never()).insertIfAbsent(any());
+		verify(linkStore).save(argThat(s -> "legacy1".equals(s.getKeyCode()) && ShortUrl.urlKeyOf(longUrl).equals(s.getUrlKey())));
+	}
+
+	@Test
+	public void should_giveLegacyShortUrlsTheirUrlKey_when_backfilling() throws Exception {
+		//Given
+		ShortUrl legacy = legacy("legacy1", "http://legacy.com/");
+		ShortUrl keyed = legacy("keyed1", "http://keyed.com/");
+		keyed.setUrlKey(ShortUrl.urlKeyOf(keyed.getLongUrl()));
+		ShortUrl duplicate = legacy("legacy2", "http://keyed.com/");
+		when(linkStore.streamForExport(eq(null), eq(null), eq(null), anyInt())).thenReturn(cursor(Arrays.asList(legacy, keyed, duplicate)));
+		doThrow(new DuplicateKeyException("urlKey")).when(linkStore).save(duplicate);
+		UrlKeyBackfillService backfillService = new UrlKeyBackfillServiceImpl(linkStore, 2, 0);
+
+		//When
+		backfillService.start();
+		UrlKeyBackfillDto report = backfillService.await();
+
+		//Then
+		assertThat(report.getState()).isEqualTo(UrlKeyBackfillDto.DONE);
+		assertThat(report.getScanned()).isEqualTo(3);
+		assertThat(report.getBackfilled()).isEqualTo(1);
+		assertThat(report.getDuplicates()).isEqualTo(1);
+		assertThat(legacy.getUrlKey()).isEqualTo(ShortUrl.urlKeyOf("http://legacy.com/"));
+		verify(linkStore, times(2)).save(any());
+		verify(linkStore, never()).save(keyed);
+	}
+}
@@ -0,0 +1,139 @@
+package com.itaborda.service;
+
+import com.itaborda.util.UrlNormalizer;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UrlNormalizerTest {
+
+	private static final int SAMPLES = 20000;
+	private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+	private static final String UNRESERVED = LETTERS + "0123456789-._~";
+	private static final String NOISE = UNRESERVED + "ABCXYZ%/?#:@[]&=+!$'()*,; éü中";
+
+	private final UrlNormalizer normalizer = new UrlNormalizer(Arrays.asList("utm_*", "fbclid", "gclid"));
+
+	@Test
+	public void should_produceCanonicalForm_when_corpusUrlIsNormalized() throws Exception {
+		//Given
+		List<String[]> corpus = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				getClass().getResourceAsStream("/url-normalization-corpus.tsv"), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.startsWith("#")) corpus.add(line.split("\t"));
+			}
+		}
+
+		for (String[] entry : corpus) {
+			//When
+			String normalized = normalizer.normalize(entry[0]);
+
+			//Then
+			assertThat(normalized).as(entry[0]).isEqualTo("-".equals(entry[1]) ? null : entry[1]);
+		}
+	}
+
+	@Test
+	public void should_beIdempotent_when_normalizedTwice() {
+		//Given
+		Random random = new Random(34);
+
+		for (int i = 0; i < SAMPLES; i++) {
+			String url = (random.nextBoolean() ? "http://" : "") + word(random, LETTERS, 6) + ".com" + word(random, NOISE, 40);
+
+			//When
+			String normalized = normalizer.normalize(url);
+
+			//Then
+			if (normalized != null) assertThat(normalizer.normalize(normalized)).as(url).isEqualTo(normalized);
+		}
+	}
+
+	@Test
+	public void should_normalizeToSameUrl_when_formsAreEquivalent() {
+		//Given
+		Random random = new Random(3986);
+
+		for (int i = 0; i < SAMPLES; i++) {
+			boolean https = random.nextBoolean();
+			String host = word(random, LETTERS, 8) + "." + (random.nextBoolean() ? "com" : "com.br");
+			List<String> segments = new ArrayList<>();
+			for (int s = random.nextInt(4); s > 0; s--) segments.add(word(random, LETTERS, 1) + word(random, UNRESERVED + "é", 8));
+			List<String> params = new ArrayList<>();
+			for (int p = random.nextInt(4); p > 0; p--) params.add("p" + p + "=" + word(random, UNRESERVED, 6));
+			String fragment = random.nextInt(4) == 0 ? word(random, UNRESERVED, 6) : null;
+
+			//When
+			String canonical = normalizer.normalize(url(random, https, host, segments, params, fragment, false));
+			String equivalent = normalizer.normalize(url(random, https, host, segments, params, fragment, true));
+
+			//Then
+			assertThat(canonical).isNotNull();
+			assertThat(equivalent).isEqualTo(canonical);
+		}
+	}
+
+	/**
+	 * builds the url, rewriting it in random equivalent forms when asked
+	 */
+	private String url(Random random, boolean https, String host, List<String> segments, List<String> params, String fragment, boolean rewrite) {
+		StringBuilder url = new StringBuilder();
+		String scheme = https ? "https" : "http";
+		url.append(rewrite ? randomCase(random, scheme) : scheme).append("://");
+		url.append(rewrite ? randomCase(random, host) : host);
+		if (rewrite && random.nextBoolean()) url.append('.');
+		if (rewrite && random.nextBoolean()) url.append(https ? ":443" : ":80");
+
+		for (String segment : segments) {
+			if (rewrite && random.nextInt(4) == 0) url.append(random.nextBoolean() ? "/." : "/" + word(random, LETTERS, 3) + "/..");
+			url.append('/').append(rewrite ? randomEncoding(random, segment) : segment);
+		}
+		if (rewrite && params.isEmpty() && fragment == null && random.nextBoolean()) url.append('/');
+
+		List<String> query = new ArrayList<>(params);
+		if (rewrite) {
+			Collections.shuffle(query, random);
+			if (random.nextBoolean()) query.add(random.nextInt(query.size() + 1), randomCase(random, "utm_source") + "=feed");
+			if (random.nextBoolean()) query.add(random.nextInt(query.size() + 1), "fbclid=" + word(random, UNRESERVED, 10));
+			if (random.nextBoolean()) query.add("");
+		}
+		if (!query.isEmpty()) url.append('?').append(String.join("&", query));
+		if (fragment != null) url.append('#').append(rewrite ? randomEncoding(random, fragment) : fragment);
+		return url.toString();
+	}
+
+	private static String word(Random random, String alphabet, int maxLength) {
+		StringBuilder word = new StringBuilder();
+		for (int i = 1 + random.nextInt(maxLength); i > 0; i--) word.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		return word.toString();
+	}
+
+	private static String randomCase(Random random, String text) {
+		StringBuilder result = new StringBuilder();
+		for (char c : text.toCharArray()) result.append(random.nextBoolean() ? Character.toUpperCase(c) : c);
+		return result.toString();
+	}
+
+	/**
+	 * percent-encodes random characters, with random case hex digits
+	 */
+	private static String randomEncoding(Random random, String text) {
+		StringBuilder result = new StringBuilder();
+		for (byte b : text.getBytes(StandardCharsets.UTF_8)) {
+			if (b >= 0 && random.nextBoolean()) result.append((char) b);
+			else result.append('%').append(randomCase(random, String.format("%02x", b & 0xFF)));
+		}
+		return result.toString();
+	}
+}
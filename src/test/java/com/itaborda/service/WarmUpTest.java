@@ -0,0 +1,97 @@
+package com.itaborda.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itaborda.controller.dto.WarmUpStatusDto;
+import com.itaborda.model.ShortUrl;
+import com.itaborda.repository.embedded.EmbeddedLinkStore;
+import com.itaborda.service.impl.WarmUpServiceImpl;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class WarmUpTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private EmbeddedLinkStore linkStore;
+	private KeyPoolService keyPoolService;
+	private TopLinksService topLinksService;
+	private ConcurrentMapCacheManager cacheManager;
+
+	@Before
+	public void setup() throws Exception {
+		linkStore = new EmbeddedLinkStore(new ObjectMapper(), folder.newFolder().getPath(), 1 << 20, 16, 0.5, false);
+		keyPoolService = mock(KeyPoolService.class);
+		topLinksService = mock(TopLinksService.class);
+		cacheManager = new ConcurrentMapCacheManager(ShortUrl.CACHE_NAME);
+	}
+
+	private ShortUrl shortUrl(String keyCode, LocalDateTime lastAccessDate) {
+		String longUrl = "http://" + keyCode + ".com";
+		ShortUrl shortUrl = new ShortUrl(keyCode);
+		shortUrl.setLongUrl(longUrl);
+		shortUrl.setUrlKey(ShortUrl.urlKeyOf(longUrl));
+		shortUrl.setCreatedDate(LocalDateTime.now().minusDays(30));
+		shortUrl.setLastAccessDate(lastAccessDate);
+		return linkStore.insertIfAbsent(shortUrl);
+	}
+
+	@Test
+	public void should_loadHotAndRecentLinks_when_warmingUp() throws Exception {
+		//Given
+		for (int i = 0; i < 7; i++) shortUrl("recent" + i, LocalDateTime.now().minusHours(i));
+		shortUrl("hotButOld", LocalDateTime.now().minusDays(10));
+		shortUrl("cold", LocalDateTime.now().minusDays(10));
+		when(keyPoolService.prefetch()).thenReturn(100);
+		when(topLinksService.hotKeys(anyInt())).thenReturn(Arrays.asList("hotButOld", "recent0", "gone"));
+		WarmUpServiceImpl warmUpService = new WarmUpServiceImpl(linkStore, keyPoolService, topLinksService, cacheManager,
+				6, "PT24H", 2, 2, "PT10S");
+
+		//When
+		assertThat(warmUpService.isReady()).isFalse();
+		WarmUpStatusDto status = warmUpService.warmUp();
+
+		//Then
+		assertThat(warmUpService.isReady()).isTrue();
+		assertThat(status.isReady()).isTrue();
+		assertThat(status.getState()).isEqualTo(WarmUpStatusDto.DONE);
+		assertThat(status.getKeysLeased()).isEqualTo(100);
+		assertThat(status.getHotKeys()).isEqualTo(3);
+		assertThat(status.getRecentLinks()).isEqualTo(3);
+		assertThat(status.getLoaded()).isEqualTo(5);
+		Cache cache = cacheManager.getCache(ShortUrl.CACHE_NAME);
+		long cached = 0;
+		for (int i = 0; i < 7; i++) if (cache.get("recent" + i) != null) cached++;
+		assertThat(cached).isEqualTo(3);
+		assertThat(cache.get("cold")).isNull();
+	}
+
+	@Test
+	public void should_becomeReady_when_warmUpFails() throws Exception {
+		//Given
+		when(keyPoolService.prefetch()).thenThrow(new IllegalStateException("no mongo"));
+		when(topLinksService.hotKeys(anyInt())).thenThrow(new IllegalStateException("no redis"));
+		WarmUpServiceImpl warmUpService = new WarmUpServiceImpl(linkStore, keyPoolService, topLinksService, cacheManager,
+				10, "PT24H", 2, 2, "PT10S");
+
+		//When
+		WarmUpStatusDto status = warmUpService.warmUp();
+
+		//Then
+		assertThat(status.isReady()).isTrue();
+		assertThat(status.getFailures()).isEqualTo(2);
+		assertThat(status.getLoaded()).isZero();
+	}
+}
@@ -71,7 +71,7 @@ public class WorkerStatusServiceTest {
 		Long allocatedDecimalID = service.getNewKey(workerId);
 
 		//Then
-		assertThat(allocatedDecimalID).isEqualTo(1L);
+		assertThat(allocatedDecimalID).isEqualTo(10000000L);
 	}
 
 	@Test
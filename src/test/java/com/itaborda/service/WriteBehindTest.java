@@ -0,0 +1,145 @@
+package com.itaborda.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itaborda.controller.dto.WriteBehindStatusDto;
+import com.itaborda.model.ShortUrl;
+import com.itaborda.repository.embedded.EmbeddedLinkStore;
+import com.itaborda.service.impl.WriteBehindServiceImpl;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.io.File;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class WriteBehindTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private EmbeddedLinkStore linkStore;
+	private ConcurrentMapCacheManager cacheManager;
+	private File journalDir;
+
+	@Before
+	public void setup() throws Exception {
+		linkStore = new EmbeddedLinkStore(new ObjectMapper(), folder.newFolder().getPath(), 1 << 20, 16, 0.5, false);
+		cacheManager = new ConcurrentMapCacheManager(ShortUrl.CACHE_NAME);
+		journalDir = folder.newFolder();
+	}
+
+	private WriteBehindServiceImpl service() throws Exception {
+		return new WriteBehindServiceImpl(linkStore, cacheManager, new ObjectMapper(), journalDir.getPath(), 1024, 16, 2);
+	}
+
+	private ShortUrl shortUrl(String keyCode, String longUrl) {
+		ShortUrl shortUrl = new ShortUrl(keyCode);
+		shortUrl.setId(new ObjectId().toHexString());
+		shortUrl.setLongUrl(longUrl);
+		shortUrl.setUrlKey(ShortUrl.urlKeyOf(longUrl));
+		shortUrl.setCreatedDate(LocalDateTime.now());
+		shortUrl.setExpireDate(LocalDateTime.now().plusDays(1));
+		return shortUrl;
+	}
+
+	@Test
+	public void should_resolveBeforeFlush_when_appended() throws Exception {
+		//Given
+		WriteBehindServiceImpl writeBehind = service();
+
+		//When
+		ShortUrl appended = writeBehind.append(shortUrl("k1", "http://site1.com"));
+		ShortUrl duplicate = writeBehind.append(shortUrl("k2", "http://site1.com"));
+
+		//Then
+		assertThat(duplicate.getKeyCode()).isEqualTo("k1");
+		assertThat(linkStore.findByKeyCode("k1")).isNull();
+		assertThat(writeBehind.findByKeyCode("k1")).isSameAs(appended);
+		assertThat(writeBehind.findByUrlKey(appended.getUrlKey())).isSameAs(appended);
+		assertThat(cacheManager.getCache(ShortUrl.CACHE_NAME).get("k1").get()).isSameAs(appended);
+
+		writeBehind.flush();
+		WriteBehindStatusDto status = writeBehind.getStatus();
+		assertThat(linkStore.findByKeyCode("k1").getLongUrl()).isEqualTo("http://site1.com");
+		assertThat(writeBehind.findByKeyCode("k1")).isNull();
+		assertThat(status.getPending()).isEqualTo(0);
+		assertThat(status.getFlushed()).isEqualTo(1);
+		assertThat(status.getLastBatchSize()).isEqualTo(1);
+		writeBehind.close();
+	}
+
+	@Test
+	public void should_replayUnflushedEntries_when_restarted() throws Exception {
+		//Given
+		WriteBehindServiceImpl crashed = service();
+		for (int i = 1; i <= 30; i++) crashed.append(shortUrl("k" + i, "http://site" + i + ".com"));
+
+		//When
+		WriteBehindServiceImpl restarted = service();
+
+		//Then
+		assertThat(restarted.getStatus().getPending()).isEqualTo(30);
+		assertThat(restarted.findByKeyCode("k30").getLongUrl()).isEqualTo("http://site30.com");
+		assertThat(linkStore.size()).isEqualTo(0);
+		restarted.flush();
+		assertThat(linkStore.size()).isEqualTo(30);
+		assertThat(restarted.getStatus().getMaxBatchSize()).isEqualTo(2);
+		assertThat(journalDir.list()).hasSize(1);
+		restarted.close();
+	}
+
+	@Test
+	public void should_keepKeyResolvable_when_urlKeyIsTakenBeforeFlush() throws Exception {
+		//Given
+		WriteBehindServiceImpl writeBehind = service();
+		writeBehind.append(shortUrl("k1", "http://site1.com"));
+		linkStore.insertIfAbsent(shortUrl("other", "http://site1.com"));
+
+		//When
+		writeBehind.flush();
+
+		//Then
+		assertThat(writeBehind.getStatus().getConflicts()).isEqualTo(1);
+		assertThat(writeBehind.getStatus().getPending()).isEqualTo(0);
+		assertThat(linkStore.findByKeyCode("k1").getLongUrl()).isEqualTo("http://site1.com");
+		assertThat(linkStore.findByKeyCode("other").getLongUrl()).isEqualTo("http://site1.com");
+		writeBehind.close();
+	}
+
+	@Test
+	public void should_notReplayFlushedEntries_when_restartedAfterFlush() throws Exception {
+		//Given
+		WriteBehindServiceImpl writeBehind = service();
+		for (int i = 1; i <= 3; i++) writeBehind.append(shortUrl("k" + i, "http://site" + i + ".com"));
+		writeBehind.flush();
+
+		//When
+		WriteBehindServiceImpl restarted = service();
+
+		//Then
+		assertThat(restarted.getStatus().getPending()).isEqualTo(0);
+		assertThat(linkStore.size()).isEqualTo(3);
+		restarted.close();
+	}
+
+	@Test(timeout = 5000)
+	public void should_failAppend_when_journalIsClosed() throws Exception {
+		//Given
+		WriteBehindServiceImpl writeBehind = service();
+		writeBehind.close();
+
+		//When
+		Throwable thrown = catchThrowable(() -> writeBehind.append(shortUrl("k1", "http://site1.com")));
+
+		//Then
+		assertThat(thrown).isInstanceOf(UncheckedIOException.class);
+		assertThat(writeBehind.findByKeyCode("k1")).isNull();
+	}
+}